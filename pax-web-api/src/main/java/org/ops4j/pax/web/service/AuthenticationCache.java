@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service;
+
+/**
+ * Credentials verified by the login services of the http contexts, cached
+ * when {@link WebContainerConstants#PROPERTY_AUTHENTICATION_CACHE_ENABLED} is
+ * set. Registered as a service, so changed or revoked credentials can be
+ * dropped before their cache entries expire.
+ */
+public interface AuthenticationCache {
+
+	/**
+	 * Drops all cached credentials of all contexts.
+	 */
+	void flush();
+
+	/**
+	 * Drops the cached credentials of a user in all contexts.
+	 *
+	 * @param username
+	 *            name the user authenticated with
+	 */
+	void flush(String username);
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service;
+
+import java.util.Dictionary;
+import java.util.EventListener;
+
+import javax.servlet.Filter;
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+
+import org.osgi.service.http.HttpContext;
+import org.osgi.service.http.NamespaceException;
+
+/**
+ * Registrations for one http context which are applied together. Servlets,
+ * filters, event listeners, error pages and welcome files added to a batch
+ * are registered when the batch gets committed, and the context is started
+ * once afterwards instead of after every servlet.
+ * <p>
+ * If any registration of the batch fails on commit, the registrations already
+ * applied are removed again, so the http context is left as it was. A batch
+ * is meant to be used by one thread and can be committed or rolled back only
+ * once.
+ *
+ * @see WebContainer#createRegistrationBatch(HttpContext)
+ */
+public interface RegistrationBatch {
+
+	/**
+	 * @return the http context the registrations are made for
+	 */
+	HttpContext getHttpContext();
+
+	/**
+	 * Adds a servlet registered at an alias, see
+	 * {@link WebContainer#registerServlet(String, Servlet, Dictionary, HttpContext)}.
+	 *
+	 * @param alias
+	 *            name in the URI namespace
+	 * @param servlet
+	 *            servlet object to register
+	 * @param initParams
+	 *            initialization arguments for the servlet or null
+	 */
+	void registerServlet(String alias, Servlet servlet,
+			Dictionary<String, ?> initParams);
+
+	/**
+	 * Adds a servlet mapped to url patterns, see
+	 * {@link WebContainer#registerServlet(Servlet, String, String[], Dictionary, Integer, Boolean, MultipartConfigElement, HttpContext)}
+	 * .
+	 *
+	 * @param servlet
+	 *            servlet object to register
+	 * @param servletName
+	 *            name of the servlet or null to use a generated one
+	 * @param urlPatterns
+	 *            url patterns the servlet is mapped to
+	 * @param initParams
+	 *            initialization arguments for the servlet or null
+	 * @param loadOnStartup
+	 *            load on startup order or null
+	 * @param asyncSupported
+	 *            whether the servlet supports asynchronous processing or null
+	 * @param multiPartConfig
+	 *            multipart configuration or null
+	 */
+	void registerServlet(Servlet servlet, String servletName,
+			String[] urlPatterns, Dictionary<String, ?> initParams,
+			Integer loadOnStartup, Boolean asyncSupported,
+			MultipartConfigElement multiPartConfig);
+
+	/**
+	 * Adds a filter, see
+	 * {@link WebContainer#registerFilter(Filter, String[], String[], Dictionary, HttpContext)}
+	 * .
+	 *
+	 * @param filter
+	 *            the filter to register
+	 * @param urlPatterns
+	 *            url patterns the filter applies to
+	 * @param servletNames
+	 *            servlet names the filter applies to
+	 * @param initParams
+	 *            initialization arguments for the filter or null
+	 */
+	void registerFilter(Filter filter, String[] urlPatterns,
+			String[] servletNames, Dictionary<String, ?> initParams);
+
+	/**
+	 * Adds an event listener, see
+	 * {@link WebContainer#registerEventListener(EventListener, HttpContext)}.
+	 *
+	 * @param listener
+	 *            the event listener to register
+	 */
+	void registerEventListener(EventListener listener);
+
+	/**
+	 * Adds an error page, see
+	 * {@link WebContainer#registerErrorPage(String, String, HttpContext)}.
+	 *
+	 * @param error
+	 *            exception class name or error code
+	 * @param location
+	 *            request path of the error page
+	 */
+	void registerErrorPage(String error, String location);
+
+	/**
+	 * Adds welcome files, see
+	 * {@link WebContainer#registerWelcomeFiles(String[], boolean, HttpContext)}
+	 * .
+	 *
+	 * @param welcomeFiles
+	 *            welcome files paths
+	 * @param redirect
+	 *            true if the client should be redirected to the welcome file
+	 */
+	void registerWelcomeFiles(String[] welcomeFiles, boolean redirect);
+
+	/**
+	 * Applies all registrations of the batch and starts the http context.
+	 *
+	 * @throws ServletException
+	 *             if a servlet failed to register, in which case none of the
+	 *             registrations of the batch is kept
+	 * @throws NamespaceException
+	 *             if a servlet alias is already in use, in which case none of
+	 *             the registrations of the batch is kept
+	 * @throws IllegalStateException
+	 *             if the batch was already committed or rolled back
+	 */
+	void commit() throws ServletException, NamespaceException;
+
+	/**
+	 * Discards the registrations of the batch without applying them.
+	 *
+	 * @throws IllegalStateException
+	 *             if the batch was already committed or rolled back
+	 */
+	void rollback();
+}
@@ -286,6 +286,30 @@ public interface WebContainer extends HttpService {
 	 */
 	void unregisterServlet(String servletName);
 
+	/**
+	 * Changes the url patterns of a registered servlet. The servlet stays
+	 * registered and initialized, requests are dispatched to it by the new
+	 * patterns once the method returns. A servlet registered with an alias
+	 * cannot be remapped.
+	 * <p>
+	 * Note to implementers: this method got added to the interface in 5.0.0,
+	 * implementations of {@link WebContainer} outside of Pax Web need to add
+	 * it when moving to this version. Unregistering the servlet and
+	 * registering it again with the new patterns is a sufficient
+	 * implementation.
+	 * 
+	 * @param servlet
+	 *            the registered servlet
+	 * @param urlPatterns
+	 *            url patterns replacing the current ones
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the servlet is not registered, was registered with an
+	 *             alias or no url pattern is given
+	 * @since 5.0.0
+	 */
+	void remapServlet(Servlet servlet, String[] urlPatterns);
+
 	/**
 	 * Unregisters all previously registered servlet with the given class.
 	 * 
@@ -406,6 +430,30 @@ public interface WebContainer extends HttpService {
 	 *             registered or unregistered before) or the filter is null
 	 */
 	void unregisterFilter(String filterName);
+
+	/**
+	 * Changes the url patterns and servlet names a registered servlet filter
+	 * is mapped to. The filter stays registered and initialized, requests are
+	 * filtered by the new mapping once the method returns.
+	 * <p>
+	 * Note to implementers: this method got added to the interface in 5.0.0,
+	 * see {@link #remapServlet(Servlet, String[])}.
+	 * 
+	 * @param filter
+	 *            the registered servlet filter
+	 * @param urlPatterns
+	 *            url patterns replacing the current ones, may be null if
+	 *            servlet names are given
+	 * @param servletNames
+	 *            servlet names replacing the current ones, may be null if url
+	 *            patterns are given
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the filter is not registered or neither url patterns nor
+	 *             servlet names are given
+	 * @since 5.0.0
+	 */
+	void remapFilter(Filter filter, String[] urlPatterns, String[] servletNames);
 	
 	/**
 	 * Sets context paramaters to be used in the servlet context corresponding
@@ -686,6 +734,23 @@ public interface WebContainer extends HttpService {
 	 */
 	void end(HttpContext httpContext);
 
+	/**
+	 * Creates a batch collecting registrations for the given http context,
+	 * which are applied with a single start of the context when the batch is
+	 * committed.
+	 * <p>
+	 * Note to implementers: this method got added to the interface in 5.0.0,
+	 * implementations of {@link WebContainer} outside of Pax Web need to add
+	 * it when moving to this version. A batch applying every registration on
+	 * commit through this container is a sufficient implementation.
+	 * 
+	 * @param httpContext
+	 *            the http context to register with, null for the default one
+	 * @return a new batch
+	 * @since 5.0.0
+	 */
+	RegistrationBatch createRegistrationBatch(HttpContext httpContext);
+
 	
 	/**
 	 * Creates a default implementation of a SharedWebContainerContext
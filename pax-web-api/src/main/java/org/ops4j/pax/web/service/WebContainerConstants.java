@@ -86,6 +86,11 @@ public interface WebContainerConstants {
 	String PROPERTY_SESSION_COOKIE_SECURE = PID + ".session.cookie.secure";
 	String PROPERTY_SESSION_LAZY_LOAD = PID + ".session.lazyload";
 	String PROPERTY_SESSION_STORE_DIRECTORY = PID + ".session.storedirectory";
+	/**
+	 * Time in seconds after which an idle session is evicted from memory to
+	 * the session store, sessions are never evicted if not positive.
+	 */
+	String PROPERTY_SESSION_IDLE_TIME = PID + ".session.idletime";
 
 	String PROPERTY_TEMP_DIR = "javax.servlet.context.tempdir";
 
@@ -102,8 +107,124 @@ public interface WebContainerConstants {
 	String PROPERTY_LOG_NCSA_LATENCY = "org.ops4j.pax.web.log.ncsa.latency";
 	String PROPERTY_LOG_NCSA_COOKIES = "org.ops4j.pax.web.log.ncsa.cookies";
 	String PROPERTY_LOG_NCSA_SERVER = "org.ops4j.pax.web.log.ncsa.server";
+	/**
+	 * Writes the NCSA log from a background thread instead of the request
+	 * threads.
+	 */
+	String PROPERTY_LOG_NCSA_ASYNC = "org.ops4j.pax.web.log.ncsa.async";
+	/**
+	 * Number of NCSA log records buffered for the background writer, records
+	 * are dropped while the buffer is full.
+	 */
+	String PROPERTY_LOG_NCSA_BUFFERSIZE = "org.ops4j.pax.web.log.ncsa.buffersize";
 	
 	
+	/**
+	 * Maximum number of bytes of static content cached in memory per resource
+	 * registration, 0 disables the cache. Can be overridden per context with
+	 * a context parameter of the same name.
+	 */
+	String PROPERTY_RESOURCE_CACHE_MAX_SIZE = PID + ".resources.cache.maxsize";
+	/**
+	 * Maximum size in bytes of a single cached static resource.
+	 */
+	String PROPERTY_RESOURCE_CACHE_MAX_ENTRY_SIZE = PID + ".resources.cache.maxentrysize";
+	/**
+	 * Whether cached static content is held in direct (off heap) buffers.
+	 */
+	String PROPERTY_RESOURCE_CACHE_DIRECT = PID + ".resources.cache.direct";
+	/**
+	 * Size in bytes of the buffer used to copy static resources not served
+	 * from memory.
+	 */
+	String PROPERTY_RESOURCE_BUFFER_SIZE = PID + ".resources.buffersize";
+	/**
+	 * Number of threads the WAR extender uses to scan and deploy web
+	 * application bundles in parallel. Read from the framework properties.
+	 */
+	String PROPERTY_WAR_EXTENDER_THREADS = PID + ".extender.war.threads";
+
+	/**
+	 * Minimum number of threads of the server thread pool.
+	 */
+	String PROPERTY_SERVER_MIN_THREADS = PID + ".server.minThreads";
+	/**
+	 * Maximum number of threads of the server thread pool.
+	 */
+	String PROPERTY_SERVER_MAX_THREADS = PID + ".server.maxThreads";
+	/**
+	 * Time in ms an idle thread above the minimum is kept in the server
+	 * thread pool.
+	 */
+	String PROPERTY_SERVER_IDLE_TIMEOUT = PID + ".server.idleTimeout";
+	/**
+	 * Maximum number of requests queued while all threads of the server
+	 * thread pool are busy, unbounded if not set.
+	 */
+	String PROPERTY_SERVER_QUEUE_SIZE = PID + ".server.queueSize";
+	/**
+	 * Number of acceptor threads per connector.
+	 */
+	String PROPERTY_SERVER_ACCEPTORS = PID + ".server.acceptors";
+	/**
+	 * Number of selector (poller) threads per connector.
+	 */
+	String PROPERTY_SERVER_SELECTORS = PID + ".server.selectors";
+	/**
+	 * Filter selecting an executor published as OSGi service, which is used
+	 * by the server instead of a thread pool of its own.
+	 */
+	String PROPERTY_SERVER_THREAD_POOL_FILTER = PID + ".server.threadPool.filter";
+
+	/**
+	 * Enables the request metrics of contexts and servlets.
+	 */
+	String PROPERTY_SERVER_REQUEST_METRICS = PID + ".server.requestMetrics";
+
+	/**
+	 * Enables compression of responses. The compression properties can be
+	 * overridden per context with context parameters of the same name.
+	 */
+	String PROPERTY_COMPRESSION_ENABLED = PID + ".compression.enabled";
+	/**
+	 * Minimum size in bytes of a response to be compressed.
+	 */
+	String PROPERTY_COMPRESSION_MIN_SIZE = PID + ".compression.minsize";
+	/**
+	 * Comma separated list of the mime types compressed.
+	 */
+	String PROPERTY_COMPRESSION_MIME_TYPES = PID + ".compression.mimetypes";
+	/**
+	 * Comma separated list of paths within the context never compressed, a
+	 * path ending with / excludes everything below it.
+	 */
+	String PROPERTY_COMPRESSION_EXCLUDED_PATHS = PID + ".compression.excludedpaths";
+	/**
+	 * Deflate level from 1 (fastest) to 9 (smallest).
+	 */
+	String PROPERTY_COMPRESSION_LEVEL = PID + ".compression.level";
+	/**
+	 * Serves .br and .gz siblings of static resources to clients accepting
+	 * them instead of the resource itself.
+	 */
+	String PROPERTY_COMPRESSION_PRECOMPRESSED = PID + ".compression.precompressed";
+
+	/**
+	 * Caches the credentials verified by the login service of a context, so
+	 * BASIC authenticated requests do not hit the realm each time. The
+	 * authentication cache properties can be overridden per context with
+	 * context parameters of the same name.
+	 */
+	String PROPERTY_AUTHENTICATION_CACHE_ENABLED = PID + ".authentication.cache.enabled";
+	/**
+	 * Time in seconds verified credentials are trusted.
+	 */
+	String PROPERTY_AUTHENTICATION_CACHE_TTL = PID + ".authentication.cache.ttl";
+	/**
+	 * Maximum number of verified credentials cached per context.
+	 */
+	String PROPERTY_AUTHENTICATION_CACHE_MAX_SIZE = PID + ".authentication.cache.maxsize";
+
 	String PROPERTY_VIRTUAL_HOST_LIST = "org.ops4j.pax.web.default.virtualhosts";
 	String PROPERTY_CONNECTOR_LIST = "org.ops4j.pax.web.default.connectors";
 
@@ -10,6 +10,17 @@ import org.slf4j.LoggerFactory;
 
 public class FilterAnnotationScanner {
 
+	/**
+	 * Scanned classes, dropped with the classes themselves.
+	 */
+	private static final ClassValue<FilterAnnotationScanner> SCANNED = new ClassValue<FilterAnnotationScanner>() {
+
+		@Override
+		protected FilterAnnotationScanner computeValue(final Class<?> type) {
+			return new FilterAnnotationScanner(type);
+		}
+	};
+
 	private final Logger log = LoggerFactory.getLogger(this.getClass());
 
 	public Boolean scanned = false;
@@ -24,6 +35,36 @@ public class FilterAnnotationScanner {
 
 	public DispatcherType[] dispatcherTypes;
 
+	/**
+	 * Gets the annotation metadata of a filter class, scanned once per class.
+	 * The instance returned is a copy of the scanned one, so it may be
+	 * modified by the caller.
+	 *
+	 * @param clazz
+	 *            filter class
+	 * @return metadata of the class
+	 */
+	public static FilterAnnotationScanner getInstance(Class<?> clazz) {
+		return new FilterAnnotationScanner(SCANNED.get(clazz));
+	}
+
+	private FilterAnnotationScanner(FilterAnnotationScanner scanner) {
+		scanned = scanner.scanned;
+		urlPatterns = scanner.urlPatterns == null ? null : scanner.urlPatterns
+				.clone();
+		filterName = scanner.filterName;
+		loadOnStartup = scanner.loadOnStartup;
+		asyncSupported = scanner.asyncSupported;
+		webInitParams = scanner.webInitParams == null ? null
+				: scanner.webInitParams.clone();
+		multiPartConfigAnnotation = scanner.multiPartConfigAnnotation;
+		filterAnnotation = scanner.filterAnnotation;
+		servletNames = scanner.servletNames == null ? null
+				: scanner.servletNames.clone();
+		dispatcherTypes = scanner.dispatcherTypes == null ? null
+				: scanner.dispatcherTypes.clone();
+	}
+
 	public FilterAnnotationScanner(Class<?> clazz) {
 		filterAnnotation = (WebFilter) clazz.getAnnotation(WebFilter.class);
 
@@ -9,6 +9,17 @@ import org.slf4j.LoggerFactory;
 
 public class ServletAnnotationScanner {
 
+	/**
+	 * Scanned classes, dropped with the classes themselves.
+	 */
+	private static final ClassValue<ServletAnnotationScanner> SCANNED = new ClassValue<ServletAnnotationScanner>() {
+
+		@Override
+		protected ServletAnnotationScanner computeValue(final Class<?> type) {
+			return new ServletAnnotationScanner(type);
+		}
+	};
+
 	private final Logger log = LoggerFactory.getLogger(this.getClass());
 
 	public Boolean scanned = false;
@@ -20,6 +31,32 @@ public class ServletAnnotationScanner {
 	public MultipartConfig multiPartConfigAnnotation;
 	public WebServlet annotation;
 
+	/**
+	 * Gets the annotation metadata of a servlet class, scanned once per class.
+	 * The instance returned is a copy of the scanned one, so it may be
+	 * modified by the caller.
+	 *
+	 * @param clazz
+	 *            servlet class
+	 * @return metadata of the class
+	 */
+	public static ServletAnnotationScanner getInstance(Class<?> clazz) {
+		return new ServletAnnotationScanner(SCANNED.get(clazz));
+	}
+
+	private ServletAnnotationScanner(ServletAnnotationScanner scanner) {
+		scanned = scanner.scanned;
+		urlPatterns = scanner.urlPatterns == null ? null : scanner.urlPatterns
+				.clone();
+		servletName = scanner.servletName;
+		loadOnStartup = scanner.loadOnStartup;
+		asyncSupported = scanner.asyncSupported;
+		webInitParams = scanner.webInitParams == null ? null
+				: scanner.webInitParams.clone();
+		multiPartConfigAnnotation = scanner.multiPartConfigAnnotation;
+		annotation = scanner.annotation;
+	}
+
 	public ServletAnnotationScanner(Class<?> clazz) {
 		WebServlet annotation = (WebServlet) clazz.getAnnotation(WebServlet.class);
 
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.web.service.jetty.internal.util.DOMJettyWebXmlParser;
+
+/**
+ * Applying a jetty-web.xml to a web application context, done once per
+ * deployment of a web application bundle shipping one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JettyWebXmlParserBenchmark {
+
+	private byte[] jettyWebXml;
+	private WebAppContext context;
+
+	@Setup
+	public void setUp() throws IOException {
+		final InputStream input = JettyWebXmlParserBenchmark.class
+				.getClassLoader().getResourceAsStream(
+						"webapps/large/WEB-INF/jetty-web.xml");
+		try {
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				output.write(buffer, 0, read);
+			}
+			jettyWebXml = output.toByteArray();
+		} finally {
+			input.close();
+		}
+		context = new WebAppContext();
+	}
+
+	@Benchmark
+	public WebAppContext parse() {
+		new DOMJettyWebXmlParser().parse(context, new ByteArrayInputStream(
+				jettyWebXml));
+		return context;
+	}
+
+}
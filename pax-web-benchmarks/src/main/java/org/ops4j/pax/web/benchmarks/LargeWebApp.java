@@ -0,0 +1,244 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Large sample web application, a shop with a stylesheet and a script of
+ * about 20 kB each and a deployment descriptor declaring dozens of servlets
+ * and filters. Only its small files are part of the benchmark class path below
+ * {@value #ROOT}, the large ones are generated into a temporary directory on
+ * first use. The content is the same on every run.
+ */
+public final class LargeWebApp {
+
+	/**
+	 * Root of the web application on the class path.
+	 */
+	public static final String ROOT = "webapps/large/";
+
+	private static final int CSS_RULES = 120;
+	private static final int SCRIPT_FUNCTIONS = 170;
+	private static final String[] SECTIONS = { "catalog", "cart", "checkout",
+			"account", "orders", "search", "reviews", "wishlist", "media",
+			"admin", "reports", "export", "health", "metrics", "login" };
+	private static final String[] FILTERS = { "encoding", "security", "cache",
+			"cors", "audit", "tracing", "compression", "locale" };
+
+	private static ClassLoader classLoader;
+
+	private LargeWebApp() {
+		// utility class
+	}
+
+	/**
+	 * @param id
+	 *            bundle id
+	 * @param entries
+	 *            paths of the entries below the root, without leading slash
+	 * @return bundle holding the web application
+	 * @throws IOException
+	 *             if the generated files cannot be written
+	 */
+	public static StubBundle newBundle(final long id, final String... entries)
+			throws IOException {
+		return new StubBundle(id, getClassLoader(), ROOT, entries);
+	}
+
+	private static synchronized ClassLoader getClassLoader()
+			throws IOException {
+		if (classLoader == null) {
+			final File directory = File.createTempFile("pax-web-benchmarks",
+					"");
+			if (!directory.delete() || !directory.mkdir()) {
+				throw new IOException("Cannot create directory " + directory);
+			}
+			directory.deleteOnExit();
+			final File root = mkdirs(directory, ROOT);
+			write(mkdirs(root, "css"), "site.css", css());
+			write(mkdirs(root, "js"), "app.js", script());
+			write(mkdirs(root, "WEB-INF"), "web.xml", webXml());
+			// the small files are served by the parent
+			classLoader = new URLClassLoader(new URL[] { directory.toURI()
+					.toURL() }, LargeWebApp.class.getClassLoader());
+		}
+		return classLoader;
+	}
+
+	private static String css() {
+		final Random random = new Random(CSS_RULES);
+		final StringBuilder css = new StringBuilder();
+		for (int i = 0; i < CSS_RULES; i++) {
+			css.append(".product-").append(i).append(" {\n")
+					.append("\tmargin: ").append(random.nextInt(20))
+					.append("px ").append(random.nextInt(10)).append("px;\n")
+					.append("\tpadding: ").append(random.nextInt(16))
+					.append("px;\n")
+					.append("\tcolor: #")
+					.append(String.format(Locale.ROOT, "%06x",
+							random.nextInt(0x1000000))).append(";\n")
+					.append("\tfont-size: ").append(10 + random.nextInt(16))
+					.append("px;\n").append("}\n\n");
+		}
+		return css.toString();
+	}
+
+	private static String script() {
+		final Random random = new Random(SCRIPT_FUNCTIONS);
+		final StringBuilder script = new StringBuilder();
+		for (int i = 0; i < SCRIPT_FUNCTIONS; i++) {
+			script.append("function handler").append(i)
+					.append("(event) {\n")
+					.append("\tvar target = event.target;\n")
+					.append("\tif (target.dataset.product === '").append(i)
+					.append("') {\n")
+					.append("\t\tcart.add(target.dataset.sku, ")
+					.append(1 + random.nextInt(5)).append(");\n")
+					.append("\t}\n").append("\treturn false;\n")
+					.append("}\n\n");
+		}
+		return script.toString();
+	}
+
+	private static String webXml() {
+		final StringBuilder xml = new StringBuilder()
+				.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+				.append("<web-app xmlns=\"http://xmlns.jcp.org/xml/ns/javaee\"\n")
+				.append("\txmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n")
+				.append("\txsi:schemaLocation=\"http://xmlns.jcp.org/xml/ns/javaee http://xmlns.jcp.org/xml/ns/javaee/web-app_3_1.xsd\"\n")
+				.append("\tversion=\"3.1\" metadata-complete=\"true\">\n\n")
+				.append("\t<display-name>Example Shop</display-name>\n\n");
+		for (String section : SECTIONS) {
+			xml.append("\t<context-param>\n")
+					.append("\t\t<param-name>shop.").append(section)
+					.append(".enabled</param-name>\n")
+					.append("\t\t<param-value>true</param-value>\n")
+					.append("\t</context-param>\n");
+		}
+		xml.append("\t<listener>\n")
+				.append("\t\t<listener-class>org.example.shop.web.ContextLoaderListener</listener-class>\n")
+				.append("\t</listener>\n");
+		for (String filter : FILTERS) {
+			xml.append("\t<filter>\n")
+					.append("\t\t<filter-name>").append(filter)
+					.append("</filter-name>\n")
+					.append("\t\t<filter-class>org.example.shop.web.")
+					.append(className(filter)).append("Filter</filter-class>\n")
+					.append("\t\t<init-param>\n")
+					.append("\t\t\t<param-name>enabled</param-name>\n")
+					.append("\t\t\t<param-value>true</param-value>\n")
+					.append("\t\t</init-param>\n").append("\t</filter>\n");
+		}
+		for (String filter : FILTERS) {
+			xml.append("\t<filter-mapping>\n")
+					.append("\t\t<filter-name>").append(filter)
+					.append("</filter-name>\n")
+					.append("\t\t<url-pattern>/*</url-pattern>\n")
+					.append("\t\t<dispatcher>REQUEST</dispatcher>\n")
+					.append("\t</filter-mapping>\n");
+		}
+		for (String section : SECTIONS) {
+			xml.append("\t<servlet>\n")
+					.append("\t\t<servlet-name>").append(section)
+					.append("</servlet-name>\n")
+					.append("\t\t<servlet-class>org.example.shop.")
+					.append(section).append('.').append(className(section))
+					.append("Servlet</servlet-class>\n")
+					.append("\t\t<async-supported>true</async-supported>\n")
+					.append("\t</servlet>\n");
+		}
+		for (String section : SECTIONS) {
+			xml.append("\t<servlet-mapping>\n")
+					.append("\t\t<servlet-name>").append(section)
+					.append("</servlet-name>\n")
+					.append("\t\t<url-pattern>/").append(section)
+					.append("</url-pattern>\n")
+					.append("\t\t<url-pattern>/").append(section)
+					.append("/*</url-pattern>\n")
+					.append("\t</servlet-mapping>\n");
+		}
+		xml.append("\t<welcome-file-list>\n")
+				.append("\t\t<welcome-file>index.html</welcome-file>\n")
+				.append("\t\t<welcome-file>index.jsp</welcome-file>\n")
+				.append("\t</welcome-file-list>\n")
+				.append("\t<error-page>\n")
+				.append("\t\t<error-code>404</error-code>\n")
+				.append("\t\t<location>/WEB-INF/errors/404.html</location>\n")
+				.append("\t</error-page>\n")
+				.append("\t<security-constraint>\n")
+				.append("\t\t<web-resource-collection>\n")
+				.append("\t\t\t<web-resource-name>administration</web-resource-name>\n")
+				.append("\t\t\t<url-pattern>/admin/*</url-pattern>\n")
+				.append("\t\t</web-resource-collection>\n")
+				.append("\t\t<auth-constraint>\n")
+				.append("\t\t\t<role-name>admin</role-name>\n")
+				.append("\t\t</auth-constraint>\n")
+				.append("\t</security-constraint>\n")
+				.append("\t<login-config>\n")
+				.append("\t\t<auth-method>FORM</auth-method>\n")
+				.append("\t\t<realm-name>shop</realm-name>\n")
+				.append("\t\t<form-login-config>\n")
+				.append("\t\t\t<form-login-page>/login</form-login-page>\n")
+				.append("\t\t\t<form-error-page>/login?error=true</form-error-page>\n")
+				.append("\t\t</form-login-config>\n")
+				.append("\t</login-config>\n")
+				.append("\t<security-role>\n")
+				.append("\t\t<role-name>admin</role-name>\n")
+				.append("\t</security-role>\n\n").append("</web-app>\n");
+		return xml.toString();
+	}
+
+	private static String className(final String name) {
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+
+	private static File mkdirs(final File parent, final String path)
+			throws IOException {
+		File directory = parent;
+		for (String name : path.split("/")) {
+			directory = new File(directory, name);
+			if (!directory.isDirectory() && !directory.mkdir()) {
+				throw new IOException("Cannot create directory " + directory);
+			}
+			directory.deleteOnExit();
+		}
+		return directory;
+	}
+
+	private static void write(final File directory, final String name,
+			final String content) throws IOException {
+		final File file = new File(directory, name);
+		file.deleteOnExit();
+		final Writer writer = new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+}
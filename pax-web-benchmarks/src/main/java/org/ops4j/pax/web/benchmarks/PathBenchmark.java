@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.web.service.spi.util.Path;
+
+/**
+ * Normalization of resource paths, done by the http contexts for every
+ * resource lookup. Paths without anything to normalize are the common case,
+ * they are checked in a single pass without allocating anything but the
+ * path without its leading slash.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark {
+
+	@Param({ "/css/site.css", "WEB-INF/classes/META-INF/resources/js/app.js",
+			"//static///images//logo.png", " /index.html ",
+			"/css/../js/./app.js" })
+	public String path;
+
+	@Benchmark
+	public String normalizeResourcePath() {
+		return Path.normalizeResourcePath(path);
+	}
+
+	@Benchmark
+	public String normalizeWebAppResourcePath() {
+		return org.ops4j.pax.web.extender.war.internal.util.Path
+				.normalizeResourcePath(path);
+	}
+
+}
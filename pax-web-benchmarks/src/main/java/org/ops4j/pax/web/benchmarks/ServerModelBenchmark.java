@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ops4j.pax.web.service.WebContainerConstants;
+import org.ops4j.pax.web.service.spi.model.ContextModel;
+import org.ops4j.pax.web.service.spi.model.FilterModel;
+import org.ops4j.pax.web.service.spi.model.ServerModel;
+import org.ops4j.pax.web.service.spi.model.ServletModel;
+
+/**
+ * Matching of request paths to contexts, done for every request. Each context
+ * registers the servlets and filters of a typical web application: a default
+ * servlet, prefix, exact and extension mappings and filters on all paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerModelBenchmark {
+
+	private static final String[] SERVLET_PATTERNS = { "/", "/app/*",
+			"/api/v1/*", "/api/v2/*", "/admin/*", "/admin/reports/*",
+			"/health", "/login", "*.jsp", "*.csv" };
+
+	private static final String[] FILTER_PATTERNS = { "/*", "/api/*",
+			"/static/*" };
+
+	/**
+	 * Number of registered contexts.
+	 */
+	@Param({ "1", "10", "100" })
+	public int contexts;
+
+	private ServerModel serverModel;
+	private String[] paths;
+
+	@Setup
+	public void setUp() throws Exception {
+		serverModel = new ServerModel();
+		final StubBundle bundle = new StubBundle(1, "webapps/large/");
+		for (int i = 0; i < contexts; i++) {
+			final ContextModel contextModel = new ContextModel(
+					new StubHttpContext(bundle), bundle,
+					ServerModelBenchmark.class.getClassLoader());
+			final Hashtable<String, String> contextParams = new Hashtable<String, String>();
+			contextParams.put(WebContainerConstants.CONTEXT_NAME, "shop" + i);
+			contextModel.setContextParams(contextParams);
+			for (String pattern : SERVLET_PATTERNS) {
+				serverModel.addServletModel(new ServletModel(contextModel,
+						new HttpServlet() {
+							private static final long serialVersionUID = 1L;
+						}, null, new String[] { pattern }, null, null, null,
+						null, null));
+			}
+			serverModel.addFilterModel(new FilterModel(contextModel,
+					new NoopFilter(), FILTER_PATTERNS, null, null));
+		}
+		final List<String> requests = new ArrayList<String>();
+		final int last = contexts - 1;
+		requests.add("/shop" + last + "/app/catalog/shoes/running");
+		requests.add("/shop" + last + "/api/v2/orders/4711/items");
+		requests.add("/shop" + last / 2 + "/admin/reports/2015/sales.csv");
+		requests.add("/shop" + last / 2 + "/health");
+		requests.add("/shop0/checkout/payment.jsp");
+		requests.add("/shop0/static/css/site.css");
+		requests.add("/unknown/path/to/nothing");
+		paths = requests.toArray(new String[requests.size()]);
+	}
+
+	@Benchmark
+	public void matchPathToContext(final Blackhole blackhole) {
+		for (String path : paths) {
+			blackhole.consume(serverModel.matchPathToContext(path));
+		}
+	}
+
+	private static class NoopFilter implements Filter {
+
+		@Override
+		public void init(final FilterConfig filterConfig) {
+			// nothing to initialize
+		}
+
+		@Override
+		public void doFilter(final ServletRequest request,
+				final ServletResponse response, final FilterChain chain)
+				throws IOException, ServletException {
+			chain.doFilter(request, response);
+		}
+
+		@Override
+		public void destroy() {
+			// nothing to release
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Minimal servlet API objects to call servlets outside of a container.
+ * Methods without an explicit answer return null, false or 0, the output of
+ * responses is discarded.
+ */
+public final class ServletStubs {
+
+	private ServletStubs() {
+		// utility class
+	}
+
+	/**
+	 * Creates a GET request.
+	 *
+	 * @param contextPath
+	 *            context path, empty for the root context
+	 * @param servletPath
+	 *            servlet path
+	 * @param pathInfo
+	 *            path info, can be null
+	 * @param headers
+	 *            request headers, can be null
+	 *
+	 * @return request
+	 */
+	public static HttpServletRequest newRequest(final String contextPath,
+			final String servletPath, final String pathInfo,
+			final Map<String, String> headers) {
+		final Map<String, Object> answers = new HashMap<String, Object>();
+		answers.put("getMethod", "GET");
+		answers.put("getContextPath", contextPath);
+		answers.put("getServletPath", servletPath);
+		answers.put("getPathInfo", pathInfo);
+		answers.put("getRequestURI", contextPath + servletPath
+				+ (pathInfo == null ? "" : pathInfo));
+		answers.put("getDispatcherType", DispatcherType.REQUEST);
+		answers.put("getDateHeader", -1L);
+		final Map<String, String> requestHeaders = headers == null ? Collections
+				.<String, String> emptyMap() : headers;
+		return newProxy(HttpServletRequest.class, new Answers(answers) {
+
+			@Override
+			Object answer(final Method method, final Object[] args) {
+				if ("getHeader".equals(method.getName())) {
+					return requestHeaders.get(args[0]);
+				}
+				return super.answer(method, args);
+			}
+		});
+	}
+
+	/**
+	 * Creates a response discarding its content.
+	 *
+	 * @return response
+	 */
+	public static HttpServletResponse newResponse() {
+		final Map<String, Object> answers = new HashMap<String, Object>();
+		answers.put("getOutputStream", new NullOutputStream());
+		answers.put("getBufferSize", 8192);
+		return newProxy(HttpServletResponse.class, new Answers(answers));
+	}
+
+	/**
+	 * Creates a servlet context guessing mime types from file names.
+	 *
+	 * @return servlet context
+	 */
+	public static ServletContext newServletContext() {
+		return newProxy(ServletContext.class, new Answers(
+				Collections.<String, Object> emptyMap()) {
+
+			@Override
+			Object answer(final Method method, final Object[] args) {
+				if ("getMimeType".equals(method.getName())) {
+					return URLConnection.guessContentTypeFromName((String) args[0]);
+				}
+				return super.answer(method, args);
+			}
+		});
+	}
+
+	/**
+	 * Creates a servlet config without init parameters.
+	 *
+	 * @param servletContext
+	 *            context of the servlet
+	 *
+	 * @return servlet config
+	 */
+	public static ServletConfig newServletConfig(
+			final ServletContext servletContext) {
+		final Map<String, Object> answers = new HashMap<String, Object>();
+		answers.put("getServletContext", servletContext);
+		answers.put("getServletName", "default");
+		answers.put("getInitParameterNames",
+				Collections.enumeration(Collections.<String> emptyList()));
+		return newProxy(ServletConfig.class, new Answers(answers));
+	}
+
+	private static <T> T newProxy(final Class<T> type,
+			final InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(
+				ServletStubs.class.getClassLoader(), new Class<?>[] { type },
+				handler));
+	}
+
+	/**
+	 * Answers calls by method name.
+	 */
+	private static class Answers implements InvocationHandler {
+
+		private final Map<String, Object> answers;
+
+		Answers(final Map<String, Object> answers) {
+			this.answers = answers;
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method,
+				final Object[] args) {
+			if (method.getDeclaringClass() == Object.class) {
+				if ("equals".equals(method.getName())) {
+					return proxy == args[0];
+				}
+				if ("hashCode".equals(method.getName())) {
+					return System.identityHashCode(proxy);
+				}
+				return getClass().getSimpleName() + "@"
+						+ Integer.toHexString(System.identityHashCode(proxy));
+			}
+			return answer(method, args);
+		}
+
+		Object answer(final Method method, final Object[] args) {
+			final Object answer = answers.get(method.getName());
+			if (answer != null || answers.containsKey(method.getName())) {
+				return answer;
+			}
+			final Class<?> type = method.getReturnType();
+			if (type == boolean.class) {
+				return Boolean.FALSE;
+			}
+			if (type == long.class) {
+				return 0L;
+			}
+			if (type == int.class) {
+				return 0;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Output stream discarding everything written.
+	 */
+	private static class NullOutputStream extends ServletOutputStream {
+
+		@Override
+		public void write(final int b) {
+			// discarded
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			// discarded
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener(final WriteListener writeListener) {
+			// blocking only
+		}
+	}
+
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.Version;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * Resolved bundle whose entries, which are also its only resources, are
+ * resources of the benchmark class path, or a given class loader, below a root
+ * directory. The bundle is wired to nothing and its context knows no other
+ * bundles, so its class space is empty, as for a web application bundle
+ * without imports.
+ */
+public class StubBundle implements Bundle {
+
+	private final long id;
+	private final String root;
+	private final List<String> entries;
+	private final Hashtable<String, String> headers;
+	private final ClassLoader classLoader;
+	private final BundleContext bundleContext;
+	private final BundleWiring bundleWiring;
+
+	/**
+	 * @param id
+	 *            bundle id
+	 * @param root
+	 *            class path directory holding the bundle content, without
+	 *            leading and with trailing slash
+	 * @param entries
+	 *            paths of the entries below the root, without leading slash
+	 */
+	public StubBundle(final long id, final String root, final String... entries) {
+		this(id, StubBundle.class.getClassLoader(), root, entries);
+	}
+
+	/**
+	 * @param id
+	 *            bundle id
+	 * @param classLoader
+	 *            class loader providing the entries and classes
+	 * @param root
+	 *            directory holding the bundle content, without leading and
+	 *            with trailing slash
+	 * @param entries
+	 *            paths of the entries below the root, without leading slash
+	 */
+	public StubBundle(final long id, final ClassLoader classLoader,
+			final String root, final String... entries) {
+		this.id = id;
+		this.root = root;
+		this.entries = new ArrayList<String>();
+		Collections.addAll(this.entries, entries);
+		this.headers = new Hashtable<String, String>();
+		this.headers.put("Bundle-SymbolicName", getSymbolicName());
+		this.headers.put("Bundle-Version", "1.0.0");
+		this.classLoader = classLoader;
+		this.bundleContext = newProxy(BundleContext.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method,
+					final Object[] args) {
+				if ("getBundle".equals(method.getName())) {
+					return StubBundle.this;
+				}
+				if ("getBundles".equals(method.getName())) {
+					return new Bundle[] { StubBundle.this };
+				}
+				return answerObjectMethod(proxy, method, args);
+			}
+		});
+		this.bundleWiring = newProxy(BundleWiring.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method,
+					final Object[] args) {
+				if ("getBundle".equals(method.getName())) {
+					return StubBundle.this;
+				}
+				if (method.getReturnType() == List.class
+						|| method.getReturnType() == Collection.class) {
+					return Collections.emptyList();
+				}
+				if ("isCurrent".equals(method.getName())
+						|| "isInUse".equals(method.getName())) {
+					return Boolean.TRUE;
+				}
+				return answerObjectMethod(proxy, method, args);
+			}
+		});
+	}
+
+	/**
+	 * Adds a manifest header.
+	 *
+	 * @return this bundle
+	 */
+	public StubBundle header(final String name, final String value) {
+		headers.put(name, value);
+		return this;
+	}
+
+	@Override
+	public URL getEntry(final String path) {
+		final String entry = strip(path);
+		return entries.contains(entry) ? classLoader.getResource(root + entry)
+				: null;
+	}
+
+	@Override
+	public Enumeration<URL> findEntries(final String path,
+			final String filePattern, final boolean recurse) {
+		String directory = strip(path);
+		if (!directory.isEmpty() && !directory.endsWith("/")) {
+			directory = directory + "/";
+		}
+		final Pattern pattern = Pattern.compile(filePattern == null ? ".*"
+				: Pattern.quote(filePattern).replace("*", "\\E.*\\Q"));
+		final List<URL> found = new ArrayList<URL>();
+		for (String entry : entries) {
+			if (!entry.startsWith(directory)) {
+				continue;
+			}
+			final String name = entry.substring(directory.length());
+			if ((recurse || name.indexOf('/') < 0)
+					&& pattern.matcher(name.substring(name.lastIndexOf('/') + 1))
+							.matches()) {
+				found.add(classLoader.getResource(root + entry));
+			}
+		}
+		return found.isEmpty() ? null : Collections.enumeration(found);
+	}
+
+	@Override
+	public Enumeration<String> getEntryPaths(final String path) {
+		final String directory = strip(path);
+		final List<String> found = new ArrayList<String>();
+		for (String entry : entries) {
+			if (entry.startsWith(directory)) {
+				found.add(entry);
+			}
+		}
+		return found.isEmpty() ? null : Collections.enumeration(found);
+	}
+
+	@Override
+	public URL getResource(final String name) {
+		return getEntry(name);
+	}
+
+	@Override
+	public Enumeration<URL> getResources(final String name) {
+		return null;
+	}
+
+	@Override
+	public Class<?> loadClass(final String name) throws ClassNotFoundException {
+		return classLoader.loadClass(name);
+	}
+
+	@Override
+	public int getState() {
+		return RESOLVED;
+	}
+
+	@Override
+	public long getBundleId() {
+		return id;
+	}
+
+	@Override
+	public String getSymbolicName() {
+		return "org.ops4j.pax.web.benchmarks.bundle" + id;
+	}
+
+	@Override
+	public Version getVersion() {
+		return Version.parseVersion(headers.get("Bundle-Version"));
+	}
+
+	@Override
+	public String getLocation() {
+		return "benchmark:" + root;
+	}
+
+	@Override
+	public long getLastModified() {
+		return 0;
+	}
+
+	@Override
+	public Dictionary<String, String> getHeaders() {
+		return headers;
+	}
+
+	@Override
+	public Dictionary<String, String> getHeaders(final String locale) {
+		return headers;
+	}
+
+	@Override
+	public BundleContext getBundleContext() {
+		return bundleContext;
+	}
+
+	@Override
+	public <A> A adapt(final Class<A> type) {
+		return type == BundleWiring.class ? type.cast(bundleWiring) : null;
+	}
+
+	@Override
+	public void start(final int options) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void start() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void stop(final int options) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void stop() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void update(final InputStream input) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void update() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void uninstall() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public ServiceReference<?>[] getRegisteredServices() {
+		return null;
+	}
+
+	@Override
+	public ServiceReference<?>[] getServicesInUse() {
+		return null;
+	}
+
+	@Override
+	public boolean hasPermission(final Object permission) {
+		return true;
+	}
+
+	@Override
+	public Map<X509Certificate, List<X509Certificate>> getSignerCertificates(
+			final int signersType) {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public File getDataFile(final String filename) {
+		return null;
+	}
+
+	@Override
+	public int compareTo(final Bundle bundle) {
+		return Long.valueOf(id).compareTo(bundle.getBundleId());
+	}
+
+	@Override
+	public String toString() {
+		return getSymbolicName() + " [" + id + "]";
+	}
+
+	private static String strip(final String path) {
+		return path.startsWith("/") ? path.substring(1) : path;
+	}
+
+	private static <T> T newProxy(final Class<T> type,
+			final InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(
+				StubBundle.class.getClassLoader(), new Class<?>[] { type },
+				handler));
+	}
+
+	/**
+	 * Answers the methods of {@link Object} by identity, every other method
+	 * returns null.
+	 */
+	private static Object answerObjectMethod(final Object proxy,
+			final Method method, final Object[] args) {
+		if ("equals".equals(method.getName()) && args != null
+				&& args.length == 1) {
+			return proxy == args[0];
+		}
+		if ("hashCode".equals(method.getName()) && args == null) {
+			return System.identityHashCode(proxy);
+		}
+		if ("toString".equals(method.getName()) && args == null) {
+			return proxy.getClass().getInterfaces()[0].getSimpleName() + "@"
+					+ Integer.toHexString(System.identityHashCode(proxy));
+		}
+		return null;
+	}
+
+}
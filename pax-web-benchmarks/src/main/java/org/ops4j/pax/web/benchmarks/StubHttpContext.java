@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.net.URL;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.ops4j.pax.web.service.spi.util.Path;
+import org.osgi.framework.Bundle;
+import org.osgi.service.http.HttpContext;
+
+/**
+ * Http context serving the resources of a bundle, like the default http
+ * context of the http service, and allowing every request.
+ */
+public class StubHttpContext implements HttpContext {
+
+	private final Bundle bundle;
+
+	public StubHttpContext(final Bundle bundle) {
+		this.bundle = bundle;
+	}
+
+	@Override
+	public boolean handleSecurity(final HttpServletRequest request,
+			final HttpServletResponse response) {
+		return true;
+	}
+
+	@Override
+	public URL getResource(final String name) {
+		final String normalizedName = Path.normalizeResourcePath(name);
+		return normalizedName == null ? null : bundle
+				.getResource(normalizedName);
+	}
+
+	@Override
+	public String getMimeType(final String name) {
+		return null;
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.web.extender.war.internal.model.WebApp;
+import org.ops4j.pax.web.extender.war.internal.parser.WebAppParser;
+
+/**
+ * Parsing of deployment descriptors, done once per web application bundle
+ * when it is deployed. Neither sample needs an annotation scan: the servlet
+ * 2.5 one predates annotations and the servlet 3.1 one is metadata complete.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebAppParserBenchmark {
+
+	/**
+	 * Sample web application: a servlet 2.5 hello world or a servlet 3.1 shop
+	 * with filters and security constraints.
+	 */
+	@Param({ "small", "large" })
+	public String webapp;
+
+	private StubBundle bundle;
+	private WebAppParser parser;
+
+	@Setup
+	public void setUp() throws IOException {
+		if ("small".equals(webapp)) {
+			bundle = new StubBundle(1, "webapps/small/", "WEB-INF/web.xml");
+		} else {
+			bundle = LargeWebApp.newBundle(2, "index.html",
+					"css/site.css", "js/app.js", "WEB-INF/web.xml",
+					"WEB-INF/jetty-web.xml");
+		}
+		parser = new WebAppParser(null);
+	}
+
+	@Benchmark
+	public WebApp parseWebXml() throws Exception {
+		final WebApp webApp = new WebApp();
+		parser.parse(bundle, webApp);
+		return webApp;
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.web.benchmarks.LargeWebApp;
+import org.ops4j.pax.web.benchmarks.StubBundle;
+import org.ops4j.pax.web.benchmarks.StubHttpContext;
+import org.ops4j.pax.web.extender.war.internal.model.WebAppMimeMapping;
+
+/**
+ * Resource lookups of a web application context, done by the resource
+ * servlets for every static resource and welcome file. Lookups are answered
+ * from the cached results after the first request for a path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebAppHttpContextBenchmark {
+
+	@Param({ "/css/site.css", "/js/app.js", "/index.jsp" })
+	public String resource;
+
+	private WebAppHttpContext httpContext;
+
+	@Setup
+	public void setUp() throws IOException {
+		final StubBundle bundle = LargeWebApp.newBundle(1, "index.html", "css/site.css", "js/app.js", "WEB-INF/web.xml",
+				"WEB-INF/jetty-web.xml");
+		httpContext = new WebAppHttpContext(new StubHttpContext(bundle), "",
+				bundle, new WebAppMimeMapping[] { mimeMapping("css", "text/css"),
+						mimeMapping("js", "application/javascript") });
+	}
+
+	private static WebAppMimeMapping mimeMapping(final String extension,
+			final String mimeType) {
+		final WebAppMimeMapping mimeMapping = new WebAppMimeMapping();
+		mimeMapping.setExtension(extension);
+		mimeMapping.setMimeType(mimeType);
+		return mimeMapping;
+	}
+
+	@Benchmark
+	public URL getResource() {
+		return httpContext.getResource(resource);
+	}
+
+	@Benchmark
+	public String getMimeType() {
+		return httpContext.getMimeType(resource);
+	}
+
+}
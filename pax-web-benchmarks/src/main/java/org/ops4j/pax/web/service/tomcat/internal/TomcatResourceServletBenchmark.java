@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.web.benchmarks.LargeWebApp;
+import org.ops4j.pax.web.benchmarks.ServletStubs;
+import org.ops4j.pax.web.benchmarks.StubBundle;
+import org.ops4j.pax.web.benchmarks.StubHttpContext;
+import org.ops4j.pax.web.service.spi.util.ResourceCache;
+
+/**
+ * Serving a static resource by the Tomcat resource servlet of the root context,
+ * registered as default servlet or below an alias, with and without the
+ * content cache. Mapping the request uri of an alias to the resource name is
+ * done without regular expressions, run with <code>-prof gc</code> to compare
+ * the allocations of both registrations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TomcatResourceServletBenchmark {
+
+	@Param({ "/css/site.css", "/js/app.js" })
+	public String resource;
+
+	@Param({ "false", "true" })
+	public boolean cached;
+
+	/**
+	 * Alias of the resources, the default servlet or a registration of the
+	 * bundle root below /static.
+	 */
+	@Param({ "/", "/static" })
+	public String alias;
+
+	private TomcatResourceServlet servlet;
+	private HttpServletRequest request;
+	private HttpServletResponse response;
+
+	@Setup
+	public void setUp() throws ServletException, IOException {
+		final StubBundle bundle = LargeWebApp.newBundle(1, "index.html",
+				"css/site.css", "js/app.js");
+		servlet = new TomcatResourceServlet(new StubHttpContext(bundle), "",
+				alias, "/".equals(alias) ? "default" : "/",
+				cached ? new ResourceCache(1024 * 1024, 64 * 1024, false)
+						: null, null);
+		servlet.init(ServletStubs.newServletConfig(ServletStubs
+				.newServletContext()));
+		final Map<String, String> headers = Collections.singletonMap(
+				"Accept-Encoding", "gzip, deflate");
+		request = "/".equals(alias) ? ServletStubs.newRequest("", resource,
+				null, headers) : ServletStubs.newRequest("", alias, resource,
+				headers);
+		response = ServletStubs.newResponse();
+	}
+
+	@Benchmark
+	public HttpServletResponse serve() throws ServletException, IOException {
+		servlet.service(request, response);
+		return response;
+	}
+
+}
@@ -22,9 +22,11 @@ import java.util.Hashtable;
 import org.ops4j.pax.web.extender.war.internal.extender.AbstractExtender;
 import org.ops4j.pax.web.extender.war.internal.extender.Extension;
 import org.ops4j.pax.web.extender.war.internal.parser.WebAppParser;
+import org.ops4j.pax.web.service.WebContainerConstants;
 import org.ops4j.pax.web.service.spi.WarManager;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
 import org.osgi.framework.Filter;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.packageadmin.PackageAdmin;
@@ -52,7 +54,8 @@ public class Activator extends AbstractExtender {
 
         DefaultWebAppDependencyManager dependencyManager = new DefaultWebAppDependencyManager();
 
-        webObserver = new WebObserver(new WebAppParser(packageAdminTracker),
+        webObserver = new WebObserver(new WebAppParser(packageAdminTracker,
+                bundleContext.getDataFile("scan-index")),
                 new WebAppPublisher(webEventDispatcher, bundleContext), webEventDispatcher, dependencyManager,
                 bundleContext);
 
@@ -77,6 +80,38 @@ public class Activator extends AbstractExtender {
         logger.debug("Pax Web WAR Extender - Stopped");
     }
 
+    @Override
+    public void bundleChanged(BundleEvent event) {
+        super.bundleChanged(event);
+        WebObserver observer = webObserver;
+        if (observer != null) {
+            observer.bundleChanged(event);
+        }
+    }
+
+    /**
+     * Web application bundles are scanned on the extender threads, so by
+     * default use one per processor unless configured otherwise through the
+     * framework property {@link WebContainerConstants#PROPERTY_WAR_EXTENDER_THREADS}.
+     */
+    @Override
+    protected int getThreadPoolSize() {
+        String threads = getBundleContext().getProperty(
+                WebContainerConstants.PROPERTY_WAR_EXTENDER_THREADS);
+        if (threads != null) {
+            try {
+                int size = Integer.parseInt(threads.trim());
+                if (size > 0) {
+                    return size;
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid value for {}: {}",
+                        WebContainerConstants.PROPERTY_WAR_EXTENDER_THREADS, threads);
+            }
+        }
+        return Math.max(DEFAULT_THREAD_POOL_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
     @Override
     protected Extension doCreateExtension(Bundle bundle) throws Exception {
         return webObserver.createExtension(bundle);
@@ -19,13 +19,19 @@ package org.ops4j.pax.web.extender.war.internal;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -50,6 +56,11 @@ import org.slf4j.LoggerFactory;
  */
 class WebAppHttpContext implements HttpContext {
 
+	/**
+	 * Maximum number of resource lookups (found or not) kept per web app.
+	 */
+	static final int RESOURCE_CACHE_SIZE = 1024;
+
 	/**
 	 * Logger.
 	 */
@@ -71,6 +82,17 @@ class WebAppHttpContext implements HttpContext {
 	 * Mime mappings.
 	 */
 	private final Map<String, String> mimeMappings;
+	/**
+	 * Results of previous resource lookups keyed by normalized path. Bounded
+	 * to {@link #RESOURCE_CACHE_SIZE} entries, the least recently used being
+	 * dropped, and cleared whenever the class space of the web app changes.
+	 */
+	private final ResourceCache resourceCache;
+	/**
+	 * Bundles in class space of the web app bundle, computed once per wiring
+	 * of the bundle.
+	 */
+	private volatile ClassSpace classSpace;
 
 	/**
 	 * Creates a new http context that delegates to the specified http context
@@ -101,6 +123,7 @@ class WebAppHttpContext implements HttpContext {
 			mimeMappings.put(mimeMapping.getExtension(),
 					mimeMapping.getMimeType());
 		}
+		resourceCache = new ResourceCache(RESOURCE_CACHE_SIZE);
 	}
 
 	/**
@@ -116,56 +139,88 @@ class WebAppHttpContext implements HttpContext {
 
 	/**
 	 * Searches for the resource in the bundle that published the service.
+	 * Lookups are cached per normalized path, including misses.
 	 * 
 	 * @see org.osgi.service.http.HttpContext#getResource(String)
 	 */
 	public URL getResource(final String name) {
-		final String normalizedName = Path.normalizeResourcePath(rootPath
-				+ (name.startsWith("/") ? "" : "/") + name);
+		final String normalizedName = normalizeName(name);
+		if (normalizedName == null || normalizedName.trim().length() == 0) {
+			return null;
+		}
+		// taken first, a lookup made against an outdated class space is dropped
+		final long generation = resourceCache.getGeneration();
+		final Set<Bundle> bundlesInClassSpace = getBundlesInClassSpace();
+		CachedResource cached = resourceCache.get(normalizedName);
+		if (cached == null) {
+			cached = new CachedResource(findResource(name, normalizedName,
+					bundlesInClassSpace), generation);
+			resourceCache.put(normalizedName, cached);
+		} else {
+			log.debug("Resource [{}] found in cache as url [{}]",
+					normalizedName, cached.url);
+		}
+		return cached.url;
+	}
+
+	/**
+	 * Normalizes a resource name and places it below the root path. The name
+	 * is normalized on its own first, so its ".." segments cannot climb out of
+	 * the root path.
+	 * 
+	 * @return normalized path or null if the name points above the root
+	 */
+	String normalizeName(final String name) {
+		final String normalizedName = Path.normalizeResourcePath(name);
+		if (normalizedName == null) {
+			return null;
+		}
+		return Path.normalizeResourcePath(rootPath + "/" + normalizedName);
+	}
+
+	private URL findResource(final String name, final String normalizedName,
+			final Set<Bundle> bundlesInClassSpace) {
 		URL url = null;
 		log.debug("Searching bundle " + bundle
 				+ " for resource [{}], normalized to [{}]", name,
 				normalizedName);
 
-		if (url == null && normalizedName != null
-				&& normalizedName.trim().length() > 0) {
-			String path = "";
-			log.debug("getResource Failed, fallback uses findEntries");
-			String file = normalizedName;
-			int idx = file.lastIndexOf('/');
-			if (idx > 0) {
-				path = normalizedName.substring(0, idx);
-				file = normalizedName.substring(idx + 1);
-			}
-			@SuppressWarnings("rawtypes")
-			Enumeration e = bundle.findEntries(path, file, false);
-			if (e != null && e.hasMoreElements()) {
-				url = (URL) e.nextElement();
-			}
+		String path = "";
+		log.debug("getResource Failed, fallback uses findEntries");
+		String file = normalizedName;
+		int idx = file.lastIndexOf('/');
+		if (idx > 0) {
+			path = normalizedName.substring(0, idx);
+			file = normalizedName.substring(idx + 1);
+		}
+		@SuppressWarnings("rawtypes")
+		Enumeration e = bundle.findEntries(path, file, false);
+		if (e != null && e.hasMoreElements()) {
+			url = (URL) e.nextElement();
+		}
 
-			// Search attached bundles for web-fragments
-			Set<Bundle> bundlesInClassSpace = ClassPathUtil
-					.getBundlesInClassSpace(bundle, new HashSet<Bundle>());
-			for (Bundle bundleInClassSpace : bundlesInClassSpace) {
-				Collection<String> names = bundleInClassSpace.adapt(
-						BundleWiring.class).listResources(
-						"/META-INF/resources/" + path, file,
-						BundleWiring.LISTRESOURCES_LOCAL);
-				Iterator<String> it = names.iterator();
-				if (it.hasNext()) {
-					url = bundleInClassSpace.getResource(it.next());
-				}
+		// Search attached bundles for web-fragments
+		for (Bundle bundleInClassSpace : bundlesInClassSpace) {
+			BundleWiring wiring = bundleInClassSpace.adapt(BundleWiring.class);
+			if (wiring == null) {
+				// updated but not yet refreshed
+				continue;
+			}
+			Collection<String> names = wiring.listResources(
+					"/META-INF/resources/" + path, file,
+					BundleWiring.LISTRESOURCES_LOCAL);
+			Iterator<String> it = names.iterator();
+			if (it.hasNext()) {
+				url = bundleInClassSpace.getResource(it.next());
 			}
 		}
 		// obviosly still not found might be available from a attached bundle
 		// resource
-		if (url == null && normalizedName != null
-				&& normalizedName.trim().length() > 0) {
+		if (url == null) {
 			log.debug("getResource Failed, fallback to bundle.getResource");
 			url = bundle.getResource(normalizedName);
 		}
-		if (url == null && normalizedName != null
-				&& normalizedName.trim().length() > 0) {
+		if (url == null) {
 			log.debug("getResource Failed, fallback uses getResource of Bundle classloader");
 			url = bundle.getClass().getClassLoader()
 					.getResource(normalizedName);
@@ -179,6 +234,40 @@ class WebAppHttpContext implements HttpContext {
 		return url;
 	}
 
+	/**
+	 * Returns the bundles in class space of the web app bundle, recomputing
+	 * them (and dropping cached resources) if the bundle got rewired.
+	 */
+	private Set<Bundle> getBundlesInClassSpace() {
+		final BundleWiring wiring = bundle.adapt(BundleWiring.class);
+		ClassSpace space = classSpace;
+		if (space == null || space.wiring != wiring) {
+			space = new ClassSpace(wiring, ClassPathUtil.getBundlesInClassSpace(
+					bundle, new HashSet<Bundle>()));
+			classSpace = space;
+			resourceCache.clear();
+		}
+		return space.bundles;
+	}
+
+	/**
+	 * Drops cached resources if the changed bundle is the web app bundle or
+	 * one of the bundles in its class space.
+	 * 
+	 * @param changed
+	 *            bundle that was updated, refreshed or uninstalled
+	 */
+	void invalidateResources(final Bundle changed) {
+		final ClassSpace space = classSpace;
+		if (changed == bundle || space == null
+				|| space.bundles.contains(changed)) {
+			log.debug("Bundle {} changed, dropping cached resources of {}",
+					changed, this);
+			classSpace = null;
+			resourceCache.clear();
+		}
+	}
+
 	/**
 	 * Find the mime type in the mime mappings. If not found delegate to wrapped
 	 * http context.
@@ -202,4 +291,135 @@ class WebAppHttpContext implements HttpContext {
 		return "WebAppHttpContext{" + bundle.getSymbolicName() + " - "
 				+ bundle.getBundleId() + '}';
 	}
+
+	/**
+	 * Bundles in class space for one wiring of the web app bundle.
+	 */
+	private static final class ClassSpace {
+
+		private final BundleWiring wiring;
+		private final Set<Bundle> bundles;
+
+		private ClassSpace(final BundleWiring wiring, final Set<Bundle> bundles) {
+			this.wiring = wiring;
+			this.bundles = bundles;
+		}
+	}
+
+	/**
+	 * Resource lookups, read without locking. Once full, the least recently
+	 * used quarter of the entries is dropped. Every clear starts a new
+	 * generation; lookups of an older generation, made against a class space
+	 * which changed meanwhile, are neither added nor returned.
+	 */
+	static final class ResourceCache {
+
+		private final int maxSize;
+		private final ConcurrentMap<String, CachedResource> entries = new ConcurrentHashMap<String, CachedResource>();
+		private final AtomicLong generation = new AtomicLong();
+		private final Object evictionLock = new Object();
+
+		ResourceCache(final int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		/**
+		 * @return generation to create the lookups with
+		 */
+		long getGeneration() {
+			return generation.get();
+		}
+
+		CachedResource get(final String path) {
+			final CachedResource cached = entries.get(path);
+			if (cached == null) {
+				return null;
+			}
+			if (cached.generation != generation.get()) {
+				entries.remove(path, cached);
+				return null;
+			}
+			cached.lastUsed = System.nanoTime();
+			return cached;
+		}
+
+		void put(final String path, final CachedResource cached) {
+			if (cached.generation != generation.get()) {
+				return;
+			}
+			entries.put(path, cached);
+			if (entries.size() > maxSize) {
+				evict();
+			}
+		}
+
+		void clear() {
+			generation.incrementAndGet();
+			entries.clear();
+		}
+
+		int size() {
+			return entries.size();
+		}
+
+		private void evict() {
+			synchronized (evictionLock) {
+				if (entries.size() <= maxSize) {
+					return;
+				}
+				// the times are copied, they change while sorting
+				final List<Candidate> candidates = new ArrayList<Candidate>();
+				for (Map.Entry<String, CachedResource> entry : entries
+						.entrySet()) {
+					candidates.add(new Candidate(entry.getKey(), entry
+							.getValue()));
+				}
+				Collections.sort(candidates);
+				final int excess = candidates.size() - maxSize * 3 / 4;
+				for (int i = 0; i < excess; i++) {
+					entries.remove(candidates.get(i).path,
+							candidates.get(i).cached);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Entry considered for eviction, ordered by its last use.
+	 */
+	private static final class Candidate implements Comparable<Candidate> {
+
+		private final String path;
+		private final CachedResource cached;
+		private final long lastUsed;
+
+		private Candidate(final String path, final CachedResource cached) {
+			this.path = path;
+			this.cached = cached;
+			this.lastUsed = cached.lastUsed;
+		}
+
+		@Override
+		public int compareTo(final Candidate other) {
+			// times of System.nanoTime are compared by their difference
+			final long difference = lastUsed - other.lastUsed;
+			return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Result of a resource lookup, url is null if the resource was not found.
+	 */
+	static final class CachedResource {
+
+		private final URL url;
+		private final long generation;
+		private volatile long lastUsed;
+
+		CachedResource(final URL url, final long generation) {
+			this.url = url;
+			this.generation = generation;
+			this.lastUsed = System.nanoTime();
+		}
+	}
 }
@@ -20,6 +20,8 @@ package org.ops4j.pax.web.extender.war.internal;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.swissbox.core.BundleUtils;
@@ -62,6 +64,12 @@ class WebAppPublisher {
 
 	private final BundleContext bundleContext;
 
+	/**
+	 * Locks serializing the registration of web apps per context name, web
+	 * apps of different contexts get registered in parallel.
+	 */
+	private final ConcurrentMap<String, Object> contextLocks = new ConcurrentHashMap<String, Object>();
+
 	/**
 	 * Creates a new web app publisher.
 	 */
@@ -96,7 +104,7 @@ class WebAppPublisher {
 				ServiceTracker<WebAppDependencyHolder, WebAppDependencyHolder> dependencyTracker = new ServiceTracker<WebAppDependencyHolder, WebAppDependencyHolder>(
 						webAppBundleContext, filter,
 						new WebAppDependencyListener(webApp, eventDispatcher,
-								bundleContext));
+								bundleContext, getContextLock(webApp)));
 				webApps.put(webApp, dependencyTracker);
 				dependencyTracker.open();
 			} catch (InvalidSyntaxException exc) {
@@ -128,6 +136,19 @@ class WebAppPublisher {
 		}
 	}
 
+	private Object getContextLock(final WebApp webApp) {
+		final String contextName = webApp.getContextName();
+		Object lock = contextLocks.get(contextName);
+		if (lock == null) {
+			final Object newLock = new Object();
+			lock = contextLocks.putIfAbsent(contextName, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
+
 	/**
 	 * Http Service listener that will register/unregister the web app as soon
 	 * as an http service becomes available/unavailable.
@@ -145,6 +166,11 @@ class WebAppPublisher {
 
 		private BundleContext bundleContext;
 
+		/**
+		 * Lock shared by all web apps of the same context.
+		 */
+		private final Object contextLock;
+
 		/**
 		 * Http service in use.
 		 */
@@ -157,16 +183,20 @@ class WebAppPublisher {
 		 * 
 		 * @param webApp
 		 *            web app to be registered
+		 * @param contextLock
+		 *            lock serializing registrations of the web app's context
 		 * 
 		 * @throws NullArgumentException
 		 *             if web app is null
 		 */
 		WebAppDependencyListener(final WebApp webApp,
-				WebEventDispatcher eventDispatcher, BundleContext bundleContext) {
+				WebEventDispatcher eventDispatcher, BundleContext bundleContext,
+				Object contextLock) {
 			NullArgumentException.validateNotNull(webApp, "Web app");
 			this.webApp = webApp;
 			this.eventDispatcher = eventDispatcher;
 			this.bundleContext = bundleContext;
+			this.contextLock = contextLock;
 		}
 
         @Override
@@ -233,12 +263,18 @@ class WebAppPublisher {
 						"Registering web application [{}] from http service [{}]",
 						webApp, webAppHttpService);
 				try {
-					if (WebContainerUtils.webContainerAvailable(webAppHttpService)) {
-						webApp.accept(new RegisterWebAppVisitorWC(
-								webAppDependencyHolder));
-					} else {
-						webApp.accept(new RegisterWebAppVisitorHS(webAppHttpService));
+					synchronized (contextLock) {
+						webApp.endStage("dependencies");
+						if (WebContainerUtils.webContainerAvailable(webAppHttpService)) {
+							webApp.accept(new RegisterWebAppVisitorWC(
+									webAppDependencyHolder));
+						} else {
+							webApp.accept(new RegisterWebAppVisitorHS(webAppHttpService));
+						}
+						webApp.endStage("registration");
 					}
+					LOG.info("Deployed web application [{}], time per stage in ms: {}",
+							webApp.getContextName(), webApp.getStageTimes());
 
 					webApp.setDeploymentState(WebEvent.DEPLOYED);
 					eventDispatcher.webEvent(webApp, WebEvent.DEPLOYED,
@@ -262,11 +298,13 @@ class WebAppPublisher {
 							"Unregistering web application [{}] from http service [{}]",
 							webApp, webAppHttpService);
 
-                    if (WebContainerUtils.webContainerAvailable(webAppHttpService)) {
-						webApp.accept(new UnregisterWebAppVisitorWC(
-								(WebContainer) webAppHttpService));
-					} else {
-						webApp.accept(new UnregisterWebAppVisitorHS(webAppHttpService));
+					synchronized (contextLock) {
+						if (WebContainerUtils.webContainerAvailable(webAppHttpService)) {
+							webApp.accept(new UnregisterWebAppVisitorWC(
+									(WebContainer) webAppHttpService));
+						} else {
+							webApp.accept(new UnregisterWebAppVisitorHS(webAppHttpService));
+						}
 					}
 					//CHECKSTYLE:OFF
 				} catch (Exception e) {
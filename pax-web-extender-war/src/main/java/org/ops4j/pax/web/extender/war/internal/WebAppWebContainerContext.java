@@ -22,7 +22,6 @@ import java.util.HashSet;
 import java.util.Set;
 
 import org.ops4j.pax.web.extender.war.internal.model.WebAppMimeMapping;
-import org.ops4j.pax.web.extender.war.internal.util.Path;
 import org.ops4j.pax.web.service.WebContainerContext;
 import org.osgi.framework.Bundle;
 import org.osgi.service.http.HttpContext;
@@ -51,8 +50,10 @@ class WebAppWebContainerContext extends WebAppHttpContext implements
 	 */
 	@Override
 	public Set<String> getResourcePaths(final String name) {
-		final String normalizedName = Path.normalizeResourcePath(rootPath
-				+ (name.startsWith("/") ? "" : "/") + name);
+		final String normalizedName = normalizeName(name);
+		if (normalizedName == null) {
+			return null;
+		}
 
 		log.debug("Searching bundle [" + bundle + "] for resource paths of ["
 				+ name + "], normalized to [" + normalizedName + "]");
@@ -22,6 +22,7 @@ import static org.ops4j.pax.web.service.spi.WebEvent.UNDEPLOYED;
 import static org.ops4j.pax.web.service.spi.WebEvent.UNDEPLOYING;
 import static org.ops4j.pax.web.service.spi.WebEvent.WAITING;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -40,6 +41,8 @@ import org.ops4j.pax.web.service.spi.WarManager;
 import org.ops4j.pax.web.service.spi.WebEvent;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -105,8 +108,9 @@ public class WebObserver implements WarManager {
 	}
 
 	/**
-	 * Parse the web app and create the extension that will be managed by the
-	 * extender.
+	 * Create the extension that will be managed by the extender. The web app
+	 * is parsed when the extension gets started, which happens on the
+	 * extender threads so bundles are scanned in parallel.
 	 */
 	public Extension createExtension(final Bundle bundle) {
 		NullArgumentException.validateNotNull(bundle, "Bundle");
@@ -139,10 +143,44 @@ public class WebObserver implements WarManager {
 		webApp.setDeploymentState(WebEvent.UNDEPLOYED);
 		webApp.setBundle(bundle);
 		webApp.setContextName(contextName);
+		webApp.startStage();
+
+		return new SimpleExtension(bundle) {
+			@Override
+			public void doStart() {
+				webApp.endStage("queued");
+				if (!scan(webApp)) {
+					return;
+				}
+				deploy(webApp);
+			}
+
+			@Override
+			public void doDestroy() {
+				// Flag this web app has destroyed by removing it
+				// from the list
+				synchronized (webApps) {
+					webApps.remove(bundle.getBundleId());
+				}
+				undeploy(webApp);
+				dependencyManager.removeWebApp(webApp);
+			}
+		};
+	}
+
+	/**
+	 * Parses the web app and tracks its dependencies.
+	 * 
+	 * @return false if the web app could not be parsed
+	 */
+	private boolean scan(final WebApp webApp) {
+		final Bundle bundle = webApp.getBundle();
 		try {
 			eventDispatcher.webEvent(webApp, WebEvent.DEPLOYING);
 
 			parser.parse(bundle, webApp);
+			LOG.debug("Scanned web bundle {} in {} ms", bundle,
+					webApp.endStage("scan"));
 
 			String requireCapabilityHeader = ManifestUtil.getHeader(bundle,
 					"Require-Capability");
@@ -166,37 +204,14 @@ public class WebObserver implements WarManager {
 			synchronized (webApps) {
 				webApps.put(bundle.getBundleId(), webApp);
 			}
-
-			return new SimpleExtension(bundle) {
-				@Override
-				public void doStart() {
-					// Check if the web app has already been destroyed
-					synchronized (webApps) {
-						if (!webApps.containsKey(bundle.getBundleId())) {
-							return;
-						}
-					}
-					deploy(webApp);
-				}
-
-				@Override
-				public void doDestroy() {
-					// Flag this web app has destroyed by removing it
-					// from the list
-					synchronized (webApps) {
-						webApps.remove(bundle.getBundleId());
-					}
-					undeploy(webApp);
-					dependencyManager.removeWebApp(webApp);
-				}
-			};
+			return true;
 			//CHECKSTYLE:OFF
 		} catch (Exception e) { 
 			LOG.error(
 					"Error scanning web bundle " + bundle + ": "
 							+ e.getMessage(), e);
 			eventDispatcher.webEvent(webApp, WebEvent.FAILED, e);
-			return null;
+			return false;
 		}
 		//CHECKSTYLE:ON
 	}
@@ -264,6 +279,36 @@ public class WebObserver implements WarManager {
         }
 	}
 
+	/**
+	 * Drops cached resource lookups of web apps whose class space contains a
+	 * bundle that got updated, unresolved (refreshed) or uninstalled, and the
+	 * scan results of uninstalled bundles.
+	 * 
+	 * @param event
+	 *            bundle event
+	 */
+	public void bundleChanged(BundleEvent event) {
+		if (event.getType() != BundleEvent.UPDATED
+				&& event.getType() != BundleEvent.UNRESOLVED
+				&& event.getType() != BundleEvent.UNINSTALLED) {
+			return;
+		}
+		if (event.getType() == BundleEvent.UNINSTALLED) {
+			parser.forget(event.getBundle());
+		}
+		List<WebApp> deployed;
+		synchronized (webApps) {
+			deployed = new ArrayList<WebApp>(webApps.values());
+		}
+		for (WebApp webApp : deployed) {
+			HttpContext httpContext = webApp.getHttpContext();
+			if (httpContext instanceof WebAppHttpContext) {
+				((WebAppHttpContext) httpContext)
+						.invalidateResources(event.getBundle());
+			}
+		}
+	}
+
 	private List<WebApp> getQueue(WebApp webApp) {
 		synchronized (contexts) {
 			List<WebApp> queue = contexts.get(webApp.getContextName());
@@ -289,6 +334,7 @@ public class WebObserver implements WarManager {
 		if (contextName != null) {
 			webApp.setContextName(contextName);
 		}
+		webApp.startStage();
 		deploy(webApp);
 		return SUCCESS;
 	}
@@ -25,7 +25,9 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
@@ -54,6 +56,11 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractExtender implements BundleActivator,
 		BundleTrackerCustomizer<Bundle>, SynchronousBundleListener {
 
+	/**
+	 * Default number of threads starting extensions.
+	 */
+	protected static final int DEFAULT_THREAD_POOL_SIZE = 3;
+
 	protected final Logger logger = LoggerFactory.getLogger(getClass());
 
 	private final ConcurrentMap<Bundle, Extension> extensions = new ConcurrentHashMap<Bundle, Extension>();
@@ -161,10 +168,34 @@ public abstract class AbstractExtender implements BundleActivator,
 	/**
 	 * Create the executor used to start extensions asynchronously.
 	 * 
-	 * @return an
+	 * @return an executor with {@link #getThreadPoolSize()} threads
 	 */
 	protected ExecutorService createExecutor() {
-		return Executors.newScheduledThreadPool(3);
+		final String name = getClass().getSimpleName();
+		return Executors.newFixedThreadPool(getThreadPoolSize(),
+				new ThreadFactory() {
+
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						final Thread t = Executors.defaultThreadFactory()
+								.newThread(r);
+						t.setName(name + ": " + count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+	}
+
+	/**
+	 * Number of threads of the executor, extensions of different bundles are
+	 * started in parallel up to this limit.
+	 * 
+	 * @return pool size, at least 1
+	 */
+	protected int getThreadPoolSize() {
+		return DEFAULT_THREAD_POOL_SIZE;
 	}
 
 	/**
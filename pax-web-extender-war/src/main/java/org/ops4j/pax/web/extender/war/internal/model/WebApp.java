@@ -157,6 +157,15 @@ public class WebApp {
 	private List<URL> webFragments;
 
 	private boolean hasDependencies;
+
+	/**
+	 * Time spent in each deployment stage in ms, in the order the stages ran.
+	 */
+	private final Map<String, Long> stageTimes = new LinkedHashMap<String, Long>();
+	/**
+	 * Start of the current deployment stage, as of {@link System#nanoTime()}.
+	 */
+	private long stageStart;
 	
 	/**
 	 * Creates a new web app.
@@ -759,6 +768,36 @@ public class WebApp {
 		this.deploymentState = deploymentState;
 	}
 
+	/**
+	 * Starts timing the deployment of this web app.
+	 */
+	public synchronized void startStage() {
+		stageStart = System.nanoTime();
+	}
+
+	/**
+	 * Records the time elapsed since the previous stage ended and starts the
+	 * next one.
+	 * 
+	 * @param stage
+	 *            name of the stage which ended
+	 * @return time spent in the stage, in ms
+	 */
+	public synchronized long endStage(String stage) {
+		final long now = System.nanoTime();
+		final long time = (now - stageStart) / 1000000L;
+		stageTimes.put(stage, time);
+		stageStart = now;
+		return time;
+	}
+
+	/**
+	 * @return time spent in each deployment stage in ms, by stage
+	 */
+	public synchronized Map<String, Long> getStageTimes() {
+		return new LinkedHashMap<String, Long>(stageTimes);
+	}
+
 	public void setMetaDataComplete(boolean metaDataComplete) {
 		this.metaDataComplete = metaDataComplete;
 	}
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal.parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.wiring.BundleWiring;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk index of what scanning a web application bundle found: annotated
+ * classes, listeners declared in TLDs, facelet tag libraries, faces configs
+ * and web fragments. An entry is only used as long as neither the web
+ * application bundle nor any bundle of its class space got updated or
+ * rewired, so unchanged bundles are not scanned again after a restart.
+ * <p>
+ * Resources are recorded as bundle id and resource name and resolved again
+ * when the index is read, as resource URLs are not stable across framework
+ * restarts.
+ */
+class ScanIndex {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOG = LoggerFactory.getLogger(ScanIndex.class);
+
+	private static final String FINGERPRINT = "fingerprint";
+	private static final String SERVLETS = "servlets";
+	private static final String FILTERS = "filters";
+	private static final String LISTENERS = "listeners";
+	private static final String TLD_LISTENERS = "tldListeners";
+	private static final String TAGLIBS = "taglibs";
+	private static final String FACES_CONFIGS = "facesConfigs";
+	private static final String WEB_FRAGMENTS = "webFragments";
+
+	/**
+	 * Directory holding one file per bundle.
+	 */
+	private final File directory;
+
+	/**
+	 * Creates an index stored in the given directory.
+	 *
+	 * @param directory
+	 *            index directory, created if missing
+	 */
+	ScanIndex(final File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Builds the key an index entry is valid for, made of the id and last
+	 * modification of the bundle and of each bundle of its class space.
+	 *
+	 * @param bundle
+	 *            web application bundle
+	 * @param classSpace
+	 *            bundles wired to the web application bundle
+	 * @return fingerprint of the bundle and its wiring
+	 */
+	static String fingerprint(final Bundle bundle,
+			final Collection<Bundle> classSpace) {
+		final TreeMap<Long, Long> wiring = new TreeMap<Long, Long>();
+		for (Bundle wired : classSpace) {
+			wiring.put(wired.getBundleId(), wired.getLastModified());
+		}
+		final StringBuilder fingerprint = new StringBuilder();
+		fingerprint.append(bundle.getBundleId()).append('@')
+				.append(bundle.getLastModified());
+		for (Long id : wiring.keySet()) {
+			fingerprint.append(',').append(id).append('@')
+					.append(wiring.get(id));
+		}
+		return fingerprint.toString();
+	}
+
+	/**
+	 * Looks up the index entry of a bundle.
+	 *
+	 * @param bundle
+	 *            web application bundle
+	 * @param fingerprint
+	 *            current fingerprint of the bundle
+	 * @return entry found in the index, or an empty one if the bundle was not
+	 *         indexed or has changed since
+	 */
+	Entry load(final Bundle bundle, final String fingerprint) {
+		final File file = getFile(bundle);
+		if (!file.isFile()) {
+			return new Entry(fingerprint);
+		}
+		final Properties properties = new Properties();
+		try {
+			final InputStream in = new FileInputStream(file);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			LOG.warn("Unable to read scan index {}", file, e);
+			return new Entry(fingerprint);
+		}
+		if (!fingerprint.equals(properties.getProperty(FINGERPRINT))) {
+			LOG.debug("Scan index of bundle {} is outdated", bundle);
+			return new Entry(fingerprint);
+		}
+		final Entry entry = new Entry(fingerprint);
+		entry.servletClasses = getList(properties, SERVLETS);
+		entry.filterClasses = getList(properties, FILTERS);
+		entry.listenerClasses = getList(properties, LISTENERS);
+		entry.tldListeners = getList(properties, TLD_LISTENERS);
+		entry.taglibs = getList(properties, TAGLIBS);
+		entry.facesConfigs = getList(properties, FACES_CONFIGS);
+		entry.webFragments = getList(properties, WEB_FRAGMENTS);
+		return entry;
+	}
+
+	/**
+	 * Writes the entry of a bundle if anything was scanned.
+	 *
+	 * @param bundle
+	 *            web application bundle
+	 * @param entry
+	 *            entry filled while parsing the bundle
+	 */
+	void store(final Bundle bundle, final Entry entry) {
+		if (!entry.modified) {
+			return;
+		}
+		final Properties properties = new Properties();
+		properties.setProperty(FINGERPRINT, entry.fingerprint);
+		putList(properties, SERVLETS, entry.servletClasses);
+		putList(properties, FILTERS, entry.filterClasses);
+		putList(properties, LISTENERS, entry.listenerClasses);
+		putList(properties, TLD_LISTENERS, entry.tldListeners);
+		putList(properties, TAGLIBS, entry.taglibs);
+		putList(properties, FACES_CONFIGS, entry.facesConfigs);
+		putList(properties, WEB_FRAGMENTS, entry.webFragments);
+
+		final File file = getFile(bundle);
+		final File tmp = new File(directory, file.getName() + ".tmp");
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Unable to create " + directory);
+			}
+			final OutputStream out = new FileOutputStream(tmp);
+			try {
+				properties.store(out, "Scan index of " + bundle);
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+				throw new IOException("Unable to rename " + tmp);
+			}
+			entry.modified = false;
+		} catch (IOException e) {
+			LOG.warn("Unable to write scan index {}", file, e);
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Drops the entry of a bundle.
+	 *
+	 * @param bundle
+	 *            uninstalled bundle
+	 */
+	void remove(final Bundle bundle) {
+		final File file = getFile(bundle);
+		if (file.isFile() && !file.delete()) {
+			LOG.debug("Unable to delete scan index {}", file);
+		}
+	}
+
+	private File getFile(final Bundle bundle) {
+		return new File(directory, bundle.getBundleId() + ".properties");
+	}
+
+	/**
+	 * Lists resources of the given bundles as references to be kept in the
+	 * index, in the same way as
+	 * {@link org.ops4j.pax.web.utils.ClassPathUtil#findResources(Iterable, String, String, boolean)}.
+	 *
+	 * @return references in the form <code>bundleId:name</code>
+	 */
+	static List<String> findResources(final Iterable<Bundle> bundles,
+			final String path, final String pattern, final boolean recurse) {
+		final List<String> resources = new ArrayList<String>();
+		for (Bundle bundle : bundles) {
+			final BundleWiring wiring = bundle.adapt(BundleWiring.class);
+			if (wiring == null) {
+				continue;
+			}
+			final Collection<String> names = wiring.listResources(path,
+					pattern, BundleWiring.LISTRESOURCES_LOCAL
+							| (recurse ? BundleWiring.LISTRESOURCES_RECURSE : 0));
+			for (String name : names) {
+				resources.add(bundle.getBundleId() + ":" + name);
+			}
+		}
+		return resources;
+	}
+
+	/**
+	 * Resolves resource references found in the index.
+	 *
+	 * @param context
+	 *            bundle context used to look up the bundles
+	 * @param references
+	 *            references in the form <code>bundleId:name</code>
+	 * @return resource URLs, or null if any of the resources is gone
+	 */
+	static List<URL> resolve(final BundleContext context,
+			final List<String> references) {
+		final List<URL> urls = new ArrayList<URL>(references.size());
+		for (String reference : references) {
+			final int colon = reference.indexOf(':');
+			final Bundle bundle;
+			try {
+				bundle = context.getBundle(Long.parseLong(reference.substring(
+						0, colon)));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			final URL url = bundle == null ? null : bundle.getResource(reference
+					.substring(colon + 1));
+			if (url == null) {
+				return null;
+			}
+			urls.add(url);
+		}
+		return urls;
+	}
+
+	private static List<String> getList(final Properties properties,
+			final String key) {
+		final String count = properties.getProperty(key + ".count");
+		if (count == null) {
+			return null;
+		}
+		final int size = Integer.parseInt(count);
+		final List<String> list = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(properties.getProperty(key + "." + i));
+		}
+		return list;
+	}
+
+	/**
+	 * Stores the non null values of a list, properties cannot hold nulls.
+	 */
+	private static void putList(final Properties properties, final String key,
+			final List<String> list) {
+		if (list == null) {
+			return;
+		}
+		int count = 0;
+		for (String value : list) {
+			if (value != null) {
+				properties.setProperty(key + "." + count++, value);
+			}
+		}
+		properties.setProperty(key + ".count", Integer.toString(count));
+	}
+
+	/**
+	 * Scan results of one bundle. A null list stands for a scan which did not
+	 * run yet.
+	 */
+	static final class Entry {
+
+		private final String fingerprint;
+		private boolean modified;
+
+		private List<String> servletClasses;
+		private List<String> filterClasses;
+		private List<String> listenerClasses;
+		private List<String> tldListeners;
+		private List<String> taglibs;
+		private List<String> facesConfigs;
+		private List<String> webFragments;
+
+		Entry(final String fingerprint) {
+			this.fingerprint = fingerprint;
+		}
+
+		boolean hasAnnotatedClasses() {
+			return servletClasses != null && filterClasses != null
+					&& listenerClasses != null;
+		}
+
+		List<String> getServletClasses() {
+			return servletClasses;
+		}
+
+		List<String> getFilterClasses() {
+			return filterClasses;
+		}
+
+		List<String> getListenerClasses() {
+			return listenerClasses;
+		}
+
+		void setAnnotatedClasses(final List<String> servlets,
+				final List<String> filters, final List<String> listeners) {
+			this.servletClasses = servlets;
+			this.filterClasses = filters;
+			this.listenerClasses = listeners;
+			modified = true;
+		}
+
+		List<String> getTldListeners() {
+			return tldListeners;
+		}
+
+		void setTldListeners(final List<String> tldListeners) {
+			this.tldListeners = tldListeners;
+			modified = true;
+		}
+
+		List<String> getTaglibs() {
+			return taglibs;
+		}
+
+		void setTaglibs(final List<String> taglibs) {
+			this.taglibs = taglibs;
+			modified = true;
+		}
+
+		List<String> getFacesConfigs() {
+			return facesConfigs;
+		}
+
+		void setFacesConfigs(final List<String> facesConfigs) {
+			this.facesConfigs = facesConfigs;
+			modified = true;
+		}
+
+		List<String> getWebFragments() {
+			return webFragments;
+		}
+
+		void setWebFragments(final List<String> webFragments) {
+			this.webFragments = webFragments;
+			modified = true;
+		}
+	}
+}
@@ -24,6 +24,7 @@ import static org.ops4j.util.xml.ElementHelper.getChild;
 import static org.ops4j.util.xml.ElementHelper.getChildren;
 import static org.ops4j.util.xml.ElementHelper.getRootElement;
 
+import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
@@ -88,8 +89,39 @@ public class WebAppParser {
 
 	private ServiceTracker<PackageAdmin, PackageAdmin> packageAdmin;
 
+	/**
+	 * Index of earlier scan results, null if scan results are not kept.
+	 */
+	private final ScanIndex scanIndex;
+
 	public WebAppParser(ServiceTracker<PackageAdmin, PackageAdmin> packageAdmin) {
+		this(packageAdmin, null);
+	}
+
+	/**
+	 * @param packageAdmin
+	 *            package admin tracker used for annotation scanning
+	 * @param indexDirectory
+	 *            directory where scan results are kept across restarts, null
+	 *            to always scan
+	 */
+	public WebAppParser(ServiceTracker<PackageAdmin, PackageAdmin> packageAdmin,
+			File indexDirectory) {
 		this.packageAdmin = packageAdmin;
+		this.scanIndex = indexDirectory == null ? null : new ScanIndex(
+				indexDirectory);
+	}
+
+	/**
+	 * Drops the kept scan results of a bundle.
+	 * 
+	 * @param bundle
+	 *            uninstalled bundle
+	 */
+	public void forget(final Bundle bundle) {
+		if (scanIndex != null) {
+			scanIndex.remove(bundle);
+		}
 	}
 
 	public void parse(final Bundle bundle, WebApp webApp) throws Exception {
@@ -128,17 +160,23 @@ public class WebAppParser {
 				inputStream.close();
 			}
 		}
+		// Results of earlier scans as long as nothing changed
+		Set<Bundle> bundlesInClassSpace = ClassPathUtil.getBundlesInClassSpace(
+				bundle, new HashSet<Bundle>());
+		String fingerprint = ScanIndex.fingerprint(bundle, bundlesInClassSpace);
+		ScanIndex.Entry index = scanIndex == null ? new ScanIndex.Entry(
+				fingerprint) : scanIndex.load(bundle, fingerprint);
 		// Scan servlet context initializers
 		servletContainerInitializerScan(bundle, webApp, majorVersion);
 		// Scan annotations
 		if (!webApp.getMetaDataComplete() && majorVersion != null
 				&& majorVersion >= 3) {
 			if (TRUE.equals(canSeeClass(bundle, WebServlet.class))) {
-				servletAnnotationScan(bundle, webApp);
+				servletAnnotationScan(bundle, webApp, index);
 			}
 		}
 		// Scan tlds
-		tldScan(bundle, webApp);
+		tldScan(bundle, webApp, bundlesInClassSpace, index);
 		// Look for jetty web xml
 		URL jettyWebXmlURL = null;
 		Enumeration<URL> enums = bundle.findEntries(rootPath + "WEB-INF",
@@ -157,7 +195,11 @@ public class WebAppParser {
 
 		// Look for attached web-fragements
 		List<URL> webFragments = null;
-		webFragments = scanWebFragments(bundle, webApp);
+		webFragments = scanWebFragments(bundle, webApp, bundlesInClassSpace,
+				index);
+		if (scanIndex != null) {
+			scanIndex.store(bundle, index);
+		}
 
 		webApp.setWebXmlURL(webXmlURL);
 		webApp.setJettyWebXmlURL(jettyWebXmlURL);
@@ -189,7 +231,8 @@ public class WebAppParser {
 		return majorVersion;
 	}
 
-	private void tldScan(final Bundle bundle, final WebApp webApp)
+	private void tldScan(final Bundle bundle, final WebApp webApp,
+			final Set<Bundle> bundlesInClassSpace, final ScanIndex.Entry index)
 			throws Exception {
 		// special handling for finding JSF Context listeners wrapped in
 		// *.tld files
@@ -199,37 +242,57 @@ public class WebAppParser {
 		// while (tldEntries != null && tldEntries.hasMoreElements()) {
 		// URL url = tldEntries.nextElement();
 
-		Set<Bundle> bundlesInClassSpace = ClassPathUtil.getBundlesInClassSpace(
-				bundle, new HashSet<Bundle>());
-
-		List<URL> taglibs = new ArrayList<URL>();
-		List<URL> facesConfigs = new ArrayList<URL>();
-
-		for (URL u : ClassPathUtil.findResources(bundlesInClassSpace, "/",
-				"*.tld", true)) {
-            InputStream is = u.openStream();
-            try {
-                Element rootTld = getRootElement(is);
-                if (rootTld != null) {
-                    parseListeners(rootTld, webApp);
-                }
-            } finally {
-                is.close();
-            }
-        }
+		if (index.getTldListeners() == null) {
+			List<String> listenerClasses = new ArrayList<String>();
+			for (URL u : ClassPathUtil.findResources(bundlesInClassSpace, "/",
+					"*.tld", true)) {
+				InputStream is = u.openStream();
+				try {
+					Element rootTld = getRootElement(is);
+					Element[] listeners = rootTld == null ? null
+							: getChildren(rootTld, "listener");
+					if (listeners != null) {
+						for (Element listener : listeners) {
+							final String listenerClass = getTextContent(getChild(
+									listener, "listener-class"));
+							if (listenerClass == null) {
+								LOG.warn("Listener without listener-class in {} ignored",
+										u);
+							} else {
+								listenerClasses.add(listenerClass);
+							}
+						}
+					}
+				} finally {
+					is.close();
+				}
+			}
+			index.setTldListeners(listenerClasses);
+		}
+		for (String listenerClass : index.getTldListeners()) {
+			addWebListener(webApp, listenerClass);
+		}
 
-		for (URL u : ClassPathUtil.findResources(bundlesInClassSpace,
-				"/META-INF", "*.taglib.xml", false)) {
-            LOG.info("found taglib {}", u.toString());
-            taglibs.add(u);
-        }
+		List<URL> taglibs = resolve(bundle, index.getTaglibs());
+		if (taglibs == null) {
+			index.setTaglibs(ScanIndex.findResources(bundlesInClassSpace,
+					"/META-INF", "*.taglib.xml", false));
+			taglibs = resolveFound(bundle, index.getTaglibs());
+		}
+		for (URL u : taglibs) {
+			LOG.info("found taglib {}", u.toString());
+		}
 
-        // TODO generalize name pattern according to JSF spec
-		for (URL u : ClassPathUtil.findResources(bundlesInClassSpace,
-				"/META-INF", "faces-config.xml", false)) {
-            LOG.info("found faces-config.xml {}", u.toString());
-            facesConfigs.add(u);
-        }
+		// TODO generalize name pattern according to JSF spec
+		List<URL> facesConfigs = resolve(bundle, index.getFacesConfigs());
+		if (facesConfigs == null) {
+			index.setFacesConfigs(ScanIndex.findResources(bundlesInClassSpace,
+					"/META-INF", "faces-config.xml", false));
+			facesConfigs = resolveFound(bundle, index.getFacesConfigs());
+		}
+		for (URL u : facesConfigs) {
+			LOG.info("found faces-config.xml {}", u.toString());
+		}
 
 		if (!taglibs.isEmpty()) {
 			StringBuilder builder = new StringBuilder();
@@ -266,15 +329,43 @@ public class WebAppParser {
 		}
 	}
 
-	private List<URL> scanWebFragments(final Bundle bundle, final WebApp webApp)
-			throws Exception {
-		Set<Bundle> bundlesInClassSpace = ClassPathUtil.getBundlesInClassSpace(
-				bundle, new HashSet<Bundle>());
+	/**
+	 * Resolves resources recorded in the scan index.
+	 * 
+	 * @return resource URLs, null if the resources were not scanned yet or
+	 *         are gone
+	 */
+	private static List<URL> resolve(final Bundle bundle,
+			final List<String> resources) {
+		if (resources == null) {
+			return null;
+		}
+		return ScanIndex.resolve(bundle.getBundleContext(), resources);
+	}
 
-		List<URL> webFragments = new ArrayList<URL>();
-		for (URL u : ClassPathUtil.findResources(bundlesInClassSpace,
-				"/META-INF", "web-fragment.xml", true)) {
-            webFragments.add(u);
+	/**
+	 * Resolves resources which were just found.
+	 */
+	private static List<URL> resolveFound(final Bundle bundle,
+			final List<String> resources) {
+		List<URL> urls = resolve(bundle, resources);
+		if (urls == null) {
+			LOG.debug("Resources of bundle {} vanished while scanning", bundle);
+			return new ArrayList<URL>();
+		}
+		return urls;
+	}
+
+	private List<URL> scanWebFragments(final Bundle bundle,
+			final WebApp webApp, final Set<Bundle> bundlesInClassSpace,
+			final ScanIndex.Entry index) throws Exception {
+		List<URL> webFragments = resolve(bundle, index.getWebFragments());
+		if (webFragments == null) {
+			index.setWebFragments(ScanIndex.findResources(bundlesInClassSpace,
+					"/META-INF", "web-fragment.xml", true));
+			webFragments = resolveFound(bundle, index.getWebFragments());
+		}
+		for (URL u : webFragments) {
             InputStream inputStream = u.openStream();
             try {
                 Element rootElement = getRootElement(inputStream);
@@ -295,43 +386,53 @@ public class WebAppParser {
 		return webFragments;
 	}
 
-	private void servletAnnotationScan(final Bundle bundle, final WebApp webApp)
-			throws Exception {
+	private void servletAnnotationScan(final Bundle bundle,
+			final WebApp webApp, final ScanIndex.Entry index) throws Exception {
 
 		LOG.debug("metadata-complete is either false or not set");
 
-		LOG.debug("scanning for annotated classes");
-		BundleAnnotationFinder baf = new BundleAnnotationFinder(
-				packageAdmin.getService(), bundle);
-		Set<Class<?>> webServletClasses = new LinkedHashSet<Class<?>>(
-				baf.findAnnotatedClasses(WebServlet.class));
-		Set<Class<?>> webFilterClasses = new LinkedHashSet<Class<?>>(
-				baf.findAnnotatedClasses(WebFilter.class));
-		Set<Class<?>> webListenerClasses = new LinkedHashSet<Class<?>>(
-				baf.findAnnotatedClasses(WebListener.class));
-
-		for (Class<?> webServletClass : webServletClasses) {
+		if (!index.hasAnnotatedClasses()) {
+			LOG.debug("scanning for annotated classes");
+			BundleAnnotationFinder baf = new BundleAnnotationFinder(
+					packageAdmin.getService(), bundle);
+			index.setAnnotatedClasses(
+					getCanonicalNames(baf.findAnnotatedClasses(WebServlet.class)),
+					getCanonicalNames(baf.findAnnotatedClasses(WebFilter.class)),
+					getCanonicalNames(baf.findAnnotatedClasses(WebListener.class)));
+		} else {
+			LOG.debug("annotated classes taken from the scan index");
+		}
+
+		for (String webServletClass : index.getServletClasses()) {
 			LOG.debug("found WebServlet annotation on class: {}",
 					webServletClass);
 			WebServletAnnotationConfigurer annonScanner = new WebServletAnnotationConfigurer(
-					bundle, webServletClass.getCanonicalName());
+					bundle, webServletClass);
 			annonScanner.scan(webApp);
 		}
-		for (Class<?> webFilterClass : webFilterClasses) {
+		for (String webFilterClass : index.getFilterClasses()) {
 			LOG.debug("found WebFilter annotation on class: {}", webFilterClass);
 			WebFilterAnnotationConfigurer filterScanner = new WebFilterAnnotationConfigurer(
-					bundle, webFilterClass.getCanonicalName());
+					bundle, webFilterClass);
 			filterScanner.scan(webApp);
 		}
-		for (Class<?> webListenerClass : webListenerClasses) {
+		for (String webListenerClass : index.getListenerClasses()) {
 			LOG.debug("found WebListener annotation on class: {}",
 					webListenerClass);
-			addWebListener(webApp, webListenerClass.getCanonicalName());
+			addWebListener(webApp, webListenerClass);
 		}
 
 		LOG.debug("class scanning done");
 	}
 
+	private static List<String> getCanonicalNames(List<Class<?>> classes) {
+		Set<String> names = new LinkedHashSet<String>();
+		for (Class<?> clazz : classes) {
+			names.add(clazz.getCanonicalName());
+		}
+		return new ArrayList<String>(names);
+	}
+
 	private void servletContainerInitializerScan(Bundle bundle, WebApp webApp,
 			Integer majorVersion) throws Exception {
 		LOG.debug("scanning for ServletContainerInitializers");
@@ -42,7 +42,7 @@ public class WebFilterAnnotationConfigurer extends
 			return;
 		}
 
-		FilterAnnotationScanner annotationParam = new FilterAnnotationScanner(clazz);
+		FilterAnnotationScanner annotationParam = FilterAnnotationScanner.getInstance(clazz);
 
 		WebAppFilter filter = webApp.findFilter(annotationParam.filterName);
 
@@ -41,19 +41,20 @@ public class WebServletAnnotationConfigurer extends
 			return;
 		}
 
-		ServletAnnotationScanner annotationParameter = new ServletAnnotationScanner(clazz);
+		ServletAnnotationScanner annotationParameter = ServletAnnotationScanner.getInstance(clazz);
+		String servletName = annotationParameter.servletName;
 
 		WebAppServlet webAppServlet = webApp
-				.findServlet(annotationParameter.servletName);
+				.findServlet(servletName);
 		log.debug("Registering Servlet {} with url(s) {}",
-				annotationParameter.servletName,
+				servletName,
 				annotationParameter.urlPatterns);
 
 		if (webAppServlet == null) {
 			// Add a new Servlet
 			log.debug("Create a new Servlet");
 			webAppServlet = new WebAppServlet();
-			webAppServlet.setServletName(annotationParameter.servletName);
+			webAppServlet.setServletName(servletName);
 			webAppServlet.setServletClassName(className);
 			webApp.addServlet(webAppServlet);
 			webAppServlet.setLoadOnStartup(annotationParameter.loadOnStartup);
@@ -63,7 +64,7 @@ public class WebServletAnnotationConfigurer extends
 			//PAXWEB-724
 			// could be that we found the servlet due to the classname not the servletName
 			// this needs to be corrected. 
-			annotationParameter.servletName = webAppServlet.getServletName();
+			servletName = webAppServlet.getServletName();
 		}
 
 		WebAppInitParam[] initParams = webAppServlet.getInitParams();
@@ -81,10 +82,10 @@ public class WebServletAnnotationConfigurer extends
 		}
 		// check the url-patterns, if there annotation has a new one, add it
 		List<WebAppServletMapping> mappings = webApp
-				.getServletMappings(annotationParameter.servletName);
+				.getServletMappings(servletName);
 
 		log.debug("Found the following mappings {} for servlet: {}", mappings,
-				annotationParameter.servletName);
+				servletName);
 
 		// ServletSpec 3.0 p81 If a servlet already has url mappings from a
 		// descriptor the annotation is ignored
@@ -93,7 +94,7 @@ public class WebServletAnnotationConfigurer extends
 			for (String urlPattern : annotationParameter.urlPatterns) {
 				log.debug("adding mapping for URL {}", urlPattern);
 				WebAppServletMapping mapping = new WebAppServletMapping();
-				mapping.setServletName(annotationParameter.servletName);
+				mapping.setServletName(servletName);
 				mapping.setUrlPattern(urlPattern);
 				webApp.addServletMapping(mapping);
 			}
@@ -37,23 +37,20 @@ public class Path {
 
 	/**
 	 * Normalize the path for accesing a resource, meaning that will replace
-	 * consecutive slashes and will remove a leading slash if present.
+	 * consecutive slashes, will resolve "." and ".." segments and will remove
+	 * a leading slash if present.
 	 * 
 	 * @param path
 	 *            path to normalize
 	 * 
-	 * @return normalized path or the original path if there is nothing to be
-	 *         replaced.
+	 * @return normalized path, the original path if there is nothing to be
+	 *         replaced or null if a ".." segment goes above the root
+	 * 
+	 * @see org.ops4j.pax.web.service.spi.util.Path#normalizeResourcePath(String)
 	 */
 	public static String normalizeResourcePath(final String path) {
-		if (path == null) {
-			return null;
-		}
-		String normalizedPath = replaceSlashes(path.trim());
-		if (normalizedPath.startsWith("/") && normalizedPath.length() > 1) {
-			normalizedPath = normalizedPath.substring(1);
-		}
-		return normalizedPath;
+		return org.ops4j.pax.web.service.spi.util.Path
+				.normalizeResourcePath(path);
 	}
 
 	/**
@@ -66,11 +63,7 @@ public class Path {
 	 * @return a string where the subsequent slashes are replaced with one slash
 	 */
 	static String replaceSlashes(final String target) {
-		String replaced = target;
-		if (replaced != null) {
-			replaced = replaced.replaceAll("/+", "/");
-		}
-		return replaced;
+		return org.ops4j.pax.web.service.spi.util.Path.replaceSlashes(target);
 	}
 
 	/**
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.ops4j.pax.web.extender.war.internal.WebAppHttpContext.CachedResource;
+import org.ops4j.pax.web.extender.war.internal.model.WebAppMimeMapping;
+import org.osgi.framework.Bundle;
+import org.osgi.service.http.HttpContext;
+
+public class WebAppHttpContextTest {
+
+	@Test
+	public void leastRecentlyUsedResourcesAreDropped() throws Exception {
+		WebAppHttpContext.ResourceCache cache = new WebAppHttpContext.ResourceCache(
+				4);
+		for (String path : new String[] { "/a", "/b", "/c", "/d" }) {
+			cache.put(path, new CachedResource(null, cache.getGeneration()));
+			Thread.sleep(1);
+		}
+		cache.get("/a");
+		Thread.sleep(1);
+		cache.put("/e", new CachedResource(null, cache.getGeneration()));
+
+		assertEquals(3, cache.size());
+		assertNotNull(cache.get("/a"));
+		assertNull(cache.get("/b"));
+		assertNull(cache.get("/c"));
+		assertNotNull(cache.get("/d"));
+		assertNotNull(cache.get("/e"));
+	}
+
+	@Test
+	public void lookupsOfAnOutdatedClassSpaceAreDropped() {
+		WebAppHttpContext.ResourceCache cache = new WebAppHttpContext.ResourceCache(
+				4);
+		long generation = cache.getGeneration();
+		cache.put("/a", new CachedResource(null, generation));
+		// a lookup racing with the clear
+		CachedResource late = new CachedResource(null, generation);
+		cache.clear();
+		cache.put("/b", late);
+
+		assertEquals(0, cache.size());
+		assertNull(cache.get("/a"));
+		assertNull(cache.get("/b"));
+		cache.put("/b", new CachedResource(null, cache.getGeneration()));
+		assertNotNull(cache.get("/b"));
+	}
+
+	@Test
+	public void namesAreNormalizedBelowTheRootPath() {
+		WebAppHttpContext httpContext = new WebAppHttpContext(
+				createMock(HttpContext.class), "web", createMock(Bundle.class),
+				new WebAppMimeMapping[0]);
+
+		assertEquals("web/css/site.css",
+				httpContext.normalizeName("/css/../css/./site.css"));
+		assertEquals("web/", httpContext.normalizeName("/"));
+		assertNull(httpContext.normalizeName("../secret.txt"));
+		assertNull(httpContext.normalizeName("/css/../../secret.txt"));
+	}
+
+	@Test
+	public void resourcesAboveTheRootPathAreNotLookedUp() {
+		HttpContext context = createMock(HttpContext.class);
+		Bundle bundle = createMock(Bundle.class);
+		replay(context, bundle);
+		WebAppHttpContext httpContext = new WebAppHttpContext(context, "web",
+				bundle, new WebAppMimeMapping[0]);
+
+		assertNull(httpContext.getResource("/../WEB-INF/web.xml"));
+		verify(context, bundle);
+	}
+
+}
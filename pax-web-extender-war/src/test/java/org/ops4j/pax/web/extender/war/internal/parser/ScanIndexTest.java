@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal.parser;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+
+public class ScanIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Bundle bundle(long id, long lastModified) {
+		Bundle bundle = createMock(Bundle.class);
+		expect(bundle.getBundleId()).andReturn(id).anyTimes();
+		expect(bundle.getLastModified()).andReturn(lastModified).anyTimes();
+		replay(bundle);
+		return bundle;
+	}
+
+	@Test
+	public void fingerprintDependsOnClassSpace() {
+		Bundle wab = bundle(10, 100);
+		String fingerprint = ScanIndex.fingerprint(wab,
+				Arrays.asList(bundle(3, 30), bundle(2, 20)));
+
+		assertEquals("10@100,2@20,3@30", fingerprint);
+		assertEquals(fingerprint, ScanIndex.fingerprint(wab,
+				Arrays.asList(bundle(2, 20), bundle(3, 30))));
+		assertFalse(fingerprint.equals(ScanIndex.fingerprint(wab,
+				Arrays.asList(bundle(2, 20), bundle(3, 31)))));
+	}
+
+	@Test
+	public void entryIsKeptWhileUnchanged() throws Exception {
+		ScanIndex index = new ScanIndex(folder.newFolder("index"));
+		Bundle wab = bundle(10, 100);
+
+		ScanIndex.Entry entry = index.load(wab, "a");
+		assertFalse(entry.hasAnnotatedClasses());
+		entry.setAnnotatedClasses(Arrays.asList("x.MyServlet"),
+				Collections.<String> emptyList(), Arrays.asList("x.MyListener"));
+		entry.setWebFragments(Arrays.asList("3:META-INF/web-fragment.xml"));
+		index.store(wab, entry);
+
+		ScanIndex.Entry loaded = index.load(wab, "a");
+		assertTrue(loaded.hasAnnotatedClasses());
+		assertEquals(Arrays.asList("x.MyServlet"), loaded.getServletClasses());
+		assertEquals(Collections.emptyList(), loaded.getFilterClasses());
+		assertEquals(Arrays.asList("x.MyListener"),
+				loaded.getListenerClasses());
+		assertEquals(Arrays.asList("3:META-INF/web-fragment.xml"),
+				loaded.getWebFragments());
+		assertNull(loaded.getTldListeners());
+
+		assertFalse(index.load(wab, "b").hasAnnotatedClasses());
+
+		index.remove(wab);
+		assertFalse(index.load(wab, "a").hasAnnotatedClasses());
+	}
+
+	@Test
+	public void nullValuesAreSkipped() throws Exception {
+		ScanIndex index = new ScanIndex(folder.newFolder("index"));
+		Bundle wab = bundle(10, 100);
+
+		ScanIndex.Entry entry = index.load(wab, "a");
+		entry.setTldListeners(Arrays.asList("x.First", null, "x.Second"));
+		index.store(wab, entry);
+
+		assertEquals(Arrays.asList("x.First", "x.Second"),
+				index.load(wab, "a").getTldListeners());
+	}
+}
@@ -77,6 +77,11 @@ public class Activator implements BundleActivator {
 	 * Extender context.
 	 */
 	private ExtenderContext extenderContext;
+	/**
+	 * Queue applying the registrations of the web applications, null if they
+	 * are applied at once.
+	 */
+	private RegistrationQueue registrationQueue;
 	/**
 	 * List of service trackers.
 	 */
@@ -86,7 +91,12 @@ public class Activator implements BundleActivator {
 	 * @see BundleActivator#start(BundleContext)
 	 */
 	public void start(final BundleContext bundleContext) throws Exception {
-		extenderContext = new ExtenderContext();
+		final long window = getRegistrationWindow(bundleContext);
+		if (window > 0) {
+			registrationQueue = new RegistrationQueue(window);
+			registrationQueue.start();
+		}
+		extenderContext = new ExtenderContext(registrationQueue);
 		trackers = new ArrayList<ServiceTracker<?, ?>>();
 
 		trackHttpContexts(bundleContext);
@@ -116,9 +126,36 @@ public class Activator implements BundleActivator {
 			tracker.close();
 		}
 		this.trackers = null;
+		if (registrationQueue != null) {
+			registrationQueue.stop();
+			registrationQueue = null;
+		}
 		LOG.debug("Pax Web Extender stopped");
 	}
 
+	/**
+	 * Gets the time, in milliseconds, element changes are collected before
+	 * being registered.
+	 * 
+	 * @param bundleContext
+	 *            a bundle context
+	 * @return registration window, 0 to register changes at once
+	 */
+	private long getRegistrationWindow(final BundleContext bundleContext) {
+		final String window = bundleContext
+				.getProperty(RegistrationQueue.PROPERTY_WINDOW);
+		if (window == null || window.trim().length() == 0) {
+			return RegistrationQueue.DEFAULT_WINDOW;
+		}
+		try {
+			return Long.parseLong(window.trim());
+		} catch (NumberFormatException e) {
+			LOG.warn("Invalid registration window [" + window + "], using "
+					+ RegistrationQueue.DEFAULT_WINDOW + " ms");
+			return RegistrationQueue.DEFAULT_WINDOW;
+		}
+	}
+
 	/**
 	 * Track http contexts.
 	 * 
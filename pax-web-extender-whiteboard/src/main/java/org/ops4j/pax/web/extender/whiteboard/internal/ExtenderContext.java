@@ -33,7 +33,18 @@ public class ExtenderContext {
 	
 	private final ConcurrentHashMap<WebApplication, Integer> sharedWebApplicationCounter;
 
+	/**
+	 * Queue applying the element changes of the web applications, null to
+	 * apply them at once.
+	 */
+	private final RegistrationQueue registrationQueue;
+
 	public ExtenderContext() {
+		this(null);
+	}
+
+	public ExtenderContext(final RegistrationQueue registrationQueue) {
+		this.registrationQueue = registrationQueue;
 		webApplications = new ConcurrentHashMap<ContextKey, WebApplication>();
 		sharedWebApplicationCounter = new ConcurrentHashMap<WebApplication, Integer>();
 	}
@@ -49,7 +60,7 @@ public class ExtenderContext {
 				sharedHttpContext);
 		WebApplication webApplication = webApplications.get(contextKey);
 		if (webApplication == null) {
-            webApplication = new WebApplication(bundle, httpContextId, sharedHttpContext);
+            webApplication = new WebApplication(bundle, httpContextId, sharedHttpContext, registrationQueue);
             // PAXWEB-681 - webApplication and existing webApplication might not be the same.
             WebApplication existingWebApplication = webApplications.putIfAbsent(contextKey, webApplication);
 			if (existingWebApplication == null) {
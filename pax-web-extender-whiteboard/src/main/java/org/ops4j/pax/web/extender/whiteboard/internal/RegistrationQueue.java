@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.whiteboard.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extender wide queue applying the element changes of the web applications
+ * on a worker thread instead of the thread delivering the service events.
+ * Changes of a web application are collected for a short window, then
+ * applied together, registrations through a single registration batch.
+ * <p>
+ * While started, the queue is registered as MBean named
+ * <code>org.ops4j.pax.web:type=WhiteboardRegistrationQueue</code>.
+ */
+public class RegistrationQueue implements RegistrationQueueMBean {
+
+	/**
+	 * Framework property setting the window in milliseconds, 0 applies every
+	 * change at once on the calling thread.
+	 */
+	public static final String PROPERTY_WINDOW = "org.ops4j.pax.web.whiteboard.registration.window";
+
+	/**
+	 * Default window in milliseconds.
+	 */
+	public static final long DEFAULT_WINDOW = 50;
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(RegistrationQueue.class);
+
+	private static final double NANOS_PER_MILLI = 1000000d;
+
+	private final long window;
+	private final ScheduledExecutorService executor;
+
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final AtomicLong appliedBatches = new AtomicLong();
+	private final AtomicLong appliedChanges = new AtomicLong();
+	private final AtomicLong totalApplyTime = new AtomicLong();
+	private final AtomicLong maxApplyTime = new AtomicLong();
+	private volatile long lastApplyTime;
+
+	private ObjectName objectName;
+
+	/**
+	 * @param window
+	 *            time in milliseconds changes are collected before being
+	 *            applied
+	 */
+	public RegistrationQueue(final long window) {
+		this.window = window;
+		final ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(
+				1, new ThreadFactory() {
+
+					private final ThreadFactory defaultFactory = Executors
+							.defaultThreadFactory();
+
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						final Thread thread = defaultFactory
+								.newThread(runnable);
+						thread.setName("pax-web-whiteboard-registrations");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		// web applications apply their pending changes when stopped
+		pool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		this.executor = pool;
+	}
+
+	public void start() {
+		registerMBean();
+	}
+
+	public void stop() {
+		executor.shutdown();
+		unregisterMBean();
+	}
+
+	/**
+	 * Applies the pending changes of a web application once the window
+	 * elapsed.
+	 *
+	 * @param webApplication
+	 *            web application with pending changes
+	 */
+	void schedule(final WebApplication webApplication) {
+		try {
+			executor.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					//CHECKSTYLE:OFF
+					try {
+						webApplication.applyPendingChanges();
+					} catch (Exception e) {
+						LOG.error("Unable to apply changes of " + webApplication,
+								e);
+					}
+					//CHECKSTYLE:ON
+				}
+			}, window, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// stopped, apply at once
+			webApplication.applyPendingChanges();
+		}
+	}
+
+	/**
+	 * Accounts for changes queued, or cancelled if negative.
+	 */
+	void queued(final int changes) {
+		queueDepth.addAndGet(changes);
+	}
+
+	/**
+	 * Accounts for changes applied.
+	 *
+	 * @param changes
+	 *            number of changes
+	 * @param nanos
+	 *            time taken to apply them
+	 */
+	void applied(final int changes, final long nanos) {
+		queueDepth.addAndGet(-changes);
+		appliedBatches.incrementAndGet();
+		appliedChanges.addAndGet(changes);
+		totalApplyTime.addAndGet(nanos);
+		lastApplyTime = nanos;
+		long max = maxApplyTime.get();
+		while (nanos > max && !maxApplyTime.compareAndSet(max, nanos)) {
+			max = maxApplyTime.get();
+		}
+		LOG.debug("Applied {} whiteboard changes in {} ms", changes, nanos
+				/ NANOS_PER_MILLI);
+	}
+
+	@Override
+	public long getWindow() {
+		return window;
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	@Override
+	public long getAppliedBatches() {
+		return appliedBatches.get();
+	}
+
+	@Override
+	public long getAppliedChanges() {
+		return appliedChanges.get();
+	}
+
+	@Override
+	public double getLastApplyLatency() {
+		return lastApplyTime / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getMaxApplyLatency() {
+		return maxApplyTime.get() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getMeanApplyLatency() {
+		final long batches = appliedBatches.get();
+		return batches == 0 ? 0 : totalApplyTime.get() / NANOS_PER_MILLI
+				/ batches;
+	}
+
+	private void registerMBean() {
+		//CHECKSTYLE:OFF
+		try {
+			final MBeanServer server = ManagementFactory
+					.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(
+					"org.ops4j.pax.web:type=WhiteboardRegistrationQueue");
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+				objectName = name;
+			}
+		} catch (Throwable t) {
+			// no jmx available just ignore it!
+			LOG.debug("Registration queue is not exported to JMX", t);
+		}
+		//CHECKSTYLE:ON
+	}
+
+	private void unregisterMBean() {
+		if (objectName == null) {
+			return;
+		}
+		//CHECKSTYLE:OFF
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+					objectName);
+		} catch (Exception e) {
+			LOG.debug("Unable to unregister MBean {}", objectName, e);
+		}
+		//CHECKSTYLE:ON
+		objectName = null;
+	}
+
+}
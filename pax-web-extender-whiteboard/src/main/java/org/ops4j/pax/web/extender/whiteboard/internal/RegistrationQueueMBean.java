@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.whiteboard.internal;
+
+/**
+ * Management interface of {@link RegistrationQueue}.
+ */
+public interface RegistrationQueueMBean {
+
+	/**
+	 * @return time in milliseconds changes are collected before being applied
+	 */
+	long getWindow();
+
+	/**
+	 * @return number of element registrations and unregistrations waiting to
+	 *         be applied
+	 */
+	int getQueueDepth();
+
+	/**
+	 * @return number of times pending changes were applied
+	 */
+	long getAppliedBatches();
+
+	/**
+	 * @return number of element registrations and unregistrations applied
+	 */
+	long getAppliedChanges();
+
+	/**
+	 * @return time in milliseconds taken by the last application of changes
+	 */
+	double getLastApplyLatency();
+
+	/**
+	 * @return longest time in milliseconds taken to apply changes
+	 */
+	double getMaxApplyLatency();
+
+	/**
+	 * @return average time in milliseconds taken to apply changes
+	 */
+	double getMeanApplyLatency();
+}
@@ -19,10 +19,14 @@
  */
 package org.ops4j.pax.web.extender.whiteboard.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -30,11 +34,14 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.web.extender.whiteboard.ExtenderConstants;
 import org.ops4j.pax.web.extender.whiteboard.HttpContextMapping;
+import org.ops4j.pax.web.extender.whiteboard.internal.element.BatchableWebElement;
+import org.ops4j.pax.web.extender.whiteboard.internal.element.RemappableWebElement;
 import org.ops4j.pax.web.extender.whiteboard.internal.element.WebElement;
 import org.ops4j.pax.web.extender.whiteboard.internal.util.DictionaryUtils;
 import org.ops4j.pax.web.extender.whiteboard.internal.util.WebContainerUtils;
 import org.ops4j.pax.web.extender.whiteboard.internal.util.tracker.ReplaceableService;
 import org.ops4j.pax.web.extender.whiteboard.internal.util.tracker.ReplaceableServiceListener;
+import org.ops4j.pax.web.service.RegistrationBatch;
 import org.ops4j.pax.web.service.WebContainer;
 import org.ops4j.pax.web.service.WebContainerConstants;
 import org.osgi.framework.Bundle;
@@ -45,6 +52,11 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Represents a whiteboard instance of a webapplication, implements a service listener for HttpService.
+ * <p>
+ * Added and removed elements are registered with the http service by the
+ * {@link RegistrationQueue}, if any, so the thread delivering the service
+ * events is not held up. An element removed before its registration was
+ * applied is never registered.
  * 
  * @author Alin Dreghiciu
  * @since 0.4.0, April 05, 2008
@@ -64,6 +76,27 @@ public class WebApplication implements ReplaceableServiceListener<HttpService> {
 	 * List of web elements that makes up this context.
 	 */
 	private final List<WebElement> webElements;
+	/**
+	 * Elements waiting to be registered, guarded by itself.
+	 */
+	private final Set<WebElement> pendingAdditions;
+	/**
+	 * Elements waiting to be unregistered, guarded by pendingAdditions.
+	 */
+	private final Set<WebElement> pendingRemovals;
+	/**
+	 * Whether the pending changes are already scheduled to be applied,
+	 * guarded by pendingAdditions.
+	 */
+	private boolean applyScheduled;
+	/**
+	 * Queue applying the pending changes, null to apply them at once.
+	 */
+	private final RegistrationQueue registrationQueue;
+	/**
+	 * Serializes the application of the pending changes.
+	 */
+	private final Object applyLock;
 	
 	/**
 	 * Http service lock.
@@ -91,10 +124,26 @@ public class WebApplication implements ReplaceableServiceListener<HttpService> {
 	 * Constructor.
 	 */
 	public WebApplication(Bundle bundle, String httpContextId, Boolean sharedHttpContext) {
+		this(bundle, httpContextId, sharedHttpContext, null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param registrationQueue
+	 *            queue applying the element changes, null to apply them on
+	 *            the calling thread
+	 */
+	public WebApplication(Bundle bundle, String httpContextId,
+			Boolean sharedHttpContext, RegistrationQueue registrationQueue) {
         this.bundle = bundle;
         this.httpContextId = httpContextId;
         this.sharedHttpContext = sharedHttpContext;
+        this.registrationQueue = registrationQueue;
 		webElements = new CopyOnWriteArrayList<WebElement>();
+		pendingAdditions = new LinkedHashSet<WebElement>();
+		pendingRemovals = new LinkedHashSet<WebElement>();
+		applyLock = new Object();
 		httpServiceLock = new ReentrantReadWriteLock();
         httpServiceTracker = new ReplaceableService<HttpService>(bundle.getBundleContext(), HttpService.class, this);
 	}
@@ -116,19 +165,22 @@ public class WebApplication implements ReplaceableServiceListener<HttpService> {
     }
 
     public void stop() {
+        applyPendingChanges();
         httpServiceTracker.stop();
     }
 
     public void addWebElement(final WebElement webElement) {
 		NullArgumentException.validateNotNull(webElement, "Registerer");
-		// FIX for PAXWEB-485 changing order of registration.
 		httpServiceLock.readLock().lock();
 		try {
-			registerWebElement(webElement);
-		} finally {
 			webElements.add(webElement);
+			synchronized (pendingAdditions) {
+				queueAddition(webElement);
+			}
+		} finally {
 			httpServiceLock.readLock().unlock();
 		}
+		scheduleApply();
 	}
 
 	public boolean removeWebElement(final WebElement webElement) {
@@ -138,17 +190,165 @@ public class WebApplication implements ReplaceableServiceListener<HttpService> {
 		try {
 			webElements.remove(webElement);
             empty = webElements.isEmpty();
-			unregisterWebElement(webElement);
+			synchronized (pendingAdditions) {
+				queueRemoval(webElement);
+			}
 		} finally {
 			httpServiceLock.readLock().unlock();
 		}
+		scheduleApply();
         return empty;
 	}
 
+	/**
+	 * Replaces a registered element, the old one being unregistered and the
+	 * new one registered by the same application of the pending changes.
+	 */
+	public void replaceWebElement(final WebElement registered,
+			final WebElement webElement) {
+		NullArgumentException.validateNotNull(registered, "Registerer");
+		NullArgumentException.validateNotNull(webElement, "Registerer");
+		httpServiceLock.readLock().lock();
+		try {
+			webElements.remove(registered);
+			webElements.add(webElement);
+			synchronized (pendingAdditions) {
+				queueRemoval(registered);
+				queueAddition(webElement);
+			}
+		} finally {
+			httpServiceLock.readLock().unlock();
+		}
+		scheduleApply();
+	}
+
+	/**
+	 * Replaces a registered element by one differing in its mapping only. The
+	 * registration is remapped in place, so its servlet or filter is neither
+	 * destroyed nor initialized again. An element whose registration was not
+	 * applied yet is swapped in the pending changes, an element failing to
+	 * remap is replaced instead.
+	 */
+	public void remapWebElement(final WebElement registered,
+			final RemappableWebElement webElement) {
+		NullArgumentException.validateNotNull(registered, "Registerer");
+		NullArgumentException.validateNotNull(webElement, "Registerer");
+		boolean replace = false;
+		httpServiceLock.readLock().lock();
+		try {
+			synchronized (applyLock) {
+				webElements.remove(registered);
+				webElements.add(webElement);
+				synchronized (pendingAdditions) {
+					if (pendingAdditions.remove(registered)) {
+						pendingAdditions.add(webElement);
+						return;
+					}
+				}
+				//CHECKSTYLE:OFF
+				try {
+					if (httpService != null && httpContext != null) {
+						webElement.remap(httpService, httpContext);
+					}
+				} catch (Exception e) {
+					LOG.warn("Remapping of [" + registered
+							+ "] failed, registering [" + webElement
+							+ "] instead", e);
+					synchronized (pendingAdditions) {
+						queueRemoval(registered);
+						queueAddition(webElement);
+					}
+					replace = true;
+				}
+				//CHECKSTYLE:ON
+			}
+		} finally {
+			httpServiceLock.readLock().unlock();
+		}
+		if (replace) {
+			scheduleApply();
+		}
+	}
+
+	/**
+	 * Registers and unregisters the elements added and removed since the
+	 * last call, registrations through a single batch if possible.
+	 */
+	void applyPendingChanges() {
+		httpServiceLock.readLock().lock();
+		try {
+			synchronized (applyLock) {
+				final List<WebElement> additions;
+				final List<WebElement> removals;
+				synchronized (pendingAdditions) {
+					additions = new ArrayList<WebElement>(pendingAdditions);
+					removals = new ArrayList<WebElement>(pendingRemovals);
+					pendingAdditions.clear();
+					pendingRemovals.clear();
+					applyScheduled = false;
+				}
+				final int changes = additions.size() + removals.size();
+				if (changes == 0) {
+					return;
+				}
+				final long start = System.nanoTime();
+				for (WebElement registerer : removals) {
+					unregisterWebElement(registerer);
+				}
+				registerWebElements(additions);
+				if (registrationQueue != null) {
+					registrationQueue.applied(changes, System.nanoTime()
+							- start);
+				}
+			}
+		} finally {
+			httpServiceLock.readLock().unlock();
+		}
+	}
+
+	private void scheduleApply() {
+		if (registrationQueue == null) {
+			applyPendingChanges();
+			return;
+		}
+		synchronized (pendingAdditions) {
+			if (applyScheduled) {
+				return;
+			}
+			applyScheduled = true;
+		}
+		registrationQueue.schedule(this);
+	}
+
+	private void queueAddition(final WebElement webElement) {
+		// still registered if its removal was not applied yet
+		if (pendingRemovals.remove(webElement)) {
+			queued(-1);
+		} else if (pendingAdditions.add(webElement)) {
+			queued(1);
+		}
+	}
+
+	private void queueRemoval(final WebElement webElement) {
+		// never registered if its registration was not applied yet
+		if (pendingAdditions.remove(webElement)) {
+			queued(-1);
+		} else if (pendingRemovals.add(webElement)) {
+			queued(1);
+		}
+	}
+
+	private void queued(final int changes) {
+		if (registrationQueue != null) {
+			registrationQueue.queued(changes);
+		}
+	}
+
     @Override
     public void serviceChanged(HttpService oldService, HttpService newService) {
         httpServiceLock.writeLock().lock();
         try {
+            applyPendingChanges();
             unregisterWebElements();
             httpService = newService;
             httpContext = null;
@@ -166,6 +366,7 @@ public class WebApplication implements ReplaceableServiceListener<HttpService> {
 			final HttpContextMapping httpContextMapping) {
 		httpServiceLock.writeLock().lock();
 		try {
+			applyPendingChanges();
 			if (hasHttpContextMapping()) {
 				unregisterHttpContext();
 			}
@@ -242,16 +443,54 @@ public class WebApplication implements ReplaceableServiceListener<HttpService> {
 	private void registerWebElements() {
 		httpServiceLock.readLock().lock();
 		try {
-			if (httpService != null && httpContext != null) {
-				for (WebElement registerer : webElements) {
-					registerWebElement(registerer);
-				}
-			}
+			registerWebElements(webElements);
 		} finally {
 			httpServiceLock.readLock().unlock();
 		}
 	}
 
+	/**
+	 * Registers elements, those supporting it through one registration batch
+	 * so the http context is started once. If the batch fails they are
+	 * registered one by one, so a faulty element does not keep the others
+	 * out.
+	 */
+	private void registerWebElements(final Collection<WebElement> registerers) {
+		if (httpService == null || httpContext == null) {
+			return;
+		}
+		final RegistrationBatch batch = registerers.size() > 1
+				&& WebContainerUtils.isWebContainer(httpService) ? ((WebContainer) httpService)
+				.createRegistrationBatch(httpContext) : null;
+		final List<WebElement> batched = new ArrayList<WebElement>();
+		for (WebElement registerer : registerers) {
+			if (batch != null && registerer instanceof BatchableWebElement) {
+				((BatchableWebElement) registerer).register(batch);
+				batched.add(registerer);
+			} else {
+				registerWebElement(registerer);
+			}
+		}
+		if (batch == null) {
+			return;
+		}
+		if (batched.isEmpty()) {
+			batch.rollback();
+			return;
+		}
+		//CHECKSTYLE:OFF
+		try {
+			batch.commit();
+		} catch (Exception e) {
+			LOG.warn("Registration batch of " + this
+					+ " failed, registering its elements one by one", e);
+			for (WebElement registerer : batched) {
+				registerWebElement(registerer);
+			}
+		}
+		//CHECKSTYLE:ON
+	}
+
 	private List<String> convertToList(String elementListAsString) {
 		List<String> elementList = new LinkedList<String>();
 		if ((elementListAsString != null) && (elementListAsString.length() > 0)) {
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.whiteboard.internal.element;
+
+import org.ops4j.pax.web.service.RegistrationBatch;
+
+/**
+ * Web element which can be added to a {@link RegistrationBatch}, so the
+ * elements of a web application are registered with a single start of its
+ * http context.
+ */
+public interface BatchableWebElement extends WebElement {
+
+	void register(RegistrationBatch registrationBatch);
+
+}
@@ -3,6 +3,7 @@ package org.ops4j.pax.web.extender.whiteboard.internal.element;
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.web.extender.whiteboard.ErrorPageMapping;
 import org.ops4j.pax.web.extender.whiteboard.internal.util.WebContainerUtils;
+import org.ops4j.pax.web.service.RegistrationBatch;
 import org.ops4j.pax.web.service.WebContainer;
 import org.osgi.service.http.HttpContext;
 import org.osgi.service.http.HttpService;
@@ -15,7 +16,7 @@ import org.osgi.service.http.HttpService;
  * @author dsklyut
  * @since 0.7.0
  */
-public class ErrorPageWebElement implements WebElement {
+public class ErrorPageWebElement implements BatchableWebElement {
 
 	private final ErrorPageMapping errorPageMapping;
 
@@ -49,6 +50,16 @@ public class ErrorPageWebElement implements WebElement {
 		}
 	}
 
+	/**
+	 * adds error page to a registration batch
+	 * 
+	 * @param registrationBatch
+	 */
+	public void register(RegistrationBatch registrationBatch) {
+		registrationBatch.registerErrorPage(errorPageMapping.getError(),
+				errorPageMapping.getLocation());
+	}
+
 	/**
 	 * unregisters error page
 	 * 
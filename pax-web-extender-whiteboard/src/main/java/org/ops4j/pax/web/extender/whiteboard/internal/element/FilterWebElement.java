@@ -24,6 +24,7 @@ import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.web.extender.whiteboard.FilterMapping;
 import org.ops4j.pax.web.extender.whiteboard.internal.util.DictionaryUtils;
 import org.ops4j.pax.web.extender.whiteboard.internal.util.WebContainerUtils;
+import org.ops4j.pax.web.service.RegistrationBatch;
 import org.ops4j.pax.web.service.WebContainer;
 import org.osgi.service.http.HttpContext;
 import org.osgi.service.http.HttpService;
@@ -34,7 +35,8 @@ import org.osgi.service.http.HttpService;
  * @author Alin Dreghiciu
  * @since 0.4.0, April 05, 2008
  */
-public class FilterWebElement implements WebElement {
+public class FilterWebElement implements BatchableWebElement,
+		RemappableWebElement {
 
 	/**
 	 * Filter mapping.
@@ -72,6 +74,16 @@ public class FilterWebElement implements WebElement {
 		}
 	}
 
+	/**
+	 * Adds the filter to a registration batch.
+	 */
+	public void register(final RegistrationBatch registrationBatch) {
+		registrationBatch.registerFilter(filterMapping.getFilter(),
+				filterMapping.getUrlPatterns(),
+				filterMapping.getServletNames(),
+				DictionaryUtils.adapt(filterMapping.getInitParams()));
+	}
+
 	/**
 	 * Unregisters filter from http service.
 	 */
@@ -83,10 +95,29 @@ public class FilterWebElement implements WebElement {
 		}
 	}
 
+	/**
+	 * Changes the url patterns and servlet names of the filter registered with
+	 * web container.
+	 */
+	public void remap(final HttpService httpService,
+			final HttpContext httpContext) {
+		if (!WebContainerUtils.isWebContainer(httpService)) {
+			throw new UnsupportedOperationException(
+					"Internal error: In use HttpService is not an WebContainer (from Pax Web)");
+		}
+		((WebContainer) httpService).remapFilter(filterMapping.getFilter(),
+				filterMapping.getUrlPatterns(),
+				filterMapping.getServletNames());
+	}
+
 	public String getHttpContextId() {
 		return filterMapping.getHttpContextId();
 	}
 
+	public FilterMapping getFilterMapping() {
+		return filterMapping;
+	}
+
 	@Override
 	public String toString() {
 		return new StringBuilder().append(this.getClass().getSimpleName())
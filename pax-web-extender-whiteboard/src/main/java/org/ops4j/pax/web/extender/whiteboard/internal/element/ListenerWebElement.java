@@ -21,6 +21,7 @@ package org.ops4j.pax.web.extender.whiteboard.internal.element;
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.web.extender.whiteboard.ListenerMapping;
 import org.ops4j.pax.web.extender.whiteboard.internal.util.WebContainerUtils;
+import org.ops4j.pax.web.service.RegistrationBatch;
 import org.ops4j.pax.web.service.WebContainer;
 import org.osgi.service.http.HttpContext;
 import org.osgi.service.http.HttpService;
@@ -31,7 +32,7 @@ import org.osgi.service.http.HttpService;
  * @author Alin Dreghiciu
  * @since 0.4.0, April 05, 2008
  */
-public class ListenerWebElement implements WebElement {
+public class ListenerWebElement implements BatchableWebElement {
 
 	/**
 	 * Listener mapping.
@@ -64,6 +65,13 @@ public class ListenerWebElement implements WebElement {
 		}
 	}
 
+	/**
+	 * Adds the listener to a registration batch.
+	 */
+	public void register(final RegistrationBatch registrationBatch) {
+		registrationBatch.registerEventListener(listenerMapping.getListener());
+	}
+
 	/**
 	 * Unregisters listener from web container.
 	 */
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.whiteboard.internal.element;
+
+import org.ops4j.pax.web.service.WebContainer;
+import org.osgi.service.http.HttpContext;
+import org.osgi.service.http.HttpService;
+
+/**
+ * Web element whose mapping can be changed while it stays registered, so its
+ * servlet or filter keeps serving requests. Used when only the mapping of a
+ * registered element changed.
+ */
+public interface RemappableWebElement extends WebElement {
+
+	/**
+	 * Changes the mapping of the registered element it replaces to its own.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the http service is no {@link WebContainer}
+	 */
+	void remap(HttpService httpService, HttpContext httpContext);
+
+}
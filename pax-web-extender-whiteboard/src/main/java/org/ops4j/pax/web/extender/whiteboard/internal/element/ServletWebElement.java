@@ -22,6 +22,7 @@ import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.web.extender.whiteboard.ServletMapping;
 import org.ops4j.pax.web.extender.whiteboard.internal.util.DictionaryUtils;
 import org.ops4j.pax.web.extender.whiteboard.internal.util.WebContainerUtils;
+import org.ops4j.pax.web.service.RegistrationBatch;
 import org.ops4j.pax.web.service.WebContainer;
 import org.osgi.service.http.HttpContext;
 import org.osgi.service.http.HttpService;
@@ -33,7 +34,8 @@ import org.osgi.service.http.HttpService;
  * @author Alin Dreghiciu
  * @since 0.4.0, April 05, 2008
  */
-public class ServletWebElement implements WebElement {
+public class ServletWebElement implements BatchableWebElement,
+		RemappableWebElement {
 
 	/**
 	 * Servlet mapping.
@@ -78,6 +80,25 @@ public class ServletWebElement implements WebElement {
 		}
 	}
 
+	/**
+	 * Adds the servlet to a registration batch.
+	 */
+	public void register(final RegistrationBatch registrationBatch) {
+		if (servletMapping.getAlias() != null) {
+			registrationBatch.registerServlet(servletMapping.getAlias(),
+					servletMapping.getServlet(),
+					DictionaryUtils.adapt(servletMapping.getInitParams()));
+		} else {
+			registrationBatch.registerServlet(servletMapping.getServlet(),
+					servletMapping.getServletName(),
+					servletMapping.getUrlPatterns(),
+					DictionaryUtils.adapt(servletMapping.getInitParams()),
+					servletMapping.getLoadOnStartup(),
+					servletMapping.getAsyncSupported(),
+					servletMapping.getMultipartConfig());
+		}
+	}
+
 	/**
 	 * Unregisters servlet from http service / web container.
 	 */
@@ -93,10 +114,27 @@ public class ServletWebElement implements WebElement {
 		}
 	}
 
+	/**
+	 * Changes the url patterns of the servlet registered with web container.
+	 */
+	public void remap(final HttpService httpService,
+			final HttpContext httpContext) {
+		if (!WebContainerUtils.isWebContainer(httpService)) {
+			throw new UnsupportedOperationException(
+					"Internal error: In use HttpService is not an WebContainer (from Pax Web)");
+		}
+		((WebContainer) httpService).remapServlet(servletMapping.getServlet(),
+				servletMapping.getUrlPatterns());
+	}
+
 	public String getHttpContextId() {
 		return servletMapping.getHttpContextId();
 	}
 
+	public ServletMapping getServletMapping() {
+		return servletMapping;
+	}
+
 	@Override
 	public String toString() {
 		return new StringBuilder().append(this.getClass().getSimpleName())
@@ -3,6 +3,7 @@ package org.ops4j.pax.web.extender.whiteboard.internal.element;
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.web.extender.whiteboard.WelcomeFileMapping;
 import org.ops4j.pax.web.extender.whiteboard.internal.util.WebContainerUtils;
+import org.ops4j.pax.web.service.RegistrationBatch;
 import org.ops4j.pax.web.service.WebContainer;
 import org.osgi.service.http.HttpContext;
 import org.osgi.service.http.HttpService;
@@ -15,7 +16,7 @@ import org.osgi.service.http.HttpService;
  * @author dsklyut
  * @since 0.7.0
  */
-public class WelcomeFileWebElement implements WebElement {
+public class WelcomeFileWebElement implements BatchableWebElement {
 
 	/**
 	 * welcome file mapping
@@ -52,6 +53,17 @@ public class WelcomeFileWebElement implements WebElement {
 		}
 	}
 
+	/**
+	 * adds welcome files to a registration batch
+	 * 
+	 * @param registrationBatch
+	 */
+	public void register(RegistrationBatch registrationBatch) {
+		registrationBatch.registerWelcomeFiles(
+				welcomeFileMapping.getWelcomeFiles(),
+				welcomeFileMapping.isRedirect());
+	}
+
 	/**
 	 * unregisters welcome file
 	 * 
@@ -17,10 +17,17 @@
  */
 package org.ops4j.pax.web.extender.whiteboard.internal.tracker;
 
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.web.extender.whiteboard.ExtenderConstants;
 import org.ops4j.pax.web.extender.whiteboard.internal.ExtenderContext;
 import org.ops4j.pax.web.extender.whiteboard.internal.WebApplication;
+import org.ops4j.pax.web.extender.whiteboard.internal.element.RemappableWebElement;
 import org.ops4j.pax.web.extender.whiteboard.internal.element.WebElement;
 import org.ops4j.pax.web.extender.whiteboard.runtime.DefaultHttpContextMapping;
 import org.osgi.framework.BundleContext;
@@ -57,6 +64,12 @@ abstract class AbstractTracker<T, W extends WebElement> implements
 	 */
 	private final BundleContext bundleContext;
 
+	/**
+	 * Current registrations of the tracked services, which differ from the
+	 * tracked elements once a service was modified.
+	 */
+	private final ConcurrentMap<ServiceReference<T>, Registration<T, W>> registrations;
+
 	/**
 	 * Constructor.
 	 * 
@@ -69,6 +82,7 @@ abstract class AbstractTracker<T, W extends WebElement> implements
 			final BundleContext bundleContext) {
 		this.extenderContext = extenderContext;
 		this.bundleContext = validateBundleContext(bundleContext);
+		this.registrations = new ConcurrentHashMap<ServiceReference<T>, Registration<T, W>>();
 	}
 
     protected final ServiceTracker<T, W> create(
@@ -149,22 +163,13 @@ abstract class AbstractTracker<T, W extends WebElement> implements
 		LOG.debug("Service available {}", serviceReference);
 		T registered = bundleContext.getService(serviceReference);
 
-		Boolean sharedHttpContext = Boolean
-				.parseBoolean((String) serviceReference
-						.getProperty(ExtenderConstants.PROPERTY_HTTP_CONTEXT_SHARED));
+		Boolean sharedHttpContext = isSharedHttpContext(serviceReference);
 
 		W webElement = createWebElement(serviceReference, registered);
 		if (webElement != null) {
-			String httpContextId = webElement.getHttpContextId();
-			final WebApplication webApplication = extenderContext
-					.getWebApplication(serviceReference.getBundle(),
-							httpContextId, sharedHttpContext);
-			if (httpContextId == null
-					&& !webApplication.hasHttpContextMapping()) {
-				webApplication
-						.setHttpContextMapping(new DefaultHttpContextMapping());
-			}
-			webApplication.addWebElement(webElement);
+			addWebElement(serviceReference, webElement, sharedHttpContext);
+			registrations.put(serviceReference, new Registration<T, W>(
+					registered, webElement, sharedHttpContext));
 			return webElement;
 		} else {
 			// if no element was created release the service
@@ -173,9 +178,60 @@ abstract class AbstractTracker<T, W extends WebElement> implements
 		}
 	}
 
+	/**
+	 * Applies the changes of the service properties to the registered element.
+	 * Changes not affecting the registration are ignored. An element kept in
+	 * the same http context whose mapping changed only is remapped, its
+	 * servlet or filter stays initialized. Any other element kept in the same
+	 * http context is unregistered and registered again within its web
+	 * application in one go, so the context is neither stopped nor emptied
+	 * meanwhile.
+	 * 
+	 * @see ServiceTrackerCustomizer#modifiedService(ServiceReference,Object)
+	 */
 	@Override
-	public void modifiedService(ServiceReference<T> reference, W service) {
-		// This was never handled - what can be done here?
+	public void modifiedService(final ServiceReference<T> serviceReference,
+			final W tracked) {
+		LOG.debug("Service modified {}", serviceReference);
+		final Registration<T, W> registration = registrations
+				.get(serviceReference);
+		if (registration == null) {
+			return;
+		}
+		final Boolean sharedHttpContext = isSharedHttpContext(serviceReference);
+		final W registered = registration.webElement;
+		final W webElement = createWebElement(serviceReference,
+				registration.published);
+		final boolean sameContext = registered != null
+				&& webElement != null
+				&& sharedHttpContext.equals(registration.sharedHttpContext)
+				&& equal(registered.getHttpContextId(),
+						webElement.getHttpContextId());
+		if (sameContext && isUnchanged(registered, webElement)) {
+			LOG.debug("Registration of {} unchanged", serviceReference);
+			return;
+		}
+		final WebApplication webApplication = sameContext ? extenderContext
+				.getExistingWebApplication(serviceReference.getBundle(),
+						registered.getHttpContextId(), sharedHttpContext)
+				: null;
+		if (webApplication != null && webElement instanceof RemappableWebElement
+				&& isRemappable(registered, webElement)) {
+			webApplication.remapWebElement(registered,
+					(RemappableWebElement) webElement);
+		} else if (webApplication != null) {
+			webApplication.replaceWebElement(registered, webElement);
+		} else {
+			if (registered != null) {
+				removeWebElement(serviceReference, registered,
+						registration.sharedHttpContext);
+			}
+			if (webElement != null) {
+				addWebElement(serviceReference, webElement, sharedHttpContext);
+			}
+		}
+		registrations.put(serviceReference, new Registration<T, W>(
+				registration.published, webElement, sharedHttpContext));
 	}
 
 	/**
@@ -186,10 +242,37 @@ abstract class AbstractTracker<T, W extends WebElement> implements
 			final W webElement) {
 		LOG.debug("Service removed {}", serviceReference);
 
-		Boolean sharedHttpContext = Boolean
-				.parseBoolean((String) serviceReference
-						.getProperty(ExtenderConstants.PROPERTY_HTTP_CONTEXT_SHARED));
+		final Registration<T, W> registration = registrations
+				.remove(serviceReference);
+		if (registration == null) {
+			removeWebElement(serviceReference, webElement,
+					isSharedHttpContext(serviceReference));
+		} else if (registration.webElement != null) {
+			removeWebElement(serviceReference, registration.webElement,
+					registration.sharedHttpContext);
+		}
+	}
+
+	private void addWebElement(final ServiceReference<T> serviceReference,
+			final W webElement, final Boolean sharedHttpContext) {
+		String httpContextId = webElement.getHttpContextId();
+		final WebApplication webApplication = extenderContext
+				.getWebApplication(serviceReference.getBundle(),
+						httpContextId, sharedHttpContext);
+		if (webApplication == null) {
+			// PAXWEB-500 - bundle already gone
+			return;
+		}
+		if (httpContextId == null
+				&& !webApplication.hasHttpContextMapping()) {
+			webApplication
+					.setHttpContextMapping(new DefaultHttpContextMapping());
+		}
+		webApplication.addWebElement(webElement);
+	}
 
+	private void removeWebElement(final ServiceReference<T> serviceReference,
+			final W webElement, final Boolean sharedHttpContext) {
 		final WebApplication webApplication = extenderContext
 				.getExistingWebApplication(serviceReference.getBundle(),
 						webElement.getHttpContextId(), sharedHttpContext);
@@ -230,4 +313,98 @@ abstract class AbstractTracker<T, W extends WebElement> implements
 	abstract W createWebElement(final ServiceReference<T> serviceReference,
 			final T published);
 
+	/**
+	 * Tells if an element created after a modification of its service
+	 * registers exactly as the registered one, in which case the modification
+	 * is ignored. By default elements are always registered anew.
+	 * 
+	 * @param registered
+	 *            registered element
+	 * @param modified
+	 *            element created from the modified service, in the same http
+	 *            context
+	 * 
+	 * @return true if the registered element can be kept
+	 */
+	boolean isUnchanged(final W registered, final W modified) {
+		return false;
+	}
+
+	/**
+	 * Tells if an element created after a modification of its service differs
+	 * from the registered one in its mapping only, in which case the
+	 * registration is remapped. By default elements are registered anew.
+	 * 
+	 * @param registered
+	 *            registered element
+	 * @param modified
+	 *            element created from the modified service, in the same http
+	 *            context
+	 * 
+	 * @return true if the registration can be remapped
+	 */
+	boolean isRemappable(final W registered, final W modified) {
+		return false;
+	}
+
+	/**
+	 * Converts a service property to an init parameter. Arrays, which the
+	 * framework may copy on every access, are converted by their content.
+	 */
+	static String toInitParam(final Object value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.getClass().isArray()) {
+			final Object[] values = new Object[Array.getLength(value)];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = Array.get(value, i);
+			}
+			return Arrays.deepToString(values);
+		}
+		return value.toString();
+	}
+
+	static boolean equal(final Object first, final Object second) {
+		return first == null ? second == null : first.equals(second);
+	}
+
+	/**
+	 * Compares patterns or names regardless of their order.
+	 */
+	static boolean samePatterns(final String[] first, final String[] second) {
+		if (first == null || second == null) {
+			return first == second;
+		}
+		return new HashSet<String>(Arrays.asList(first))
+				.equals(new HashSet<String>(Arrays.asList(second)));
+	}
+
+	private static Boolean isSharedHttpContext(
+			final ServiceReference<?> serviceReference) {
+		return Boolean.parseBoolean((String) serviceReference
+				.getProperty(ExtenderConstants.PROPERTY_HTTP_CONTEXT_SHARED));
+	}
+
+	/**
+	 * Published service and the element registered for it.
+	 */
+	private static final class Registration<T, W> {
+
+		private final T published;
+		/**
+		 * Registered element, null if the modified service no longer
+		 * describes a valid one.
+		 */
+		private final W webElement;
+		private final Boolean sharedHttpContext;
+
+		private Registration(final T published, final W webElement,
+				final Boolean sharedHttpContext) {
+			this.published = published;
+			this.webElement = webElement;
+			this.sharedHttpContext = sharedHttpContext;
+		}
+	}
+
 }
@@ -27,11 +27,13 @@ import javax.servlet.Filter;
 import javax.servlet.annotation.WebInitParam;
 
 import org.ops4j.pax.web.extender.whiteboard.ExtenderConstants;
+import org.ops4j.pax.web.extender.whiteboard.FilterMapping;
 import org.ops4j.pax.web.extender.whiteboard.internal.ExtenderContext;
 import org.ops4j.pax.web.extender.whiteboard.internal.element.FilterWebElement;
 import org.ops4j.pax.web.extender.whiteboard.runtime.DefaultFilterMapping;
 import org.ops4j.pax.web.utils.FilterAnnotationScanner;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 import org.osgi.util.tracker.ServiceTracker;
 import org.slf4j.Logger;
@@ -60,7 +62,7 @@ public class FilterTracker extends AbstractTracker<Filter, FilterWebElement> {
 	 * @param bundleContext
 	 *            extender bundle context; cannot be null
 	 */
-	private FilterTracker(final ExtenderContext extenderContext,
+	FilterTracker(final ExtenderContext extenderContext,
 			final BundleContext bundleContext) {
 		super(extenderContext, bundleContext);
 	}
@@ -83,7 +85,7 @@ public class FilterTracker extends AbstractTracker<Filter, FilterWebElement> {
 				.getProperty(ExtenderConstants.PROPERTY_URL_PATTERNS);
 		String[] urlPatterns = null;
 		
-		FilterAnnotationScanner annotationScan = new FilterAnnotationScanner(published.getClass());
+		FilterAnnotationScanner annotationScan = FilterAnnotationScanner.getInstance(published.getClass());
 		
 		if (annotationScan.scanned) {
 			if (urlPatternsProp == null) {
@@ -167,8 +169,7 @@ public class FilterTracker extends AbstractTracker<Filter, FilterWebElement> {
 		Map<String, String> initParams = new HashMap<String, String>();
 		for (String key : initParamKeys) {
 			try {
-				String value = serviceReference.getProperty(key) == null ? ""
-						: serviceReference.getProperty(key).toString();
+				String value = toInitParam(serviceReference.getProperty(key));
 				initParams.put(key, value);
 				//CHECKSTYLE:OFF
 			} catch (Exception ignore) { 
@@ -193,4 +194,62 @@ public class FilterTracker extends AbstractTracker<Filter, FilterWebElement> {
 		return new FilterWebElement(mapping);
 	}
 
+	/**
+	 * @see AbstractTracker#isUnchanged(org.ops4j.pax.web.extender.whiteboard.internal.element.WebElement,
+	 *      org.ops4j.pax.web.extender.whiteboard.internal.element.WebElement)
+	 */
+	@Override
+	boolean isUnchanged(final FilterWebElement registered,
+			final FilterWebElement modified) {
+		final FilterMapping current = registered.getFilterMapping();
+		final FilterMapping mapping = modified.getFilterMapping();
+		return sameRegistration(current, mapping)
+				&& samePatterns(current.getUrlPatterns(),
+						mapping.getUrlPatterns())
+				&& samePatterns(current.getServletNames(),
+						mapping.getServletNames());
+	}
+
+	/**
+	 * @see AbstractTracker#isRemappable(org.ops4j.pax.web.extender.whiteboard.internal.element.WebElement,
+	 *      org.ops4j.pax.web.extender.whiteboard.internal.element.WebElement)
+	 */
+	@Override
+	boolean isRemappable(final FilterWebElement registered,
+			final FilterWebElement modified) {
+		return sameRegistration(registered.getFilterMapping(),
+				modified.getFilterMapping());
+	}
+
+	/**
+	 * Compares everything but the url patterns and servlet names. The init
+	 * parameters are read by the filter on its initialization only, so they
+	 * cannot be changed by a remapping. As all service properties are passed
+	 * as init parameters, the mapping and framework properties are left out of
+	 * the comparison.
+	 */
+	private static boolean sameRegistration(final FilterMapping current,
+			final FilterMapping mapping) {
+		return current.getFilter() == mapping.getFilter()
+				&& equal(current.getHttpContextId(), mapping.getHttpContextId())
+				&& equal(withoutServiceProperties(current.getInitParams()),
+						withoutServiceProperties(mapping.getInitParams()));
+	}
+
+	private static Map<String, String> withoutServiceProperties(
+			final Map<String, String> initParams) {
+		if (initParams == null) {
+			return null;
+		}
+		final Map<String, String> params = new HashMap<String, String>(
+				initParams);
+		params.remove(ExtenderConstants.PROPERTY_URL_PATTERNS);
+		params.remove(ExtenderConstants.PROPERTY_SERVLET_NAMES);
+		params.remove(Constants.OBJECTCLASS);
+		params.remove(Constants.SERVICE_ID);
+		params.remove(Constants.SERVICE_PID);
+		params.remove(Constants.SERVICE_RANKING);
+		return params;
+	}
+
 }
@@ -28,6 +28,7 @@ import javax.servlet.annotation.WebInitParam;
 import javax.servlet.http.HttpServlet;
 
 import org.ops4j.pax.web.extender.whiteboard.ExtenderConstants;
+import org.ops4j.pax.web.extender.whiteboard.ServletMapping;
 import org.ops4j.pax.web.extender.whiteboard.internal.ExtenderContext;
 import org.ops4j.pax.web.extender.whiteboard.internal.element.ServletWebElement;
 import org.ops4j.pax.web.extender.whiteboard.runtime.DefaultServletMapping;
@@ -63,7 +64,7 @@ public class ServletTracker<T extends Servlet> extends
 	 * @param bundleContext
 	 *            extender bundle context; cannot be null
 	 */
-	private ServletTracker(final ExtenderContext extenderContext,
+	ServletTracker(final ExtenderContext extenderContext,
 			final BundleContext bundleContext) {
 		super(extenderContext, bundleContext);
 	}
@@ -99,7 +100,7 @@ public class ServletTracker<T extends Servlet> extends
 				.getProperty(WebContainerConstants.SERVLET_NAME);
 		
 		
-		ServletAnnotationScanner annotationScan = new ServletAnnotationScanner(published.getClass());
+		ServletAnnotationScanner annotationScan = ServletAnnotationScanner.getInstance(published.getClass());
 
 		if (annotationScan.scanned) {
 			if (urlPatternsProp == null) {
@@ -172,8 +173,7 @@ public class ServletTracker<T extends Servlet> extends
 		Boolean asyncSupported = null;
 		for (String key : initParamKeys) {
 			try {
-				String value = serviceReference.getProperty(key) == null ? ""
-						: serviceReference.getProperty(key).toString();
+				String value = toInitParam(serviceReference.getProperty(key));
 
 				// if the prefix is null or empty, match is true, otherwise its
 				// only true if it matches the prefix
@@ -223,4 +223,48 @@ public class ServletTracker<T extends Servlet> extends
 		return new ServletWebElement(mapping);
 	}
 
+	/**
+	 * @see AbstractTracker#isUnchanged(org.ops4j.pax.web.extender.whiteboard.internal.element.WebElement,
+	 *      org.ops4j.pax.web.extender.whiteboard.internal.element.WebElement)
+	 */
+	@Override
+	boolean isUnchanged(final ServletWebElement registered,
+			final ServletWebElement modified) {
+		return sameRegistration(registered.getServletMapping(),
+				modified.getServletMapping())
+				&& samePatterns(registered.getServletMapping().getUrlPatterns(),
+						modified.getServletMapping().getUrlPatterns());
+	}
+
+	/**
+	 * Servlets registered by url patterns can be remapped, the ones
+	 * registered with an alias cannot.
+	 * 
+	 * @see AbstractTracker#isRemappable(org.ops4j.pax.web.extender.whiteboard.internal.element.WebElement,
+	 *      org.ops4j.pax.web.extender.whiteboard.internal.element.WebElement)
+	 */
+	@Override
+	boolean isRemappable(final ServletWebElement registered,
+			final ServletWebElement modified) {
+		return registered.getServletMapping().getAlias() == null
+				&& sameRegistration(registered.getServletMapping(),
+						modified.getServletMapping());
+	}
+
+	/**
+	 * Compares everything but the url patterns.
+	 */
+	private static boolean sameRegistration(final ServletMapping current,
+			final ServletMapping mapping) {
+		return current.getServlet() == mapping.getServlet()
+				&& equal(current.getHttpContextId(), mapping.getHttpContextId())
+				&& equal(current.getServletName(), mapping.getServletName())
+				&& equal(current.getAlias(), mapping.getAlias())
+				&& equal(current.getInitParams(), mapping.getInitParams())
+				&& equal(current.getLoadOnStartup(), mapping.getLoadOnStartup())
+				&& equal(current.getAsyncSupported(),
+						mapping.getAsyncSupported())
+				&& current.getMultipartConfig() == mapping.getMultipartConfig();
+	}
+
 }
@@ -1,7 +1,11 @@
 package org.ops4j.pax.web.extender.whiteboard.internal;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Random;
@@ -134,6 +138,52 @@ public class WebApplicationTest {
 		}
 	}
 
+	@Test
+	public void queuedChangesAreCoalesced() throws Exception {
+		final RegistrationQueue registrationQueue = new RegistrationQueue(
+				TimeUnit.MINUTES.toMillis(1));
+		try {
+			instanceUnderTest = new WebApplication(bundle, "myID", false,
+					registrationQueue);
+			instanceUnderTest.setHttpContextMapping(httpContextMapping);
+			instanceUnderTest.serviceChanged(null, newService);
+
+			// removed before being registered
+			instanceUnderTest.addWebElement(webElement);
+			instanceUnderTest.removeWebElement(webElement);
+			assertEquals(0, registrationQueue.getQueueDepth());
+
+			instanceUnderTest.addWebElement(webElement);
+			assertEquals(1, registrationQueue.getQueueDepth());
+			verify(webElement, never()).register(any(HttpService.class),
+					any(HttpContext.class));
+
+			instanceUnderTest.applyPendingChanges();
+			verify(webElement, times(1)).register(newService, httpContext);
+			verify(webElement, never()).unregister(any(HttpService.class),
+					any(HttpContext.class));
+			assertEquals(0, registrationQueue.getQueueDepth());
+			assertEquals(1, registrationQueue.getAppliedBatches());
+			assertEquals(1, registrationQueue.getAppliedChanges());
+		} finally {
+			registrationQueue.stop();
+		}
+	}
+
+	@Test
+	public void replacedElementIsSwapped() throws Exception {
+		final WebElement modified = Mockito.mock(WebElement.class);
+		instanceUnderTest.setHttpContextMapping(httpContextMapping);
+		instanceUnderTest.serviceChanged(null, newService);
+		instanceUnderTest.addWebElement(webElement);
+
+		instanceUnderTest.replaceWebElement(webElement, modified);
+		verify(webElement, times(1)).unregister(newService, httpContext);
+		verify(modified, times(1)).register(newService, httpContext);
+		assertTrue("web application lost its elements",
+				!instanceUnderTest.removeWebElement(webElement));
+	}
+
 	@Test
 	// @Ignore
 	public void executeMultiThreadedTestMultipleTimes() throws Throwable {
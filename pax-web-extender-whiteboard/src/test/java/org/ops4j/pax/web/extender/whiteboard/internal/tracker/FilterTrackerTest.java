@@ -0,0 +1,171 @@
+package org.ops4j.pax.web.extender.whiteboard.internal.tracker;
+
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.ops4j.pax.web.extender.whiteboard.ExtenderConstants;
+import org.ops4j.pax.web.extender.whiteboard.HttpContextMapping;
+import org.ops4j.pax.web.extender.whiteboard.internal.ExtenderContext;
+import org.ops4j.pax.web.extender.whiteboard.internal.WebApplication;
+import org.ops4j.pax.web.extender.whiteboard.internal.element.FilterWebElement;
+import org.ops4j.pax.web.service.WebContainer;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.http.HttpContext;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FilterTrackerTest {
+
+	@Mock
+	ExtenderContext extenderContext;
+
+	@Mock
+	BundleContext bundleContext;
+
+	@Mock
+	Bundle bundle;
+
+	@Mock
+	ServiceReference<Filter> serviceReference;
+
+	@Mock
+	HttpContextMapping httpContextMapping;
+
+	@Mock
+	HttpContext httpContext;
+
+	@Mock
+	WebContainer webContainer;
+
+	private final Map<String, Object> properties = new HashMap<String, Object>();
+
+	private final Filter filter = new Filter() {
+		@Override
+		public void init(FilterConfig filterConfig) {
+		}
+
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response,
+				FilterChain chain) {
+		}
+
+		@Override
+		public void destroy() {
+		}
+	};
+
+	private FilterTracker tracker;
+
+	@Before
+	public void setUp() {
+		when(bundle.getBundleContext()).thenReturn(bundleContext);
+		when(httpContextMapping.getHttpContext()).thenReturn(httpContext);
+		when(bundleContext.getService(serviceReference)).thenReturn(filter);
+		when(serviceReference.getBundle()).thenReturn(bundle);
+		when(serviceReference.getProperty(anyString())).thenAnswer(
+				new Answer<Object>() {
+					@Override
+					public Object answer(InvocationOnMock invocation) {
+						Object value = properties.get(invocation.getArguments()[0]);
+						// like the framework, hand out copies of arrays
+						return value instanceof String[] ? ((String[]) value)
+								.clone() : value;
+					}
+				});
+		when(serviceReference.getPropertyKeys()).thenAnswer(
+				new Answer<String[]>() {
+					@Override
+					public String[] answer(InvocationOnMock invocation) {
+						return properties.keySet().toArray(
+								new String[properties.size()]);
+					}
+				});
+
+		WebApplication webApplication = new WebApplication(bundle, null,
+				false);
+		webApplication.setHttpContextMapping(httpContextMapping);
+		webApplication.serviceChanged(null, webContainer);
+		when(extenderContext.getWebApplication(bundle, null, false))
+				.thenReturn(webApplication);
+		when(extenderContext.getExistingWebApplication(bundle, null, false))
+				.thenReturn(webApplication);
+
+		tracker = new FilterTracker(extenderContext, bundleContext);
+		properties.put(Constants.OBJECTCLASS, new String[] { Filter.class
+				.getName() });
+		properties.put(Constants.SERVICE_ID, 42L);
+		properties.put(ExtenderConstants.PROPERTY_URL_PATTERNS, "/*");
+		properties.put("init.encoding", "UTF-8");
+	}
+
+	@Test
+	public void changedServletNamesAreRemapped() throws Exception {
+		FilterWebElement webElement = tracker.addingService(serviceReference);
+
+		properties.put(ExtenderConstants.PROPERTY_SERVLET_NAMES, "default");
+		tracker.modifiedService(serviceReference, webElement);
+
+		verify(webContainer, times(1)).registerFilter(eq(filter),
+				aryEq(new String[] { "/*" }), any(String[].class),
+				any(Dictionary.class), eq(httpContext));
+		verify(webContainer).remapFilter(eq(filter),
+				aryEq(new String[] { "/*" }),
+				aryEq(new String[] { "default" }));
+		verify(webContainer, never()).unregisterFilter(filter);
+	}
+
+	@Test
+	public void unrelatedPropertiesAreIgnored() throws Exception {
+		FilterWebElement webElement = tracker.addingService(serviceReference);
+
+		properties.put(Constants.SERVICE_RANKING, 10);
+		tracker.modifiedService(serviceReference, webElement);
+
+		verify(webContainer, times(1)).registerFilter(eq(filter),
+				aryEq(new String[] { "/*" }), any(String[].class),
+				any(Dictionary.class), eq(httpContext));
+		verify(webContainer, never()).unregisterFilter(filter);
+		verify(webContainer, never()).remapFilter(any(Filter.class),
+				any(String[].class), any(String[].class));
+	}
+
+	@Test
+	public void changedInitParamsAreRegisteredAgain() throws Exception {
+		FilterWebElement webElement = tracker.addingService(serviceReference);
+
+		properties.put("init.encoding", "ISO-8859-1");
+		tracker.modifiedService(serviceReference, webElement);
+
+		verify(webContainer).unregisterFilter(filter);
+		verify(webContainer, times(2)).registerFilter(eq(filter),
+				aryEq(new String[] { "/*" }), any(String[].class),
+				any(Dictionary.class), eq(httpContext));
+		verify(webContainer, never()).remapFilter(any(Filter.class),
+				any(String[].class), any(String[].class));
+	}
+}
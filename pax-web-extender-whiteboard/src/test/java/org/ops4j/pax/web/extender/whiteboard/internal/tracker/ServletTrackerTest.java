@@ -0,0 +1,161 @@
+package org.ops4j.pax.web.extender.whiteboard.internal.tracker;
+
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.ops4j.pax.web.extender.whiteboard.ExtenderConstants;
+import org.ops4j.pax.web.extender.whiteboard.HttpContextMapping;
+import org.ops4j.pax.web.extender.whiteboard.internal.ExtenderContext;
+import org.ops4j.pax.web.extender.whiteboard.internal.WebApplication;
+import org.ops4j.pax.web.extender.whiteboard.internal.element.ServletWebElement;
+import org.ops4j.pax.web.service.WebContainer;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.http.HttpContext;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ServletTrackerTest {
+
+	@Mock
+	ExtenderContext extenderContext;
+
+	@Mock
+	BundleContext bundleContext;
+
+	@Mock
+	Bundle bundle;
+
+	@Mock
+	ServiceReference<Servlet> serviceReference;
+
+	@Mock
+	HttpContextMapping httpContextMapping;
+
+	@Mock
+	HttpContext httpContext;
+
+	@Mock
+	WebContainer webContainer;
+
+	private final Map<String, Object> properties = new HashMap<String, Object>();
+
+	private final Servlet servlet = new HttpServlet() {
+		private static final long serialVersionUID = 1L;
+	};
+
+	private ServletTracker<Servlet> tracker;
+
+	@Before
+	public void setUp() {
+		when(bundle.getBundleContext()).thenReturn(bundleContext);
+		when(httpContextMapping.getHttpContext()).thenReturn(httpContext);
+		when(bundleContext.getService(serviceReference)).thenReturn(servlet);
+		when(serviceReference.getBundle()).thenReturn(bundle);
+		when(serviceReference.getProperty(anyString())).thenAnswer(
+				new Answer<Object>() {
+					@Override
+					public Object answer(InvocationOnMock invocation) {
+						Object value = properties.get(invocation.getArguments()[0]);
+						// like the framework, hand out copies of arrays
+						return value instanceof String[] ? ((String[]) value)
+								.clone() : value;
+					}
+				});
+		when(serviceReference.getPropertyKeys()).thenAnswer(
+				new Answer<String[]>() {
+					@Override
+					public String[] answer(InvocationOnMock invocation) {
+						return properties.keySet().toArray(
+								new String[properties.size()]);
+					}
+				});
+
+		WebApplication webApplication = new WebApplication(bundle, null,
+				false);
+		webApplication.setHttpContextMapping(httpContextMapping);
+		webApplication.serviceChanged(null, webContainer);
+		when(extenderContext.getWebApplication(bundle, null, false))
+				.thenReturn(webApplication);
+		when(extenderContext.getExistingWebApplication(bundle, null, false))
+				.thenReturn(webApplication);
+
+		tracker = new ServletTracker<Servlet>(extenderContext, bundleContext);
+		properties.put(Constants.OBJECTCLASS, new String[] { Servlet.class
+				.getName() });
+		properties.put(Constants.SERVICE_ID, 42L);
+		properties.put(ExtenderConstants.PROPERTY_URL_PATTERNS, "/a");
+		properties.put("init.greeting", "hello");
+	}
+
+	@Test
+	public void changedUrlPatternsAreRemapped() throws Exception {
+		ServletWebElement webElement = tracker.addingService(serviceReference);
+
+		properties.put(ExtenderConstants.PROPERTY_URL_PATTERNS, new String[] {
+				"/b", "/c" });
+		tracker.modifiedService(serviceReference, webElement);
+
+		verify(webContainer, times(1)).registerServlet(eq(servlet),
+				anyString(), aryEq(new String[] { "/a" }),
+				any(Dictionary.class), any(Integer.class), any(Boolean.class),
+				any(MultipartConfigElement.class), eq(httpContext));
+		verify(webContainer).remapServlet(eq(servlet),
+				aryEq(new String[] { "/b", "/c" }));
+		verify(webContainer, never()).unregisterServlet(servlet);
+	}
+
+	@Test
+	public void changedInitParamsAreRegisteredAgain() throws Exception {
+		ServletWebElement webElement = tracker.addingService(serviceReference);
+
+		properties.put("init.greeting", "welcome");
+		tracker.modifiedService(serviceReference, webElement);
+
+		verify(webContainer).unregisterServlet(servlet);
+		verify(webContainer, times(2)).registerServlet(eq(servlet),
+				anyString(), aryEq(new String[] { "/a" }),
+				any(Dictionary.class), any(Integer.class), any(Boolean.class),
+				any(MultipartConfigElement.class), eq(httpContext));
+		verify(webContainer, never()).remapServlet(any(Servlet.class),
+				any(String[].class));
+	}
+
+	@Test
+	public void unrelatedPropertiesAreIgnored() throws Exception {
+		ServletWebElement webElement = tracker.addingService(serviceReference);
+
+		properties.put(Constants.SERVICE_RANKING, 10);
+		tracker.modifiedService(serviceReference, webElement);
+
+		verify(webContainer, times(1)).registerServlet(eq(servlet),
+				anyString(), aryEq(new String[] { "/a" }),
+				any(Dictionary.class), any(Integer.class), any(Boolean.class),
+				any(MultipartConfigElement.class), eq(httpContext));
+		verify(webContainer, never()).unregisterServlet(servlet);
+		verify(webContainer, never()).remapServlet(any(Servlet.class),
+				any(String[].class));
+	}
+}
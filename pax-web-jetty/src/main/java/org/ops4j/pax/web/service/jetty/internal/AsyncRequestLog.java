@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.jetty.internal;
+
+import java.io.IOException;
+
+import org.eclipse.jetty.server.AbstractNCSARequestLog;
+import org.ops4j.pax.web.service.spi.util.AsyncLogWriter;
+
+/**
+ * NCSA request log formatting entries on the request thread and handing them
+ * to an {@link AsyncLogWriter}, so the request threads never wait for the log
+ * file.
+ */
+class AsyncRequestLog extends AbstractNCSARequestLog {
+
+	private final AsyncLogWriter writer;
+
+	AsyncRequestLog(final AsyncLogWriter writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	protected boolean isEnabled() {
+		return writer.isRunning();
+	}
+
+	@Override
+	public void write(final String requestEntry) throws IOException {
+		writer.write(requestEntry);
+	}
+
+	@Override
+	protected synchronized void doStart() throws Exception {
+		writer.start();
+		super.doStart();
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		super.doStop();
+		writer.stop();
+	}
+}
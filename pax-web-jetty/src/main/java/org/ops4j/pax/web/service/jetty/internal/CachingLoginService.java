@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.jetty.internal;
+
+import java.util.Collection;
+
+import org.eclipse.jetty.security.IdentityService;
+import org.eclipse.jetty.security.LoginService;
+import org.eclipse.jetty.security.SecurityHandler;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.UserIdentity;
+import org.ops4j.pax.web.service.spi.util.CredentialCache;
+
+/**
+ * Login service of a context caching the credentials verified by the login
+ * service of its realm, so clients authenticating every request, e.g. with
+ * BASIC, do not hit a JAAS realm each time. The realm login service is looked
+ * up among the server beans as the {@link SecurityHandler} does. Credentials
+ * other than passwords, like DIGEST responses which change with every nonce,
+ * are always verified by the realm.
+ */
+class CachingLoginService implements LoginService {
+
+	private final SecurityHandler securityHandler;
+	private final CredentialCache<UserIdentity> cache;
+	private volatile LoginService delegate;
+
+	CachingLoginService(final SecurityHandler securityHandler,
+			final CredentialCache<UserIdentity> cache) {
+		this.securityHandler = securityHandler;
+		this.cache = cache;
+	}
+
+	@Override
+	public String getName() {
+		return securityHandler.getRealmName();
+	}
+
+	@Override
+	public UserIdentity login(final String username, final Object credentials) {
+		final LoginService loginService = getDelegate();
+		if (loginService == null) {
+			return null;
+		}
+		if (username == null || !(credentials instanceof String)) {
+			return loginService.login(username, credentials);
+		}
+		final String password = (String) credentials;
+		UserIdentity identity = cache.get(username, password);
+		if (identity == null) {
+			identity = loginService.login(username, credentials);
+			if (identity != null) {
+				cache.put(username, password, identity);
+			}
+		}
+		return identity;
+	}
+
+	@Override
+	public boolean validate(final UserIdentity user) {
+		final LoginService loginService = getDelegate();
+		return loginService != null && loginService.validate(user);
+	}
+
+	@Override
+	public IdentityService getIdentityService() {
+		final LoginService loginService = getDelegate();
+		return loginService == null ? null : loginService
+				.getIdentityService();
+	}
+
+	@Override
+	public void setIdentityService(final IdentityService service) {
+		final LoginService loginService = getDelegate();
+		if (loginService != null) {
+			loginService.setIdentityService(service);
+		}
+	}
+
+	@Override
+	public void logout(final UserIdentity user) {
+		if (user != null && user.getUserPrincipal() != null) {
+			// a logged out identity must not be handed out again
+			cache.flush(user.getUserPrincipal().getName());
+		}
+		final LoginService loginService = getDelegate();
+		if (loginService != null) {
+			loginService.logout(user);
+		}
+	}
+
+	private LoginService getDelegate() {
+		LoginService loginService = delegate;
+		if (loginService == null) {
+			final Server server = securityHandler.getServer();
+			if (server == null) {
+				return null;
+			}
+			final Collection<LoginService> loginServices = server
+					.getBeans(LoginService.class);
+			final String realmName = securityHandler.getRealmName();
+			if (realmName != null) {
+				for (LoginService candidate : loginServices) {
+					if (candidate != this
+							&& realmName.equals(candidate.getName())) {
+						loginService = candidate;
+						break;
+					}
+				}
+			} else if (loginServices.size() == 1) {
+				loginService = loginServices.iterator().next();
+			}
+			delegate = loginService;
+		}
+		return loginService;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder().append(getClass().getSimpleName())
+				.append("{realm=").append(getName()).append("}").toString();
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.jetty.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.servlets.gzip.AbstractCompressedStream;
+import org.eclipse.jetty.servlets.gzip.CompressedResponseWrapper;
+import org.eclipse.jetty.servlets.gzip.GzipHandler;
+import org.ops4j.pax.web.service.spi.util.CompressionConfig;
+
+/**
+ * Gzip handler of a {@link HttpServiceContext} configured by the compression
+ * settings of the context. Responses to excluded paths and nested dispatches
+ * are passed through; responses already carrying a Content-Encoding, like
+ * precompressed resources, are not compressed again.
+ */
+class CompressionHandler extends GzipHandler {
+
+	private final CompressionConfig compression;
+
+	CompressionHandler(final CompressionConfig compression) {
+		this.compression = compression;
+		setMinGzipSize(compression.getMinSize());
+		setMimeTypes(new HashSet<String>(compression.getMimeTypes()));
+	}
+
+	@Override
+	public void handle(final String target, final Request baseRequest,
+			final HttpServletRequest request,
+			final HttpServletResponse response) throws IOException,
+			ServletException {
+		if (baseRequest.getDispatcherType() != DispatcherType.REQUEST
+				|| compression.isExcluded(target)) {
+			final Handler handler = getHandler();
+			if (handler != null && isStarted()) {
+				handler.handle(target, baseRequest, request, response);
+			}
+			return;
+		}
+		super.handle(target, baseRequest, request, response);
+	}
+
+	@Override
+	protected CompressedResponseWrapper newGzipResponseWrapper(
+			final HttpServletRequest request, final HttpServletResponse response) {
+		final int level = compression.getLevel();
+		if (level == Deflater.DEFAULT_COMPRESSION) {
+			return super.newGzipResponseWrapper(request, response);
+		}
+		final CompressedResponseWrapper wrapper = new CompressedResponseWrapper(
+				request, response) {
+
+			@Override
+			protected AbstractCompressedStream newCompressedStream(
+					final HttpServletRequest compressedRequest,
+					final HttpServletResponse compressedResponse)
+					throws IOException {
+				return new AbstractCompressedStream("gzip", compressedRequest,
+						this, getVary()) {
+
+					@Override
+					protected OutputStream createStream() throws IOException {
+						return new GZIPOutputStream(_response.getOutputStream(),
+								getBufferSize()) {
+							{
+								def.setLevel(level);
+							}
+						};
+					}
+				};
+			}
+		};
+		wrapper.setMimeTypes(getMimeTypes(), _excludeMimeTypes);
+		wrapper.setBufferSize(getBufferSize());
+		wrapper.setMinCompressSize(getMinGzipSize());
+		return wrapper;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder().append(getClass().getSimpleName())
+				.append("{").append(compression).append("}").toString();
+	}
+}
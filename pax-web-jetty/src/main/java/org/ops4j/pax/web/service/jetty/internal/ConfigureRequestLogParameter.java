@@ -12,12 +12,14 @@ public class ConfigureRequestLogParameter {
 	public Boolean logLatency;
 	public Boolean logCookies;
 	public Boolean logServer;
+	public Boolean async;
+	public Integer bufferSize;
 	//CHECKSTYLE:ON
 
 	public ConfigureRequestLogParameter(String format, String retainDays,
 			Boolean append, Boolean extend, Boolean dispatch, String timeZone,
 			String dir, Boolean logLatency, Boolean logCookies,
-			Boolean logServer) {
+			Boolean logServer, Boolean async, Integer bufferSize) {
 		this.format = format;
 		this.retainDays = retainDays;
 		this.append = append;
@@ -28,5 +30,7 @@ public class ConfigureRequestLogParameter {
 		this.logLatency = logLatency;
 		this.logCookies = logCookies;
 		this.logServer = logServer;
+		this.async = async;
+		this.bufferSize = bufferSize;
 	}
 }
\ No newline at end of file
@@ -81,6 +81,7 @@ class HttpServiceContext extends ServletContextHandler {
 	 * Context attributes.
 	 */
 	private final Map<String, Object> attributes;
+	private final String contextName;
 	private final HttpContext httpContext;
 	/**
 	 * Access controller context of the bundle that registred the http context.
@@ -110,6 +111,7 @@ class HttpServiceContext extends ServletContextHandler {
 				contextName);
 		getInitParams().putAll(initParams);
 		this.attributes = attributes;
+		this.contextName = contextName;
 		this.httpContext = httpContext;
 		this.accessControllerContext = accessControllerContext;
 		setDisplayName(httpContext.toString());
@@ -119,11 +121,16 @@ class HttpServiceContext extends ServletContextHandler {
 		jettyWebXmlURL = jettyWebXmlUrl;
 
 		_scontext = new SContext();
-		setServletHandler(new HttpServiceServletHandler(httpContext));
+		setServletHandler(new HttpServiceServletHandler(httpContext,
+				contextName));
 		setErrorHandler(new ErrorPageErrorHandler());
 
 	}
 
+	String getContextName() {
+		return contextName;
+	}
+
     public void registerService(BundleContext bundleContext, Dictionary<String, String> properties) {
         if (registration.get() == null) {
             ServiceRegistration<ServletContext> reg = bundleContext.registerService(
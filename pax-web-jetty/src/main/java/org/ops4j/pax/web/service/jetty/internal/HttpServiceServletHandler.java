@@ -19,13 +19,19 @@ package org.ops4j.pax.web.service.jetty.internal;
 
 import java.io.IOException;
 
+import javax.servlet.DispatcherType;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.UserIdentity;
 import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
 import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetrics;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetricsCollector;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetricsListener;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,10 +42,13 @@ class HttpServiceServletHandler extends ServletHandler {
 	private static final Logger LOG = LoggerFactory
 			.getLogger(HttpServiceServletHandler.class);
 	private final HttpContext httpContext;
+	private final String contextName;
 
-	HttpServiceServletHandler(final HttpContext httpContext) {
+	HttpServiceServletHandler(final HttpContext httpContext,
+			final String contextName) {
 		NullArgumentException.validateNotNull(httpContext, "Http context");
 		this.httpContext = httpContext;
+		this.contextName = contextName;
 	}
 
 	@Override
@@ -67,7 +76,20 @@ class HttpServiceServletHandler extends ServletHandler {
 				response);
 		if (httpContext.handleSecurity(requestWrapper, responseWrapper)) {
 			LOG.debug("handling request {}, {}", requestWrapper, responseWrapper);
-			super.doHandle(target, baseRequest, request, response);
+			final RequestMetrics metrics = getServletMetrics(baseRequest);
+			if (metrics == null) {
+				super.doHandle(target, baseRequest, request, response);
+				return;
+			}
+			final long start = metrics.requestStarted();
+			boolean failed = true;
+			try {
+				super.doHandle(target, baseRequest, request, response);
+				failed = false;
+			} finally {
+				RequestMetricsListener.requestHandled(metrics, start, request,
+						response, failed);
+			}
 		} else {
 			// on case of security constraints not fulfilled, handleSecurity is
 			// supposed to set the right
@@ -87,4 +109,23 @@ class HttpServiceServletHandler extends ServletHandler {
 		}
 	}
 
+	/**
+	 * @return metrics of the servlet handling the request, null if request
+	 *         metrics are disabled or the request is a nested dispatch
+	 */
+	private RequestMetrics getServletMetrics(final Request baseRequest) {
+		if (baseRequest.getDispatcherType() != DispatcherType.REQUEST
+				|| !(getServer() instanceof JettyServerWrapper)) {
+			return null;
+		}
+		final RequestMetricsCollector requestMetrics = ((JettyServerWrapper) getServer())
+				.getRequestMetrics();
+		final UserIdentity.Scope scope = baseRequest.getUserIdentityScope();
+		if (requestMetrics == null || !(scope instanceof ServletHolder)) {
+			return null;
+		}
+		return requestMetrics.servletMetrics(contextName,
+				((ServletHolder) scope).getName());
+	}
+
 }
@@ -18,13 +18,26 @@ package org.ops4j.pax.web.service.jetty.internal;
 
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Server;
+import org.ops4j.pax.web.service.spi.Configuration;
 
 public interface JettyFactory {
 
-	JettyServer createServer();
+	/**
+	 * Creates a server, using the thread pool settings of the given
+	 * configuration.
+	 */
+	JettyServer createServer(Configuration configuration);
 
+	/**
+	 * Creates a connector.
+	 * 
+	 * @param acceptors
+	 *            number of acceptor threads, null for the default
+	 * @param selectors
+	 *            number of selector threads, null for the default
+	 */
 	Connector createConnector(Server server, String name, int port, String host, 
-			Boolean checkForwaredHeaders);
+			Boolean checkForwaredHeaders, Integer acceptors, Integer selectors);
 
 	/**
 	 * Creates a secure (SSL) connector.
@@ -41,6 +54,10 @@ public interface JettyFactory {
 	 *            keystore password.
 	 * @param host
 	 *            the address on which the secure port should listen
+	 * @param acceptors
+	 *            number of acceptor threads, null for the default
+	 * @param selectors
+	 *            number of selector threads, null for the default
 	 * 
 	 * @return a secure connector
 	 * 
@@ -49,6 +66,6 @@ public interface JettyFactory {
 	Connector createSecureConnector(Server server, String name, int port,
 			String sslKeystore, String sslPassword, String sslKeyPassword,
 			String host, String sslKeystoreType, boolean isClientAuthNeeded,
-			boolean isClientAuthWanted);
+			boolean isClientAuthWanted, Integer acceptors, Integer selectors);
 
 }
@@ -19,6 +19,7 @@ package org.ops4j.pax.web.service.jetty.internal;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
 
 import org.apache.commons.lang3.reflect.ConstructorUtils;
 import org.eclipse.jetty.server.AbstractConnectionFactory;
@@ -32,8 +33,13 @@ import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.BlockingArrayQueue;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
 import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.web.service.spi.Configuration;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetricsCollector;
 import org.ops4j.pax.web.service.spi.model.ServerModel;
 import org.osgi.framework.Bundle;
 import org.slf4j.Logger;
@@ -83,8 +89,55 @@ class JettyFactoryImpl implements JettyFactory {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public JettyServer createServer() {
-		return new JettyServerImpl(serverModel, bundle, handlers, connectors);
+	public JettyServer createServer(final Configuration configuration) {
+		final QueuedThreadPool queuedThreadPool = createQueuedThreadPool(configuration);
+		final String threadPoolFilter = configuration
+				.getServerThreadPoolFilter();
+		final ThreadPool threadPool;
+		if (threadPoolFilter != null && threadPoolFilter.trim().length() > 0
+				&& bundle != null) {
+			threadPool = new ServiceThreadPool(bundle.getBundleContext(),
+					threadPoolFilter, queuedThreadPool);
+		} else {
+			threadPool = queuedThreadPool;
+		}
+		final JettyServerImpl server = new JettyServerImpl(serverModel,
+				bundle, handlers, connectors, threadPool);
+		server.setConfiguration(configuration);
+		if (Boolean.TRUE.equals(configuration.isServerRequestMetricsEnabled())) {
+			server.setRequestMetrics(new RequestMetricsCollector());
+		}
+		return server;
+	}
+
+	QueuedThreadPool createQueuedThreadPool(final Configuration configuration) {
+		final QueuedThreadPool defaults = new QueuedThreadPool();
+		final int maxThreads = configuration.getServerMaxThreads() != null ? configuration
+				.getServerMaxThreads() : defaults.getMaxThreads();
+		int minThreads = configuration.getServerMinThreads() != null ? configuration
+				.getServerMinThreads() : defaults.getMinThreads();
+		if (minThreads > maxThreads) {
+			log.warn("Minimum of {} server threads exceeds the maximum of {}, using {} instead",
+					new Object[] { minThreads, maxThreads, maxThreads });
+			minThreads = maxThreads;
+		}
+		final int idleTimeout = configuration.getServerIdleTimeout() != null ? configuration
+				.getServerIdleTimeout() : defaults.getIdleTimeout();
+		final Integer queueSize = configuration.getServerQueueSize();
+		// a null queue is replaced by an unbounded one
+		final BlockingQueue<Runnable> queue;
+		if (queueSize != null && queueSize > 0) {
+			// grows by at least one slot, without idle threads to size the
+			// steps by
+			final int growBy = Math.max(1, Math.min(minThreads, queueSize));
+			queue = new BlockingArrayQueue<Runnable>(growBy, growBy, queueSize);
+		} else {
+			queue = null;
+		}
+		final QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads,
+				minThreads, idleTimeout, queue);
+		threadPool.setName("pax-web");
+		return threadPool;
 	}
 
 	/**
@@ -92,7 +145,8 @@ class JettyFactoryImpl implements JettyFactory {
 	 */
 	@Override
 	public ServerConnector createConnector(final Server server, final String name, final int port, final String host,
-			final Boolean checkForwaredHeaders) {
+			final Boolean checkForwaredHeaders, final Integer acceptors,
+			final Integer selectors) {
 
 		// HTTP Configuration
 		HttpConfiguration httpConfig = new HttpConfiguration();
@@ -148,7 +202,9 @@ class JettyFactoryImpl implements JettyFactory {
 		log.info("SPDY not available, creating standard ServerConnector for Http");
 
 		// HTTP connector
-		ServerConnector http = new ServerConnector(server, new HttpConnectionFactory(httpConfig));
+		ServerConnector http = new ServerConnector(server, acceptors == null ? -1
+				: acceptors, selectors == null ? -1 : selectors,
+				new HttpConnectionFactory(httpConfig));
 		http.setPort(port);
 		http.setHost(host);
 		http.setName(name);
@@ -163,7 +219,8 @@ class JettyFactoryImpl implements JettyFactory {
 	@Override
 	public ServerConnector createSecureConnector(Server server, final String name, final int port,
 			final String sslKeystore, final String sslPassword, final String sslKeyPassword, final String host,
-			final String sslKeystoreType, final boolean isClientAuthNeeded, final boolean isClientAuthWanted) {
+			final String sslKeystoreType, final boolean isClientAuthNeeded, final boolean isClientAuthWanted,
+			final Integer acceptors, final Integer selectors) {
 
 		// SSL Context Factory for HTTPS and SPDY
 		SslContextFactory sslContextFactory = new SslContextFactory();
@@ -246,6 +303,8 @@ class JettyFactoryImpl implements JettyFactory {
 		
 		 // HTTPS connector
 		ServerConnector https = new ServerConnector(server,
+				acceptors == null ? -1 : acceptors,
+				selectors == null ? -1 : selectors,
 				sslFactory,
 				httpConFactory);
 		for (AbstractConnectionFactory factory : connectionFactories) {
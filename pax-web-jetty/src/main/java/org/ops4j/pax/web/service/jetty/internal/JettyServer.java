@@ -94,6 +94,8 @@ public interface JettyServer {
 
 	void removeServlet(ServletModel model);
 
+	void remapServlet(ServletModel model);
+
 	void addEventListener(EventListenerModel eventListenerModel);
 
 	void removeEventListener(EventListenerModel eventListenerModel);
@@ -102,6 +104,8 @@ public interface JettyServer {
 
 	void removeFilter(FilterModel filterModel);
 
+	void remapFilter(FilterModel filterModel);
+
 	void addErrorPage(ErrorPageModel model);
 
 	void removeErrorPage(ErrorPageModel model);
@@ -18,6 +18,7 @@ package org.ops4j.pax.web.service.jetty.internal;
 
 import java.io.IOException;
 
+import javax.servlet.DispatcherType;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -28,6 +29,9 @@ import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.HandlerCollection;
 import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetrics;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetricsCollector;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetricsListener;
 import org.ops4j.pax.web.service.spi.model.ContextModel;
 import org.ops4j.pax.web.service.spi.model.ServerModel;
 import org.slf4j.Logger;
@@ -35,7 +39,7 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Jetty Handler collection that calls only the handler (=context) that matches
- * the request path after performing the substring based matching of requests
+ * the request path after performing the trie based matching of requests
  * path to registered aliases.
  * 
  * @author Alin Dreghiciu
@@ -74,10 +78,19 @@ class JettyServerHandlerCollection extends HandlerCollection {
 			final ContextHandler context = ((JettyServerWrapper) getServer())
 					.getContext(matched.getHttpContext());
 
+			final RequestMetricsCollector requestMetrics = ((JettyServerWrapper) getServer())
+					.getRequestMetrics();
+			// asynchronous dispatches belong to the initial request
+			final RequestMetrics metrics = requestMetrics != null
+					&& baseRequest.getDispatcherType() == DispatcherType.REQUEST ? requestMetrics
+					.contextMetrics(matched.getContextName()) : null;
+			final long start = metrics != null ? metrics.requestStarted() : 0;
+			boolean failed = true;
 			try {
 				NullArgumentException.validateNotNull(context,
 						"Found context is Null");
 				context.handle(target, baseRequest, request, response);
+				failed = false;
 
 				//CHECKSTYLE:OFF
 			} catch (EofException e) { 
@@ -86,6 +99,11 @@ class JettyServerHandlerCollection extends HandlerCollection {
 				throw e;
 			} catch (Exception e) { 
 				throw new ServletException(e);
+			} finally {
+				if (metrics != null) {
+					RequestMetricsListener.requestHandled(metrics, start,
+							request, response, failed);
+				}
 			}
 			//CHECKSTYLE:ON
 
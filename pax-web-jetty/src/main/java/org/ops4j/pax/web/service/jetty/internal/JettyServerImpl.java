@@ -26,6 +26,7 @@ import java.util.Arrays;
 import java.util.EventListener;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
 import java.util.concurrent.Callable;
 
 import javax.servlet.ServletContextEvent;
@@ -35,6 +36,7 @@ import org.eclipse.jetty.jmx.MBeanContainer;
 import org.eclipse.jetty.security.ConstraintMapping;
 import org.eclipse.jetty.security.ConstraintSecurityHandler;
 import org.eclipse.jetty.security.SecurityHandler;
+import org.eclipse.jetty.server.AbstractNCSARequestLog;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.NCSARequestLog;
@@ -51,10 +53,13 @@ import org.eclipse.jetty.servlet.ServletMapping;
 import org.eclipse.jetty.util.LazyList;
 import org.eclipse.jetty.util.security.Constraint;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
 import org.eclipse.jetty.xml.XmlConfiguration;
 import org.ops4j.pax.swissbox.core.BundleClassLoader;
 import org.ops4j.pax.swissbox.core.ContextClassLoaderUtils;
+import org.ops4j.pax.web.service.spi.Configuration;
 import org.ops4j.pax.web.service.spi.LifeCycle;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetricsCollector;
 import org.ops4j.pax.web.service.spi.model.ContainerInitializerModel;
 import org.ops4j.pax.web.service.spi.model.ContextModel;
 import org.ops4j.pax.web.service.spi.model.ErrorPageModel;
@@ -65,6 +70,7 @@ import org.ops4j.pax.web.service.spi.model.SecurityConstraintMappingModel;
 import org.ops4j.pax.web.service.spi.model.ServerModel;
 import org.ops4j.pax.web.service.spi.model.ServletModel;
 import org.ops4j.pax.web.service.spi.model.WelcomeFileModel;
+import org.ops4j.pax.web.service.spi.util.AsyncLogWriter;
 import org.ops4j.pax.web.service.spi.util.ResourceDelegatingBundleClassLoader;
 import org.osgi.framework.Bundle;
 import org.osgi.service.http.HttpContext;
@@ -86,7 +92,12 @@ class JettyServerImpl implements JettyServer {
 	}
 	
 	JettyServerImpl(final ServerModel serverModel, Bundle bundle, List<Handler> handlers, List<Connector> connectors) {
-		server = new JettyServerWrapper(serverModel, new QueuedThreadPool());
+		this(serverModel, bundle, handlers, connectors, new QueuedThreadPool());
+	}
+
+	JettyServerImpl(final ServerModel serverModel, Bundle bundle, List<Handler> handlers, List<Connector> connectors,
+			ThreadPool threadPool) {
+		server = new JettyServerWrapper(serverModel, threadPool);
 		this.bundle = bundle;
 		
 		if (connectors != null) {
@@ -166,6 +177,12 @@ class JettyServerImpl implements JettyServer {
 
 			//CHECKSTYLE:ON
 
+			final RequestMetricsCollector requestMetrics = server
+					.getRequestMetrics();
+			if (requestMetrics != null && bundle != null) {
+				requestMetrics.register(bundle.getBundleContext());
+			}
+
 			Connector[] connectors = server.getConnectors();
 			if (connectors != null) {
 				for (Connector connector : connectors) {
@@ -192,6 +209,9 @@ class JettyServerImpl implements JettyServer {
 		LOG.debug("Stopping " + this);
 		try {
 			server.stop();
+			if (server.getRequestMetrics() != null) {
+				server.getRequestMetrics().close();
+			}
 			Handler[] childHandlers = server.getChildHandlers();
 			for (Handler handler : childHandlers) {
 				handler.stop();
@@ -204,6 +224,27 @@ class JettyServerImpl implements JettyServer {
 		//CHECKSTYLE:ON
 	}
 
+	/**
+	 * Enables the request metrics of the server.
+	 * 
+	 * @param requestMetrics
+	 *            collector of the metrics, null to disable them
+	 */
+	void setRequestMetrics(final RequestMetricsCollector requestMetrics) {
+		server.setRequestMetrics(requestMetrics);
+	}
+
+	/**
+	 * Sets the configuration the per context settings (e.g. compression) are
+	 * derived from.
+	 * 
+	 * @param configuration
+	 *            server configuration
+	 */
+	void setConfiguration(final Configuration configuration) {
+		server.setConfiguration(configuration);
+	}
+
 	@Override
 	public void addConnector(final Connector connector) {
 		LOG.info("Pax Web available at [{}]:[{}]",
@@ -282,15 +323,7 @@ class JettyServerImpl implements JettyServer {
 	@Override
 	public void addServlet(final ServletModel model) {
 		LOG.debug("Adding servlet [" + model + "]");
-		final ServletMapping mapping = new ServletMapping();
-		mapping.setServletName(model.getName());
-		mapping.setPathSpecs(model.getUrlPatterns());
-
-		if (model instanceof ResourceModel
-				&& "default".equalsIgnoreCase(model.getName())) {
-			// this is a default resource
-			mapping.setDefault(true);
-		}
+		final ServletMapping mapping = createServletMapping(model);
 
 		final ServletContextHandler context = server.getOrCreateContext(model);
 		final ServletHandler servletHandler = context.getServletHandler();
@@ -348,6 +381,54 @@ class JettyServerImpl implements JettyServer {
 		//CHECKSTYLE:ON
 	}
 
+	private static ServletMapping createServletMapping(final ServletModel model) {
+		final ServletMapping mapping = new ServletMapping();
+		mapping.setServletName(model.getName());
+		mapping.setPathSpecs(model.getUrlPatterns());
+
+		if (model instanceof ResourceModel
+				&& "default".equalsIgnoreCase(model.getName())) {
+			// this is a default resource
+			mapping.setDefault(true);
+		}
+		return mapping;
+	}
+
+	/**
+	 * Replaces the mapping of a servlet, which keeps its holder and so stays
+	 * initialized. A started servlet handler updates its path map on setting
+	 * the mappings.
+	 */
+	@Override
+	public void remapServlet(final ServletModel model) {
+		LOG.debug("Remapping servlet [" + model + "]");
+		final ServletContextHandler context = server.getContext(model
+				.getContextModel().getHttpContext());
+		if (context == null) {
+			return; // context is already removed so nothing is mapped
+		}
+		final ServletHandler servletHandler = context.getServletHandler();
+		final ServletMapping[] mappings = servletHandler.getServletMappings();
+		final List<ServletMapping> newMappings = new ArrayList<ServletMapping>();
+		boolean remapped = false;
+		if (mappings != null) {
+			for (ServletMapping mapping : mappings) {
+				if (!model.getName().equals(mapping.getServletName())) {
+					newMappings.add(mapping);
+				} else if (!remapped) {
+					// keeps the position of the former mapping
+					newMappings.add(createServletMapping(model));
+					remapped = true;
+				}
+			}
+		}
+		if (!remapped) {
+			throw new IllegalStateException(model + " was not found");
+		}
+		servletHandler.setServletMappings(newMappings
+				.toArray(new ServletMapping[newMappings.size()]));
+	}
+
 	@Override
 	public void removeServlet(final ServletModel model) {
 		LOG.debug("Removing servlet [" + model + "]");
@@ -414,6 +495,11 @@ class JettyServerImpl implements JettyServer {
 					}
 					//CHECKSTYLE:ON
 				}
+				if (server.getRequestMetrics() != null) {
+					server.getRequestMetrics().removeServletMetrics(
+							model.getContextModel().getContextName(),
+							holder.getName());
+				}
 			}
 		}
 		if (servletHandler.getServlets() == null
@@ -462,40 +548,7 @@ class JettyServerImpl implements JettyServer {
 	@Override
 	public void addFilter(final FilterModel model) {
 		LOG.debug("Adding filter model [" + model + "]");
-		final FilterMapping mapping = new FilterMapping();
-		mapping.setFilterName(model.getName());
-		if (model.getUrlPatterns() != null && model.getUrlPatterns().length > 0) {
-			mapping.setPathSpecs(model.getUrlPatterns());
-		}
-		if (model.getServletNames() != null
-				&& model.getServletNames().length > 0) {
-			mapping.setServletNames(model.getServletNames());
-		}
-		// set-up dispatcher
-		int dispatcher = FilterMapping.DEFAULT;
-		for (String d : model.getDispatcher()) {
-			//dispatcher = FilterMapping.dispatch(baseRequest.getDispatcherType());
-			/*
-			DispatcherType type = DispatcherType.valueOf(d);
-			dispatcher |= FilterMapping.dispatch(type);
-			*/
-			if ("ALL".equalsIgnoreCase(d)) {
-				dispatcher |= FilterMapping.ALL;
-			} else if ("ASYNC".equalsIgnoreCase(d)) {
-				dispatcher |= FilterMapping.ASYNC;
-			} else if ("DEFAULT".equalsIgnoreCase(d)) {
-				dispatcher |= FilterMapping.DEFAULT;
-			} else if ("ERROR".equalsIgnoreCase(d)) {
-				dispatcher |= FilterMapping.ERROR;
-			} else if ("FORWARD".equalsIgnoreCase(d)) {
-				dispatcher |= FilterMapping.FORWARD;
-			} else if ("INCLUDE".equalsIgnoreCase(d)) {
-				dispatcher |= FilterMapping.INCLUDE;
-			} else if ("REQUEST".equalsIgnoreCase(d)) {
-				dispatcher |= FilterMapping.REQUEST;
-			}
-		}
-		mapping.setDispatches(dispatcher);
+		final FilterMapping mapping = createFilterMapping(model);
 
 		final ServletContextHandler context = server.getOrCreateContext(model);
 		final ServletHandler servletHandler = context.getServletHandler();
@@ -538,6 +591,78 @@ class JettyServerImpl implements JettyServer {
 		//CHECKSTYLE:OFF
 	}
 
+	private static FilterMapping createFilterMapping(final FilterModel model) {
+		final FilterMapping mapping = new FilterMapping();
+		mapping.setFilterName(model.getName());
+		if (model.getUrlPatterns() != null && model.getUrlPatterns().length > 0) {
+			mapping.setPathSpecs(model.getUrlPatterns());
+		}
+		if (model.getServletNames() != null
+				&& model.getServletNames().length > 0) {
+			mapping.setServletNames(model.getServletNames());
+		}
+		// set-up dispatcher
+		int dispatcher = FilterMapping.DEFAULT;
+		for (String d : model.getDispatcher()) {
+			//dispatcher = FilterMapping.dispatch(baseRequest.getDispatcherType());
+			/*
+			DispatcherType type = DispatcherType.valueOf(d);
+			dispatcher |= FilterMapping.dispatch(type);
+			*/
+			if ("ALL".equalsIgnoreCase(d)) {
+				dispatcher |= FilterMapping.ALL;
+			} else if ("ASYNC".equalsIgnoreCase(d)) {
+				dispatcher |= FilterMapping.ASYNC;
+			} else if ("DEFAULT".equalsIgnoreCase(d)) {
+				dispatcher |= FilterMapping.DEFAULT;
+			} else if ("ERROR".equalsIgnoreCase(d)) {
+				dispatcher |= FilterMapping.ERROR;
+			} else if ("FORWARD".equalsIgnoreCase(d)) {
+				dispatcher |= FilterMapping.FORWARD;
+			} else if ("INCLUDE".equalsIgnoreCase(d)) {
+				dispatcher |= FilterMapping.INCLUDE;
+			} else if ("REQUEST".equalsIgnoreCase(d)) {
+				dispatcher |= FilterMapping.REQUEST;
+			}
+		}
+		mapping.setDispatches(dispatcher);
+		return mapping;
+	}
+
+	/**
+	 * Replaces the mapping of a filter, which keeps its holder and its
+	 * position in the filter chains.
+	 */
+	@Override
+	public void remapFilter(final FilterModel model) {
+		LOG.debug("Remapping filter model [" + model + "]");
+		final ServletContextHandler context = server.getContext(model
+				.getContextModel().getHttpContext());
+		if (context == null) {
+			return; // context is already removed so nothing is mapped
+		}
+		final ServletHandler servletHandler = context.getServletHandler();
+		final FilterMapping[] filterMappings = servletHandler
+				.getFilterMappings();
+		final List<FilterMapping> newFilterMappings = new ArrayList<FilterMapping>();
+		boolean remapped = false;
+		if (filterMappings != null) {
+			for (FilterMapping filterMapping : filterMappings) {
+				if (!model.getName().equals(filterMapping.getFilterName())) {
+					newFilterMappings.add(filterMapping);
+				} else if (!remapped) {
+					newFilterMappings.add(createFilterMapping(model));
+					remapped = true;
+				}
+			}
+		}
+		if (!remapped) {
+			throw new IllegalStateException(model + " was not found");
+		}
+		servletHandler.setFilterMappings(newFilterMappings
+				.toArray(new FilterMapping[newFilterMappings.size()]));
+	}
+
 	@Override
 	public void removeFilter(FilterModel model) {
 		LOG.debug("Removing filter model [" + model + "]");
@@ -789,9 +914,22 @@ class JettyServerImpl implements JettyServer {
 			directory += "/";
 		}
 
-		NCSARequestLog requestLog = new NCSARequestLog(directory + configureRequestParameters.format);
-		requestLog.setRetainDays(Integer.parseInt(configureRequestParameters.retainDays));
-		requestLog.setAppend(configureRequestParameters.append);
+		AbstractNCSARequestLog requestLog;
+		if (Boolean.TRUE.equals(configureRequestParameters.async)) {
+			LOG.info("NCSARequestlogging is written asynchronously");
+			requestLog = new AsyncRequestLog(new AsyncLogWriter(file,
+					configureRequestParameters.format,
+					Integer.parseInt(configureRequestParameters.retainDays),
+					configureRequestParameters.append,
+					TimeZone.getTimeZone(configureRequestParameters.timeZone),
+					configureRequestParameters.bufferSize != null ? configureRequestParameters.bufferSize
+							: AsyncLogWriter.DEFAULT_CAPACITY));
+		} else {
+			NCSARequestLog ncsaRequestLog = new NCSARequestLog(directory + configureRequestParameters.format);
+			ncsaRequestLog.setRetainDays(Integer.parseInt(configureRequestParameters.retainDays));
+			ncsaRequestLog.setAppend(configureRequestParameters.append);
+			requestLog = ncsaRequestLog;
+		}
 		requestLog.setExtended(configureRequestParameters.extend);
 		requestLog.setLogDispatch(configureRequestParameters.dispatch);
 		requestLog.setLogTimeZone(configureRequestParameters.timeZone);
@@ -16,16 +16,11 @@
  */
 package org.ops4j.pax.web.service.jetty.internal;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.lang.annotation.Annotation;
 import java.net.URL;
 import java.util.Dictionary;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.IdentityHashMap;
 import java.util.List;
@@ -37,10 +32,7 @@ import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.servlet.ServletContainerInitializer;
-import javax.servlet.annotation.HandlesTypes;
 
-import org.apache.xbean.finder.BundleAnnotationFinder;
-import org.apache.xbean.finder.BundleAssignableClassFinder;
 import org.eclipse.jetty.security.Authenticator;
 import org.eclipse.jetty.security.SecurityHandler;
 import org.eclipse.jetty.security.authentication.BasicAuthenticator;
@@ -53,6 +45,7 @@ import org.eclipse.jetty.server.HandlerContainer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.SessionIdManager;
 import org.eclipse.jetty.server.SessionManager;
+import org.eclipse.jetty.server.UserIdentity;
 import org.eclipse.jetty.server.handler.HandlerCollection;
 import org.eclipse.jetty.server.session.AbstractSessionIdManager;
 import org.eclipse.jetty.server.session.AbstractSessionManager;
@@ -65,19 +58,20 @@ import org.eclipse.jetty.util.security.Constraint;
 import org.eclipse.jetty.util.thread.ThreadPool;
 import org.ops4j.pax.swissbox.core.BundleUtils;
 import org.ops4j.pax.web.service.WebContainerConstants;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetricsCollector;
+import org.ops4j.pax.web.service.spi.Configuration;
 import org.ops4j.pax.web.service.spi.model.ContextModel;
 import org.ops4j.pax.web.service.spi.model.Model;
 import org.ops4j.pax.web.service.spi.model.ServerModel;
-import org.ops4j.pax.web.utils.ClassPathUtil;
+import org.ops4j.pax.web.service.spi.session.SessionStoreConfig;
+import org.ops4j.pax.web.service.spi.util.CompressionConfig;
+import org.ops4j.pax.web.service.spi.util.CredentialCache;
+import org.ops4j.pax.web.service.spi.util.ServletContainerInitializerScanner;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
-import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkUtil;
-import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.service.http.HttpContext;
-import org.osgi.service.packageadmin.PackageAdmin;
-import org.osgi.util.tracker.ServiceTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -138,7 +132,18 @@ class JettyServerWrapper extends Server {
 	private final Lock readLock = rwLock.readLock();
 	private final Lock writeLock = rwLock.writeLock();
 	private Bundle jettyBundle;
-	private ServiceTracker<PackageAdmin, PackageAdmin> packageAdminTracker;
+	/**
+	 * Discovers the ServletContainerInitializers of the context bundles.
+	 */
+	private final ServletContainerInitializerScanner initializerScanner;
+	/**
+	 * Collects the request metrics, null if disabled.
+	 */
+	private volatile RequestMetricsCollector requestMetrics;
+	/**
+	 * Server configuration, source of the compression settings.
+	 */
+	private Configuration configuration;
 
 	JettyServerWrapper(ServerModel serverModel, ThreadPool threadPool) {
 		super(threadPool);
@@ -146,24 +151,23 @@ class JettyServerWrapper extends Server {
 		setHandler(new JettyServerHandlerCollection(serverModel));
 
 		jettyBundle = FrameworkUtil.getBundle(getClass());
+		initializerScanner = new ServletContainerInitializerScanner(jettyBundle);
 
-		if (jettyBundle != null) {
-			Filter filterPackage = null;
-			try {
-				filterPackage = jettyBundle
-						.getBundleContext()
-						.createFilter(
-								"(objectClass=org.osgi.service.packageadmin.PackageAdmin)");
-			} catch (InvalidSyntaxException e) {
-				LOG.error(
-						"InvalidSyntaxException while waiting for PackageAdmin Service",
-						e);
-			}
-			packageAdminTracker = new ServiceTracker<PackageAdmin, PackageAdmin>(
-					jettyBundle.getBundleContext(), filterPackage, null);
-			packageAdminTracker.open();
-		}
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		initializerScanner.open();
+		super.doStart();
+	}
 
+	@Override
+	protected void doStop() throws Exception {
+		try {
+			super.doStop();
+		} finally {
+			initializerScanner.close();
+		}
 	}
 
 	public void configureContext(final Map<String, Object> attributes,
@@ -184,6 +188,18 @@ class JettyServerWrapper extends Server {
 		this.storeDirectory = directory;
 	}
 
+	RequestMetricsCollector getRequestMetrics() {
+		return requestMetrics;
+	}
+
+	void setRequestMetrics(final RequestMetricsCollector requestMetrics) {
+		this.requestMetrics = requestMetrics;
+	}
+
+	void setConfiguration(final Configuration configuration) {
+		this.configuration = configuration;
+	}
+
 	HttpServiceContext getContext(final HttpContext httpContext) {
 		readLock.lock();
 		try {
@@ -281,114 +297,27 @@ class JettyServerWrapper extends Server {
 			sch.getErrorHandler().setServer(null);
 			((HandlerCollection) getHandler()).removeHandler(sch);
 			sch.destroy();
+			if (requestMetrics != null) {
+				requestMetrics.removeContextMetrics(sch.getContextName());
+			}
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	private HttpServiceContext addContext(final ContextModel model) {
 		Bundle bundle = model.getBundle();
 		BundleContext bundleContext = BundleUtils.getBundleContext(bundle);
 		// scan for ServletContainerInitializers
-		Set<Bundle> bundlesInClassSpace = ClassPathUtil.getBundlesInClassSpace(
-				bundle, new HashSet<Bundle>());
-
-		if (jettyBundle != null) {
-			ClassPathUtil.getBundlesInClassSpace(jettyBundle,
-					bundlesInClassSpace);
-		}
-
-		for (URL u : ClassPathUtil.findResources(bundlesInClassSpace,
-				"/META-INF/services",
-				"javax.servlet.ServletContainerInitializer", true)) {
-			try {
-				InputStream is = u.openStream();
-				BufferedReader reader = new BufferedReader(
-						new InputStreamReader(is));
-				// only the first line is read, it contains the name of the
-				// class.
-				String className = reader.readLine();
-				LOG.info("will add {} to ServletContainerInitializers",
-						className);
-
-				if (className.endsWith("JasperInitializer")) {
-					LOG.info(
-							"Skipt {}, because specialized handler will be present",
-							className);
-					continue;
-				}
-
-				Class<?> initializerClass;
-
-				try {
-					initializerClass = bundle.loadClass(className);
-				} catch (ClassNotFoundException ignore) {
-					initializerClass = jettyBundle.loadClass(className);
-				}
-
-				// add those to the model contained ones
-				Map<ServletContainerInitializer, Set<Class<?>>> containerInitializers = model
-						.getContainerInitializers();
-
-				ServletContainerInitializer initializer = (ServletContainerInitializer) initializerClass
-						.newInstance();
-
-				if (containerInitializers == null) {
-					containerInitializers = new HashMap<ServletContainerInitializer, Set<Class<?>>>();
-					model.setContainerInitializers(containerInitializers);
-				}
-
-				Set<Class<?>> setOfClasses = new HashSet<Class<?>>();
-				// scan for @HandlesTypes
-				HandlesTypes handlesTypes = initializerClass
-						.getAnnotation(HandlesTypes.class);
-				if (handlesTypes != null) {
-					Class<?>[] classes = handlesTypes.value();
-
-					for (Class<?> klass : classes) {
-						boolean isAnnotation = klass.isAnnotation();
-						boolean isInteraface = klass.isInterface();
-
-						if (isAnnotation) {
-							try {
-								BundleAnnotationFinder baf = new BundleAnnotationFinder(
-										packageAdminTracker.getService(),
-										bundle);
-								List<Class<?>> annotatedClasses = baf
-										.findAnnotatedClasses((Class<? extends Annotation>) klass);
-								setOfClasses.addAll(annotatedClasses);
-							} catch (Exception e) {
-								LOG.warn(
-										"Failed to find annotated classes for ServletContainerInitializer",
-										e);
-							}
-						} else if (isInteraface) {
-							BundleAssignableClassFinder basf = new BundleAssignableClassFinder(
-									packageAdminTracker.getService(),
-									new Class[] { klass }, bundle);
-							Set<String> interfaces = basf.find();
-							for (String interfaceName : interfaces) {
-								setOfClasses.add(bundle
-										.loadClass(interfaceName));
-							}
-						} else {
-							// class
-							BundleAssignableClassFinder basf = new BundleAssignableClassFinder(
-									packageAdminTracker.getService(),
-									new Class[] { klass }, bundle);
-							Set<String> classNames = basf.find();
-							for (String klassName : classNames) {
-								setOfClasses.add(bundle
-									.loadClass(klassName));
-							}
-						}
-					}
-				}
-				containerInitializers.put(initializer, setOfClasses);
-				LOG.info("added ServletContainerInitializer: {}", className);
-			} catch (ClassNotFoundException | InstantiationException
-					| IllegalAccessException | IOException e) {
-				LOG.warn("failed to parse and instantiate of javax.servlet.ServletContainerInitializer in classpath");
+		Map<ServletContainerInitializer, Set<Class<?>>> discovered = initializerScanner
+				.scan(bundle);
+		if (!discovered.isEmpty()) {
+			// add those to the model contained ones
+			Map<ServletContainerInitializer, Set<Class<?>>> containerInitializers = model
+					.getContainerInitializers();
+			if (containerInitializers == null) {
+				containerInitializers = new HashMap<ServletContainerInitializer, Set<Class<?>>>();
+				model.setContainerInitializers(containerInitializers);
 			}
+			containerInitializers.putAll(discovered);
 		}
 
 		HttpServiceContext context = new HttpServiceContext(
@@ -398,6 +327,11 @@ class JettyServerWrapper extends Server {
 				model.getContainerInitializers(), model.getJettyWebXmlURL(),
 				model.getVirtualHosts());
 		context.setClassLoader(model.getClassLoader());
+		final CompressionConfig compression = CompressionConfig.create(
+				configuration, model.getContextParams());
+		if (compression != null && compression.isEnabled()) {
+			context.insertHandler(new CompressionHandler(compression));
+		}
 		Integer modelSessionTimeout = model.getSessionTimeout();
 		if (modelSessionTimeout == null) {
 			modelSessionTimeout = sessionTimeout;
@@ -434,11 +368,16 @@ class JettyServerWrapper extends Server {
 				modelSessionCookie, modelSessionDomain, modelSessionPath,
 				modelSessionUrl, modelSessionCookieHttpOnly,
 				modelSessionSecure, workerName, lazyLoad, storeDirectory);
+		configureSessionStore(context, model.getContextName(),
+				SessionStoreConfig.create(configuration,
+						model.getContextParams()));
 
 		if (model.getRealmName() != null && model.getAuthMethod() != null) {
 			configureSecurity(context, model.getRealmName(),
 					model.getAuthMethod(), model.getFormLoginPage(),
-					model.getFormErrorPage());
+					model.getFormErrorPage(), CredentialCache
+							.<UserIdentity> create(configuration,
+									model.getContextParams()));
 		}
 
 		LOG.debug("Added servlet context: " + context);
@@ -505,10 +444,12 @@ class JettyServerWrapper extends Server {
 	 * @param authMethod
 	 * @param formLoginPage
 	 * @param formErrorPage
+	 * @param credentialCache
+	 *            cache of the verified credentials, null if not cached
 	 */
 	private void configureSecurity(ServletContextHandler context,
 			String realmName, String authMethod, String formLoginPage,
-			String formErrorPage) {
+			String formErrorPage, CredentialCache<UserIdentity> credentialCache) {
 		final SecurityHandler securityHandler = context.getSecurityHandler();
 
 		Authenticator authenticator = null;
@@ -525,6 +466,11 @@ class JettyServerWrapper extends Server {
 				break;
 			case Constraint.__BASIC_AUTH:
 				authenticator = new BasicAuthenticator();
+				if (credentialCache != null) {
+					// a password is verified on every request
+					securityHandler.setLoginService(new CachingLoginService(
+							securityHandler, credentialCache));
+				}
 				break;
 			case Constraint.__DIGEST_AUTH:
 				authenticator = new DigestAuthenticator();
@@ -705,6 +651,35 @@ class JettyServerWrapper extends Server {
 		}
 	}
 
+	/**
+	 * Lets the session manager of a context swap idle sessions out of memory.
+	 * 
+	 * @param context
+	 *            the context
+	 * @param contextName
+	 *            name of the context
+	 * @param config
+	 *            eviction settings, null if idle sessions stay in memory
+	 */
+	private void configureSessionStore(final ServletContextHandler context,
+			final String contextName, final SessionStoreConfig config) {
+		if (config == null) {
+			return;
+		}
+		final SessionHandler sessionHandler = context.getSessionHandler();
+		final SessionManager sessionManager = sessionHandler == null ? null
+				: sessionHandler.getSessionManager();
+		if (sessionManager instanceof LateInvalidatingHashSessionManager) {
+			((LateInvalidatingHashSessionManager) sessionManager)
+					.setSessionStore(config, contextName);
+			LOG.debug("Idle sessions swapped out after {} seconds for context [{}]",
+					config.getIdleTime(), context);
+		} else {
+			LOG.info("Idle sessions of context [{}] stay in memory, its session manager cannot swap them out",
+					context);
+		}
+	}
+
 	/**
 	 * @param serverConfigDir
 	 *            the serverConfigDir to set
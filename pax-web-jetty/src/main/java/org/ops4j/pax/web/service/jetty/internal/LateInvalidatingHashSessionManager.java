@@ -1,31 +1,199 @@
 package org.ops4j.pax.web.service.jetty.internal;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 import org.eclipse.jetty.server.session.AbstractSession;
 import org.eclipse.jetty.server.session.HashSessionIdManager;
 import org.eclipse.jetty.server.session.HashSessionManager;
 import org.eclipse.jetty.server.session.HashedSession;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.ops4j.pax.web.service.spi.session.SessionStore;
+import org.ops4j.pax.web.service.spi.session.SessionStoreConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Hash session manager extension that scavenges sessions only when all sessions
  * with the same session id are ready for scavenge.
- * 
+ * <p>
+ * Sessions are kept in an expiry ordered queue owned by this manager, so a
+ * scavenge pass only examines the sessions which are due (to expire or to be
+ * idled) instead of all sessions, and passes of different managers do not
+ * block each other.
+ * <p>
+ * If a {@link SessionStoreConfig} is set, idle sessions are swapped out to a
+ * {@link SessionStore} instead of the store directory, and swapped back in
+ * when accessed.
+ *
  * @author Marc Klinger - mklinger[at]nightlabs[dot]de
  */
 public class LateInvalidatingHashSessionManager extends HashSessionManager {
 	private static final Logger LOG = LoggerFactory
 			.getLogger(LateInvalidatingHashSessionManager.class);
 
+	/**
+	 * Delay after which sessions without expiry are looked at again, in case
+	 * their max inactive interval was changed.
+	 */
+	private static final long RECHECK_MS = 60 * 1000L;
+
+	// invisible members of Jetty's session classes, looked up once
+	private static final Method TIMEOUT = accessible(method(
+			AbstractSession.class, "timeout"));
+	private static final Method SAVE = accessible(method(HashedSession.class,
+			"save", Boolean.TYPE));
+	private static final Field ACCESSED = accessible(field(
+			AbstractSession.class, "_accessed"));
+	private static final Field LAST_ACCESSED = accessible(field(
+			AbstractSession.class, "_lastAccessed"));
+
+	/**
+	 * Sessions to be checked, ordered by the time they are due. Only touched
+	 * by the scavenging thread.
+	 */
+	private final Queue<Due> dueQueue = new PriorityQueue<Due>();
+	/**
+	 * Sessions present in {@link #dueQueue}.
+	 */
+	private final Map<HashedSession, Boolean> tracked = new IdentityHashMap<HashedSession, Boolean>();
+	/**
+	 * Sessions added since the last pass, handed over by request threads.
+	 */
+	private final Queue<HashedSession> added = new ConcurrentLinkedQueue<HashedSession>();
+	/**
+	 * Sessions removed since the last pass, handed over by request threads.
+	 */
+	private final Queue<HashedSession> removed = new ConcurrentLinkedQueue<HashedSession>();
+	private final AtomicBoolean scavenging = new AtomicBoolean();
+
+	private final AtomicLong scavengeCount = new AtomicLong();
+	private final AtomicLong sessionsExamined = new AtomicLong();
+	private final AtomicLong sessionsTimedOut = new AtomicLong();
+	private volatile long lastScavengeDurationMs;
+	private volatile int lastSessionsExamined;
+
+	private volatile SessionStoreConfig sessionStoreConfig;
+	private volatile String contextName;
+	/**
+	 * Store of the idle sessions, null if idle sessions are kept in memory.
+	 */
+	private volatile SessionStore sessionStore;
+
+	/**
+	 * Sets where idle sessions are swapped out to, taken into account when
+	 * this manager is started.
+	 *
+	 * @param config
+	 *            eviction settings, null to keep idle sessions in memory
+	 * @param name
+	 *            name of the context of this manager
+	 */
+	public void setSessionStore(final SessionStoreConfig config,
+			final String name) {
+		this.sessionStoreConfig = config;
+		this.contextName = name;
+	}
+
+	@Override
+	public void doStart() throws Exception {
+		final SessionStoreConfig config = sessionStoreConfig;
+		if (config != null) {
+			try {
+				sessionStore = config.createSessionStore(contextName);
+				setIdleSavePeriod(config.getIdleTime());
+			} catch (IOException e) {
+				LOG.warn("Cannot create session store, idle sessions of "
+						+ contextName + " are kept in memory", e);
+				setIdleSavePeriod(0);
+			}
+		}
+		super.doStart();
+	}
+
+	@Override
+	public void doStop() throws Exception {
+		try {
+			super.doStop();
+		} finally {
+			final SessionStore store = sessionStore;
+			sessionStore = null;
+			if (store != null) {
+				try {
+					store.close();
+				} catch (IOException e) {
+					LOG.warn("Cannot close session store", e);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected AbstractSession newSession(final HttpServletRequest request) {
+		final SessionStore store = sessionStore;
+		return store == null ? super.newSession(request) : new StoredSession(
+				store, request);
+	}
+
+	@Override
+	protected AbstractSession newSession(final long created,
+			final long accessed, final String clusterId) {
+		final SessionStore store = sessionStore;
+		return store == null ? super.newSession(created, accessed, clusterId)
+				: new StoredSession(store, created, accessed, clusterId);
+	}
+
+	@Override
+	protected void shutdownSessions() throws Exception {
+		final File storeDir = getStoreDirectory();
+		if (sessionStore != null && isStopping() && storeDir != null
+				&& storeDir.exists() && storeDir.canWrite()) {
+			// Jetty only saves the sessions which are not idled
+			for (HashedSession session : _sessions.values()) {
+				session.deIdle();
+			}
+		}
+		super.shutdownSessions();
+	}
+
+	@Override
+	protected void addSession(AbstractSession session) {
+		super.addSession(session);
+		if (session instanceof HashedSession) {
+			added.add((HashedSession) session);
+		}
+	}
+
+	@Override
+	protected boolean removeSession(final String clusterId) {
+		final HashedSession session = _sessions.get(clusterId);
+		final boolean done = super.removeSession(clusterId);
+		if (done && session != null) {
+			removed.add(session);
+		}
+		return done;
+	}
+
 	/**
 	 * This is a hack that sets the accessed and lastAccessed fields in
 	 * HashedSession for all sessions with the same id when not all sessions are
@@ -37,49 +205,47 @@ public class LateInvalidatingHashSessionManager extends HashSessionManager {
 		if (isStopping() || isStopped()) {
 			return;
 		}
+		// passes of one manager never overlap, there is nothing to wait for
+		if (!scavenging.compareAndSet(false, true)) {
+			return;
+		}
 
 		final Thread thread = Thread.currentThread();
 		final ClassLoader oldClazzLoader = thread.getContextClassLoader();
+		final long start = System.nanoTime();
+		int examined = 0;
 		try {
 			if (_loader != null) {
 				thread.setContextClassLoader(_loader);
 			}
 
-			synchronized (LateInvalidatingHashSessionManager.class) {
-				final long now = System.currentTimeMillis();
-				for (final HashedSession session : _sessions.values()) {
-					final long idleTime = session.getMaxInactiveInterval() * 1000;
-					if (isTimeoutCandidate(session, idleTime, now)) {
-						if (_sessionIdManager instanceof HashSessionIdManager) {
-							final Collection<AbstractSession> sessionsWithId = getSessionsWithId(session
-									.getId());
-							if (sessionsWithId == null
-									|| sessionsWithId.size() < 1) {
-								throw new IllegalStateException();
-							}
-							if (areAllTimeoutCandidates(sessionsWithId,
-									idleTime, now)) {
-								LOG.info("Timing out for "
-										+ sessionsWithId.size()
-										+ " session(s) with id "
-										+ session.getId());
-								for (AbstractSession sessionToTimeout : sessionsWithId) {
-									sessionTimeout(sessionToTimeout);
-								}
-							} else {
-								LOG.info("Extending timeout for "
-										+ sessionsWithId.size()
-										+ " session(s) with id "
-										+ session.getId());
-								setLatestLastAccessed(sessionsWithId);
-							}
-						} else {
-							sessionTimeout(session);
-						}
-					} else if (getIdleSavePeriodMs() > 0
-							&& session.getAccessed() + getIdleSavePeriodMs() < now) {
-						session.idle();
-					}
+			final long now = System.currentTimeMillis();
+			track(now);
+			final long idleSavePeriodMs = getIdleSavePeriod() * 1000L;
+			Due due;
+			while ((due = dueQueue.peek()) != null && due.time <= now) {
+				dueQueue.poll();
+				examined++;
+				final HashedSession session = due.session;
+				if (_sessions.get(session.getClusterId()) != session) {
+					// invalidated or removed meanwhile
+					tracked.remove(session);
+					continue;
+				}
+				boolean done;
+				try {
+					done = examine(session, idleSavePeriodMs, now);
+				} catch (RuntimeException e) {
+					// keep the session queued, it is looked at again later
+					LOG.warn("Problem scavenging session " + session.getId(),
+							e);
+					done = false;
+				}
+				if (done) {
+					tracked.remove(session);
+				} else {
+					dueQueue.add(new Due(session, nextCheck(session,
+							idleSavePeriodMs, now)));
 				}
 			}
 			//CHECKSTYLE:OFF
@@ -91,10 +257,111 @@ public class LateInvalidatingHashSessionManager extends HashSessionManager {
 			}
 		} finally {
 			thread.setContextClassLoader(oldClazzLoader);
+			lastScavengeDurationMs = (System.nanoTime() - start) / 1000000L;
+			lastSessionsExamined = examined;
+			sessionsExamined.addAndGet(examined);
+			scavengeCount.incrementAndGet();
+			scavenging.set(false);
 		}
 		//CHECKSTYLE:ON
 	}
 
+	/**
+	 * Moves sessions added since the last pass to the queue and forgets the
+	 * removed ones. Sessions which reach or leave the map without
+	 * {@link #addSession(AbstractSession)} or {@link #removeSession(String)}
+	 * (e.g. on a renewal of the session id) are picked up by a full pass comparing the tracked
+	 * sessions with the sessions of the map.
+	 */
+	private void track(final long now) {
+		HashedSession session;
+		while ((session = removed.poll()) != null) {
+			tracked.remove(session);
+		}
+		while ((session = added.poll()) != null) {
+			if (_sessions.get(session.getClusterId()) == session) {
+				enqueue(session, now);
+			}
+		}
+		if (_sessions.size() != tracked.size()) {
+			final Set<HashedSession> live = Collections
+					.newSetFromMap(new IdentityHashMap<HashedSession, Boolean>());
+			for (final HashedSession existing : _sessions.values()) {
+				live.add(existing);
+				enqueue(existing, now);
+			}
+			// due entries of dropped sessions are skipped when polled
+			tracked.keySet().retainAll(live);
+		}
+	}
+
+	private void enqueue(final HashedSession session, final long now) {
+		if (tracked.put(session, Boolean.TRUE) == null) {
+			dueQueue.add(new Due(session, nextCheck(session,
+					getIdleSavePeriod() * 1000L, now)));
+		}
+	}
+
+	/**
+	 * Checks a due session.
+	 *
+	 * @return true if the session timed out and is not to be tracked anymore
+	 */
+	private boolean examine(final HashedSession session,
+			final long idleSavePeriodMs, final long now) {
+		final long idleTime = session.getMaxInactiveInterval() * 1000L;
+		if (isTimeoutCandidate(session, idleTime, now)) {
+			if (_sessionIdManager instanceof HashSessionIdManager) {
+				final Collection<AbstractSession> sessionsWithId = getSessionsWithId(session
+						.getId());
+				if (sessionsWithId == null || sessionsWithId.size() < 1) {
+					throw new IllegalStateException();
+				}
+				if (areAllTimeoutCandidates(sessionsWithId, idleTime, now)) {
+					LOG.info("Timing out for " + sessionsWithId.size()
+							+ " session(s) with id " + session.getId());
+					for (AbstractSession sessionToTimeout : sessionsWithId) {
+						sessionTimeout(sessionToTimeout);
+					}
+					return true;
+				}
+				LOG.info("Extending timeout for " + sessionsWithId.size()
+						+ " session(s) with id " + session.getId());
+				setLatestLastAccessed(sessionsWithId);
+				return false;
+			}
+			sessionTimeout(session);
+			return true;
+		}
+		if (idleSavePeriodMs > 0 && !session.isIdled()
+				&& session.getAccessed() + idleSavePeriodMs < now) {
+			try {
+				session.idle();
+				//CHECKSTYLE:OFF
+			} catch (Exception e) {
+				LOG.warn("Problem idling session " + session.getId(), e);
+			}
+			//CHECKSTYLE:ON
+		}
+		return false;
+	}
+
+	/**
+	 * Computes when a session needs to be looked at next: when it expires, or
+	 * earlier if it is to be idled before.
+	 */
+	private static long nextCheck(final HashedSession session,
+			final long idleSavePeriodMs, final long now) {
+		final long accessed = session.getAccessed();
+		final long idleTime = session.getMaxInactiveInterval() * 1000L;
+		long next = idleTime > 0 ? accessed + idleTime + 1 : now + RECHECK_MS;
+		if (idleSavePeriodMs > 0 && !session.isIdled()) {
+			next = Math.min(next, accessed + idleSavePeriodMs + 1);
+		}
+		// sessions accessed by other means than requests (e.g. extended)
+		return Math.max(next, now + 1);
+	}
+
 	private Collection<AbstractSession> getSessionsWithId(String id) {
 		Collection<HttpSession> sessions = ((HashSessionIdManager) _sessionIdManager)
 				.getSession(id);
@@ -128,34 +395,14 @@ public class LateInvalidatingHashSessionManager extends HashSessionManager {
 		return idleTime > 0 && session.getAccessed() + idleTime < now;
 	}
 
-	private long getIdleSavePeriodMs() {
-		try {
-			Field f = HashSessionManager.class
-					.getDeclaredField("_idleSavePeriodMs");
-			f.setAccessible(true);
-			return (Long) f.get(this);
-			//CHECKSTYLE:OFF
-		} catch (Exception e) { 
-			throw new RuntimeException(
-					"Error accessing invisible HashSessionManager field via reflection",
-					e);
-		}
-		//CHECKSTYLE:ON
-	}
-
 	private void sessionTimeout(AbstractSession session) {
 		try {
-			Method m = AbstractSession.class.getDeclaredMethod("timeout",
-					new Class<?>[0]);
-			m.setAccessible(true);
-			m.invoke(session, new Object[0]);
-			//CHECKSTYLE:OFF
-		} catch (Exception e) { 
-			throw new RuntimeException(
-					"Error accessing invisible AbstractSession method via reflection",
-					e);
+			invoke(TIMEOUT, session);
+			sessionsTimedOut.incrementAndGet();
+		} catch (IllegalStateException e) {
+			// already invalidated, e.g. by the scavenger of another context
+			LOG.debug("Session {} already invalid", session.getId());
 		}
-		//CHECKSTYLE:ON
 	}
 
 	private void setLatestLastAccessed(
@@ -171,12 +418,9 @@ public class LateInvalidatingHashSessionManager extends HashSessionManager {
 		for (final AbstractSession session : sessionsWithId) {
 			if (session.getAccessed() < latestAccessed) {
 				try {
-					final Field accessedField = AbstractSession.class
-							.getDeclaredField("_accessed");
-					accessedField.setAccessible(true);
-					accessedField.set(session, latestAccessed);
+					ACCESSED.set(session, latestAccessed);
 					//CHECKSTYLE:OFF
-				} catch (final Exception e) { 
+				} catch (final Exception e) {
 					LOG.warn("Error setting _accessed for session " + session,
 							e);
 				}
@@ -184,12 +428,9 @@ public class LateInvalidatingHashSessionManager extends HashSessionManager {
 			}
 			if (session.getLastAccessedTime() < latestLastAccessed) {
 				try {
-					final Field lastAccessedField = AbstractSession.class
-							.getDeclaredField("_lastAccessed");
-					lastAccessedField.setAccessible(true);
-					lastAccessedField.set(session, latestLastAccessed);
+					LAST_ACCESSED.set(session, latestLastAccessed);
 					//CHECKSTYLE:OFF
-				} catch (final Exception e) { 
+				} catch (final Exception e) {
 					LOG.warn("Error setting _lastAccessed for session "
 							+ session, e);
 				}
@@ -213,7 +454,7 @@ public class LateInvalidatingHashSessionManager extends HashSessionManager {
 			if (isStopping()) {
 				// Then we only save and remove the session - it is not
 				// invalidated.
-				File storeDir = getStoreDir(this);
+				File storeDir = getStoreDirectory();
 				for (HashedSession session : sessions) {
 					if (storeDir != null && storeDir.exists()
 							&& storeDir.canWrite()) {
@@ -232,32 +473,187 @@ public class LateInvalidatingHashSessionManager extends HashSessionManager {
 		}
 	}
 
-	private File getStoreDir(HashSessionManager manager) {
+	private void sessionSave(HashedSession session, boolean reactivate) {
+		invoke(SAVE, session, reactivate);
+	}
+
+	@ManagedAttribute("number of scavenge passes")
+	public long getScavengeCount() {
+		return scavengeCount.get();
+	}
+
+	@ManagedAttribute("duration of the last scavenge pass in ms")
+	public long getLastScavengeDuration() {
+		return lastScavengeDurationMs;
+	}
+
+	@ManagedAttribute("sessions examined by the last scavenge pass")
+	public int getLastSessionsExamined() {
+		return lastSessionsExamined;
+	}
+
+	@ManagedAttribute("sessions examined by all scavenge passes")
+	public long getSessionsExamined() {
+		return sessionsExamined.get();
+	}
+
+	@ManagedAttribute("sessions timed out by the scavenger")
+	public long getSessionsTimedOut() {
+		return sessionsTimedOut.get();
+	}
+
+	/**
+	 * Session whose attributes are swapped out to the session store, instead
+	 * of a file of the store directory, while it is idle.
+	 */
+	private final class StoredSession extends HashedSession {
+
+		private final SessionStore store;
+		private boolean idled;
+
+		private StoredSession(final SessionStore store,
+				final HttpServletRequest request) {
+			super(LateInvalidatingHashSessionManager.this, request);
+			this.store = store;
+		}
+
+		private StoredSession(final SessionStore store, final long created,
+				final long accessed, final String clusterId) {
+			super(LateInvalidatingHashSessionManager.this, created, accessed,
+					clusterId);
+			this.store = store;
+		}
+
+		@Override
+		public synchronized void idle() throws Exception {
+			if (idled || isSaveFailed()) {
+				return;
+			}
+			willPassivate();
+			try {
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				save(out);
+				final long maxInactive = getMaxInactiveInterval() * 1000L;
+				store.save(getClusterId(), out.toByteArray(),
+						maxInactive > 0 ? getAccessed() + maxInactive
+								: Long.MAX_VALUE);
+			} catch (IOException e) {
+				saveFailed();
+				didActivate();
+				throw e;
+			}
+			clearAttributes();
+			idled = true;
+		}
+
+		@Override
+		public synchronized void deIdle() {
+			if (!idled || isDeIdleFailed()) {
+				return;
+			}
+			access(System.currentTimeMillis());
+			try {
+				final byte[] data = store.load(getClusterId());
+				if (data == null) {
+					throw new IOException("Session " + getClusterId()
+							+ " missing from session store");
+				}
+				idled = false;
+				restoreSession(new ByteArrayInputStream(data), this);
+				didActivate();
+				store.remove(getClusterId());
+				//CHECKSTYLE:OFF
+			} catch (Exception e) {
+				//CHECKSTYLE:ON
+				LOG.warn("Problem de-idling session " + getId(), e);
+				deIdleFailed();
+				invalidate();
+			}
+		}
+
+		@Override
+		public synchronized boolean isIdled() {
+			return idled;
+		}
+
+		@Override
+		protected void doInvalidate() {
+			super.doInvalidate();
+			try {
+				store.remove(getClusterId());
+			} catch (IOException e) {
+				LOG.debug("Cannot remove session {} from session store",
+						getClusterId(), e);
+			}
+		}
+	}
+
+	/**
+	 * A session and the time it has to be looked at.
+	 */
+	private static final class Due implements Comparable<Due> {
+
+		private final HashedSession session;
+		private final long time;
+
+		private Due(final HashedSession session, final long time) {
+			this.session = session;
+			this.time = time;
+		}
+
+		@Override
+		public int compareTo(final Due other) {
+			return time < other.time ? -1 : (time == other.time ? 0 : 1);
+		}
+	}
+
+	private static Object invoke(final Method method, final Object target,
+			final Object... args) {
+		if (method == null) {
+			throw new RuntimeException(
+					"Invisible Jetty session method not available");
+		}
 		try {
-			Field f = HashSessionManager.class.getDeclaredField("_storeDir");
-			f.setAccessible(true);
-			return (File) f.get(this);
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IllegalStateException) {
+				throw (IllegalStateException) e.getCause();
+			}
+			throw new RuntimeException(
+					"Error invoking invisible Jetty session method via reflection",
+					e.getCause());
 			//CHECKSTYLE:OFF
-		} catch (Exception e) { 
+		} catch (Exception e) {
 			throw new RuntimeException(
-					"Error accessing invisible HashSessionManager field via reflection",
+					"Error accessing invisible Jetty session method via reflection",
 					e);
 		}
 		//CHECKSTYLE:ON
 	}
 
-	private void sessionSave(HashedSession session, boolean reactivate) {
+	private static Method method(final Class<?> clazz, final String name,
+			final Class<?>... parameterTypes) {
 		try {
-			Method m = HashedSession.class.getDeclaredMethod("save",
-					new Class<?>[] { Boolean.TYPE });
-			m.setAccessible(true);
-			m.invoke(session, new Object[] { reactivate });
-			//CHECKSTYLE:OFF
-		} catch (Exception e) { 
-			throw new RuntimeException(
-					"Error accessing invisible HashedSession method via reflection",
-					e);
+			return clazz.getDeclaredMethod(name, parameterTypes);
+		} catch (NoSuchMethodException e) {
+			LOG.warn("Method {} not found in {}", name, clazz.getName());
+			return null;
 		}
-		//CHECKSTYLE:ON
+	}
+
+	private static Field field(final Class<?> clazz, final String name) {
+		try {
+			return clazz.getDeclaredField(name);
+		} catch (NoSuchFieldException e) {
+			LOG.warn("Field {} not found in {}", name, clazz.getName());
+			return null;
+		}
+	}
+
+	private static <T extends AccessibleObject> T accessible(final T member) {
+		if (member != null) {
+			member.setAccessible(true);
+		}
+		return member;
 	}
 }
@@ -21,7 +21,7 @@ import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.regex.Matcher;
+import java.nio.ByteBuffer;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
@@ -36,6 +36,12 @@ import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.ops4j.pax.web.service.spi.util.CachedResource;
+import org.ops4j.pax.web.service.spi.util.CachedResourceWriter;
+import org.ops4j.pax.web.service.spi.util.CompressionConfig;
+import org.ops4j.pax.web.service.spi.util.ContentEncoding;
+import org.ops4j.pax.web.service.spi.util.Path;
+import org.ops4j.pax.web.service.spi.util.ResourceCache;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,6 +67,9 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 	@SuppressWarnings("unused")
 	private static final String KEEP_ALIVE = "Keep-Alive";
 	private static final String ETAG = "ETag";
+	private static final String ACCEPT_ENCODING = "Accept-Encoding";
+	private static final String CONTENT_ENCODING = "Content-Encoding";
+	private static final String VARY = "Vary";
 	// CHECKSTYLE:ON
 
 	private static final Logger LOG = LoggerFactory
@@ -70,13 +79,40 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 	private final String contextName;
 	private final String alias;
 	private final String name;
+	/**
+	 * Alias and name rewriting of request uris, computed once.
+	 */
+	private final boolean aliasIsContext;
+	private final boolean defaultName;
 	private final MimeTypes mimeTypes = new MimeTypes();
+	/**
+	 * Content cache, null if caching is disabled.
+	 */
+	private final ResourceCache cache;
+	private final CachedResourceWriter cachedResourceWriter = new JettyCachedResourceWriter();
+	/**
+	 * Compression settings of the context, null if disabled.
+	 */
+	private final CompressionConfig compression;
 
 	private String[] welcomes;
 
 	ResourceServlet(final HttpContext httpContext, final String contextName,
 			final String alias, final String name) {
+		this(httpContext, contextName, alias, name, null);
+	}
+
+	ResourceServlet(final HttpContext httpContext, final String contextName,
+			final String alias, final String name, final ResourceCache cache) {
+		this(httpContext, contextName, alias, name, cache, null);
+	}
+
+	ResourceServlet(final HttpContext httpContext, final String contextName,
+			final String alias, final String name, final ResourceCache cache,
+			final CompressionConfig compression) {
 		this.httpContext = httpContext;
+		this.cache = cache;
+		this.compression = compression;
 		this.contextName = "/" + contextName;
 		this.alias = alias;
 		if ("/".equals(name)) {
@@ -84,6 +120,8 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 		} else {
 			this.name = name;
 		}
+		this.aliasIsContext = this.contextName.equals(alias);
+		this.defaultName = "default".equalsIgnoreCase(this.name);
 
 	}
 
@@ -124,6 +162,20 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 		}
 	}
 
+	/**
+	 * Maps a request uri to the name of the resource in the http context,
+	 * replacing the context name and the alias literally.
+	 */
+	private String mapRequestUri(final String requestUri) {
+		if (aliasIsContext) {
+			// special handling since resouceServlet has default name
+			// attached to it
+			return defaultName ? requestUri : name + requestUri;
+		}
+		final String mapping = Path.replaceFirst(requestUri, contextName, "/");
+		return defaultName ? mapping : Path.replaceFirst(mapping, alias, name);
+	}
+
 	@SuppressWarnings("deprecation")
 	@Override
 	protected void doGet(final HttpServletRequest request,
@@ -150,21 +202,8 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 			mapping = URIUtil.addPaths(servletPath, pathInfo);
 		} else {
 			included = Boolean.FALSE;
-			if (contextName.equals(alias)) {
-				// special handling since resouceServlet has default name
-				// attached to it
-				if (!"default".equalsIgnoreCase(name)) {
-					mapping = name + request.getRequestURI();
-				} else {
-					mapping = request.getRequestURI();
-				}
-			} else {
-				mapping = request.getRequestURI()
-						.replaceFirst(contextName, "/");
-				if (!"default".equalsIgnoreCase(name)) {
-					mapping = mapping.replaceFirst(alias,
-							Matcher.quoteReplacement(name));
-				}
+			mapping = mapRequestUri(request.getRequestURI());
+			if (!aliasIsContext) {
 				pathInfo = ((HttpServletRequest) request).getPathInfo();
 			}
 		}
@@ -173,18 +212,30 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 		boolean endsWithSlash = (mapping == null ? request.getServletPath()
 				: mapping).endsWith(URIUtil.SLASH);
 
+		// cached content is served without asking the http context again
+		if (cache != null && !endsWithSlash) {
+			final CachedResource cached = cache.get(mapping);
+			if (cached != null && !cached.isStale()) {
+				cachedResourceWriter.write(request, response, cached);
+				return;
+			}
+		}
+
+		final long generation = cache == null ? 0 : cache.getGeneration();
 		final URL url = httpContext.getResource(mapping);
 		if (url == null) {
 			response.sendError(HttpServletResponse.SC_NOT_FOUND);
 			return;
 		}
 
-		// For Performanceimprovements turn caching on
-		// final Resource resource = ResourceEx.newResource(url, true);
-		final Resource resource = getResource(mapping);
+		final Resource resource = newResource(url);
+		if (resource == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
 		try {
 
-			if ((resource == null || !resource.exists()) && !endsWithSlash) {
+			if (!resource.exists() && !endsWithSlash) {
 				if (!response.isCommitted()) {
 					response.sendError(HttpServletResponse.SC_NOT_FOUND);
 				}
@@ -222,7 +273,7 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 						}
 					}
 				}
-			} else if (resource == null || !resource.exists() 
+			} else if (!resource.exists()
 					|| (resource.isDirectory() && mapping.equals("//"))
 					|| (resource.isDirectory() && mapping.equals("/"))) {
 				// still not found anything, then do the following ...
@@ -232,9 +283,42 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 				return;
 			}
 
+			String mimeType = getMimeType(mapping, url);
+
+			if (cache != null && cache.accepts(resource.length())) {
+				final CachedResource cached = CachedResource.load(url,
+						url.openConnection(), mimeType, cache.isDirect(),
+						getPrecompressed(mapping, ContentEncoding.GZIP),
+						getPrecompressed(mapping, ContentEncoding.BROTLI));
+				cache.put(mapping, cached, generation);
+				cachedResourceWriter.write(request, response, cached);
+				return;
+			}
+
+			// too big to be cached, a precompressed sibling is served to
+			// clients accepting it
+			ContentEncoding encoding = null;
+			Resource content = resource;
+			final String acceptEncoding = request.getHeader(ACCEPT_ENCODING);
+			for (ContentEncoding candidate : ContentEncoding.values()) {
+				final URL variantUrl = candidate.isAcceptedBy(acceptEncoding) ? getPrecompressed(
+						mapping, candidate) : null;
+				final Resource variant = variantUrl == null ? null
+						: newResource(variantUrl);
+				if (variant != null) {
+					encoding = candidate;
+					content = variant;
+					break;
+				}
+			}
+
 			// if the request contains an etag and its the same for the
 			// resource, we deliver a NOT MODIFIED response
 			String eTag = String.valueOf(resource.lastModified());
+			if (encoding != null) {
+				eTag = eTag + "-" + encoding.getName();
+				response.addHeader(VARY, ACCEPT_ENCODING);
+			}
 			if ((request.getHeader(IF_NONE_MATCH) != null)
 					&& (eTag.equals(request.getHeader(IF_NONE_MATCH)))) {
 				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
@@ -263,39 +347,27 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 
 			// set the etag
 			response.setHeader(ETAG, eTag);
-			String mimeType = httpContext.getMimeType(mapping);
-			if (mimeType == null) {
-				mimeType = mimeTypes.getMimeByExtension(mapping);
-			}
-
-			if (mimeType == null) {
-				try {
-					mimeType = url.openConnection().getContentType();
-				} catch (IOException ignore) {
-					// we do not care about such an exception as the fact that
-					// we are using also the connection for
-					// finding the mime type is just a "nice to have" not an
-					// requirement
-				}
-			}
-
-			if (mimeType == null) {
-				ServletContext servletContext = getServletConfig()
-						.getServletContext();
-				mimeType = servletContext.getMimeType(mapping);
-			}
-
 			if (mimeType != null) {
 				response.setContentType(mimeType);
 			}
+			if (encoding != null) {
+				response.setHeader(CONTENT_ENCODING, encoding.getName());
+			}
 
-			OutputStream out = response.getOutputStream();
-			if (out != null) { // null should be just in unit testing
-				if (out instanceof HttpOutput) {
-					((HttpOutput) out).sendContent(resource.getInputStream());
-				} else {
-					// Write content normally
-					resource.writeTo(out, 0, resource.length());
+			try {
+				OutputStream out = response.getOutputStream();
+				if (out != null) { // null should be just in unit testing
+					if (out instanceof HttpOutput) {
+						((HttpOutput) out).sendContent(content
+								.getInputStream());
+					} else {
+						// Write content normally
+						content.writeTo(out, 0, content.length());
+					}
+				}
+			} finally {
+				if (content != resource) {
+					content.release();
 				}
 			}
 			response.setStatus(HttpServletResponse.SC_OK);
@@ -304,6 +376,45 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 		}
 	}
 
+	/**
+	 * Looks up a precompressed sibling of a resource.
+	 *
+	 * @return url of the sibling or null if there is none or precompressed
+	 *         resources are disabled
+	 */
+	private URL getPrecompressed(final String mapping,
+			final ContentEncoding encoding) {
+		if (compression == null || !compression.isPrecompressed()) {
+			return null;
+		}
+		return httpContext.getResource(mapping + encoding.getExtension());
+	}
+
+	private String getMimeType(final String mapping, final URL url) {
+		String mimeType = httpContext.getMimeType(mapping);
+		if (mimeType == null) {
+			mimeType = mimeTypes.getMimeByExtension(mapping);
+		}
+
+		if (mimeType == null) {
+			try {
+				mimeType = url.openConnection().getContentType();
+			} catch (IOException ignore) {
+				// we do not care about such an exception as the fact that
+				// we are using also the connection for
+				// finding the mime type is just a "nice to have" not an
+				// requirement
+			}
+		}
+
+		if (mimeType == null) {
+			ServletContext servletContext = getServletConfig()
+					.getServletContext();
+			mimeType = servletContext.getMimeType(mapping);
+		}
+		return mimeType;
+	}
+
 	/**
 	 * Finds a matching welcome file for the supplied {@link Resource}. This
 	 * will be the first entry in the list of configured {@link #_welcomes
@@ -329,9 +440,7 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 		for (int i = 0; i < welcomes.length; i++) {
 			String welcomeInContext = URIUtil.addPaths(pathInContext,
 					welcomes[i]);
-			final URL url = httpContext.getResource(welcomeInContext);
-			final Resource welcome = ResourceEx.newResource(url, true);
-			if (welcome != null && welcome.exists()) {
+			if (httpContext.getResource(welcomeInContext) != null) {
 				return welcomes[i];
 			}
 		}
@@ -382,7 +491,10 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 		if (url == null) {
 			return null;
 		}
+		return newResource(url);
+	}
 
+	private Resource newResource(final URL url) {
 		try {
 			return ResourceEx.newResource(url, true);
 		} catch (IOException e) {
@@ -391,4 +503,26 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 		}
 	}
 
+	/**
+	 * Writes cached content straight from its buffer through Jetty's output.
+	 */
+	private static final class JettyCachedResourceWriter extends
+			CachedResourceWriter {
+
+		@Override
+		protected void send(final HttpServletResponse response,
+				final ByteBuffer content, final int offset, final int length)
+				throws IOException {
+			final OutputStream out = response.getOutputStream();
+			if (out instanceof HttpOutput) {
+				final ByteBuffer slice = content.duplicate();
+				slice.position(offset);
+				slice.limit(offset + length);
+				((HttpOutput) out).sendContent(slice);
+			} else {
+				super.send(response, content, offset, length);
+			}
+		}
+	}
+
 }
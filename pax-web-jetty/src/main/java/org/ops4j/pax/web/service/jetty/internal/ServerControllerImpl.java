@@ -41,6 +41,8 @@ import org.ops4j.pax.web.service.spi.model.LoginConfigModel;
 import org.ops4j.pax.web.service.spi.model.SecurityConstraintMappingModel;
 import org.ops4j.pax.web.service.spi.model.ServletModel;
 import org.ops4j.pax.web.service.spi.model.WelcomeFileModel;
+import org.ops4j.pax.web.service.spi.util.CompressionConfig;
+import org.ops4j.pax.web.service.spi.util.ResourceCache;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -115,6 +117,11 @@ class ServerControllerImpl implements ServerController {
 		state.removeServlet(model);
 	}
 
+	@Override
+	public void remapServlet(final ServletModel model) {
+		state.remapServlet(model);
+	}
+
 	@Override
 	public boolean isStarted() {
 		return state instanceof Started;
@@ -150,6 +157,11 @@ class ServerControllerImpl implements ServerController {
 		state.removeFilter(filterModel);
 	}
 
+	@Override
+	public void remapFilter(final FilterModel filterModel) {
+		state.remapFilter(filterModel);
+	}
+
 	@Override
 	public void addErrorPage(final ErrorPageModel model) {
 		state.addErrorPage(model);
@@ -207,7 +219,11 @@ class ServerControllerImpl implements ServerController {
 	public Servlet createResourceServlet(ContextModel contextModel,
 			String alias, String name) {
 		return new ResourceServlet(contextModel.getHttpContext(),
-				contextModel.getContextName(), alias, name);
+				contextModel.getContextName(), alias, name,
+				ResourceCache.create(configuration,
+						contextModel.getContextParams()),
+				CompressionConfig.create(configuration,
+						contextModel.getContextParams()));
 	}
 
 	void notifyListeners(ServerEvent event) {
@@ -246,6 +262,8 @@ class ServerControllerImpl implements ServerController {
 
 		void removeServlet(ServletModel model);
 
+		void remapServlet(ServletModel model);
+
 		void addEventListener(EventListenerModel eventListenerModel);
 
 		void removeEventListener(EventListenerModel eventListenerModel);
@@ -256,6 +274,8 @@ class ServerControllerImpl implements ServerController {
 
 		void removeFilter(FilterModel filterModel);
 
+		void remapFilter(FilterModel filterModel);
+
 		void addErrorPage(ErrorPageModel model);
 
 		void removeErrorPage(ErrorPageModel model);
@@ -295,6 +315,11 @@ class ServerControllerImpl implements ServerController {
 			jettyServer.removeServlet(model);
 		}
 
+		@Override
+		public void remapServlet(final ServletModel model) {
+			jettyServer.remapServlet(model);
+		}
+
 		@Override
 		public void addEventListener(EventListenerModel eventListenerModel) {
 			jettyServer.addEventListener(eventListenerModel);
@@ -320,6 +345,11 @@ class ServerControllerImpl implements ServerController {
 			jettyServer.removeFilter(filterModel);
 		}
 
+		@Override
+		public void remapFilter(FilterModel filterModel) {
+			jettyServer.remapFilter(filterModel);
+		}
+
 		@Override
 		public void addErrorPage(ErrorPageModel model) {
 			jettyServer.addErrorPage(model);
@@ -377,7 +407,7 @@ class ServerControllerImpl implements ServerController {
 
 		@Override
 		public void start() {
-			jettyServer = jettyFactory.createServer();
+			jettyServer = jettyFactory.createServer(configuration);
 			httpConnector = null;
 			httpSecureConnector = null;
 			String[] addresses = configuration.getListeningAddresses();
@@ -408,7 +438,8 @@ class ServerControllerImpl implements ServerController {
 				jettyServer.configureRequestLog(
 						new ConfigureRequestLogParameter(configuration.getLogNCSAFormat(), configuration.getLogNCSARetainDays(),
 								configuration.isLogNCSAAppend(), configuration.isLogNCSAExtended(), configuration.isLogNCSADispatch(), configuration.getLogNCSATimeZone(),
-								configuration.getLogNCSADirectory(), configuration.isLogNCSALatency(), configuration.isLogNCSACookies(), configuration.isLogNCSAServer()));
+								configuration.getLogNCSADirectory(), configuration.isLogNCSALatency(), configuration.isLogNCSACookies(), configuration.isLogNCSAServer(),
+								configuration.isLogNCSAAsync(), configuration.getLogNCSABufferSize()));
 			}
 
 			jettyServer.start(); 
@@ -460,7 +491,9 @@ class ServerControllerImpl implements ServerController {
 						final Connector connector = jettyFactory
 								.createConnector(jettyServer.getServer(),
 										configuration.getHttpConnectorName(),
-										httpPort, address, configuration.checkForwardedHeaders());
+										httpPort, address, configuration.checkForwardedHeaders(),
+										configuration.getServerAcceptors(),
+										configuration.getServerSelectors());
 						if (httpConnector == null) {
 							httpConnector = (ServerConnector) connector;
 						}
@@ -534,7 +567,9 @@ class ServerControllerImpl implements ServerController {
 											address, configuration
 													.getSslKeystoreType(),
 											configuration.isClientAuthNeeded(),
-											configuration.isClientAuthWanted());
+											configuration.isClientAuthWanted(),
+											configuration.getServerAcceptors(),
+											configuration.getServerSelectors());
 							if (httpSecureConnector == null) {
 								httpSecureConnector = (ServerConnector) secureConnector;
 							}
@@ -599,6 +634,11 @@ class ServerControllerImpl implements ServerController {
 			// do nothing if server is not started
 		}
 
+		@Override
+		public void remapServlet(final ServletModel model) {
+			// do nothing if server is not started
+		}
+
 		@Override
 		public void addEventListener(EventListenerModel eventListenerModel) {
 			// do nothing if server is not started
@@ -624,6 +664,11 @@ class ServerControllerImpl implements ServerController {
 			// do nothing if server is not started
 		}
 
+		@Override
+		public void remapFilter(FilterModel filterModel) {
+			// do nothing if server is not started
+		}
+
 		@Override
 		public void addErrorPage(ErrorPageModel model) {
 			// do nothing if server is not started
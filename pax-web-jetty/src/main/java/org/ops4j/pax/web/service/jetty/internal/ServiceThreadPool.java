@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.jetty.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Server thread pool running the tasks of Jetty on an {@link Executor}
+ * published as OSGi service. The service is looked up when the server starts
+ * and released when it stops, without being shut down. If no matching
+ * service is available, a thread pool of the server itself is used instead.
+ */
+@ManagedObject("Thread pool backed by an OSGi executor service")
+class ServiceThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(ServiceThreadPool.class);
+
+	private final BundleContext bundleContext;
+	private final String filter;
+	private final QueuedThreadPool fallback;
+	private final AtomicLong rejectedTasks = new AtomicLong();
+
+	private ServiceReference<?> reference;
+	private volatile Executor executor;
+
+	/**
+	 * @param bundleContext
+	 *            context used to look up the executor
+	 * @param filter
+	 *            filter selecting the executor service
+	 * @param fallback
+	 *            thread pool used if no executor service is found
+	 */
+	ServiceThreadPool(final BundleContext bundleContext, final String filter,
+			final QueuedThreadPool fallback) {
+		this.bundleContext = bundleContext;
+		this.filter = filter;
+		this.fallback = fallback;
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		final ServiceReference<?>[] references = bundleContext
+				.getServiceReferences((String) null, filter);
+		if (references != null) {
+			// highest ranking first
+			Arrays.sort(references);
+			for (int i = references.length - 1; i >= 0 && executor == null; i--) {
+				final Object service = bundleContext.getService(references[i]);
+				if (service instanceof Executor) {
+					reference = references[i];
+					executor = (Executor) service;
+				} else if (service != null) {
+					bundleContext.ungetService(references[i]);
+				}
+			}
+		}
+		if (executor == null) {
+			LOG.warn("No executor service found matching {}, using a thread pool of the server",
+					filter);
+			fallback.start();
+			executor = fallback;
+		} else {
+			LOG.info("Using executor service {} as server thread pool",
+					executor);
+		}
+		super.doStart();
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		super.doStop();
+		final Executor stopped = executor;
+		executor = null;
+		if (stopped == fallback) {
+			fallback.stop();
+		} else if (reference != null) {
+			bundleContext.ungetService(reference);
+			reference = null;
+		}
+	}
+
+	@Override
+	public void execute(final Runnable task) {
+		final Executor current = executor;
+		if (current == null) {
+			rejectedTasks.incrementAndGet();
+			throw new RejectedExecutionException("Thread pool is not started");
+		}
+		try {
+			current.execute(task);
+		} catch (RejectedExecutionException e) {
+			rejectedTasks.incrementAndGet();
+			throw e;
+		}
+	}
+
+	@Override
+	public void join() throws InterruptedException {
+		if (executor == fallback) {
+			fallback.join();
+		}
+	}
+
+	@Override
+	@ManagedAttribute("total number of threads, -1 if unknown")
+	public int getThreads() {
+		final Executor current = executor;
+		if (current instanceof ThreadPool) {
+			return ((ThreadPool) current).getThreads();
+		}
+		if (current instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) current).getPoolSize();
+		}
+		return -1;
+	}
+
+	@Override
+	@ManagedAttribute("number of idle threads, -1 if unknown")
+	public int getIdleThreads() {
+		final Executor current = executor;
+		if (current instanceof ThreadPool) {
+			return ((ThreadPool) current).getIdleThreads();
+		}
+		if (current instanceof ThreadPoolExecutor) {
+			final ThreadPoolExecutor pool = (ThreadPoolExecutor) current;
+			return Math.max(0, pool.getPoolSize() - pool.getActiveCount());
+		}
+		return -1;
+	}
+
+	@Override
+	@ManagedAttribute("whether all threads are busy")
+	public boolean isLowOnThreads() {
+		final Executor current = executor;
+		if (current instanceof ThreadPool) {
+			return ((ThreadPool) current).isLowOnThreads();
+		}
+		if (current instanceof ThreadPoolExecutor) {
+			final ThreadPoolExecutor pool = (ThreadPoolExecutor) current;
+			return pool.getActiveCount() >= pool.getMaximumPoolSize();
+		}
+		return false;
+	}
+
+	/**
+	 * @return number of tasks waiting for a thread, -1 if unknown
+	 */
+	@ManagedAttribute("number of tasks waiting for a thread, -1 if unknown")
+	public int getQueueSize() {
+		final Executor current = executor;
+		if (current instanceof QueuedThreadPool) {
+			return ((QueuedThreadPool) current).getQueueSize();
+		}
+		if (current instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) current).getQueue().size();
+		}
+		return -1;
+	}
+
+	/**
+	 * @return number of tasks the executor did not accept
+	 */
+	@ManagedAttribute("number of tasks the executor did not accept")
+	public long getRejectedTasks() {
+		return rejectedTasks.get();
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + "[" + filter + "]";
+	}
+}
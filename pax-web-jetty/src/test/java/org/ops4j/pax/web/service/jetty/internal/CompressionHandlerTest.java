@@ -0,0 +1,79 @@
+package org.ops4j.pax.web.service.jetty.internal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.util.CompressionConfig;
+
+public class CompressionHandlerTest {
+
+	private Server server;
+	private LocalConnector connector;
+
+	private void start(final CompressionConfig compression) throws Exception {
+		server = new Server();
+		connector = new LocalConnector(server);
+		server.addConnector(connector);
+		final CompressionHandler handler = new CompressionHandler(compression);
+		handler.setHandler(new AbstractHandler() {
+			@Override
+			public void handle(String target, Request baseRequest,
+					HttpServletRequest request, HttpServletResponse response)
+					throws IOException, ServletException {
+				baseRequest.setHandled(true);
+				response.setContentType("text/plain");
+				for (int i = 0; i < 100; i++) {
+					response.getWriter().println("compressible content");
+				}
+			}
+		});
+		server.setHandler(handler);
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	public void responsesAreCompressed() throws Exception {
+		start(new CompressionConfig(true, 0, null, "/api/", -1, false));
+
+		assertTrue(isCompressed("/index.html"));
+	}
+
+	@Test
+	public void excludedPathsAreNotCompressed() throws Exception {
+		start(new CompressionConfig(true, 0, null, "/api/", -1, false));
+
+		assertFalse(isCompressed("/api/items"));
+	}
+
+	@Test
+	public void levelIsApplied() throws Exception {
+		start(new CompressionConfig(true, 0, null, null, 9, false));
+
+		assertTrue(isCompressed("/index.html"));
+	}
+
+	private boolean isCompressed(final String path) throws Exception {
+		final String response = connector.getResponses("GET " + path
+				+ " HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip\r\n"
+				+ "Connection: close\r\n\r\n");
+		assertTrue(response, response.startsWith("HTTP/1.1 200"));
+		return response.toLowerCase().contains("content-encoding: gzip");
+	}
+}
@@ -0,0 +1,55 @@
+package org.ops4j.pax.web.service.jetty.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.Configuration;
+import org.ops4j.pax.web.service.spi.model.ServerModel;
+
+public class JettyFactoryImplTest {
+
+	private QueuedThreadPool createThreadPool(Integer minThreads,
+			Integer maxThreads, Integer queueSize) {
+		Configuration configuration = mock(Configuration.class);
+		when(configuration.getServerMinThreads()).thenReturn(minThreads);
+		when(configuration.getServerMaxThreads()).thenReturn(maxThreads);
+		when(configuration.getServerQueueSize()).thenReturn(queueSize);
+		return new JettyFactoryImpl(new ServerModel(), null)
+				.createQueuedThreadPool(configuration);
+	}
+
+	@Test
+	public void minThreadsAreLimitedByMaxThreads() {
+		QueuedThreadPool threadPool = createThreadPool(20, 5, null);
+
+		assertEquals(5, threadPool.getMinThreads());
+		assertEquals(5, threadPool.getMaxThreads());
+	}
+
+	@Test
+	public void boundedQueueWithoutMinThreadsAcceptsTasks() throws Exception {
+		QueuedThreadPool threadPool = createThreadPool(0, 2, 4);
+		threadPool.start();
+		try {
+			final CountDownLatch executed = new CountDownLatch(4);
+			for (int i = 0; i < 4; i++) {
+				threadPool.execute(new Runnable() {
+					@Override
+					public void run() {
+						executed.countDown();
+					}
+				});
+			}
+			assertTrue(executed.await(5, TimeUnit.SECONDS));
+		} finally {
+			threadPool.stop();
+		}
+	}
+}
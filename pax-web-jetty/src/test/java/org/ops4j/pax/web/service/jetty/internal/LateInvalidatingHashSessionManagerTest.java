@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.jetty.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.session.HashedSession;
+import org.eclipse.jetty.server.session.SessionHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.session.SessionStoreConfig;
+
+public class LateInvalidatingHashSessionManagerTest {
+
+	private File directory;
+	private LateInvalidatingHashSessionManager manager;
+	private Server server;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = File.createTempFile("paxweb", "sessions");
+		directory.delete();
+		manager = new LateInvalidatingHashSessionManager();
+		manager.setSessionStore(new SessionStoreConfig(60, directory), "test");
+		server = new Server();
+		server.setHandler(new SessionHandler(manager));
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void idleSessionIsSwappedOutAndBackIn() throws Exception {
+		assertEquals(60, manager.getIdleSavePeriod());
+		long now = System.currentTimeMillis();
+		HashedSession session = (HashedSession) manager.newSession(now, now,
+				"idle");
+		session.setAttribute("cart", "three items");
+
+		session.idle();
+		assertTrue(session.isIdled());
+		assertEquals(1, directory.listFiles().length);
+		assertTrue(directory.listFiles()[0].length() > 0);
+
+		assertEquals("three items", session.getAttribute("cart"));
+		assertFalse(session.isIdled());
+		assertEquals(0, directory.listFiles()[0].length());
+	}
+
+	@Test
+	public void sessionAddedAroundTrackerIsScheduled() throws Exception {
+		BypassingManager plain = new BypassingManager();
+		Server plainServer = new Server();
+		plainServer.setHandler(new SessionHandler(plain));
+		plainServer.start();
+		try {
+			long now = System.currentTimeMillis();
+			HashedSession removed = (HashedSession) plain.newSession(now, now,
+					"removed");
+			plain.addSession(removed);
+			plain.scavenge();
+			removed.invalidate();
+
+			// same number of sessions as tracked before the removal
+			HashedSession around = (HashedSession) plain.newSession(
+					now - 10000, now - 10000, "around");
+			around.setMaxInactiveInterval(1);
+			plain.putAround(around);
+			assertNotNull(plain.getSession("around"));
+
+			// picked up by the first pass, due by the next one
+			plain.scavenge();
+			Thread.sleep(10);
+			plain.scavenge();
+			assertNull(plain.getSession("around"));
+		} finally {
+			plainServer.stop();
+		}
+	}
+
+	@Test
+	public void storeIsDeletedOnStop() throws Exception {
+		manager.stop();
+		assertEquals(0, directory.listFiles().length);
+		manager.start();
+		assertEquals(1, directory.listFiles().length);
+	}
+
+	/**
+	 * Puts sessions into the map without {@link #addSession}, as e.g. a
+	 * renewal of the session id does.
+	 */
+	private static class BypassingManager extends
+			LateInvalidatingHashSessionManager {
+
+		void putAround(final HashedSession session) {
+			_sessions.put(session.getClusterId(), session);
+			getSessionIdManager().addSession(session);
+		}
+	}
+}
@@ -118,4 +118,15 @@ public class ResourceServletTest {
 				"/fudd/bugs/x.gif", "tmp/y.gif");
 	}
 
+	/**
+	 * Aliases and names are mapped literally, regular expressions would fail
+	 * to compile the alias or take the name for a group reference.
+	 */
+	@Test
+	public void checkResourceNameSpaceMappingWithoutRegularExpressions()
+			throws IOException, ServletException {
+		checkResourceNameSpaceMapping("/fudd[", "/bugs$1", "/fudd[/x.gif",
+				"/bugs$1/x.gif");
+	}
+
 }
@@ -43,6 +43,7 @@ import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
 import org.apache.tomcat.util.scan.Jar;
+import org.ops4j.pax.web.jsp.JspClassCache;
 
 /**
  * A place holder for various things that are used through out the JSP
@@ -578,12 +579,26 @@ public class JspCompilationContext {
             if (isRemoved()) {
                 throw new FileNotFoundException(jspUri);
             }
+            // Pax-Web enhanced: unchanged pages are taken from the class cache
+            JspClassCache classCache = isTagFile() || jsw == null ? null
+                    : JspClassCache.getInstance(context);
+            // the cache checks the dependants of the page itself, the
+            // restored classes are loaded on first use only
+            if (classCache != null && classCache.restore(this)) {
+                jspLoader = null;
+                jsw.setReload(true);
+                jsw.setCompilationException(null);
+                return;
+            }
             try {
                 jspCompiler.removeGeneratedFiles();
                 jspLoader = null;
                 jspCompiler.compile();
                 jsw.setReload(true);
                 jsw.setCompilationException(null);
+                if (classCache != null) {
+                    classCache.store(this);
+                }
             } catch (JasperException ex) {
                 // Cache compilation exception
                 jsw.setCompilationException(ex);
@@ -0,0 +1,452 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.jsp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+
+import org.apache.jasper.Constants;
+import org.apache.jasper.JspCompilationContext;
+import org.osgi.framework.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of the classes generated for the JSPs of a bundle, so pages
+ * that did not change are not compiled again when their context is started
+ * anew, e.g. after a restart. Classes are kept below
+ * <code>directory/symbolic name/version/page/hash</code>, where page is the
+ * hash of the path of the JSP and hash the one of its content. Storing the
+ * classes of a page drops the ones kept for its former content. Restored
+ * classes are dropped again if a file the page depends on, e.g. an included
+ * fragment or a TLD, changed since they were compiled.
+ * <p>
+ * The cache of a context is published as a servlet context attribute and used
+ * by {@link JspCompilationContext#compile()}. Pages using tag files are never
+ * cached, as the classes of the tag files would have to be restored with
+ * them.
+ */
+public final class JspClassCache {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(JspClassCache.class);
+
+	/**
+	 * Reference to a tag file class in the constant pool of a page class.
+	 */
+	private static final byte[] TAG_FILE_REFERENCE = Constants.TAG_FILE_PACKAGE_NAME
+			.replace('.', '/').getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Static field of a page class holding the modification times of the
+	 * files the page depends on.
+	 */
+	private static final String DEPENDANTS_FIELD = "_jspx_dependants";
+
+	private final File directory;
+
+	/**
+	 * @param directory
+	 *            root directory of the cache, shared by all bundles
+	 * @param bundle
+	 *            bundle providing the JSPs, with a symbolic name
+	 */
+	public JspClassCache(final File directory, final Bundle bundle) {
+		if (bundle.getSymbolicName() == null) {
+			throw new IllegalArgumentException(
+					"Bundle without symbolic name: " + bundle);
+		}
+		this.directory = new File(new File(directory,
+				bundle.getSymbolicName()), bundle.getVersion().toString());
+	}
+
+	/**
+	 * Gets the cache of a JSP context.
+	 *
+	 * @param context
+	 *            servlet context of the JSPs
+	 *
+	 * @return cache of the context or null if compiled classes are not cached
+	 */
+	public static JspClassCache getInstance(final ServletContext context) {
+		return (JspClassCache) context.getAttribute(JspClassCache.class
+				.getName());
+	}
+
+	/**
+	 * Publishes this cache for a JSP context.
+	 *
+	 * @param context
+	 *            servlet context of the JSPs
+	 */
+	public void register(final ServletContext context) {
+		context.setAttribute(JspClassCache.class.getName(), this);
+	}
+
+	/**
+	 * Copies the cached classes of a page into the scratch directory, dated as
+	 * the page, so Jasper considers them up to date. The files the page
+	 * depends on are checked before the classes are handed to Jasper, so a
+	 * page servlet is never loaded from outdated classes.
+	 *
+	 * @param ctxt
+	 *            compilation context of the page
+	 *
+	 * @return true if the classes were restored
+	 */
+	public boolean restore(final JspCompilationContext ctxt) {
+		final Long lastModified = ctxt.getLastModified(ctxt.getJspFile());
+		if (lastModified == null || lastModified < 0) {
+			return false;
+		}
+		try {
+			final File entry = getEntry(ctxt);
+			if (entry == null || !entry.isDirectory()) {
+				return false;
+			}
+			final File[] classFiles = entry.listFiles(classFilter(ctxt));
+			if (classFiles == null || classFiles.length == 0) {
+				return false;
+			}
+			final File outputDir = new File(ctxt.getOutputDir());
+			for (File classFile : classFiles) {
+				copy(classFile, new File(outputDir, classFile.getName()));
+			}
+			if (!new File(ctxt.getClassFileName())
+					.setLastModified(lastModified)) {
+				return false;
+			}
+			if (!areDependantsUpToDate(ctxt)) {
+				LOG.debug("Not restoring compiled classes of {} as files it "
+						+ "depends on changed", ctxt.getJspFile());
+				for (File classFile : classFiles) {
+					final File restored = new File(outputDir,
+							classFile.getName());
+					if (!restored.delete()) {
+						LOG.debug("Cannot delete {}", restored);
+					}
+				}
+				return false;
+			}
+			LOG.debug("Restored compiled classes of {} from {}",
+					ctxt.getJspFile(), entry);
+			return true;
+		} catch (IOException e) {
+			LOG.warn("Cannot restore compiled classes of {}",
+					ctxt.getJspFile(), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Checks the files a restored page depends on as Jasper does, reading
+	 * their modification times from the page class loaded aside, without
+	 * creating the page servlet.
+	 *
+	 * @return true if none of the files changed
+	 */
+	private static boolean areDependantsUpToDate(
+			final JspCompilationContext ctxt) {
+		final Map<?, ?> dependants;
+		try {
+			dependants = getDependants(ctxt);
+		} catch (IOException e) {
+			LOG.debug("Cannot read the dependants of {}", ctxt.getJspFile(),
+					e);
+			return false;
+		}
+		if (dependants == null) {
+			return true;
+		}
+		for (Map.Entry<?, ?> dependant : dependants.entrySet()) {
+			final long lastModified = getLastModified(ctxt,
+					(String) dependant.getKey());
+			if (lastModified < 0
+					|| !Long.valueOf(lastModified).equals(dependant.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Map<?, ?> getDependants(final JspCompilationContext ctxt)
+			throws IOException {
+		final URLClassLoader loader = new URLClassLoader(new URL[] { ctxt
+				.getOptions().getScratchDir().toURI().toURL() },
+				ctxt.getClassLoader());
+		try {
+			final Field field = Class.forName(ctxt.getFQCN(), true, loader)
+					.getDeclaredField(DEPENDANTS_FIELD);
+			field.setAccessible(true);
+			return (Map<?, ?>) field.get(null);
+		} catch (ReflectiveOperationException e) {
+			throw new IOException(e);
+		} catch (LinkageError e) {
+			throw new IOException(e);
+		} finally {
+			loader.close();
+		}
+	}
+
+	/**
+	 * Gets the modification time of a file a page depends on, resolved like
+	 * Jasper does.
+	 *
+	 * @return modification time or -1 if the file is gone or unreadable
+	 */
+	private static long getLastModified(final JspCompilationContext ctxt,
+			final String dependant) {
+		if (dependant.startsWith("jar:jar:")) {
+			// nested jars are not looked into, the page is compiled again
+			return -1;
+		}
+		try {
+			final URL url = dependant.startsWith("jar:")
+					|| dependant.startsWith("file:") ? new URL(dependant)
+					: ctxt.getResource(dependant);
+			if (url == null) {
+				return -1;
+			}
+			final URLConnection connection = url.openConnection();
+			final long lastModified;
+			if (connection instanceof JarURLConnection) {
+				lastModified = ((JarURLConnection) connection).getJarEntry()
+						.getTime();
+			} else {
+				lastModified = connection.getLastModified();
+			}
+			connection.getInputStream().close();
+			return lastModified;
+		} catch (IOException e) {
+			LOG.debug("Cannot check {}", dependant, e);
+			return -1;
+		}
+	}
+
+	/**
+	 * Keeps the classes just compiled for a page, replacing the ones cached
+	 * before, unless they depend on tag files.
+	 *
+	 * @param ctxt
+	 *            compilation context of the page
+	 */
+	public void store(final JspCompilationContext ctxt) {
+		try {
+			final File entry = getEntry(ctxt);
+			if (entry == null) {
+				return;
+			}
+			final File[] classFiles = new File(ctxt.getOutputDir())
+					.listFiles(classFilter(ctxt));
+			if (classFiles == null || classFiles.length == 0) {
+				return;
+			}
+			for (File classFile : classFiles) {
+				if (referencesTagFiles(classFile)) {
+					LOG.debug("Not caching classes of {} as it uses tag files",
+							ctxt.getJspFile());
+					return;
+				}
+			}
+			// classes are written aside and moved in place at once, so a
+			// concurrent restore never sees a partial entry
+			final File temporary = new File(entry.getParentFile(),
+					entry.getName() + "." + Thread.currentThread().getId()
+							+ ".tmp");
+			if (temporary.exists()) {
+				delete(temporary);
+			}
+			if (!temporary.mkdirs()) {
+				return;
+			}
+			for (File classFile : classFiles) {
+				copy(classFile, new File(temporary, classFile.getName()));
+			}
+			if (entry.isDirectory()) {
+				// outdated by the dependants of the page
+				delete(entry);
+			}
+			if (!temporary.renameTo(entry)) {
+				delete(temporary);
+			}
+			pruneFormerContents(entry);
+		} catch (IOException e) {
+			LOG.warn("Cannot cache compiled classes of {}", ctxt.getJspFile(),
+					e);
+		}
+	}
+
+	/**
+	 * Drops the classes kept for other contents of the page of an entry.
+	 * Entries being written by other threads are left alone.
+	 */
+	private static void pruneFormerContents(final File entry) {
+		final File[] entries = entry.getParentFile().listFiles();
+		if (entries == null) {
+			return;
+		}
+		for (File former : entries) {
+			if (former.isDirectory() && !former.equals(entry)
+					&& !former.getName().endsWith(".tmp")) {
+				LOG.debug("Dropping outdated compiled classes {}", former);
+				delete(former);
+			}
+		}
+	}
+
+	/**
+	 * Gets the directory holding the classes of a page.
+	 *
+	 * @return directory named after the hash of the page content, below the
+	 *         one of the page path, or null if the page cannot be read
+	 */
+	private File getEntry(final JspCompilationContext ctxt) throws IOException {
+		final String jspFile = ctxt.getJspFile();
+		final InputStream input = ctxt.getResourceAsStream(jspFile);
+		if (input == null) {
+			return null;
+		}
+		final MessageDigest digest = newDigest();
+		try {
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		} finally {
+			input.close();
+		}
+		final byte[] contentHash = digest.digest();
+		digest.update(jspFile.getBytes(StandardCharsets.UTF_8));
+		return new File(new File(directory, toHex(digest.digest())),
+				toHex(contentHash));
+	}
+
+	private static MessageDigest newDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static String toHex(final byte[] bytes) {
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+			hex.append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Accepts the class of a page and its inner classes.
+	 */
+	private static FilenameFilter classFilter(final JspCompilationContext ctxt) {
+		final String className = ctxt.getServletClassName();
+		return new FilenameFilter() {
+
+			@Override
+			public boolean accept(final File dir, final String name) {
+				return name.equals(className + ".class")
+						|| (name.startsWith(className + "$") && name
+								.endsWith(".class"));
+			}
+		};
+	}
+
+	private static boolean referencesTagFiles(final File classFile)
+			throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				(int) classFile.length());
+		final InputStream input = new FileInputStream(classFile);
+		try {
+			transfer(input, bytes);
+		} finally {
+			input.close();
+		}
+		final byte[] content = bytes.toByteArray();
+		for (int i = 0; i <= content.length - TAG_FILE_REFERENCE.length; i++) {
+			int j = 0;
+			while (j < TAG_FILE_REFERENCE.length
+					&& content[i + j] == TAG_FILE_REFERENCE[j]) {
+				j++;
+			}
+			if (j == TAG_FILE_REFERENCE.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void copy(final File source, final File target)
+			throws IOException {
+		final InputStream input = new FileInputStream(source);
+		try {
+			final OutputStream output = new FileOutputStream(target);
+			try {
+				transfer(input, output);
+			} finally {
+				output.close();
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	private static void transfer(final InputStream input,
+			final OutputStream output) throws IOException {
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			output.write(buffer, 0, read);
+		}
+	}
+
+	private static void delete(final File directory) {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (!file.delete()) {
+					LOG.debug("Cannot delete {}", file);
+				}
+			}
+		}
+		if (!directory.delete()) {
+			LOG.debug("Cannot delete {}", directory);
+		}
+	}
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.jsp;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.jasper.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles the JSPs of a context in the background, on a bounded pool of
+ * worker threads shared by all contexts, so the first requests to the pages
+ * do not pay for their compilation. Pages are compiled through the <code>jsp_precompile</code>
+ * support of Jasper, which creates and loads the page servlets without
+ * executing them.
+ */
+class JspPrecompiler {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(JspPrecompiler.class);
+
+	private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+	/**
+	 * Pool shared by the JSP servlets of all contexts, created on first use.
+	 */
+	private static ThreadPoolExecutor pool;
+
+	/**
+	 * Resources of a context that never hold pages.
+	 */
+	private static final String[] SKIPPED_PATHS = { "/META-INF/",
+			"/OSGI-INF/", "/WEB-INF/classes/", "/WEB-INF/lib/" };
+
+	private final JspServletWrapper jspServlet;
+	private final ExecutorService executor;
+	private final List<Future<?>> compilations = new ArrayList<Future<?>>();
+
+	/**
+	 * @param jspServlet
+	 *            servlet compiling the pages
+	 * @param threads
+	 *            maximum number of pages compiled at once by all contexts
+	 */
+	JspPrecompiler(final JspServletWrapper jspServlet, final int threads) {
+		this.jspServlet = jspServlet;
+		this.executor = getPool(threads);
+	}
+
+	/**
+	 * Gets the shared pool, resized to the given number of threads. All
+	 * contexts are configured alike, a change applies to the pages queued
+	 * from then on.
+	 */
+	private static synchronized ExecutorService getPool(final int threads) {
+		if (pool == null) {
+			pool = new ThreadPoolExecutor(threads, threads, 10,
+					TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+
+						@Override
+						public Thread newThread(final Runnable runnable) {
+							final Thread thread = new Thread(runnable,
+									"pax-web-jsp-precompiler-"
+											+ THREAD_NUMBER.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			// idle threads do not outlive the precompilation
+			pool.allowCoreThreadTimeOut(true);
+		} else if (threads > pool.getMaximumPoolSize()) {
+			pool.setMaximumPoolSize(threads);
+			pool.setCorePoolSize(threads);
+		} else if (threads < pool.getMaximumPoolSize()) {
+			pool.setCorePoolSize(threads);
+			pool.setMaximumPoolSize(threads);
+		}
+		return pool;
+	}
+
+	/**
+	 * Queues the compilation of the pages of a context.
+	 *
+	 * @param context
+	 *            servlet context of the pages
+	 * @param jspFile
+	 *            the only page served by the JSP servlet or null if it serves
+	 *            every page of the context
+	 */
+	void start(final ServletContext context, final String jspFile) {
+		final List<String> jspUris = new ArrayList<String>();
+		if (jspFile != null) {
+			jspUris.add(jspFile);
+		} else {
+			findPages(context, "/", jspUris);
+		}
+		LOG.debug("Precompiling {} JSPs", jspUris.size());
+		synchronized (compilations) {
+			for (final String jspUri : jspUris) {
+				compilations.add(executor.submit(new Runnable() {
+
+					@Override
+					public void run() {
+						compile(jspUri);
+					}
+				}));
+			}
+		}
+	}
+
+	/**
+	 * Abandons the pages not compiled yet.
+	 */
+	void stop() {
+		synchronized (compilations) {
+			for (Future<?> compilation : compilations) {
+				compilation.cancel(false);
+			}
+			compilations.clear();
+		}
+	}
+
+	private void compile(final String jspUri) {
+		final int[] status = { HttpServletResponse.SC_OK };
+		try {
+			jspServlet.precompile(newRequest(jspUri), newResponse(status));
+			if (status[0] != HttpServletResponse.SC_OK) {
+				LOG.debug("JSP {} not precompiled, status {}", jspUri,
+						status[0]);
+			}
+			//CHECKSTYLE:OFF
+		} catch (Exception e) {
+			// pages meant to be included only often cannot be compiled alone
+			LOG.debug("JSP {} not precompiled", jspUri, e);
+		}
+		//CHECKSTYLE:ON
+	}
+
+	private static void findPages(final ServletContext context,
+			final String path, final List<String> jspUris) {
+		for (String skipped : SKIPPED_PATHS) {
+			if (skipped.equals(path)) {
+				return;
+			}
+		}
+		final Set<String> paths = context.getResourcePaths(path);
+		if (paths == null) {
+			return;
+		}
+		for (String resourcePath : paths) {
+			if (resourcePath.endsWith("/")) {
+				findPages(context, resourcePath, jspUris);
+			} else if (resourcePath.endsWith(".jsp")
+					|| resourcePath.endsWith(".jspx")) {
+				jspUris.add(resourcePath);
+			}
+		}
+	}
+
+	/**
+	 * Creates a request asking Jasper to compile a page without executing it.
+	 */
+	private static HttpServletRequest newRequest(final String jspUri) {
+		return newProxy(HttpServletRequest.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method,
+					final Object[] args) {
+				final String name = method.getName();
+				if ("getServletPath".equals(name)
+						|| "getRequestURI".equals(name)) {
+					return jspUri;
+				}
+				if ("getQueryString".equals(name)) {
+					return Constants.PRECOMPILE;
+				}
+				return defaultValue(method);
+			}
+		});
+	}
+
+	/**
+	 * Creates a response only keeping the status sent.
+	 */
+	private static HttpServletResponse newResponse(final int[] status) {
+		return newProxy(HttpServletResponse.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method,
+					final Object[] args) {
+				if (("sendError".equals(method.getName()) || "setStatus"
+						.equals(method.getName())) && args != null) {
+					status[0] = (Integer) args[0];
+				}
+				return defaultValue(method);
+			}
+		});
+	}
+
+	private static <T> T newProxy(final Class<T> type,
+			final InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(
+				JspPrecompiler.class.getClassLoader(), new Class<?>[] { type },
+				handler));
+	}
+
+	private static Object defaultValue(final Method method) {
+		final Class<?> type = method.getReturnType();
+		if (type == boolean.class) {
+			return Boolean.FALSE;
+		}
+		if (type == int.class) {
+			return 0;
+		}
+		if (type == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+
+}
@@ -16,6 +16,7 @@
  */
 package org.ops4j.pax.web.jsp;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URLClassLoader;
 import java.util.concurrent.Callable;
@@ -26,6 +27,8 @@ import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.jasper.Constants;
 import org.apache.jasper.servlet.JspServlet;
@@ -48,6 +51,18 @@ public class JspServletWrapper implements Servlet {
 	 */
 	private static final Logger LOG = LoggerFactory
 			.getLogger(JspServletWrapper.class);
+	/**
+	 * Init parameter enabling the background compilation of the JSPs.
+	 */
+	private static final String PRECOMPILATION = "usePrecompiled";
+	/**
+	 * Init parameter limiting the number of JSPs compiled at once.
+	 */
+	private static final String PRECOMPILATION_THREADS = "precompilationThreads";
+	/**
+	 * Init parameter locating the persistent cache of compiled JSPs.
+	 */
+	private static final String PRECOMPILATION_CACHE_DIR = "precompilationCacheDir";
 	/**
 	 * Jasper Servlet.
 	 */
@@ -59,6 +74,16 @@ public class JspServletWrapper implements Servlet {
 
 	private final String jspFile;
 
+	/**
+	 * Bundle providing the JSPs, null if unknown.
+	 */
+	private final Bundle bundle;
+
+	/**
+	 * Background compiler of the JSPs, null if precompilation is disabled.
+	 */
+	private JspPrecompiler precompiler;
+
 	/**
 	 * Constructor that provides a custom class loader, in order to be able to
 	 * customize the behavior of Jasper with full control over the class loading
@@ -71,27 +96,46 @@ public class JspServletWrapper implements Servlet {
 	 */
 	public JspServletWrapper(final String jspFile,
 			final URLClassLoader classLoader) {
-		jasperServlet = new JspServlet();
-		jasperClassLoader = classLoader;
-		this.jspFile = jspFile;
+		this(null, jspFile, classLoader);
 	}
 
 	public JspServletWrapper(final Bundle bundle, final String jspFile) {
-		this(jspFile, new JasperClassLoader(bundle,
+		this(bundle, jspFile, new JasperClassLoader(bundle,
 				JasperClassLoader.class.getClassLoader()));
 	}
 
+	private JspServletWrapper(final Bundle bundle, final String jspFile,
+			final URLClassLoader classLoader) {
+		jasperServlet = new JspServlet();
+		jasperClassLoader = classLoader;
+		this.jspFile = jspFile;
+		this.bundle = bundle;
+	}
+
 	public JspServletWrapper(final Bundle bundle) {
 		this(bundle, null);
 	}
 
 	/**
 	 * Delegates to jasper servlet with a controlled context class loader.
+	 * With precompilation enabled, the JSPs are then compiled in the
+	 * background, keeping their classes in the persistent cache if one is
+	 * configured.
 	 * 
 	 * @see JspServlet#init(ServletConfig)
 	 */
 	@Override
 	public void init(final ServletConfig config) throws ServletException {
+		final boolean precompilation = Boolean.parseBoolean(config
+				.getInitParameter(PRECOMPILATION));
+		final String cacheDir = config.getInitParameter(PRECOMPILATION_CACHE_DIR);
+		// classes are cached by symbolic name, bundles without one are
+		// compiled only
+		if (precompilation && cacheDir != null && bundle != null
+				&& bundle.getSymbolicName() != null) {
+			new JspClassCache(new File(cacheDir), bundle).register(config
+					.getServletContext());
+		}
 		try {
 			ContextClassLoaderUtils.doWithClassLoader(jasperClassLoader,
 					new Callable<Void>() {
@@ -115,6 +159,31 @@ public class JspServletWrapper implements Servlet {
 			LOG.error("Ignored exception", ignore);
 		}
 		//CHECKSTYLE:ON
+		if (precompilation) {
+			final String threads = config
+					.getInitParameter(PRECOMPILATION_THREADS);
+			precompiler = new JspPrecompiler(this, threads == null ? 1
+					: Math.max(1, Integer.parseInt(threads)));
+			precompiler.start(config.getServletContext(), jspFile);
+		}
+	}
+
+	/**
+	 * Asks jasper servlet to compile a JSP, with a controlled context class
+	 * loader.
+	 */
+	void precompile(final HttpServletRequest req, final HttpServletResponse res)
+			throws Exception {
+		ContextClassLoaderUtils.doWithClassLoader(jasperClassLoader,
+				new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						jasperServlet.service(req, res);
+						return null;
+					}
+
+				});
 	}
 
 	/**
@@ -188,6 +257,10 @@ public class JspServletWrapper implements Servlet {
 	 */
 	@Override
 	public void destroy() {
+		if (precompiler != null) {
+			precompiler.stop();
+			precompiler = null;
+		}
 		try {
 			ContextClassLoaderUtils.doWithClassLoader(jasperClassLoader,
 					new Callable<Void>() {
@@ -54,5 +54,15 @@ public interface JspWebdefaults {
 	String PROPERTY_JSP_TAGPOOL_MAX_SIZE = PID + ".jsp.tagpool.max.size";
 
 	String PROPERTY_JSP_PRECOMPILATION = PID + ".jsp.precompilation";
+
+	/**
+	 * Maximum number of JSPs of all contexts compiled at once in the background
+	 */
+	String PROPERTY_JSP_PRECOMPILATION_THREADS = PID + ".jsp.precompilation.threads";
+
+	/**
+	 * Directory keeping the precompiled JSP classes across restarts
+	 */
+	String PROPERTY_JSP_PRECOMPILATION_CACHE_DIR = PID + ".jsp.precompilation.cache.dir";
 }
 //CHECKSTYLE:ON
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.jsp;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.tomcat.util.descriptor.tld.TaglibXml;
+import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.SynchronousBundleListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Framework wide cache of the TLDs found in bundles, shared by the
+ * {@link TldScanner}s of all JSP contexts, so taglib bundles imported by many
+ * web applications are searched and parsed once. Entries are keyed by bundle
+ * id, bundle revision (its last modification time), entry path and parser
+ * settings, and are dropped when the bundle is updated, unresolved or
+ * uninstalled.
+ */
+public final class TaglibXmlCache {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(TaglibXmlCache.class);
+
+	private static final TaglibXmlCache INSTANCE = new TaglibXmlCache();
+
+	/**
+	 * TLD entries found per bundle revision.
+	 */
+	private final ConcurrentMap<Revision, List<URL>> entries = new ConcurrentHashMap<>();
+	/**
+	 * Parsed TLDs per bundle revision, entry path and parser settings.
+	 */
+	private final ConcurrentMap<Key, TaglibXml> taglibs = new ConcurrentHashMap<>();
+	private final AtomicBoolean listening = new AtomicBoolean();
+
+	private TaglibXmlCache() {
+		// singleton
+	}
+
+	public static TaglibXmlCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Finds the TLDs below META-INF of a bundle.
+	 *
+	 * @param bundle
+	 *            bundle to search
+	 *
+	 * @return entries of the TLDs, empty if there are none
+	 */
+	public List<URL> findTlds(final Bundle bundle) {
+		listen();
+		final Revision revision = new Revision(bundle);
+		List<URL> found = entries.get(revision);
+		if (found == null) {
+			found = new ArrayList<>();
+			final Enumeration<URL> urls = bundle.findEntries("META-INF",
+					"*.tld", true);
+			while (urls != null && urls.hasMoreElements()) {
+				found.add(urls.nextElement());
+			}
+			found = Collections.unmodifiableList(found);
+			entries.put(revision, found);
+		}
+		return found;
+	}
+
+	/**
+	 * Gets a TLD of a bundle, parsing it only if it was not parsed before for
+	 * the current revision of the bundle with the same parser settings.
+	 *
+	 * @param bundle
+	 *            bundle containing the TLD
+	 * @param path
+	 *            path of a TLD entry of the bundle
+	 * @param parser
+	 *            parser used if the TLD is not cached
+	 * @param namespaceAware
+	 *            namespace awareness the parser was created with
+	 * @param validation
+	 *            validation the parser was created with
+	 * @param blockExternal
+	 *            blocking of external entities the parser was created with
+	 *
+	 * @return parsed TLD
+	 *
+	 * @throws IOException
+	 *             if the TLD cannot be read
+	 * @throws SAXException
+	 *             if the TLD cannot be parsed
+	 */
+	public TaglibXml getTaglibXml(final Bundle bundle,
+			final TldResourcePath path, final TldParser parser,
+			final boolean namespaceAware, final boolean validation,
+			final boolean blockExternal) throws IOException, SAXException {
+		listen();
+		final Key key = new Key(new Revision(bundle), path.getUrl().getPath(),
+				namespaceAware, validation, blockExternal);
+		TaglibXml taglib = taglibs.get(key);
+		if (taglib == null) {
+			taglib = parser.parse(path);
+			final TaglibXml existing = taglibs.putIfAbsent(key, taglib);
+			if (existing != null) {
+				taglib = existing;
+			}
+		} else {
+			LOG.debug("TLD {} found in cache", path.getUrl());
+		}
+		return taglib;
+	}
+
+	/**
+	 * Drops all cached TLDs of a bundle.
+	 *
+	 * @param bundle
+	 *            changed bundle
+	 */
+	public void remove(final Bundle bundle) {
+		final long bundleId = bundle.getBundleId();
+		for (Iterator<Revision> it = entries.keySet().iterator(); it.hasNext();) {
+			if (it.next().bundleId == bundleId) {
+				it.remove();
+			}
+		}
+		for (Iterator<Key> it = taglibs.keySet().iterator(); it.hasNext();) {
+			if (it.next().revision.bundleId == bundleId) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drops all cached TLDs.
+	 */
+	public void clear() {
+		entries.clear();
+		taglibs.clear();
+	}
+
+	/**
+	 * Registers, once, a listener dropping the TLDs of changed bundles. Outside
+	 * of a framework nothing is registered, stale entries are never used
+	 * anyway as they are keyed by revision.
+	 */
+	private void listen() {
+		if (listening.get()) {
+			return;
+		}
+		final Bundle jspBundle = FrameworkUtil.getBundle(TaglibXmlCache.class);
+		final BundleContext bundleContext = jspBundle == null ? null
+				: jspBundle.getBundleContext();
+		if (bundleContext == null || !listening.compareAndSet(false, true)) {
+			return;
+		}
+		bundleContext.addBundleListener(new SynchronousBundleListener() {
+
+			@Override
+			public void bundleChanged(final BundleEvent event) {
+				if (event.getType() == BundleEvent.STOPPING
+						&& event.getBundle() == jspBundle) {
+					clear();
+					listening.set(false);
+				} else {
+					TaglibXmlCache.this.bundleChanged(event);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Drops the TLDs of a bundle that got updated, unresolved (refreshed) or
+	 * uninstalled.
+	 *
+	 * @param event
+	 *            bundle event
+	 */
+	void bundleChanged(final BundleEvent event) {
+		switch (event.getType()) {
+		case BundleEvent.UPDATED:
+		case BundleEvent.UNRESOLVED:
+		case BundleEvent.UNINSTALLED:
+			remove(event.getBundle());
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Revision of a bundle.
+	 */
+	private static final class Revision {
+
+		private final long bundleId;
+		private final long lastModified;
+
+		Revision(final Bundle bundle) {
+			this.bundleId = bundle.getBundleId();
+			this.lastModified = bundle.getLastModified();
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (bundleId ^ (bundleId >>> 32))
+					* 31 + (int) (lastModified ^ (lastModified >>> 32));
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Revision)) {
+				return false;
+			}
+			final Revision other = (Revision) obj;
+			return bundleId == other.bundleId
+					&& lastModified == other.lastModified;
+		}
+	}
+
+	/**
+	 * Entry path within a bundle revision, parsed with the given settings.
+	 */
+	private static final class Key {
+
+		private final Revision revision;
+		private final String path;
+		private final int settings;
+
+		Key(final Revision revision, final String path,
+				final boolean namespaceAware, final boolean validation,
+				final boolean blockExternal) {
+			this.revision = revision;
+			this.path = path;
+			this.settings = (namespaceAware ? 1 : 0) | (validation ? 2 : 0)
+					| (blockExternal ? 4 : 0);
+		}
+
+		@Override
+		public int hashCode() {
+			return (revision.hashCode() * 31 + path.hashCode()) * 31
+					+ settings;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return revision.equals(other.revision) && path.equals(other.path)
+					&& settings == other.settings;
+		}
+	}
+
+}
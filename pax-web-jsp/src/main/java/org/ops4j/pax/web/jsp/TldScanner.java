@@ -20,7 +20,6 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -50,6 +49,9 @@ public class TldScanner {
     private static final String WEB_INF = "/WEB-INF/";
     private final ServletContext context;
     private final TldParser tldParser;
+    private final boolean namespaceAware;
+    private final boolean validation;
+    private final boolean blockExternal;
     private final Map<String, TldResourcePath> uriTldResourcePathMap = new HashMap<>();
     private final Map<TldResourcePath, TaglibXml> tldResourcePathTaglibXmlMap = new HashMap<>();
     private final List<String> listeners = new ArrayList<>();
@@ -63,6 +65,9 @@ public class TldScanner {
     public TldScanner(ServletContext context, boolean namespaceAware, boolean validation,
         boolean blockExternal) {
         this.context = context;
+        this.namespaceAware = namespaceAware;
+        this.validation = validation;
+        this.blockExternal = blockExternal;
 
         this.tldParser = new TldParser(namespaceAware, validation, blockExternal);
     }
@@ -232,26 +237,8 @@ public class TldScanner {
 		ClassLoader webappLoader = Thread.currentThread()
 				.getContextClassLoader();
 		if (webappLoader instanceof ResourceDelegatingBundleClassLoader) {
-			List<Bundle> bundles = ((ResourceDelegatingBundleClassLoader) webappLoader)
-					.getBundles();
-
-			for (Bundle bundle : bundles) {
-				Enumeration<URL> urls = bundle.findEntries("META-INF", "*.tld",
-						true);
-				if (urls != null) {
-					while (urls.hasMoreElements()) {
-						URL url = urls.nextElement();
-						log.info("found TLD {}", url);
-						TldResourcePath tldResourcePath = new TldResourcePath(
-								url, null, null);
-						try {
-							parseTld(tldResourcePath);
-						} catch (SAXException e) {
-							throw new IOException(e);
-						}
-					}
-				}
-			}
+			scanBundles(((ResourceDelegatingBundleClassLoader) webappLoader)
+					.getBundles());
 
 		} else if (isTomcatWebLoader()) {
 			if (webappLoader instanceof org.apache.catalina.loader.WebappClassLoader) { // special
@@ -261,32 +248,40 @@ public class TldScanner {
 				ClassLoader parent = ((org.apache.catalina.loader.WebappClassLoader) webappLoader)
 						.getParent();
 				if (parent instanceof ResourceDelegatingBundleClassLoader) {
-					List<Bundle> bundles = ((ResourceDelegatingBundleClassLoader) parent)
-							.getBundles();
-
-					for (Bundle bundle : bundles) {
-						Enumeration<URL> urls = bundle.findEntries("META-INF",
-								"*.tld", true);
-						if (urls != null) {
-							while (urls.hasMoreElements()) {
-								URL url = urls.nextElement();
-								log.info("found TLD {}", url);
-								TldResourcePath tldResourcePath = new TldResourcePath(
-										url, null, null);
-								try {
-									parseTld(tldResourcePath);
-								} catch (SAXException e) {
-									throw new IOException(e);
-								}
-							}
-						}
-					}
+					scanBundles(((ResourceDelegatingBundleClassLoader) parent)
+							.getBundles());
 				}
 			}
 		}
 
     }
 
+	/**
+	 * Scans the TLDs below META-INF of bundles. The TLDs are found and parsed
+	 * through the {@link TaglibXmlCache}, so TLDs of bundles already scanned
+	 * for another context are not parsed again.
+	 */
+	private void scanBundles(List<Bundle> bundles) throws IOException {
+		TaglibXmlCache cache = TaglibXmlCache.getInstance();
+		for (Bundle bundle : bundles) {
+			for (URL url : cache.findTlds(bundle)) {
+				log.info("found TLD {}", url);
+				TldResourcePath tldResourcePath = new TldResourcePath(url,
+						null, null);
+				if (tldResourcePathTaglibXmlMap.containsKey(tldResourcePath)) {
+					continue;
+				}
+				try {
+					addTld(tldResourcePath,
+							cache.getTaglibXml(bundle, tldResourcePath, tldParser,
+									namespaceAware, validation, blockExternal));
+				} catch (SAXException e) {
+					throw new IOException(e);
+				}
+			}
+		}
+	}
+
 	private boolean isTomcatWebLoader() {
 		try {
 			return (org.apache.catalina.loader.WebappClassLoader.class != null);
@@ -307,7 +302,10 @@ public class TldScanner {
             // TLD has already been parsed as a result of processing web.xml
             return;
         }
-        TaglibXml tld = tldParser.parse(path);
+        addTld(path, tldParser.parse(path));
+    }
+
+    private void addTld(TldResourcePath path, TaglibXml tld) {
         String uri = tld.getUri();
         if (uri != null) {
             if (!uriTldResourcePathMap.containsKey(uri)) {
@@ -0,0 +1,21 @@
+package org.apache.jsp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stands in for the class Jasper generates for <code>/index.jsp</code>
+ * including <code>/inc.jspf</code>.
+ */
+public final class index_jsp {
+
+	public static final long INCLUDE_LAST_MODIFIED = 1400000000000L;
+
+	private static Map<String, Long> _jspx_dependants;
+
+	static {
+		_jspx_dependants = new HashMap<String, Long>(1);
+		_jspx_dependants.put("/inc.jspf", INCLUDE_LAST_MODIFIED);
+	}
+
+}
@@ -0,0 +1,210 @@
+package org.ops4j.pax.web.jsp;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.MessageDigest;
+
+import javax.servlet.ServletContext;
+
+import org.apache.jasper.JspCompilationContext;
+import org.apache.jasper.Options;
+import org.apache.jsp.index_jsp;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Version;
+
+public class JspClassCacheTest {
+
+	private static final long PAGE_LAST_MODIFIED = 1400000001000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File cacheDir;
+	private File page;
+	private File include;
+	private JspClassCache cache;
+	private JspCompilationContext ctxt;
+
+	@Before
+	public void setUp() throws Exception {
+		cacheDir = folder.newFolder("cache");
+		final File webapp = folder.newFolder("webapp");
+		page = new File(webapp, "index.jsp");
+		write(page, "<%@ include file=\"inc.jspf\" %>");
+		include = new File(webapp, "inc.jspf");
+		write(include, "hello");
+		assertTrue(include.setLastModified(index_jsp.INCLUDE_LAST_MODIFIED));
+
+		Bundle bundle = createNiceMock(Bundle.class);
+		expect(bundle.getSymbolicName()).andReturn("org.example.web")
+				.anyTimes();
+		expect(bundle.getVersion()).andReturn(new Version("1.2.0"))
+				.anyTimes();
+		replay(bundle);
+		cache = new JspClassCache(cacheDir, bundle);
+
+		ctxt = newContext(folder.newFolder("scratch"));
+	}
+
+	@Test
+	public void classesAreKeptByBundlePageAndContent() throws Exception {
+		compile();
+		cache.store(ctxt);
+
+		File entry = new File(new File(new File(new File(cacheDir,
+				"org.example.web"), "1.2.0"), sha1("/index.jsp")),
+				sha1(read(page)));
+		assertTrue(new File(entry, "index_jsp.class").isFile());
+		assertEquals(1, entry.getParentFile().list().length);
+
+		write(page, "changed");
+		compile();
+		cache.store(ctxt);
+		assertFalse(entry.exists());
+		assertEquals(1, entry.getParentFile().list().length);
+	}
+
+	@Test
+	public void restoredClassesAreDatedAsThePage() throws Exception {
+		compile();
+		cache.store(ctxt);
+		File classFile = new File(ctxt.getClassFileName());
+		assertTrue(classFile.delete());
+
+		assertTrue(cache.restore(ctxt));
+		assertTrue(classFile.isFile());
+		assertEquals(page.lastModified(),
+				classFile.lastModified());
+	}
+
+	@Test
+	public void changedPagesAreNotRestored() throws Exception {
+		compile();
+		cache.store(ctxt);
+		File classFile = new File(ctxt.getClassFileName());
+		assertTrue(classFile.delete());
+
+		write(page, "changed");
+		assertFalse(cache.restore(ctxt));
+		assertFalse(classFile.exists());
+	}
+
+	@Test
+	public void pagesWithChangedDependantsAreNotRestored() throws Exception {
+		compile();
+		cache.store(ctxt);
+		File classFile = new File(ctxt.getClassFileName());
+		assertTrue(classFile.delete());
+
+		assertTrue(include.setLastModified(index_jsp.INCLUDE_LAST_MODIFIED
+				+ 1000));
+		assertFalse(cache.restore(ctxt));
+		assertFalse(classFile.exists());
+	}
+
+	/**
+	 * Puts the class of the page where Jasper would have compiled it.
+	 */
+	private void compile() throws IOException {
+		assertTrue(page.setLastModified(PAGE_LAST_MODIFIED));
+		final InputStream input = index_jsp.class
+				.getResourceAsStream("index_jsp.class");
+		try {
+			final OutputStream output = new FileOutputStream(
+					ctxt.getClassFileName());
+			try {
+				final byte[] buffer = new byte[8192];
+				int read;
+				while ((read = input.read(buffer)) != -1) {
+					output.write(buffer, 0, read);
+				}
+			} finally {
+				output.close();
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	private JspCompilationContext newContext(final File scratchDir)
+			throws Exception {
+		Options options = createNiceMock(Options.class);
+		expect(options.getScratchDir()).andReturn(scratchDir).anyTimes();
+		replay(options);
+
+		ServletContext context = createNiceMock(ServletContext.class);
+		expect(context.getResource("/index.jsp")).andReturn(
+				page.toURI().toURL()).anyTimes();
+		expect(context.getResource("/inc.jspf")).andReturn(
+				include.toURI().toURL()).anyTimes();
+		expect(context.getResourceAsStream("/index.jsp")).andAnswer(
+				new IAnswer<InputStream>() {
+					@Override
+					public InputStream answer() throws Throwable {
+						return new FileInputStream(page);
+					}
+				}).anyTimes();
+		replay(context);
+
+		JspCompilationContext compilationContext = new JspCompilationContext(
+				"/index.jsp", options, context, null, null);
+		// page classes are only found in the scratch directory
+		compilationContext.setClassLoader(new URLClassLoader(new URL[0],
+				null));
+		return compilationContext;
+	}
+
+	private static void write(final File file, final String content)
+			throws IOException {
+		final OutputStream output = new FileOutputStream(file);
+		try {
+			output.write(content.getBytes("UTF-8"));
+		} finally {
+			output.close();
+		}
+	}
+
+	private static byte[] read(final File file) throws IOException {
+		final byte[] content = new byte[(int) file.length()];
+		final InputStream input = new FileInputStream(file);
+		try {
+			int offset = 0;
+			while (offset < content.length) {
+				offset += input.read(content, offset, content.length - offset);
+			}
+		} finally {
+			input.close();
+		}
+		return content;
+	}
+
+	private static String sha1(final String value) throws Exception {
+		return sha1(value.getBytes("UTF-8"));
+	}
+
+	private static String sha1(final byte[] value) throws Exception {
+		final StringBuilder hex = new StringBuilder();
+		for (byte b : MessageDigest.getInstance("SHA-1").digest(value)) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,71 @@
+package org.ops4j.pax.web.jsp;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+public class JspPrecompilerTest {
+
+	private final List<String> compiled = Collections
+			.synchronizedList(new ArrayList<String>());
+	private final CountDownLatch started = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	@Test
+	public void stopCancelsQueuedPages() throws Exception {
+		ServletContext context = createNiceMock(ServletContext.class);
+		expect(context.getResourcePaths("/")).andReturn(
+				new LinkedHashSet<String>(Arrays.asList("/a.jsp", "/b.jsp",
+						"/c.jsp"))).anyTimes();
+		replay(context);
+		JspServletWrapper jspServlet = new RecordingServlet();
+
+		JspPrecompiler precompiler = new JspPrecompiler(jspServlet, 1);
+		precompiler.start(context, null);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		precompiler.stop();
+		release.countDown();
+
+		// queued after the cancelled pages on the single worker thread
+		new JspPrecompiler(jspServlet, 1).start(context, "/last.jsp");
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("/a.jsp", "/last.jsp"), compiled);
+	}
+
+	private final class RecordingServlet extends JspServletWrapper {
+
+		private RecordingServlet() {
+			super(null, new URLClassLoader(new URL[0]));
+		}
+
+		@Override
+		void precompile(final HttpServletRequest req,
+				final HttpServletResponse res) throws Exception {
+			compiled.add(req.getServletPath());
+			started.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			if ("/last.jsp".equals(req.getServletPath())) {
+				done.countDown();
+			}
+		}
+	}
+}
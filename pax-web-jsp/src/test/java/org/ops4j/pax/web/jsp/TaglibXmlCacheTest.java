@@ -0,0 +1,112 @@
+package org.ops4j.pax.web.jsp;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.net.URL;
+
+import org.apache.tomcat.util.descriptor.tld.TaglibXml;
+import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+
+public class TaglibXmlCacheTest {
+
+	private final TaglibXmlCache cache = TaglibXmlCache.getInstance();
+	private CountingParser parser;
+	private TldResourcePath path;
+
+	@Before
+	public void setUp() throws Exception {
+		cache.clear();
+		parser = new CountingParser();
+		path = new TldResourcePath(new URL("file:/bundle/META-INF/c.tld"),
+				null, null);
+	}
+
+	@After
+	public void tearDown() {
+		cache.clear();
+	}
+
+	@Test
+	public void parsedOncePerRevision() throws Exception {
+		Bundle bundle = bundle(1L, 100L);
+
+		TaglibXml first = cache.getTaglibXml(bundle, path, parser, true,
+				false, true);
+		assertSame(first,
+				cache.getTaglibXml(bundle, path, parser, true, false, true));
+		assertEquals(1, parser.parsed);
+
+		TaglibXml updated = cache.getTaglibXml(bundle(1L, 200L), path,
+				parser, true, false, true);
+		assertNotSame(first, updated);
+		assertEquals(2, parser.parsed);
+	}
+
+	@Test
+	public void parserSettingsArePartOfTheKey() throws Exception {
+		Bundle bundle = bundle(1L, 100L);
+
+		cache.getTaglibXml(bundle, path, parser, true, false, true);
+		cache.getTaglibXml(bundle, path, parser, true, true, true);
+		cache.getTaglibXml(bundle, path, parser, true, false, false);
+		assertEquals(3, parser.parsed);
+
+		cache.getTaglibXml(bundle, path, parser, true, true, true);
+		assertEquals(3, parser.parsed);
+	}
+
+	@Test
+	public void changedBundlesAreEvicted() throws Exception {
+		Bundle bundle = bundle(1L, 100L);
+		Bundle other = bundle(2L, 100L);
+		int[] types = { BundleEvent.UPDATED, BundleEvent.UNRESOLVED,
+				BundleEvent.UNINSTALLED };
+		cache.getTaglibXml(other, path, parser, true, false, true);
+
+		for (int i = 0; i < types.length; i++) {
+			cache.getTaglibXml(bundle, path, parser, true, false, true);
+			assertEquals(i + 2, parser.parsed);
+
+			cache.bundleChanged(new BundleEvent(BundleEvent.STARTED, bundle));
+			cache.getTaglibXml(bundle, path, parser, true, false, true);
+			assertEquals(i + 2, parser.parsed);
+
+			cache.bundleChanged(new BundleEvent(types[i], bundle));
+		}
+		cache.getTaglibXml(other, path, parser, true, false, true);
+		assertEquals(4, parser.parsed);
+	}
+
+	private static Bundle bundle(final long id, final long lastModified) {
+		Bundle bundle = createNiceMock(Bundle.class);
+		expect(bundle.getBundleId()).andReturn(id).anyTimes();
+		expect(bundle.getLastModified()).andReturn(lastModified).anyTimes();
+		replay(bundle);
+		return bundle;
+	}
+
+	private static final class CountingParser extends TldParser {
+
+		private int parsed;
+
+		CountingParser() {
+			super(true, false, true);
+		}
+
+		@Override
+		public TaglibXml parse(final TldResourcePath path) {
+			parsed++;
+			return new TaglibXml();
+		}
+	}
+}
@@ -28,8 +28,19 @@ import static org.ops4j.pax.web.jsp.JspWebdefaults.PROPERTY_JSP_KEEP_GENERATED;
 import static org.ops4j.pax.web.jsp.JspWebdefaults.PROPERTY_JSP_LOG_VERBOSITY_LEVEL;
 import static org.ops4j.pax.web.jsp.JspWebdefaults.PROPERTY_JSP_MAPPED_FILE;
 import static org.ops4j.pax.web.jsp.JspWebdefaults.PROPERTY_JSP_PRECOMPILATION;
+import static org.ops4j.pax.web.jsp.JspWebdefaults.PROPERTY_JSP_PRECOMPILATION_CACHE_DIR;
+import static org.ops4j.pax.web.jsp.JspWebdefaults.PROPERTY_JSP_PRECOMPILATION_THREADS;
 import static org.ops4j.pax.web.jsp.JspWebdefaults.PROPERTY_JSP_SCRATCH_DIR;
 import static org.ops4j.pax.web.jsp.JspWebdefaults.PROPERTY_JSP_TAGPOOL_MAX_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_AUTHENTICATION_CACHE_ENABLED;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_AUTHENTICATION_CACHE_MAX_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_AUTHENTICATION_CACHE_TTL;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_COMPRESSION_ENABLED;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_COMPRESSION_EXCLUDED_PATHS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_COMPRESSION_LEVEL;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_COMPRESSION_MIME_TYPES;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_COMPRESSION_MIN_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_COMPRESSION_PRECOMPRESSED;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_HTTP_CONNECTOR_NAME;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_HTTP_ENABLED;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_HTTP_PORT;
@@ -39,15 +50,30 @@ import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_HTTP_SECU
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_HTTP_USE_NIO;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LISTENING_ADDRESSES;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_APPEND;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_ASYNC;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_BUFFERSIZE;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_DISPATCH;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_EXTENDED;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_FORMAT;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_LOGTIMEZONE;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_RETAINDAYS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_RESOURCE_BUFFER_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_RESOURCE_CACHE_DIRECT;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_RESOURCE_CACHE_MAX_ENTRY_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_RESOURCE_CACHE_MAX_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_ACCEPTORS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_IDLE_TIMEOUT;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_MAX_THREADS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_MIN_THREADS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_QUEUE_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_SELECTORS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_THREAD_POOL_FILTER;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_REQUEST_METRICS;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_CONFIGURATION_FILE;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_CONFIGURATION_URL;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_COOKIE;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_DOMAIN;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_IDLE_TIME;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_PATH;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_COOKIE_SECURE;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_TIMEOUT;
@@ -72,6 +98,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.ops4j.pax.swissbox.property.BundleContextPropertyResolver;
+import org.ops4j.pax.web.service.AuthenticationCache;
 import org.ops4j.pax.web.service.WebContainer;
 import org.ops4j.pax.web.service.internal.util.SupportUtils;
 import org.ops4j.pax.web.service.spi.Configuration;
@@ -79,15 +106,19 @@ import org.ops4j.pax.web.service.spi.ServerController;
 import org.ops4j.pax.web.service.spi.ServerControllerFactory;
 import org.ops4j.pax.web.service.spi.ServletListener;
 import org.ops4j.pax.web.service.spi.model.ServerModel;
+import org.ops4j.pax.web.service.spi.util.CredentialCache;
+import org.ops4j.pax.web.service.spi.util.ResourceCache;
 import org.ops4j.util.property.DictionaryPropertyResolver;
 import org.ops4j.util.property.PropertyResolver;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
 import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.SynchronousBundleListener;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
@@ -166,6 +197,33 @@ public class Activator implements BundleActivator {
 			LOG.info("LogService support is not available, no log events will be created!");
 		}
 
+		context.registerService(AuthenticationCache.class,
+				new AuthenticationCache() {
+
+					@Override
+					public void flush() {
+						CredentialCache.flushAll();
+					}
+
+					@Override
+					public void flush(final String username) {
+						CredentialCache.flushAll(username);
+					}
+				}, null);
+
+		// cached bundle resources are not revalidated on access
+		context.addBundleListener(new SynchronousBundleListener() {
+
+			@Override
+			public void bundleChanged(final BundleEvent event) {
+				if (event.getType() == BundleEvent.UPDATED
+						|| event.getType() == BundleEvent.UNRESOLVED
+						|| event.getType() == BundleEvent.UNINSTALLED) {
+					ResourceCache.clearAll();
+				}
+			}
+		});
+
 		if (SupportUtils.isManagedServiceAvailable()) {
 			createManagedService(context);
 		} else {
@@ -439,6 +497,8 @@ public class Activator implements BundleActivator {
 				configuration.getSessionPath());
 		setProperty(toPropagate, PROPERTY_SESSION_COOKIE_SECURE,
 				configuration.getSessionCookieSecure());
+		setProperty(toPropagate, PROPERTY_SESSION_IDLE_TIME,
+				configuration.getSessionIdleTime());
 		setProperty(toPropagate, PROPERTY_WORKER_NAME, configuration.getWorkerName());
 		setProperty(toPropagate, PROPERTY_LISTENING_ADDRESSES,
 				configuration.getListeningAddresses());
@@ -469,6 +529,58 @@ public class Activator implements BundleActivator {
 				configuration.isLogNCSADispatch());
 		setProperty(toPropagate, PROPERTY_LOG_NCSA_LOGTIMEZONE,
 				configuration.getLogNCSATimeZone());
+		setProperty(toPropagate, PROPERTY_LOG_NCSA_ASYNC,
+				configuration.isLogNCSAAsync());
+		setProperty(toPropagate, PROPERTY_LOG_NCSA_BUFFERSIZE,
+				configuration.getLogNCSABufferSize());
+
+		// static resource cache
+		setProperty(toPropagate, PROPERTY_RESOURCE_CACHE_MAX_SIZE,
+				configuration.getResourceCacheMaxSize());
+		setProperty(toPropagate, PROPERTY_RESOURCE_CACHE_MAX_ENTRY_SIZE,
+				configuration.getResourceCacheMaxEntrySize());
+		setProperty(toPropagate, PROPERTY_RESOURCE_CACHE_DIRECT,
+				configuration.getResourceCacheDirectBuffers());
+		setProperty(toPropagate, PROPERTY_RESOURCE_BUFFER_SIZE,
+				configuration.getResourceBufferSize());
+
+		// server thread pool
+		setProperty(toPropagate, PROPERTY_SERVER_MIN_THREADS,
+				configuration.getServerMinThreads());
+		setProperty(toPropagate, PROPERTY_SERVER_MAX_THREADS,
+				configuration.getServerMaxThreads());
+		setProperty(toPropagate, PROPERTY_SERVER_IDLE_TIMEOUT,
+				configuration.getServerIdleTimeout());
+		setProperty(toPropagate, PROPERTY_SERVER_QUEUE_SIZE,
+				configuration.getServerQueueSize());
+		setProperty(toPropagate, PROPERTY_SERVER_ACCEPTORS,
+				configuration.getServerAcceptors());
+		setProperty(toPropagate, PROPERTY_SERVER_SELECTORS,
+				configuration.getServerSelectors());
+		setProperty(toPropagate, PROPERTY_SERVER_THREAD_POOL_FILTER,
+				configuration.getServerThreadPoolFilter());
+		setProperty(toPropagate, PROPERTY_SERVER_REQUEST_METRICS,
+				configuration.isServerRequestMetricsEnabled());
+
+		// response compression
+		setProperty(toPropagate, PROPERTY_COMPRESSION_ENABLED,
+				configuration.isCompressionEnabled());
+		setProperty(toPropagate, PROPERTY_COMPRESSION_MIN_SIZE,
+				configuration.getCompressionMinSize());
+		setProperty(toPropagate, PROPERTY_COMPRESSION_MIME_TYPES,
+				configuration.getCompressionMimeTypes());
+		setProperty(toPropagate, PROPERTY_COMPRESSION_EXCLUDED_PATHS,
+				configuration.getCompressionExcludedPaths());
+		setProperty(toPropagate, PROPERTY_COMPRESSION_LEVEL,
+				configuration.getCompressionLevel());
+		setProperty(toPropagate, PROPERTY_COMPRESSION_PRECOMPRESSED,
+				configuration.isCompressionPrecompressed());
+		setProperty(toPropagate, PROPERTY_AUTHENTICATION_CACHE_ENABLED,
+				configuration.isAuthenticationCacheEnabled());
+		setProperty(toPropagate, PROPERTY_AUTHENTICATION_CACHE_TTL,
+				configuration.getAuthenticationCacheTtl());
+		setProperty(toPropagate, PROPERTY_AUTHENTICATION_CACHE_MAX_SIZE,
+				configuration.getAuthenticationCacheMaxSize());
 
 		if (SupportUtils.isJSPAvailable()) {
 			setProperty(toPropagate, PROPERTY_JSP_CHECK_INTERVAL,
@@ -495,6 +607,10 @@ public class Activator implements BundleActivator {
 					configuration.getJspTagpoolMaxSize());
 			setProperty(toPropagate, PROPERTY_JSP_PRECOMPILATION,
 					configuration.getJspPrecompilation());
+			setProperty(toPropagate, PROPERTY_JSP_PRECOMPILATION_THREADS,
+					configuration.getJspPrecompilationThreads());
+			setProperty(toPropagate, PROPERTY_JSP_PRECOMPILATION_CACHE_DIR,
+					configuration.getJspPrecompilationCacheDir());
 		}
 
 		return toPropagate;
@@ -28,6 +28,8 @@ import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_HTTP_USE_
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_HTTP_CHECK_FORWARDED_HEADERS;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LISTENING_ADDRESSES;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_APPEND;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_ASYNC;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_BUFFERSIZE;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_COOKIES;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_DISPATCH;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_ENABLED;
@@ -38,13 +40,35 @@ import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_LOGTIMEZONE;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_RETAINDAYS;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_LOG_NCSA_SERVER;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_RESOURCE_BUFFER_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_RESOURCE_CACHE_DIRECT;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_RESOURCE_CACHE_MAX_ENTRY_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_RESOURCE_CACHE_MAX_SIZE;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_CONFIGURATION_FILE;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_CONFIGURATION_URL;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_ACCEPTORS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_IDLE_TIMEOUT;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_MAX_THREADS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_MIN_THREADS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_QUEUE_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_SELECTORS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_THREAD_POOL_FILTER;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SERVER_REQUEST_METRICS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_AUTHENTICATION_CACHE_ENABLED;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_AUTHENTICATION_CACHE_MAX_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_AUTHENTICATION_CACHE_TTL;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_COMPRESSION_ENABLED;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_COMPRESSION_EXCLUDED_PATHS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_COMPRESSION_LEVEL;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_COMPRESSION_MIME_TYPES;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_COMPRESSION_MIN_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_COMPRESSION_PRECOMPRESSED;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_COOKIE;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_DOMAIN;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_PATH;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_COOKIE_HTTP_ONLY;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_COOKIE_SECURE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_IDLE_TIME;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_LAZY_LOAD;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_STORE_DIRECTORY;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SESSION_TIMEOUT;
@@ -345,6 +369,11 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 		return getResolvedStringProperty(PROPERTY_SESSION_STORE_DIRECTORY);
 	}
 
+	@Override
+	public Integer getSessionIdleTime() {
+		return getResolvedIntegerProperty(PROPERTY_SESSION_IDLE_TIME);
+	}
+
 	@Override
 	public String getWorkerName() {
 		return getResolvedStringProperty(PROPERTY_WORKER_NAME);
@@ -503,6 +532,26 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 		return getResolvedBooleanProperty(org.ops4j.pax.web.jsp.JspWebdefaults.PROPERTY_JSP_PRECOMPILATION);
 	}
 
+	@Override
+	public Integer getJspPrecompilationThreads() {
+		// Just in case JSP is not available this parameter is useless
+		if (!SupportUtils.isJSPAvailable()) {
+			return null;
+		}
+
+		return getResolvedIntegerProperty(org.ops4j.pax.web.jsp.JspWebdefaults.PROPERTY_JSP_PRECOMPILATION_THREADS);
+	}
+
+	@Override
+	public String getJspPrecompilationCacheDir() {
+		// Just in case JSP is not available this parameter is useless
+		if (!SupportUtils.isJSPAvailable()) {
+			return null;
+		}
+
+		return getResolvedStringProperty(org.ops4j.pax.web.jsp.JspWebdefaults.PROPERTY_JSP_PRECOMPILATION_CACHE_DIR);
+	}
+
 	@Override
 	public Boolean isLogNCSAFormatEnabled() {
 		return getResolvedBooleanProperty(PROPERTY_LOG_NCSA_ENABLED);
@@ -649,4 +698,119 @@ public class ConfigurationImpl extends PropertyStore implements Configuration {
 	public Boolean isLogNCSAServer() {
 		return getResolvedBooleanProperty(PROPERTY_LOG_NCSA_SERVER);
 	}
+
+	@Override
+	public Boolean isLogNCSAAsync() {
+		return getResolvedBooleanProperty(PROPERTY_LOG_NCSA_ASYNC);
+	}
+
+	@Override
+	public Integer getLogNCSABufferSize() {
+		return getResolvedIntegerProperty(PROPERTY_LOG_NCSA_BUFFERSIZE);
+	}
+
+	@Override
+	public Integer getResourceCacheMaxSize() {
+		return getResolvedIntegerProperty(PROPERTY_RESOURCE_CACHE_MAX_SIZE);
+	}
+
+	@Override
+	public Integer getResourceCacheMaxEntrySize() {
+		return getResolvedIntegerProperty(PROPERTY_RESOURCE_CACHE_MAX_ENTRY_SIZE);
+	}
+
+	@Override
+	public Boolean getResourceCacheDirectBuffers() {
+		return getResolvedBooleanProperty(PROPERTY_RESOURCE_CACHE_DIRECT);
+	}
+
+	@Override
+	public Integer getResourceBufferSize() {
+		return getResolvedIntegerProperty(PROPERTY_RESOURCE_BUFFER_SIZE);
+	}
+
+	@Override
+	public Integer getServerMinThreads() {
+		return getResolvedIntegerProperty(PROPERTY_SERVER_MIN_THREADS);
+	}
+
+	@Override
+	public Integer getServerMaxThreads() {
+		return getResolvedIntegerProperty(PROPERTY_SERVER_MAX_THREADS);
+	}
+
+	@Override
+	public Integer getServerIdleTimeout() {
+		return getResolvedIntegerProperty(PROPERTY_SERVER_IDLE_TIMEOUT);
+	}
+
+	@Override
+	public Integer getServerQueueSize() {
+		return getResolvedIntegerProperty(PROPERTY_SERVER_QUEUE_SIZE);
+	}
+
+	@Override
+	public Integer getServerAcceptors() {
+		return getResolvedIntegerProperty(PROPERTY_SERVER_ACCEPTORS);
+	}
+
+	@Override
+	public Integer getServerSelectors() {
+		return getResolvedIntegerProperty(PROPERTY_SERVER_SELECTORS);
+	}
+
+	@Override
+	public String getServerThreadPoolFilter() {
+		return getResolvedStringProperty(PROPERTY_SERVER_THREAD_POOL_FILTER);
+	}
+
+	@Override
+	public Boolean isServerRequestMetricsEnabled() {
+		return getResolvedBooleanProperty(PROPERTY_SERVER_REQUEST_METRICS);
+	}
+
+	@Override
+	public Boolean isCompressionEnabled() {
+		return getResolvedBooleanProperty(PROPERTY_COMPRESSION_ENABLED);
+	}
+
+	@Override
+	public Integer getCompressionMinSize() {
+		return getResolvedIntegerProperty(PROPERTY_COMPRESSION_MIN_SIZE);
+	}
+
+	@Override
+	public String getCompressionMimeTypes() {
+		return getResolvedStringProperty(PROPERTY_COMPRESSION_MIME_TYPES);
+	}
+
+	@Override
+	public String getCompressionExcludedPaths() {
+		return getResolvedStringProperty(PROPERTY_COMPRESSION_EXCLUDED_PATHS);
+	}
+
+	@Override
+	public Integer getCompressionLevel() {
+		return getResolvedIntegerProperty(PROPERTY_COMPRESSION_LEVEL);
+	}
+
+	@Override
+	public Boolean isCompressionPrecompressed() {
+		return getResolvedBooleanProperty(PROPERTY_COMPRESSION_PRECOMPRESSED);
+	}
+
+	@Override
+	public Boolean isAuthenticationCacheEnabled() {
+		return getResolvedBooleanProperty(PROPERTY_AUTHENTICATION_CACHE_ENABLED);
+	}
+
+	@Override
+	public Integer getAuthenticationCacheTtl() {
+		return getResolvedIntegerProperty(PROPERTY_AUTHENTICATION_CACHE_TTL);
+	}
+
+	@Override
+	public Integer getAuthenticationCacheMaxSize() {
+		return getResolvedIntegerProperty(PROPERTY_AUTHENTICATION_CACHE_MAX_SIZE);
+	}
 }
@@ -84,6 +84,9 @@ class DefaultHttpContext implements WebContainerContext {
 	@Override
 	public URL getResource(final String name) {
 		final String normalizedname = Path.normalizeResourcePath(name);
+		if (normalizedname == null) {
+			return null;
+		}
 		LOG.debug("Searching bundle [" + bundle + "] for resource ["
 				+ normalizedname + "]");
 		return bundle.getResource(normalizedname);
@@ -104,6 +107,9 @@ class DefaultHttpContext implements WebContainerContext {
 	@Override
 	public Set<String> getResourcePaths(final String name) {
 		final String normalizedname = Path.normalizeResourcePath(name);
+		if (normalizedname == null) {
+			return null;
+		}
 		LOG.debug("Searching bundle [" + bundle + "] for resource paths of ["
 				+ normalizedname + "]");
 		final Enumeration<String> entryPaths = bundle
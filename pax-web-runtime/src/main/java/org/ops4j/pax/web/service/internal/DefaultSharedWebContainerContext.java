@@ -83,6 +83,9 @@ public class DefaultSharedWebContainerContext implements
 
 	private URL getResource(Bundle bundle, final String name) {
 		final String normalizedname = Path.normalizeResourcePath(name);
+		if (normalizedname == null) {
+			return null;
+		}
 		LOG.debug("Searching bundle [" + bundle + "] for resource ["
 				+ normalizedname + "]");
 		return bundle.getResource(normalizedname);
@@ -90,6 +93,9 @@ public class DefaultSharedWebContainerContext implements
 
 	private Set<String> getResourcePaths(Bundle bundle, final String name) {
 		final String normalizedname = Path.normalizeResourcePath(name);
+		if (normalizedname == null) {
+			return null;
+		}
 		LOG.debug("Searching bundle [" + bundle + "] for resource paths of ["
 				+ normalizedname + "]");
 		final Enumeration<String> entryPaths = bundle
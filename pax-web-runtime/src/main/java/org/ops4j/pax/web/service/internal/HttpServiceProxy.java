@@ -29,6 +29,7 @@ import javax.servlet.ServletContainerInitializer;
 import javax.servlet.ServletException;
 
 import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.web.service.RegistrationBatch;
 import org.ops4j.pax.web.service.SharedWebContainerContext;
 import org.ops4j.pax.web.service.WebContainer;
 import org.osgi.service.http.HttpContext;
@@ -139,6 +140,15 @@ public class HttpServiceProxy implements StoppableHttpService {
 		LOG.debug("Unregistering servlet with name [" + servletName + "]");
 		delegate.unregisterServlet(servletName);
 	}
+
+	/**
+	 * @see WebContainer#remapServlet(Servlet, String[])
+	 */
+	@Override
+	public void remapServlet(final Servlet servlet, final String[] urlPatterns) {
+		LOG.debug("Remapping servlet [" + servlet + "]");
+		delegate.remapServlet(servlet, urlPatterns);
+	}
 	
 	/**
 	 * @see org.ops4j.pax.web.service.WebContainer#registerServlet(java.lang.Class,
@@ -234,6 +244,16 @@ public class HttpServiceProxy implements StoppableHttpService {
 		delegate.unregisterFilter(filterName);
 	}
 
+	/**
+	 * @see WebContainer#remapFilter(Filter, String[], String[])
+	 */
+	@Override
+	public void remapFilter(final Filter filter, final String[] urlPatterns,
+			final String[] servletNames) {
+		LOG.debug("Remapping filter [" + filter + "]");
+		delegate.remapFilter(filter, urlPatterns, servletNames);
+	}
+
 	/**
 	 * @see WebContainer#setContextParam(Dictionary, HttpContext)
 	 */
@@ -419,6 +439,11 @@ public class HttpServiceProxy implements StoppableHttpService {
 		delegate.end(httpContext);
 	}
 
+	@Override
+	public RegistrationBatch createRegistrationBatch(HttpContext httpContext) {
+		return delegate.createRegistrationBatch(httpContext);
+	}
+
 	@Override
 	public void registerServlet(Servlet servlet, String[] urlPatterns,
 			Dictionary<String, ?> initParams, Integer loadOnStartup,
@@ -44,6 +44,7 @@ import javax.servlet.ServletException;
 
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.web.jsp.JspServletWrapper;
+import org.ops4j.pax.web.service.RegistrationBatch;
 import org.ops4j.pax.web.service.SharedWebContainerContext;
 import org.ops4j.pax.web.service.WebContainer;
 import org.ops4j.pax.web.service.internal.util.SupportUtils;
@@ -202,6 +203,15 @@ class HttpServiceStarted implements StoppableHttpService {
 
 	private void registerServlet(ServletModel model)
 			throws ServletException, NamespaceException {
+		registerServlet(model, true);
+	}
+
+	/**
+	 * @param startContext
+	 *            whether to start the context once the servlet got added
+	 */
+	void registerServlet(ServletModel model, boolean startContext)
+			throws ServletException, NamespaceException {
 		servletEvent(ServletEvent.DEPLOYING, serviceBundle, model);
 		boolean serverSuccess = false;
 		boolean serviceSuccess = false;
@@ -213,15 +223,8 @@ class HttpServiceStarted implements StoppableHttpService {
 			serviceSuccess = true;
 			serverController.addServlet(model);
 			controllerSuccess = true;
-            ContextModel contextModel = model.getContextModel();
-			if (model.getServlet() != null && !isWebAppWebContainerContext(contextModel)) {
-                try {
-                    serverController.getContext(contextModel).start();
-                    // CHECKSTYLE:OFF
-                } catch (Exception e) {
-                    LOG.error("Could not start the servlet context for context path ["
-                            + contextModel.getContextName() + "]", e);
-                } //CHECKSTYLE:ON
+			if (startContext && model.getServlet() != null) {
+				startContext(model.getContextModel());
 			}
 		} finally {
 			// as this compensatory actions to work the remove methods should
@@ -240,6 +243,45 @@ class HttpServiceStarted implements StoppableHttpService {
 		}
 	}
 
+	/**
+	 * Starts the context of the given model, unless it belongs to a web
+	 * application bundle which starts its context itself. Failures are logged
+	 * only.
+	 */
+	void startContext(ContextModel contextModel) {
+		try {
+			startContextOrFail(contextModel);
+			// CHECKSTYLE:OFF
+		} catch (Exception e) {
+			LOG.error("Could not start the servlet context for context path ["
+					+ contextModel.getContextName() + "]", e);
+		} //CHECKSTYLE:ON
+	}
+
+	/**
+	 * Same as {@link #startContext(ContextModel)}, but passes failures on.
+	 *
+	 * @throws Exception
+	 *             if the context could not be started
+	 */
+	void startContextOrFail(ContextModel contextModel) throws Exception {
+		if (isWebAppWebContainerContext(contextModel)) {
+			return;
+		}
+		serverController.getContext(contextModel).start();
+	}
+
+	/**
+	 * Reverts {@link #registerServlet(ServletModel, boolean)}.
+	 */
+	void unregisterServlet(ServletModel model) {
+		servletEvent(ServletEvent.UNDEPLOYING, serviceBundle, model);
+		serverModel.removeServletModel(model);
+		serviceModel.removeServletModel(model);
+		serverController.removeServlet(model);
+		servletEvent(ServletEvent.UNDEPLOYED, serviceBundle, model);
+	}
+
 	private boolean isWebAppWebContainerContext(ContextModel contextModel) {
 		return contextModel
 				.getHttpContext()
@@ -272,11 +314,7 @@ class HttpServiceStarted implements StoppableHttpService {
 			throw new IllegalArgumentException("Alias [" + alias
 					+ "] was never registered");
 		}
-		servletEvent(ServletEvent.UNDEPLOYING, serviceBundle, model);
-		serverModel.removeServletModel(model);
-		serviceModel.removeServletModel(model);
-		serverController.removeServlet(model);
-		servletEvent(ServletEvent.UNDEPLOYED, serviceBundle, model);
+		unregisterServlet(model);
 	}
 
 	@Override
@@ -388,6 +426,34 @@ class HttpServiceStarted implements StoppableHttpService {
 		}
 	}
 
+	/**
+	 * @see WebContainer#remapServlet(Servlet, String[])
+	 */
+	@Override
+	public void remapServlet(final Servlet servlet, final String[] urlPatterns) {
+		NullArgumentException.validateNotEmpty(urlPatterns, "Url patterns");
+		final ServletModel model = serviceModel.getServletModel(servlet);
+		if (model == null) {
+			throw new IllegalArgumentException("Servlet [" + servlet
+					+ "] is not currently registered in any context");
+		}
+		if (model.getAlias() != null) {
+			throw new IllegalArgumentException("Servlet [" + servlet
+					+ "] is registered with an alias and cannot be remapped");
+		}
+		final String[] formerPatterns = model.getUrlPatterns();
+		serverModel.remapServletModel(model, urlPatterns);
+		boolean controllerSuccess = false;
+		try {
+			serverController.remapServlet(model);
+			controllerSuccess = true;
+		} finally {
+			if (!controllerSuccess) {
+				serverModel.remapServletModel(model, formerPatterns);
+			}
+		}
+	}
+
 	@Override
 	public void registerServlet(Class<? extends Servlet> servletClass,
 			final String[] urlPatterns, final Dictionary<String, ?> initParams,
@@ -451,6 +517,10 @@ class HttpServiceStarted implements StoppableHttpService {
 		LOG.debug("Using context [" + contextModel + "]");
 		final EventListenerModel model = new EventListenerModel(contextModel,
 				listener);
+		registerEventListener(model);
+	}
+
+	void registerEventListener(final EventListenerModel model) {
 		boolean serviceSuccess = false;
 		boolean controllerSuccess = false;
 		try {
@@ -463,7 +533,7 @@ class HttpServiceStarted implements StoppableHttpService {
 			// not throw exceptions.
 			if (!controllerSuccess) {
 				if (serviceSuccess) {
-					serviceModel.removeEventListener(listener);
+					serviceModel.removeEventListener(model.getEventListener());
 				}
 			}
 		}
@@ -487,28 +557,7 @@ class HttpServiceStarted implements StoppableHttpService {
 		LOG.debug("Using context [" + contextModel + "]");
 		final FilterModel model = new FilterModel(contextModel, filter,
 				urlPatterns, servletNames, initParams);
-		boolean serverSuccess = false;
-		boolean serviceSuccess = false;
-		boolean controllerSuccess = false;
-		try {
-			serverModel.addFilterModel(model);
-			serverSuccess = true;
-			serviceModel.addFilterModel(model);
-			serviceSuccess = true;
-			serverController.addFilter(model);
-			controllerSuccess = true;
-		} finally {
-			// as this compensatory actions to work the remove methods should
-			// not throw exceptions.
-			if (!controllerSuccess) {
-				if (serviceSuccess) {
-						serviceModel.removeFilter(model.getName());
-				}
-				if (serverSuccess) {
-					serverModel.removeFilterModel(model);
-				}
-			}
-		}
+		registerFilter(model);
 	}
 
 	@Override
@@ -519,6 +568,10 @@ class HttpServiceStarted implements StoppableHttpService {
 		LOG.debug("Using context [" + contextModel + "]");
 		final FilterModel model = new FilterModel(contextModel, filterClass,
 				urlPatterns, servletNames, initParams);
+		registerFilter(model);
+	}
+
+	void registerFilter(final FilterModel model) {
 		boolean serverSuccess = false;
 		boolean serviceSuccess = false;
 		boolean controllerSuccess = false;
@@ -540,7 +593,7 @@ class HttpServiceStarted implements StoppableHttpService {
 					serverModel.removeFilterModel(model);
 				}
 			}
-		}		
+		}
 	}
 	
 	@Override
@@ -552,6 +605,32 @@ class HttpServiceStarted implements StoppableHttpService {
 		}
 	}
 
+	/**
+	 * @see WebContainer#remapFilter(Filter, String[], String[])
+	 */
+	@Override
+	public void remapFilter(final Filter filter, final String[] urlPatterns,
+			final String[] servletNames) {
+		final FilterModel model = serviceModel.getFilterModel(filter);
+		if (model == null) {
+			throw new IllegalArgumentException("Filter [" + filter
+					+ "] is not currently registered in any context");
+		}
+		final String[] formerPatterns = model.getUrlPatterns();
+		final String[] formerServletNames = model.getServletNames();
+		serverModel.remapFilterModel(model, urlPatterns, servletNames);
+		boolean controllerSuccess = false;
+		try {
+			serverController.remapFilter(model);
+			controllerSuccess = true;
+		} finally {
+			if (!controllerSuccess) {
+				serverModel.remapFilterModel(model, formerPatterns,
+						formerServletNames);
+			}
+		}
+	}
+
 	@Override
 	public void unregisterFilter(Class<? extends Filter> filterClass) {
 		final FilterModel model = serviceModel.removeFilter(filterClass);
@@ -570,6 +649,13 @@ class HttpServiceStarted implements StoppableHttpService {
 		}
 	}
 
+	/**
+	 * Reverts {@link #registerFilter(FilterModel)}.
+	 */
+	void unregisterFilter(final FilterModel model) {
+		unregisterFilter(model.getName());
+	}
+
 	/**
 	 * @see WebContainer#setContextParam(Dictionary, HttpContext)
 	 */
@@ -647,10 +733,14 @@ class HttpServiceStarted implements StoppableHttpService {
 						: initParams);
 		//CHECKSTYLE:ON
 		serviceModel.addContextModel(contextModel);
+		// precompilation starts as soon as the servlet is initialized
+		final Integer loadOnStartup = Boolean.parseBoolean(String
+				.valueOf(initParams.get("usePrecompiled"))) ? 1 : null;
 		try {
 			registerServlet(jspServlet, getJspServletName(jspFile),
 					urlPatterns == null ? new String[] { "*.jsp" }
-							: urlPatterns, initParams, httpContext);
+							: urlPatterns, initParams, loadOnStartup, null,
+					httpContext);
 		} catch (ServletException ignore) {
 			// this should never happen
 			LOG.error("Internal error. Please report.", ignore);
@@ -686,7 +776,14 @@ class HttpServiceStarted implements StoppableHttpService {
 					scratchDir = temporaryDirectory.toString();
 				}
 			}
+			String jspPrecompilationCacheDir = configuration
+					.getJspPrecompilationCacheDir();
 			if (configuration.equals(serverControllerConfiguration)) {
+				if (jspPrecompilationCacheDir == null && scratchDir != null) {
+					// shared by all bundles, entries are bundle specific
+					jspPrecompilationCacheDir = new File(scratchDir,
+							"jsp-class-cache").toString();
+				}
 				// [PAXWEB-225] creates a bundle specific scratch dir
 				File tempDir = new File(scratchDir,
 						contextModel.getContextName());
@@ -708,9 +805,11 @@ class HttpServiceStarted implements StoppableHttpService {
 			Boolean jspMappedfile = configuration.getJspMappedfile();
 			Integer jspTagpoolMaxSize = configuration.getJspTagpoolMaxSize();
 			Boolean jspPrecompilation = configuration.getJspPrecompilation();
+			Integer jspPrecompilationThreads = configuration
+					.getJspPrecompilationThreads();
 
 			// TODO: fix this with PAXWEB-226
-			Map<String, Object> params = new HashMap<String, Object>(12);
+			Map<String, Object> params = new HashMap<String, Object>(14);
 			params.put("checkInterval", jspCheckInterval);
 			params.put("classdebuginfo", jspClassDebugInfo);
 			params.put("development", jspDevelopment);
@@ -723,6 +822,8 @@ class HttpServiceStarted implements StoppableHttpService {
 			params.put("scratchdir", scratchDir);
 			params.put("tagpoolMaxSize", jspTagpoolMaxSize);
 			params.put("usePrecompiled", jspPrecompilation);
+			params.put("precompilationThreads", jspPrecompilationThreads);
+			params.put("precompilationCacheDir", jspPrecompilationCacheDir);
 
 			params.keySet().removeAll(Collections.list(initParams.keys()));
 			for (Map.Entry<String, Object> entry : params.entrySet()) {
@@ -810,6 +911,10 @@ class HttpServiceStarted implements StoppableHttpService {
 		LOG.debug("Using context [{}]", contextModel);
 		final ErrorPageModel model = new ErrorPageModel(contextModel, error,
 				location);
+		registerErrorPage(model);
+	}
+
+	void registerErrorPage(final ErrorPageModel model) {
 		boolean serviceSuccess = false;
 		boolean controllerSuccess = false;
 		try {
@@ -822,7 +927,8 @@ class HttpServiceStarted implements StoppableHttpService {
 			// not throw exceptions.
 			if (!controllerSuccess) {
 				if (serviceSuccess) {
-					serviceModel.removeErrorPage(error, contextModel);
+					serviceModel.removeErrorPage(model.getError(),
+							model.getContextModel());
 				}
 			}
 		}
@@ -851,7 +957,10 @@ class HttpServiceStarted implements StoppableHttpService {
 		ContextModel contextModel = serviceModel.getContextModel(httpContext); 
 		//PAXWEB-123: try to use the setWelcomeFile method
 		final WelcomeFileModel model = new WelcomeFileModel(contextModel, welcomeFiles);
-		
+		registerWelcomeFiles(model);
+	}
+
+	void registerWelcomeFiles(final WelcomeFileModel model) {
 		boolean serviceSuccess = false;
 		boolean controllerSuccess = false;
 		try {
@@ -864,7 +973,9 @@ class HttpServiceStarted implements StoppableHttpService {
 			// not throw exceptions.
 			if (!controllerSuccess) {
 				if (serviceSuccess) {
-					serviceModel.removeWelcomeFileModel(Arrays.toString(welcomeFiles), contextModel);
+					serviceModel.removeWelcomeFileModel(
+							Arrays.toString(model.getWelcomeFiles()),
+							model.getContextModel());
 				}
 			}
 		}
@@ -1009,7 +1120,7 @@ class HttpServiceStarted implements StoppableHttpService {
 
 	}
 
-	private ContextModel getOrCreateContext(final HttpContext httpContext) {
+	ContextModel getOrCreateContext(final HttpContext httpContext) {
 		HttpContext context = httpContext;
 		if (context == null) {
 			context = createDefaultHttpContext();
@@ -1069,6 +1180,12 @@ class HttpServiceStarted implements StoppableHttpService {
 		//CHECKSTYLE:ON
 	}
 
+	@Override
+	public RegistrationBatch createRegistrationBatch(HttpContext httpContext) {
+		return new RegistrationBatchImpl(this,
+				httpContext == null ? createDefaultHttpContext() : httpContext);
+	}
+
 	@Override
 	public void setConnectorsAndVirtualHosts(List<String> connectors, List<String> virtualHosts,
 			HttpContext httpContext) {
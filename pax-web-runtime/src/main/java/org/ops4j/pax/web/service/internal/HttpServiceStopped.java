@@ -27,6 +27,7 @@ import javax.servlet.Servlet;
 import javax.servlet.ServletContainerInitializer;
 import javax.servlet.ServletException;
 
+import org.ops4j.pax.web.service.RegistrationBatch;
 import org.ops4j.pax.web.service.SharedWebContainerContext;
 import org.ops4j.pax.web.service.WebContainer;
 import org.osgi.service.http.HttpContext;
@@ -142,6 +143,16 @@ class HttpServiceStopped implements StoppableHttpService {
 	public void unregisterServlet(final String servletName) {
 		LOG.warn("Http service has already been stopped");
 	}
+
+	/**
+	 * Does nothing.
+	 * 
+	 * @see WebContainer#remapServlet(Servlet, String[])
+	 */
+	@Override
+	public void remapServlet(final Servlet servlet, final String[] urlPatterns) {
+		LOG.warn("Http service has already been stopped");
+	}
 	
 	/**
 	 * Does nothing.
@@ -245,6 +256,17 @@ class HttpServiceStopped implements StoppableHttpService {
 	public void unregisterFilter(Class<? extends Filter> filterClass) {
 		LOG.warn("Http service has already been stopped");
 	}	
+
+	/**
+	 * Does nothing.
+	 * 
+	 * @see WebContainer#remapFilter(Filter, String[], String[])
+	 */
+	@Override
+	public void remapFilter(final Filter filter, final String[] urlPatterns,
+			final String[] servletNames) {
+		LOG.warn("Http service has already been stopped");
+	}
 	
 	@Override
 	public void unregisterFilter(String filterName) {
@@ -431,6 +453,12 @@ class HttpServiceStopped implements StoppableHttpService {
 	public void end(HttpContext httpContext) {
 	}
 
+	@Override
+	public RegistrationBatch createRegistrationBatch(HttpContext httpContext) {
+		LOG.warn("Http service has already been stopped");
+		return new RegistrationBatchImpl(null, httpContext);
+	}
+
 	@Override
 	public SharedWebContainerContext createDefaultSharedHttpContext() {
 		return null;
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Dictionary;
+import java.util.EventListener;
+import java.util.List;
+
+import javax.servlet.Filter;
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+
+import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.web.service.RegistrationBatch;
+import org.ops4j.pax.web.service.spi.model.ContextModel;
+import org.ops4j.pax.web.service.spi.model.ErrorPageModel;
+import org.ops4j.pax.web.service.spi.model.EventListenerModel;
+import org.ops4j.pax.web.service.spi.model.FilterModel;
+import org.ops4j.pax.web.service.spi.model.ServletModel;
+import org.ops4j.pax.web.service.spi.model.WelcomeFileModel;
+import org.osgi.service.http.HttpContext;
+import org.osgi.service.http.NamespaceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link RegistrationBatch} of a {@link HttpServiceStarted}. Registrations are
+ * only recorded until commit, which applies them in order without starting
+ * the context in between and starts it once at the end.
+ */
+class RegistrationBatchImpl implements RegistrationBatch {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(RegistrationBatchImpl.class);
+
+	/**
+	 * Http service applying the batch, null if the batch got created by a
+	 * stopped http service, it is discarded on commit then.
+	 */
+	private final HttpServiceStarted httpService;
+	private final HttpContext httpContext;
+	private final List<Registration> registrations = new ArrayList<Registration>();
+	private boolean done;
+
+	RegistrationBatchImpl(final HttpServiceStarted httpService,
+			final HttpContext httpContext) {
+		this.httpService = httpService;
+		this.httpContext = httpContext;
+	}
+
+	@Override
+	public HttpContext getHttpContext() {
+		return httpContext;
+	}
+
+	@Override
+	public void registerServlet(final String alias, final Servlet servlet,
+			final Dictionary<String, ?> initParams) {
+		NullArgumentException.validateNotNull(servlet, "Servlet");
+		add(new Registration() {
+
+			private ServletModel model;
+
+			@Override
+			void register(ContextModel contextModel) throws ServletException,
+					NamespaceException {
+				model = new ServletModel(contextModel, servlet, alias,
+						initParams, null, null);
+				httpService.registerServlet(model, false);
+			}
+
+			@Override
+			void unregister() {
+				httpService.unregisterServlet(model);
+			}
+		});
+	}
+
+	@Override
+	public void registerServlet(final Servlet servlet,
+			final String servletName, final String[] urlPatterns,
+			final Dictionary<String, ?> initParams,
+			final Integer loadOnStartup, final Boolean asyncSupported,
+			final MultipartConfigElement multiPartConfig) {
+		NullArgumentException.validateNotNull(servlet, "Servlet");
+		add(new Registration() {
+
+			private ServletModel model;
+
+			@Override
+			void register(ContextModel contextModel) throws ServletException,
+					NamespaceException {
+				model = new ServletModel(contextModel, servlet, servletName,
+						urlPatterns, null, // no alias
+						initParams, loadOnStartup, asyncSupported,
+						multiPartConfig);
+				httpService.registerServlet(model, false);
+			}
+
+			@Override
+			void unregister() {
+				httpService.unregisterServlet(model);
+			}
+		});
+	}
+
+	@Override
+	public void registerFilter(final Filter filter, final String[] urlPatterns,
+			final String[] servletNames, final Dictionary<String, ?> initParams) {
+		NullArgumentException.validateNotNull(filter, "Filter");
+		add(new Registration() {
+
+			private FilterModel model;
+
+			@Override
+			void register(ContextModel contextModel) {
+				model = new FilterModel(contextModel, filter, urlPatterns,
+						servletNames, initParams);
+				httpService.registerFilter(model);
+			}
+
+			@Override
+			void unregister() {
+				httpService.unregisterFilter(model);
+			}
+		});
+	}
+
+	@Override
+	public void registerEventListener(final EventListener listener) {
+		NullArgumentException.validateNotNull(listener, "Listener");
+		add(new Registration() {
+
+			@Override
+			void register(ContextModel contextModel) {
+				httpService.registerEventListener(new EventListenerModel(
+						contextModel, listener));
+			}
+
+			@Override
+			void unregister() {
+				httpService.unregisterEventListener(listener);
+			}
+		});
+	}
+
+	@Override
+	public void registerErrorPage(final String error, final String location) {
+		add(new Registration() {
+
+			@Override
+			void register(ContextModel contextModel) {
+				httpService.registerErrorPage(new ErrorPageModel(contextModel,
+						error, location));
+			}
+
+			@Override
+			void unregister() {
+				httpService.unregisterErrorPage(error, httpContext);
+			}
+		});
+	}
+
+	@Override
+	public void registerWelcomeFiles(final String[] welcomeFiles,
+			final boolean redirect) {
+		NullArgumentException.validateNotNull(welcomeFiles, "WelcomeFiles");
+		add(new Registration() {
+
+			@Override
+			void register(ContextModel contextModel) {
+				httpService.registerWelcomeFiles(new WelcomeFileModel(
+						contextModel, welcomeFiles));
+			}
+
+			@Override
+			void unregister() {
+				httpService.unregisterWelcomeFiles(welcomeFiles, httpContext);
+			}
+		});
+	}
+
+	@Override
+	public void commit() throws ServletException, NamespaceException {
+		checkOpen();
+		done = true;
+		if (httpService == null) {
+			LOG.warn("Http service has already been stopped");
+			return;
+		}
+		final ContextModel contextModel = httpService
+				.getOrCreateContext(httpContext);
+		LOG.debug("Committing {} registrations to context [{}]",
+				registrations.size(), contextModel);
+		final Deque<Registration> registered = new ArrayDeque<Registration>();
+		boolean success = false;
+		try {
+			// the server may leave restarts to the start below
+			contextModel.beginBatch();
+			try {
+				for (Registration registration : registrations) {
+					registration.register(contextModel);
+					registered.push(registration);
+				}
+			} finally {
+				contextModel.endBatch();
+			}
+			if (!registered.isEmpty()) {
+				startContext(contextModel);
+			}
+			success = true;
+		} finally {
+			if (!success) {
+				rollback(contextModel, registered);
+			}
+			registrations.clear();
+		}
+	}
+
+	private void startContext(final ContextModel contextModel)
+			throws ServletException {
+		try {
+			httpService.startContextOrFail(contextModel);
+			//CHECKSTYLE:OFF
+		} catch (Exception e) {
+			//CHECKSTYLE:ON
+			throw new ServletException("Could not start context ["
+					+ contextModel.getContextName() + "]", e);
+		}
+	}
+
+	/**
+	 * Reverts the registrations applied, newest first. Every step is taken
+	 * even if others fail, their failures are logged only so the failure of
+	 * the commit is passed on.
+	 */
+	private void rollback(final ContextModel contextModel,
+			final Deque<Registration> registered) {
+		LOG.warn("Registration failed, rolling back {} registrations to context [{}]",
+				registered.size(), contextModel);
+		for (Registration registration : registered) {
+			//CHECKSTYLE:OFF
+			try {
+				registration.unregister();
+			} catch (Exception e) {
+				//CHECKSTYLE:ON
+				LOG.error("Unable to roll back a registration to context ["
+						+ contextModel.getContextName() + "]", e);
+			}
+		}
+		if (!registrations.isEmpty()) {
+			// a context stopped for a restart serves the former
+			// registrations again
+			httpService.startContext(contextModel);
+		}
+	}
+
+	@Override
+	public void rollback() {
+		checkOpen();
+		done = true;
+		registrations.clear();
+	}
+
+	private void add(final Registration registration) {
+		checkOpen();
+		registrations.add(registration);
+	}
+
+	private void checkOpen() {
+		if (done) {
+			throw new IllegalStateException(
+					"Registration batch has already been committed or rolled back");
+		}
+	}
+
+	/**
+	 * One registration of the batch.
+	 */
+	private abstract static class Registration {
+
+		abstract void register(ContextModel contextModel)
+				throws ServletException, NamespaceException;
+
+		/**
+		 * Reverts a successful {@link #register(ContextModel)}.
+		 */
+		abstract void unregister();
+	}
+}
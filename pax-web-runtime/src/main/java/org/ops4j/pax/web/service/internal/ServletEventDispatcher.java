@@ -17,26 +17,30 @@
 
 package org.ops4j.pax.web.service.internal;
 
-import java.util.Collections;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.web.service.spi.ServletEvent;
 import org.ops4j.pax.web.service.spi.ServletListener;
-import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.osgi.util.tracker.ServiceTracker;
@@ -45,12 +49,43 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Delivers servlet events to the registered {@link ServletListener}s
+ * asynchronously. Every listener has its own bounded queue worked off by one
+ * thread at a time, so events reach a listener in the order they were sent
+ * (and therefore in order per bundle) while a slow listener neither blocks
+ * the registering thread nor the other listeners. Threads are not shared
+ * between queues while busy, a stuck listener holds on to its own thread
+ * only.
+ * <p>
+ * When the queue of a listener is full the sender waits for it to drain,
+ * without holding up senders to other listeners; a listener not making
+ * progress within {@link #LISTENER_TIMEOUT_MS} is removed, as is a listener
+ * throwing an exception.
+ * <p>
+ * The dispatcher is registered as MBean named
+ * <code>org.ops4j.pax.web:type=ServletEventDispatcher</code> until it gets
+ * destroyed.
+ *
  * @author Achim Nierbeck
- * 
+ *
  */
-public class ServletEventDispatcher implements ServletListener {
+public class ServletEventDispatcher implements ServletListener,
+		ServletEventDispatcherMBean {
 
-	private static final int THREAD_POOL_SIZE = 3;
+	/**
+	 * Maximum number of events queued per listener.
+	 */
+	static final int QUEUE_CAPACITY = 1000;
+
+	/**
+	 * Time a listener may block its queue before it gets removed.
+	 */
+	static final long LISTENER_TIMEOUT_MS = 60 * 1000L;
+
+	/**
+	 * Calls taking longer are reported as slow.
+	 */
+	private static final long SLOW_LISTENER_MS = 1000L;
 
 	/**
 	 * Logger.
@@ -58,14 +93,32 @@ public class ServletEventDispatcher implements ServletListener {
 	private static final Logger LOG = LoggerFactory
 			.getLogger(ServletEventDispatcher.class);
 
-	private final ScheduledExecutorService executors;
+	private final ExecutorService executors;
 	private final ServiceTracker<ServletListener, ServletListener> servletListenerTracker;
-	private final Set<ServletListener> listeners = new CopyOnWriteArraySet<ServletListener>();
-	private final Map<Long, Map<String, ServletEvent>> states = new ConcurrentHashMap<Long, Map<String, ServletEvent>>();
+	private final Map<ServletListener, ListenerQueue> listeners = new ConcurrentHashMap<ServletListener, ListenerQueue>();
+	/**
+	 * Last event per alias and bundle, replayed to new listeners. Guarded by
+	 * {@link #lock}.
+	 */
+	private final Map<Long, Map<String, ServletEvent>> states = new LinkedHashMap<Long, Map<String, ServletEvent>>();
+	/**
+	 * Makes recording the state and taking a place in the listener queues
+	 * atomic with respect to listener registration, never held while a
+	 * listener is called or a sender waits for a full queue. The places keep
+	 * waiting senders from overtaking each other.
+	 */
+	private final Object lock = new Object();
+
+	private final AtomicLong slowCalls = new AtomicLong();
+	private final AtomicLong maxCallTime = new AtomicLong();
+	private final AtomicLong removedListeners = new AtomicLong();
+
+	private ObjectName objectName;
 
 	public ServletEventDispatcher(final BundleContext bundleContext) {
 		NullArgumentException.validateNotNull(bundleContext, "Bundle Context");
-		this.executors = Executors.newScheduledThreadPool(THREAD_POOL_SIZE,
+		// at most one task per listener queue, idle threads time out
+		this.executors = Executors.newCachedThreadPool(
 				new ThreadFactory() {
 
 					private final AtomicInteger count = new AtomicInteger();
@@ -93,10 +146,7 @@ public class ServletEventDispatcher implements ServletListener {
 						if (listener != null) {
 							LOG.debug("New ServletListener added: {}", listener
 									.getClass().getName());
-							synchronized (listeners) {
-								sendInitialEvents(listener);
-								listeners.add(listener);
-							}
+							addListener(listener);
 						}
 						return listener;
 					}
@@ -111,18 +161,19 @@ public class ServletEventDispatcher implements ServletListener {
 					public void removedService(
 							ServiceReference<ServletListener> reference,
 							ServletListener service) {
-						listeners.remove(service);
+						removeListener(service);
 						bundleContext.ungetService(reference);
 						LOG.debug("ServletListener is removed: {}", service
 								.getClass().getName());
 					}
 				});
 		this.servletListenerTracker.open();
+		registerMBean();
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * 
+	 *
 	 * @see
 	 * org.ops4j.pax.web.service.spi.ServletListener#servletEvent(org.ops4j.
 	 * pax.web.service.spi.ServletEvent)
@@ -133,18 +184,74 @@ public class ServletEventDispatcher implements ServletListener {
 			LOG.debug("Sending web event " + event + " for bundle "
 					+ event.getBundleName());
 		}
-		synchronized (listeners) {
-			callListeners(event);
-			Map<String, ServletEvent> events = states.get(event.getBundleId());
-			if (events == null) {
-				events = new LinkedHashMap<String, ServletEvent>();
-				states.put(event.getBundleId(), events);
+		final Map<ListenerQueue, Long> places = new LinkedHashMap<ListenerQueue, Long>();
+		synchronized (lock) {
+			recordState(event);
+			for (ListenerQueue queue : listeners.values()) {
+				places.put(queue, queue.reserve());
 			}
-			events.put(event.getAlias(), event);
+		}
+		// one deadline for all queues, a sender waits for the slowest only
+		final long deadline = System.currentTimeMillis() + LISTENER_TIMEOUT_MS;
+		final List<ListenerQueue> stuck = new ArrayList<ListenerQueue>();
+		for (Map.Entry<ListenerQueue, Long> place : places.entrySet()) {
+			if (!place.getKey().put(event, place.getValue(), deadline)) {
+				stuck.add(place.getKey());
+			}
+		}
+		for (ListenerQueue queue : stuck) {
+			LOG.warn("Listener {} did not take events for {} ms, will be ignored",
+					queue.listener, LISTENER_TIMEOUT_MS);
+			removedListeners.incrementAndGet();
+			removeListener(queue.listener);
 		}
 	}
 
+	void addListener(final ServletListener listener) {
+		final ListenerQueue queue = new ListenerQueue(listener);
+		synchronized (lock) {
+			for (Map<String, ServletEvent> events : states.values()) {
+				for (ServletEvent event : events.values()) {
+					queue.add(new ServletEvent(event, true));
+				}
+			}
+			listeners.put(listener, queue);
+		}
+	}
+
+	void removeListener(final ServletListener listener) {
+		final ListenerQueue queue = listeners.remove(listener);
+		if (queue != null) {
+			queue.close();
+		}
+	}
+
+	/**
+	 * Keeps only the latest event per alias; servlets which are gone are not
+	 * replayed to listeners registering later.
+	 */
+	private void recordState(final ServletEvent event) {
+		Map<String, ServletEvent> events = states.get(event.getBundleId());
+		if (event.getType() == ServletEvent.UNDEPLOYED) {
+			if (events != null) {
+				events.remove(event.getAlias());
+				if (events.isEmpty()) {
+					states.remove(event.getBundleId());
+				}
+			}
+			return;
+		}
+		if (events == null) {
+			events = new LinkedHashMap<String, ServletEvent>();
+			states.put(event.getBundleId(), events);
+		}
+		// re-insert so the replay order follows the latest change
+		events.remove(event.getAlias());
+		events.put(event.getAlias(), event);
+	}
+
 	void destroy() {
+		unregisterMBean();
 		servletListenerTracker.close();
 		executors.shutdown();
 		// wait for the queued tasks to execute
@@ -155,53 +262,241 @@ public class ServletEventDispatcher implements ServletListener {
 		}
 	}
 
-	private void sendInitialEvents(ServletListener listener) {
-		for (Map.Entry<Long, Map<String, ServletEvent>> entry : states
-				.entrySet()) {
-			try {
-				if (entry.getValue() != null && !entry.getValue().isEmpty()) {
-					for (ServletEvent event : entry.getValue().values()) {
-						callListener(listener, new ServletEvent(event, true));
-					}
-				}
-			} catch (RejectedExecutionException ree) {
-				LOG.warn("Executor shut down", ree);
-				break;
-			}
+	@Override
+	public int getListeners() {
+		return listeners.size();
+	}
+
+	@Override
+	public int getQueuedEvents() {
+		int queued = 0;
+		for (ListenerQueue queue : listeners.values()) {
+			queued += queue.size();
+		}
+		return queued;
+	}
+
+	@Override
+	public int getMaxQueuedEvents() {
+		int max = 0;
+		for (ListenerQueue queue : listeners.values()) {
+			max = Math.max(max, queue.size());
 		}
+		return max;
+	}
+
+	@Override
+	public long getSlowListenerCalls() {
+		return slowCalls.get();
+	}
+
+	@Override
+	public long getMaxListenerCallTime() {
+		return maxCallTime.get();
 	}
 
-	private void callListeners(ServletEvent servletEvent) {
-		for (ServletListener listener : listeners) {
-			try {
-				callListener(listener, servletEvent);
-			} catch (RejectedExecutionException ree) {
-				LOG.warn("Executor shut down", ree);
-				break;
+	@Override
+	public long getRemovedListeners() {
+		return removedListeners.get();
+	}
+
+	private void registerMBean() {
+		//CHECKSTYLE:OFF
+		try {
+			final MBeanServer server = ManagementFactory
+					.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(
+					"org.ops4j.pax.web:type=ServletEventDispatcher");
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+				objectName = name;
 			}
+		} catch (Throwable t) {
+			// no jmx available just ignore it!
+			LOG.debug("Servlet event dispatcher is not exported to JMX", t);
 		}
+		//CHECKSTYLE:ON
+	}
+
+	private void unregisterMBean() {
+		if (objectName == null) {
+			return;
+		}
+		//CHECKSTYLE:OFF
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+					objectName);
+		} catch (Exception e) {
+			LOG.debug("Unable to unregister MBean {}", objectName, e);
+		}
+		//CHECKSTYLE:ON
+		objectName = null;
 	}
 
 	private void callListener(final ServletListener listener,
 			final ServletEvent event) {
+		final long start = System.currentTimeMillis();
 		try {
-			executors.invokeAny(Collections
-					.<Callable<Void>> singleton(new Callable<Void>() {
-						@Override
-						public Void call() throws Exception {
-							listener.servletEvent(event);
-							return null;
-						}
-					}), 60L, TimeUnit.SECONDS);
-		} catch (InterruptedException ie) {
-			LOG.warn("Thread interrupted", ie);
-			Thread.currentThread().interrupt();
-		} catch (TimeoutException te) {
-			LOG.warn("Listener timed out, will be ignored", te);
-			listeners.remove(listener);
-		} catch (ExecutionException ee) {
-			LOG.warn("Listener caused an exception, will be ignored", ee);
-			listeners.remove(listener);
+			listener.servletEvent(event);
+			//CHECKSTYLE:OFF
+		} catch (Throwable t) {
+			//CHECKSTYLE:ON
+			LOG.warn("Listener caused an exception, will be ignored", t);
+			removedListeners.incrementAndGet();
+			removeListener(listener);
+			return;
+		}
+		final long time = System.currentTimeMillis() - start;
+		if (time > SLOW_LISTENER_MS) {
+			slowCalls.incrementAndGet();
+			LOG.warn("Listener {} took {} ms to handle {}", new Object[] {
+					listener, time, event });
+		}
+		long max = maxCallTime.get();
+		while (time > max && !maxCallTime.compareAndSet(max, time)) {
+			max = maxCallTime.get();
+		}
+	}
+
+	/**
+	 * Pending events of one listener. At most one task per queue is submitted
+	 * to the executor at any time, which keeps the events in order.
+	 */
+	private final class ListenerQueue implements Runnable {
+
+		private final ServletListener listener;
+		private final Queue<ServletEvent> events = new ArrayDeque<ServletEvent>();
+		/**
+		 * Next place handed out to a sender.
+		 */
+		private long reserved;
+		/**
+		 * Place of the sender whose event is queued next.
+		 */
+		private long next;
+		/**
+		 * Places given up by interrupted senders.
+		 */
+		private final Set<Long> abandoned = new HashSet<Long>();
+		private boolean scheduled;
+		private boolean closed;
+
+		private ListenerQueue(final ServletListener listener) {
+			this.listener = listener;
+		}
+
+		/**
+		 * Queues an event regardless of the capacity, used for the replay.
+		 */
+		private synchronized void add(final ServletEvent event) {
+			if (closed) {
+				return;
+			}
+			events.add(event);
+			if (!scheduled) {
+				scheduled = true;
+				try {
+					executors.execute(this);
+				} catch (RejectedExecutionException ree) {
+					LOG.warn("Executor shut down", ree);
+					scheduled = false;
+					events.clear();
+				}
+			}
+		}
+
+		/**
+		 * @return place of an event in the queue, to be passed to
+		 *         {@link #put(ServletEvent, long, long)}
+		 */
+		private synchronized long reserve() {
+			return reserved++;
+		}
+
+		/**
+		 * Waits until the events of the preceding places are queued and the
+		 * queue has room for the event and queues it. A queue whose listener
+		 * does not make progress in time is closed.
+		 *
+		 * @return false if the listener did not make progress in time, the
+		 *         event is not queued then
+		 */
+		private synchronized boolean put(final ServletEvent event,
+				final long place, final long deadline) {
+			while (!closed
+					&& (place != next || events.size() >= QUEUE_CAPACITY)) {
+				final long wait = deadline - System.currentTimeMillis();
+				if (wait <= 0) {
+					close();
+					return false;
+				}
+				try {
+					wait(wait);
+				} catch (InterruptedException ie) {
+					LOG.warn("Thread interrupted, event {} dropped for {}",
+							event, listener);
+					Thread.currentThread().interrupt();
+					done(place);
+					return true;
+				}
+			}
+			if (!closed) {
+				add(event);
+				done(place);
+			}
+			return true;
+		}
+
+		/**
+		 * Moves on to the next place not given up and wakes up its sender, or
+		 * remembers a place given up before its turn.
+		 */
+		private void done(final long place) {
+			if (place != next) {
+				abandoned.add(place);
+				return;
+			}
+			next++;
+			while (abandoned.remove(next)) {
+				next++;
+			}
+			notifyAll();
+		}
+
+		private synchronized int size() {
+			return events.size();
+		}
+
+		private synchronized void close() {
+			closed = true;
+			events.clear();
+			notifyAll();
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				final List<ServletEvent> batch;
+				synchronized (this) {
+					if (closed || events.isEmpty()) {
+						scheduled = false;
+						return;
+					}
+					batch = new ArrayList<ServletEvent>(events);
+					events.clear();
+					notifyAll();
+				}
+				for (ServletEvent event : batch) {
+					if (isClosed()) {
+						break;
+					}
+					callListener(listener, event);
+				}
+			}
+		}
+
+		private synchronized boolean isClosed() {
+			return closed;
 		}
 	}
 
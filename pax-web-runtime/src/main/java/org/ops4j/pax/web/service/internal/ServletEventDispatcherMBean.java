@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.internal;
+
+/**
+ * Management interface of {@link ServletEventDispatcher}.
+ */
+public interface ServletEventDispatcherMBean {
+
+	/**
+	 * @return number of listeners events are delivered to
+	 */
+	int getListeners();
+
+	/**
+	 * @return number of events waiting for delivery, over all listeners
+	 */
+	int getQueuedEvents();
+
+	/**
+	 * @return number of events waiting for the most behind listener
+	 */
+	int getMaxQueuedEvents();
+
+	/**
+	 * @return number of listener calls which took longer than a second
+	 */
+	long getSlowListenerCalls();
+
+	/**
+	 * @return longest time a listener call took, in ms
+	 */
+	long getMaxListenerCallTime();
+
+	/**
+	 * @return number of listeners removed because they failed or blocked
+	 */
+	long getRemovedListeners();
+}
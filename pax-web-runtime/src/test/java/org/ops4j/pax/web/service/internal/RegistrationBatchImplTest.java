@@ -0,0 +1,158 @@
+package org.ops4j.pax.web.service.internal;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import javax.servlet.Filter;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.web.service.RegistrationBatch;
+import org.ops4j.pax.web.service.spi.Configuration;
+import org.ops4j.pax.web.service.spi.LifeCycle;
+import org.ops4j.pax.web.service.spi.ServerController;
+import org.ops4j.pax.web.service.spi.ServletListener;
+import org.ops4j.pax.web.service.spi.model.ContextModel;
+import org.ops4j.pax.web.service.spi.model.FilterModel;
+import org.ops4j.pax.web.service.spi.model.ServerModel;
+import org.ops4j.pax.web.service.spi.model.ServletModel;
+import org.osgi.framework.Bundle;
+import org.osgi.service.http.HttpContext;
+
+public class RegistrationBatchImplTest {
+
+	private ServerController serverController;
+	private HttpContext httpContext;
+	private RecordingLifeCycle context;
+	private List<Boolean> batchInProgress;
+
+	@Before
+	public void setUp() {
+		serverController = createMock(ServerController.class);
+		httpContext = createNiceMock(HttpContext.class);
+		context = new RecordingLifeCycle();
+		batchInProgress = new ArrayList<Boolean>();
+		Configuration configuration = createNiceMock(Configuration.class);
+		expect(configuration.getVirtualHosts()).andReturn(
+				new ArrayList<String>()).anyTimes();
+		replay(httpContext, configuration);
+
+		serverController.addListener(
+				(org.ops4j.pax.web.service.spi.ServerListener) anyObject());
+		expect(serverController.getConfiguration()).andReturn(configuration)
+				.anyTimes();
+		expect(serverController.getContext((ContextModel) anyObject()))
+				.andReturn(context).anyTimes();
+		serverController.addServlet((ServletModel) anyObject());
+		expectLastCall().andAnswer(new IAnswer<Object>() {
+			@Override
+			public Object answer() {
+				ServletModel model = (ServletModel) EasyMock
+						.getCurrentArguments()[0];
+				batchInProgress.add(model.getContextModel()
+						.isBatchInProgress());
+				return null;
+			}
+		});
+		serverController.addFilter((FilterModel) anyObject());
+	}
+
+	private RegistrationBatch createBatch() {
+		Bundle bundle = createNiceMock(Bundle.class);
+		expect(bundle.getHeaders()).andReturn(
+				new Hashtable<String, String>()).anyTimes();
+		ServletListener eventDispatcher = createNiceMock(ServletListener.class);
+		replay(bundle, eventDispatcher);
+		HttpServiceStarted httpService = new HttpServiceStarted(bundle,
+				serverController, new ServerModel(), eventDispatcher);
+		RegistrationBatch batch = httpService
+				.createRegistrationBatch(httpContext);
+		batch.registerServlet("/servlet", new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+		}, null);
+		batch.registerFilter(createNiceMock(Filter.class),
+				new String[] { "/*" }, null, null);
+		return batch;
+	}
+
+	@Test
+	public void commitStartsContextOnceAfterAllRegistrations() throws Exception {
+		replay(serverController);
+		createBatch().commit();
+
+		verify(serverController);
+		assertEquals(1, context.starts);
+		assertEquals(1, batchInProgress.size());
+		assertTrue(batchInProgress.get(0));
+	}
+
+	@Test
+	public void failedStartRollsBackRegistrations() throws Exception {
+		context.failure = new IllegalStateException("start failed");
+		serverController.removeFilter((FilterModel) anyObject());
+		serverController.removeServlet((ServletModel) anyObject());
+		replay(serverController);
+
+		try {
+			createBatch().commit();
+			fail("Commit must fail if the context does not start");
+		} catch (ServletException e) {
+			assertSame(context.failure, e.getRootCause());
+		}
+		verify(serverController);
+		// once for the commit, once to serve the former registrations again
+		assertEquals(2, context.starts);
+	}
+
+	@Test
+	public void failedRollbackStepDoesNotSkipOthers() throws Exception {
+		context.failure = new IllegalStateException("start failed");
+		serverController.removeFilter((FilterModel) anyObject());
+		expectLastCall().andThrow(new IllegalStateException("remove failed"));
+		serverController.removeServlet((ServletModel) anyObject());
+		replay(serverController);
+
+		try {
+			createBatch().commit();
+			fail("Commit must fail if the context does not start");
+		} catch (ServletException e) {
+			assertSame(context.failure, e.getRootCause());
+		}
+		verify(serverController);
+	}
+
+	private static class RecordingLifeCycle implements LifeCycle {
+
+		private int starts;
+		private RuntimeException failure;
+
+		@Override
+		public void start() throws Exception {
+			starts++;
+			if (failure != null) {
+				throw failure;
+			}
+		}
+
+		@Override
+		public void stop() throws Exception {
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package org.ops4j.pax.web.service.internal;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpServlet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.ServletEvent;
+import org.ops4j.pax.web.service.spi.ServletListener;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+public class ServletEventDispatcherTest {
+
+	private ServletEventDispatcher dispatcher;
+	private Bundle bundle;
+
+	@Before
+	public void setUp() {
+		BundleContext bundleContext = createNiceMock(BundleContext.class);
+		bundle = createNiceMock(Bundle.class);
+		Dictionary<String, String> headers = new Hashtable<String, String>();
+		expect(bundle.getBundleId()).andReturn(1L).anyTimes();
+		expect(bundle.getHeaders()).andReturn(headers).anyTimes();
+		replay(bundleContext, bundle);
+		dispatcher = new ServletEventDispatcher(bundleContext);
+	}
+
+	@After
+	public void tearDown() {
+		dispatcher.destroy();
+	}
+
+	@Test
+	public void deliversInOrderWithoutBlockingSender() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final RecordingListener listener = new RecordingListener(100, release);
+		dispatcher.addListener(listener);
+
+		for (int i = 0; i < 100; i++) {
+			dispatcher.servletEvent(event(ServletEvent.DEPLOYED, "/" + i));
+		}
+		// the sender returned although the listener is still blocked
+		release.countDown();
+
+		assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < 100; i++) {
+			assertEquals("/" + i, listener.events.get(i).getAlias());
+		}
+	}
+
+	@Test
+	public void replaysCoalescedState() throws Exception {
+		dispatcher.servletEvent(event(ServletEvent.DEPLOYING, "/a"));
+		dispatcher.servletEvent(event(ServletEvent.DEPLOYED, "/a"));
+		dispatcher.servletEvent(event(ServletEvent.DEPLOYED, "/b"));
+		dispatcher.servletEvent(event(ServletEvent.UNDEPLOYED, "/b"));
+
+		final RecordingListener listener = new RecordingListener(1, null);
+		dispatcher.addListener(listener);
+
+		assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+		assertEquals(1, listener.events.size());
+		final ServletEvent replayed = listener.events.get(0);
+		assertEquals("/a", replayed.getAlias());
+		assertEquals(ServletEvent.DEPLOYED, replayed.getType());
+		assertTrue(replayed.isReplay());
+	}
+
+	@Test
+	public void removesFailingListener() throws Exception {
+		final CountDownLatch called = new CountDownLatch(1);
+		dispatcher.addListener(new ServletListener() {
+			@Override
+			public void servletEvent(ServletEvent event) {
+				called.countDown();
+				throw new IllegalStateException("failing listener");
+			}
+		});
+		dispatcher.servletEvent(event(ServletEvent.DEPLOYED, "/a"));
+
+		assertTrue(called.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < 100 && dispatcher.getRemovedListeners() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, dispatcher.getRemovedListeners());
+		assertFalse(dispatcher.getQueuedEvents() > 0);
+	}
+
+	@Test
+	public void stuckListenersDoNotDelayOthers() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		try {
+			for (int i = 0; i < 4; i++) {
+				dispatcher.addListener(new RecordingListener(1, release));
+			}
+			final RecordingListener listener = new RecordingListener(1, null);
+			dispatcher.addListener(listener);
+
+			dispatcher.servletEvent(event(ServletEvent.DEPLOYED, "/a"));
+
+			assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+			assertEquals(5, dispatcher.getListeners());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void senderWaitingForFullQueueDoesNotBlockRegistration()
+			throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final int capacity = ServletEventDispatcher.QUEUE_CAPACITY;
+		final RecordingListener blocked = new RecordingListener(capacity + 2,
+				release);
+		dispatcher.addListener(blocked);
+		Thread sender = null;
+		try {
+			dispatcher.servletEvent(event(ServletEvent.DEPLOYED, "/first"));
+			for (int i = 0; i < 100 && dispatcher.getQueuedEvents() > 0; i++) {
+				Thread.sleep(10);
+			}
+			for (int i = 0; i < capacity; i++) {
+				dispatcher.servletEvent(event(ServletEvent.DEPLOYED, "/" + i));
+			}
+			sender = new Thread() {
+				@Override
+				public void run() {
+					dispatcher.servletEvent(event(ServletEvent.DEPLOYED,
+							"/late"));
+				}
+			};
+			sender.start();
+			Thread.sleep(100);
+
+			final RecordingListener listener = new RecordingListener(1, null);
+			dispatcher.addListener(listener);
+			assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+			assertTrue(sender.isAlive());
+		} finally {
+			release.countDown();
+		}
+		sender.join(10000);
+		assertTrue(blocked.done.await(10, TimeUnit.SECONDS));
+		assertEquals("/first", blocked.events.get(0).getAlias());
+		assertEquals("/0", blocked.events.get(1).getAlias());
+		assertEquals("/late", blocked.events.get(capacity + 1).getAlias());
+	}
+
+	@Test
+	public void isExportedToJmx() throws Exception {
+		final ObjectName name = new ObjectName(
+				"org.ops4j.pax.web:type=ServletEventDispatcher");
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		assertEquals(0,
+				((Number) server.getAttribute(name, "QueuedEvents")).intValue());
+
+		dispatcher.destroy();
+		assertFalse(server.isRegistered(name));
+	}
+
+	private ServletEvent event(final int type, final String alias) {
+		return new ServletEvent(type, bundle, alias, "servlet", null,
+				HttpServlet.class, null);
+	}
+
+	private static final class RecordingListener implements ServletListener {
+
+		private final List<ServletEvent> events = Collections
+				.synchronizedList(new ArrayList<ServletEvent>());
+		private final CountDownLatch done;
+		private final CountDownLatch release;
+
+		private RecordingListener(final int expected,
+				final CountDownLatch release) {
+			this.done = new CountDownLatch(expected);
+			this.release = release;
+		}
+
+		@Override
+		public void servletEvent(ServletEvent event) {
+			if (release != null) {
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			events.add(event);
+			done.countDown();
+		}
+	}
+
+}
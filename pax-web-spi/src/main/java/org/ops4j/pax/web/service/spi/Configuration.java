@@ -177,6 +177,10 @@ public interface Configuration {
 
 	Boolean getJspPrecompilation();
 
+	Integer getJspPrecompilationThreads();
+
+	String getJspPrecompilationCacheDir();
+
 	List<String> getVirtualHosts();
 
 	Boolean isLogNCSALatency();
@@ -185,4 +189,177 @@ public interface Configuration {
 
 	Boolean isLogNCSAServer();
 
+	/**
+	 * Returns if the NCSA log is written by a background thread.
+	 * 
+	 * @return true for asynchronous logging, null or false otherwise
+	 */
+	Boolean isLogNCSAAsync();
+
+	/**
+	 * Returns the number of NCSA log records buffered for the background
+	 * writer.
+	 * 
+	 * @return buffer size, null for the default
+	 */
+	Integer getLogNCSABufferSize();
+
+	/**
+	 * Returns the maximum number of bytes of static content cached in memory
+	 * per resource registration.
+	 * 
+	 * @return maximum cache size in bytes, 0 if caching is disabled
+	 */
+	Integer getResourceCacheMaxSize();
+
+	/**
+	 * Returns the maximum size of a single cached static resource.
+	 * 
+	 * @return maximum resource size in bytes
+	 */
+	Integer getResourceCacheMaxEntrySize();
+
+	/**
+	 * Returns whether cached static content is held in direct buffers.
+	 * 
+	 * @return true for direct buffers
+	 */
+	Boolean getResourceCacheDirectBuffers();
+
+	/**
+	 * Returns the size of the buffer used to copy static resources not served
+	 * from memory.
+	 * 
+	 * @return buffer size in bytes
+	 */
+	Integer getResourceBufferSize();
+
+	/**
+	 * Returns the minimum number of threads of the server thread pool.
+	 * 
+	 * @return minimum threads, null for the container default
+	 */
+	Integer getServerMinThreads();
+
+	/**
+	 * Returns the maximum number of threads of the server thread pool.
+	 * 
+	 * @return maximum threads, null for the container default
+	 */
+	Integer getServerMaxThreads();
+
+	/**
+	 * Returns how long idle threads are kept in the server thread pool.
+	 * 
+	 * @return idle timeout in ms, null for the container default
+	 */
+	Integer getServerIdleTimeout();
+
+	/**
+	 * Returns the maximum number of requests waiting for a thread.
+	 * 
+	 * @return queue size, null for an unbounded queue
+	 */
+	Integer getServerQueueSize();
+
+	/**
+	 * Returns the number of acceptor threads per connector.
+	 * 
+	 * @return acceptors, null for the container default
+	 */
+	Integer getServerAcceptors();
+
+	/**
+	 * Returns the number of selector threads per connector.
+	 * 
+	 * @return selectors, null for the container default
+	 */
+	Integer getServerSelectors();
+
+	/**
+	 * Returns the filter selecting an executor service to be used as server
+	 * thread pool.
+	 * 
+	 * @return LDAP filter, null if the server creates its own thread pool
+	 */
+	String getServerThreadPoolFilter();
+
+	/**
+	 * Returns if request metrics of contexts and servlets are collected.
+	 * 
+	 * @return true if metrics are enabled, null or false otherwise
+	 */
+	Boolean isServerRequestMetricsEnabled();
+
+	/**
+	 * Returns if responses are compressed.
+	 * 
+	 * @return true if compression is enabled, null or false otherwise
+	 */
+	Boolean isCompressionEnabled();
+
+	/**
+	 * Returns the minimum size of a response to be compressed.
+	 * 
+	 * @return minimum size in bytes, null for the default
+	 */
+	Integer getCompressionMinSize();
+
+	/**
+	 * Returns the mime types of compressed responses.
+	 * 
+	 * @return comma separated mime types, null for the default
+	 */
+	String getCompressionMimeTypes();
+
+	/**
+	 * Returns the paths within a context never compressed.
+	 * 
+	 * @return comma separated paths, null if no path is excluded
+	 */
+	String getCompressionExcludedPaths();
+
+	/**
+	 * Returns the deflate level used to compress responses.
+	 * 
+	 * @return level from 1 to 9, null for the default
+	 */
+	Integer getCompressionLevel();
+
+	/**
+	 * Returns if precompressed siblings of static resources are served.
+	 * 
+	 * @return true if .br and .gz siblings are served, null or false otherwise
+	 */
+	Boolean isCompressionPrecompressed();
+
+	/**
+	 * Returns if verified credentials are cached.
+	 * 
+	 * @return true if credentials are cached, null or false otherwise
+	 */
+	Boolean isAuthenticationCacheEnabled();
+
+	/**
+	 * Returns the time verified credentials are trusted.
+	 * 
+	 * @return time in seconds, null for the default
+	 */
+	Integer getAuthenticationCacheTtl();
+
+	/**
+	 * Returns the maximum number of verified credentials cached per context.
+	 * 
+	 * @return number of credentials, null for the default
+	 */
+	Integer getAuthenticationCacheMaxSize();
+
+	/**
+	 * Returns the time after which an idle session is evicted to the session
+	 * store.
+	 * 
+	 * @return time in seconds, null if sessions are never evicted
+	 */
+	Integer getSessionIdleTime();
+
 }
@@ -52,6 +52,15 @@ public interface ServerController {
 
 	void removeServlet(ServletModel model);
 
+	/**
+	 * Replaces the url patterns a registered servlet is mapped to by the
+	 * current ones of its model, without stopping the servlet.
+	 * 
+	 * @param model
+	 *            registered servlet model, already remapped
+	 */
+	void remapServlet(ServletModel model);
+
 	void addEventListener(EventListenerModel eventListenerModel);
 
 	void removeEventListener(EventListenerModel eventListenerModel);
@@ -60,6 +69,15 @@ public interface ServerController {
 
 	void removeFilter(FilterModel filterModel);
 
+	/**
+	 * Replaces the url patterns and servlet names a registered filter is mapped
+	 * to by the current ones of its model, without stopping the filter.
+	 * 
+	 * @param filterModel
+	 *            registered filter model, already remapped
+	 */
+	void remapFilter(FilterModel filterModel);
+
 	void addErrorPage(ErrorPageModel model);
 
 	void removeErrorPage(ErrorPageModel model);
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link RequestMetricsRegistry} filled by the request handling of a server.
+ * Metrics are created on the first request to a context or servlet and kept
+ * by name until the servlet or context gets removed from the server, or the
+ * collector is closed.
+ * <p>
+ * Once {@link #register(BundleContext) registered}, the collector is
+ * published as OSGi service and every metrics object as MBean named
+ * {@value #JMX_DOMAIN}:type=RequestMetrics,context=...[,servlet=...].
+ */
+public class RequestMetricsCollector implements RequestMetricsRegistry {
+
+	/**
+	 * JMX domain of the metrics MBeans.
+	 */
+	public static final String JMX_DOMAIN = "org.ops4j.pax.web";
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(RequestMetricsCollector.class);
+
+	private final ConcurrentMap<String, ContextMetrics> contexts = new ConcurrentHashMap<String, ContextMetrics>();
+
+	private ServiceRegistration<RequestMetricsRegistry> registration;
+	private volatile MBeanServer mbeanServer;
+
+	/**
+	 * Returns the metrics of a context, creating them on first use.
+	 *
+	 * @param contextName
+	 *            name of the context
+	 * @return metrics of the context
+	 */
+	public RequestMetrics contextMetrics(final String contextName) {
+		return getOrCreateContext(contextName).metrics;
+	}
+
+	/**
+	 * Returns the metrics of a servlet, creating them on first use.
+	 *
+	 * @param contextName
+	 *            name of the context of the servlet
+	 * @param servletName
+	 *            name of the servlet
+	 * @return metrics of the servlet
+	 */
+	public RequestMetrics servletMetrics(final String contextName,
+			final String servletName) {
+		final ContextMetrics context = getOrCreateContext(contextName);
+		RequestMetrics metrics = context.servlets.get(servletName);
+		if (metrics == null) {
+			final RequestMetrics created = new RequestMetrics(contextName,
+					servletName);
+			metrics = context.servlets.putIfAbsent(servletName, created);
+			if (metrics == null) {
+				metrics = created;
+				registerMBean(metrics);
+			}
+		}
+		return metrics;
+	}
+
+	private ContextMetrics getOrCreateContext(final String contextName) {
+		ContextMetrics context = contexts.get(contextName);
+		if (context == null) {
+			final ContextMetrics created = new ContextMetrics(contextName);
+			context = contexts.putIfAbsent(contextName, created);
+			if (context == null) {
+				context = created;
+				registerMBean(context.metrics);
+			}
+		}
+		return context;
+	}
+
+	/**
+	 * Drops the metrics of a servlet removed from the server.
+	 *
+	 * @param contextName
+	 *            name of the context of the servlet
+	 * @param servletName
+	 *            name of the servlet
+	 */
+	public void removeServletMetrics(final String contextName,
+			final String servletName) {
+		final ContextMetrics context = contexts.get(contextName);
+		if (context == null || servletName == null) {
+			return;
+		}
+		final RequestMetrics metrics = context.servlets.remove(servletName);
+		if (metrics != null) {
+			unregisterMBean(mbeanServer, metrics);
+		}
+	}
+
+	/**
+	 * Drops the metrics of a context removed from the server, including the
+	 * ones of its servlets.
+	 *
+	 * @param contextName
+	 *            name of the context
+	 */
+	public void removeContextMetrics(final String contextName) {
+		final ContextMetrics context = contexts.remove(contextName);
+		if (context == null) {
+			return;
+		}
+		final MBeanServer server = mbeanServer;
+		unregisterMBean(server, context.metrics);
+		for (RequestMetrics metrics : context.servlets.values()) {
+			unregisterMBean(server, metrics);
+		}
+	}
+
+	@Override
+	public Collection<RequestMetrics> getRequestMetrics() {
+		final Collection<RequestMetrics> result = new ArrayList<RequestMetrics>();
+		for (ContextMetrics context : contexts.values()) {
+			result.add(context.metrics);
+			result.addAll(context.servlets.values());
+		}
+		return result;
+	}
+
+	@Override
+	public RequestMetrics getContextMetrics(final String contextName) {
+		final ContextMetrics context = contexts.get(contextName);
+		return context == null ? null : context.metrics;
+	}
+
+	@Override
+	public RequestMetrics getServletMetrics(final String contextName,
+			final String servletName) {
+		final ContextMetrics context = contexts.get(contextName);
+		return context == null ? null : context.servlets.get(servletName);
+	}
+
+	/**
+	 * Publishes the collector as OSGi service and its metrics as MBeans.
+	 *
+	 * @param bundleContext
+	 *            context used to register the service
+	 */
+	public synchronized void register(final BundleContext bundleContext) {
+		if (registration != null) {
+			return;
+		}
+		//CHECKSTYLE:OFF
+		try {
+			mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		} catch (Throwable t) {
+			// no jmx available just ignore it!
+			LOG.debug("No JMX available, request metrics are not exported");
+		}
+		//CHECKSTYLE:ON
+		for (RequestMetrics metrics : getRequestMetrics()) {
+			registerMBean(metrics);
+		}
+		registration = bundleContext.registerService(
+				RequestMetricsRegistry.class, this, null);
+	}
+
+	/**
+	 * Removes the service and MBeans and drops all metrics.
+	 */
+	public synchronized void close() {
+		if (registration != null) {
+			try {
+				registration.unregister();
+			} catch (IllegalStateException e) {
+				LOG.debug("Request metrics service is already unregistered");
+			}
+			registration = null;
+		}
+		final MBeanServer server = mbeanServer;
+		mbeanServer = null;
+		for (RequestMetrics metrics : getRequestMetrics()) {
+			unregisterMBean(server, metrics);
+		}
+		contexts.clear();
+	}
+
+	private void registerMBean(final RequestMetrics metrics) {
+		final MBeanServer server = mbeanServer;
+		if (server == null) {
+			return;
+		}
+		//CHECKSTYLE:OFF
+		try {
+			final ObjectName name = objectName(metrics);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(metrics, name);
+			}
+		} catch (Exception e) {
+			LOG.warn("Unable to register MBean of {}", metrics, e);
+		}
+		//CHECKSTYLE:ON
+	}
+
+	private static void unregisterMBean(final MBeanServer server,
+			final RequestMetrics metrics) {
+		if (server == null) {
+			return;
+		}
+		//CHECKSTYLE:OFF
+		try {
+			final ObjectName name = objectName(metrics);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		} catch (Exception e) {
+			LOG.debug("Unable to unregister MBean of {}", metrics, e);
+		}
+		//CHECKSTYLE:ON
+	}
+
+	private static ObjectName objectName(final RequestMetrics metrics)
+			throws MalformedObjectNameException {
+		final StringBuilder name = new StringBuilder(JMX_DOMAIN)
+				.append(":type=RequestMetrics,context=")
+				.append(ObjectName.quote(metrics.getContextName()));
+		if (metrics.getServletName() != null) {
+			name.append(",servlet=").append(
+					ObjectName.quote(metrics.getServletName()));
+		}
+		return new ObjectName(name.toString());
+	}
+
+	/**
+	 * Metrics of a context and its servlets.
+	 */
+	private static final class ContextMetrics {
+
+		private final RequestMetrics metrics;
+		private final ConcurrentMap<String, RequestMetrics> servlets = new ConcurrentHashMap<String, RequestMetrics>();
+
+		private ContextMetrics(final String contextName) {
+			metrics = new RequestMetrics(contextName, null);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.metrics;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Completes the metrics of a request once its asynchronous processing is
+ * done instead of when the container thread returns.
+ */
+public class RequestMetricsListener implements AsyncListener {
+
+	private final RequestMetrics metrics;
+	private final long startTime;
+	private volatile boolean failed;
+
+	/**
+	 * @param metrics
+	 *            metrics to complete
+	 * @param startTime
+	 *            as returned by {@link RequestMetrics#requestStarted()}
+	 */
+	public RequestMetricsListener(final RequestMetrics metrics,
+			final long startTime) {
+		this.metrics = metrics;
+		this.startTime = startTime;
+	}
+
+	@Override
+	public void onComplete(final AsyncEvent event) throws IOException {
+		metrics.requestCompleted(startTime,
+				failed || isServerError(event.getSuppliedResponse()));
+	}
+
+	@Override
+	public void onTimeout(final AsyncEvent event) throws IOException {
+		failed = true;
+	}
+
+	@Override
+	public void onError(final AsyncEvent event) throws IOException {
+		failed = true;
+	}
+
+	@Override
+	public void onStartAsync(final AsyncEvent event) throws IOException {
+		// the listeners are dropped when the request is put in async mode again
+		event.getAsyncContext().addListener(this);
+	}
+
+	/**
+	 * Completes the metrics of a request when the container thread returns,
+	 * or registers a listener to do so if the request went asynchronous.
+	 *
+	 * @param metrics
+	 *            metrics to complete
+	 * @param startTime
+	 *            as returned by {@link RequestMetrics#requestStarted()}
+	 * @param request
+	 *            the handled request
+	 * @param response
+	 *            the response of the request
+	 * @param failed
+	 *            if handling the request threw an exception
+	 */
+	public static void requestHandled(final RequestMetrics metrics,
+			final long startTime, final ServletRequest request,
+			final ServletResponse response, final boolean failed) {
+		if (!failed && request.isAsyncStarted()) {
+			request.getAsyncContext().addListener(
+					new RequestMetricsListener(metrics, startTime));
+		} else {
+			metrics.requestCompleted(startTime,
+					failed || isServerError(response));
+		}
+	}
+
+	/**
+	 * @return if the response has a server error status
+	 */
+	public static boolean isServerError(final ServletResponse response) {
+		return response instanceof HttpServletResponse
+				&& ((HttpServletResponse) response).getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.metrics;
+
+/**
+ * Management interface of {@link RequestMetrics}.
+ */
+public interface RequestMetricsMBean {
+
+	/**
+	 * @return name of the context the requests were made to
+	 */
+	String getContextName();
+
+	/**
+	 * @return name of the servlet which handled the requests, null for the
+	 *         metrics of a whole context
+	 */
+	String getServletName();
+
+	/**
+	 * @return number of completed requests
+	 */
+	long getRequestCount();
+
+	/**
+	 * @return number of completed requests which failed with an exception or
+	 *         a server error status
+	 */
+	long getErrorCount();
+
+	/**
+	 * @return number of requests being processed
+	 */
+	int getInFlightRequests();
+
+	/**
+	 * @return completed requests per second since the metrics were created or
+	 *         reset
+	 */
+	double getRequestsPerSecond();
+
+	/**
+	 * @return mean latency in ms
+	 */
+	double getMeanLatency();
+
+	/**
+	 * @return maximum latency in ms
+	 */
+	double getMaxLatency();
+
+	/**
+	 * @return median latency in ms
+	 */
+	double getLatency50thPercentile();
+
+	/**
+	 * @return 90th percentile of the latency in ms
+	 */
+	double getLatency90thPercentile();
+
+	/**
+	 * @return 99th percentile of the latency in ms
+	 */
+	double getLatency99thPercentile();
+
+	/**
+	 * @param percentile
+	 *            percentile between 0 and 100
+	 * @return latency in ms which the given percentage of the requests did
+	 *         not exceed
+	 */
+	double getLatencyPercentile(double percentile);
+
+	/**
+	 * Sets all counters to zero.
+	 */
+	void reset();
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.metrics;
+
+import java.util.Collection;
+
+/**
+ * Request metrics of the contexts and servlets of a server, published as OSGi
+ * service while the server is running with request metrics enabled.
+ */
+public interface RequestMetricsRegistry {
+
+	/**
+	 * @return metrics of all contexts and servlets which received requests
+	 */
+	Collection<RequestMetrics> getRequestMetrics();
+
+	/**
+	 * @param contextName
+	 *            name of the context
+	 * @return metrics of the context, null if it did not receive any request
+	 */
+	RequestMetrics getContextMetrics(String contextName);
+
+	/**
+	 * @param contextName
+	 *            name of the context
+	 * @param servletName
+	 *            name of the servlet
+	 * @return metrics of the servlet, null if it did not receive any request
+	 */
+	RequestMetrics getServletMetrics(String contextName, String servletName);
+}
@@ -27,6 +27,7 @@ import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletContainerInitializer;
@@ -140,6 +141,12 @@ public class ContextModel extends Identity {
 	 */
 	private boolean webBundle;
 
+	/**
+	 * Number of registration batches being applied to this context, which
+	 * start the context once they are done.
+	 */
+	private final AtomicInteger batches = new AtomicInteger();
+
 	/**
 	 * 
 	 * @param httpContext
@@ -534,4 +541,28 @@ public class ContextModel extends Identity {
 	public void setWebBundle(boolean webBundle) {
 		this.webBundle = webBundle;
 	}
+
+	/**
+	 * Marks a registration batch as being applied, until
+	 * {@link #endBatch()}. A server restarting the context to pick up a
+	 * registration may leave the start to the batch meanwhile.
+	 */
+	public void beginBatch() {
+		batches.incrementAndGet();
+	}
+
+	/**
+	 * Marks a registration batch as applied.
+	 */
+	public void endBatch() {
+		batches.decrementAndGet();
+	}
+
+	/**
+	 * @return true if a registration batch is being applied, starting the
+	 *         context once done
+	 */
+	public boolean isBatchInProgress() {
+		return batches.get() > 0;
+	}
 }
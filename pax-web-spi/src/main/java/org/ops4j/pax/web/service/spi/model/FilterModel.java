@@ -48,8 +48,11 @@ public class FilterModel extends Model {
 	};
 
 	private final Filter filter;
-	private final String[] urlPatterns;
-	private final String[] servletNames;
+	/**
+	 * Replaced as a whole on a remapping of the filter, as the servlet names.
+	 */
+	private volatile String[] urlPatterns;
+	private volatile String[] servletNames;
 	private final Map<String, String> initParams;
 	private final String name;
 	private final Set<String> dispatcher = new HashSet<String>();
@@ -78,24 +81,10 @@ public class FilterModel extends Model {
 		if (filter == null) {
 			NullArgumentException.validateNotNull(filterClass, "FilterClass");
 		}
-		
-		if (urlPatterns == null && servletNames == null) {
-			throw new IllegalArgumentException(
-					"Registered filter must have at least one url pattern or servlet name mapping");
-		}
 
 		this.filter = filter;
 		this.filterClass = filterClass;
-		if (urlPatterns != null) {
-			this.urlPatterns = Path.normalizePatterns(Arrays.copyOf(urlPatterns, urlPatterns.length));
-		} else {
-			this.urlPatterns = null;
-		}
-		if (servletNames != null) {
-			this.servletNames = Arrays.copyOf(servletNames, servletNames.length);
-		} else {
-			this.servletNames = null;
-		}
+		setMapping(urlPatterns, servletNames);
 			
 		this.initParams = ConversionUtil.convertToMap(initParameter);
 		String idName = initParams.get(WebContainerConstants.FILTER_NAME);
@@ -163,6 +152,28 @@ public class FilterModel extends Model {
 		return servletNames;
 	}
 
+	/**
+	 * Changes the url patterns and servlet names the filter is mapped to, see
+	 * {@link ServerModel#remapFilterModel(FilterModel, String[], String[])}.
+	 */
+	final void setMapping(final String[] urlPatterns,
+			final String[] servletNames) {
+		if (urlPatterns == null && servletNames == null) {
+			throw new IllegalArgumentException(
+					"Registered filter must have at least one url pattern or servlet name mapping");
+		}
+		if (urlPatterns != null) {
+			this.urlPatterns = Path.normalizePatterns(Arrays.copyOf(urlPatterns, urlPatterns.length));
+		} else {
+			this.urlPatterns = null;
+		}
+		if (servletNames != null) {
+			this.servletNames = Arrays.copyOf(servletNames, servletNames.length);
+		} else {
+			this.servletNames = null;
+		}
+	}
+
 	public Map<String, String> getInitParams() {
 		return initParams;
 	}
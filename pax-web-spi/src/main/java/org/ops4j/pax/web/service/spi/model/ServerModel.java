@@ -16,9 +16,9 @@
  */
 package org.ops4j.pax.web.service.spi.model;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -92,6 +92,16 @@ public class ServerModel {
 	private final ReentrantReadWriteLock filterLock;
 
 	private final ConcurrentMap<ServletContainerInitializer, ContainerInitializerModel> containerInitializers;
+	/**
+	 * Compiled form of servlet url patterns used for request matching.
+	 * Replaced (never modified) while holding the servlet write lock.
+	 */
+	private volatile UrlPatternTrie<UrlPattern> servletMatcher;
+	/**
+	 * Compiled form of filter url patterns used for request matching.
+	 * Replaced (never modified) while holding the filter write lock.
+	 */
+	private volatile UrlPatternTrie<UrlPattern> filterMatcher;
 
 	/**
 	 * Constructor.
@@ -105,6 +115,8 @@ public class ServerModel {
 		containerInitializers = new ConcurrentHashMap<ServletContainerInitializer, ContainerInitializerModel>();
 		servletLock = new ReentrantReadWriteLock(true);
 		filterLock = new ReentrantReadWriteLock(true);
+		servletMatcher = UrlPatternTrie.empty();
+		filterMatcher = UrlPatternTrie.empty();
 	}
 
 	/**
@@ -138,6 +150,7 @@ public class ServerModel {
 				servletUrlPatterns.put(getFullPath(model.getContextModel(), urlPattern),
 						new UrlPattern(getFullPath(model.getContextModel(), urlPattern), model));
 			}
+			rebuildServletMatcher();
 		} finally {
 			servletLock.writeLock().unlock();
 		}
@@ -163,6 +176,38 @@ public class ServerModel {
 					servletUrlPatterns.remove(getFullPath(model.getContextModel(), urlPattern));
 				}
 			}
+			rebuildServletMatcher();
+		} finally {
+			servletLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Changes the url patterns of a registered servlet model, which stays
+	 * registered with its alias and servlet.
+	 * 
+	 * @param model
+	 *            registered servlet model
+	 * @param urlPatterns
+	 *            url patterns replacing the current ones
+	 */
+	public void remapServletModel(final ServletModel model, final String[] urlPatterns) {
+		servletLock.writeLock().lock();
+		try {
+			final String[] formerPatterns = model.getUrlPatterns();
+			model.setUrlPatterns(urlPatterns);
+			for (String urlPattern : formerPatterns) {
+				final String fullPath = getFullPath(model.getContextModel(), urlPattern);
+				final UrlPattern registered = servletUrlPatterns.get(fullPath);
+				if (registered != null && registered.getModel() == model) {
+					servletUrlPatterns.remove(fullPath);
+				}
+			}
+			for (String urlPattern : model.getUrlPatterns()) {
+				servletUrlPatterns.put(getFullPath(model.getContextModel(), urlPattern),
+						new UrlPattern(getFullPath(model.getContextModel(), urlPattern), model));
+			}
+			rebuildServletMatcher();
 		} finally {
 			servletLock.writeLock().unlock();
 		}
@@ -178,26 +223,8 @@ public class ServerModel {
 		if (model.getUrlPatterns() != null) {
 			try {
 				filterLock.writeLock().lock();
-				for (String urlPattern : model.getUrlPatterns()) {
-					final UrlPattern newUrlPattern = new UrlPattern(getFullPath(model.getContextModel(), urlPattern),
-							model);
-					String fullPath = getFullPath(model.getContextModel(), urlPattern);
-					Set<UrlPattern> urlSet = filterUrlPatterns.get(fullPath);
-					if (urlSet == null) {
-						//initialize first
-						urlSet = new HashSet<>();
-					}
-					urlSet.add(newUrlPattern);
-					filterUrlPatterns.put(fullPath, urlSet);
-//					final UrlPattern existingPattern = filterUrlPatterns.putIfAbsent(
-//							getFullPath(model.getContextModel(), urlPattern), newUrlPattern);
-//					if (existingPattern != null) {
-//						// this should never happen but is a good assertion
-//						LOG.error("Internal error (please report): Cannot associate url mapping "
-//								+ getFullPath(model.getContextModel(), urlPattern) + " to " + newUrlPattern
-//								+ " because is already associated to " + existingPattern);
-//					}
-				}
+				addFilterUrlPatterns(model);
+				rebuildFilterMatcher();
 			} finally {
 				filterLock.writeLock().unlock();
 			}
@@ -214,27 +241,89 @@ public class ServerModel {
 		if (model.getUrlPatterns() != null) {
 			try {
 				filterLock.writeLock().lock();
-				for (String urlPattern : model.getUrlPatterns()) {
-					String fullPath = getFullPath(model.getContextModel(), urlPattern);
-					Set<UrlPattern> urlSet = filterUrlPatterns.get(fullPath);
-					UrlPattern toDelete = null;
-					for (UrlPattern pattern : urlSet) {
-						FilterModel filterModel = (FilterModel)pattern.getModel();
-						Filter filter = filterModel.getFilter();
-						Filter matchFilter = model.getFilter();
-						if (filter != null && filter.equals(matchFilter)) {
-							toDelete = pattern;
-							break;
-						}
-					}
-					urlSet.remove(toDelete);
-				}
+				removeFilterUrlPatterns(model, model.getUrlPatterns());
+				rebuildFilterMatcher();
 			} finally {
 				filterLock.writeLock().unlock();
 			}
 		}
 	}
 
+	/**
+	 * Changes the url patterns and servlet names of a registered filter model.
+	 * 
+	 * @param model
+	 *            registered filter model
+	 * @param urlPatterns
+	 *            url patterns replacing the current ones, may be null
+	 * @param servletNames
+	 *            servlet names replacing the current ones, may be null
+	 */
+	public void remapFilterModel(final FilterModel model, final String[] urlPatterns,
+			final String[] servletNames) {
+		try {
+			filterLock.writeLock().lock();
+			final String[] formerPatterns = model.getUrlPatterns();
+			model.setMapping(urlPatterns, servletNames);
+			if (formerPatterns != null) {
+				removeFilterUrlPatterns(model, formerPatterns);
+			}
+			if (model.getUrlPatterns() != null) {
+				addFilterUrlPatterns(model);
+			}
+			rebuildFilterMatcher();
+		} finally {
+			filterLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Must be called with the filter write lock held.
+	 */
+	private void addFilterUrlPatterns(final FilterModel model) {
+		for (String urlPattern : model.getUrlPatterns()) {
+			final UrlPattern newUrlPattern = new UrlPattern(getFullPath(model.getContextModel(), urlPattern),
+					model);
+			String fullPath = getFullPath(model.getContextModel(), urlPattern);
+			Set<UrlPattern> urlSet = filterUrlPatterns.get(fullPath);
+			if (urlSet == null) {
+				//initialize first
+				urlSet = new HashSet<>();
+			}
+			urlSet.add(newUrlPattern);
+			filterUrlPatterns.put(fullPath, urlSet);
+//			final UrlPattern existingPattern = filterUrlPatterns.putIfAbsent(
+//					getFullPath(model.getContextModel(), urlPattern), newUrlPattern);
+//			if (existingPattern != null) {
+//				// this should never happen but is a good assertion
+//				LOG.error("Internal error (please report): Cannot associate url mapping "
+//						+ getFullPath(model.getContextModel(), urlPattern) + " to " + newUrlPattern
+//						+ " because is already associated to " + existingPattern);
+//			}
+		}
+	}
+
+	/**
+	 * Must be called with the filter write lock held.
+	 */
+	private void removeFilterUrlPatterns(final FilterModel model, final String[] urlPatterns) {
+		for (String urlPattern : urlPatterns) {
+			String fullPath = getFullPath(model.getContextModel(), urlPattern);
+			Set<UrlPattern> urlSet = filterUrlPatterns.get(fullPath);
+			UrlPattern toDelete = null;
+			for (UrlPattern pattern : urlSet) {
+				FilterModel filterModel = (FilterModel)pattern.getModel();
+				Filter filter = filterModel.getFilter();
+				Filter matchFilter = model.getFilter();
+				if (filter != null && filter.equals(matchFilter)) {
+					toDelete = pattern;
+					break;
+				}
+			}
+			urlSet.remove(toDelete);
+		}
+	}
+
 	public void addContainerInitializerModel(ContainerInitializerModel model) {
 		if (containerInitializers.containsKey(model.getContainerInitializer())) {
 			throw new IllegalArgumentException(
@@ -310,22 +399,26 @@ public class ServerModel {
 		}
 	}
 
+	/**
+	 * Finds the context a request path belongs to. Servlet patterns are
+	 * considered first, filter patterns only if no servlet pattern matches.
+	 * Does not lock and does not allocate (apart from debug logging).
+	 * 
+	 * @param path
+	 *            full request path
+	 * 
+	 * @return matched context model or null if the path matches no pattern
+	 */
 	public ContextModel matchPathToContext(final String path) {
 		final boolean debug = LOG.isDebugEnabled();
 		if (debug) {
 			LOG.debug("Matching [" + path + "]...");
 		}
-		UrlPattern urlPattern = null;
 		// first match servlets
-		servletLock.readLock().lock();
-		try {
-			urlPattern = matchPathToContext(servletUrlPatterns, path);
-		} finally {
-			servletLock.readLock().unlock();
-		}
+		UrlPattern urlPattern = servletMatcher.match(path);
 		// then if there is no matched servlet look for filters
 		if (urlPattern == null) {
-			urlPattern = matchFilterPathToContext(filterUrlPatterns, path);
+			urlPattern = filterMatcher.match(path);
 		}
 		ContextModel matched = null;
 		if (urlPattern != null) {
@@ -340,97 +433,33 @@ public class ServerModel {
 		}
 		return matched;
 	}
-	
-	private static UrlPattern matchFilterPathToContext(final Map<String, Set<UrlPattern>> urlPatternsMap, final String path) {
-		Set<String> keySet = urlPatternsMap.keySet();
-		for (String key : keySet) {
-			Set<UrlPattern> patternsMap = urlPatternsMap.get(key);
-			
-			for (UrlPattern urlPattern : patternsMap) {
-				Map<String, UrlPattern> tempMap = new HashMap<String, ServerModel.UrlPattern>();
-				tempMap.put(key, urlPattern);
-				UrlPattern pattern = matchPathToContext(tempMap, path);
-				if (pattern != null) {
-					return pattern;
-				}
-			}
+
+	/**
+	 * Recompiles the servlet matcher. Must be called with the servlet write
+	 * lock held.
+	 */
+	private void rebuildServletMatcher() {
+		final UrlPatternTrie.Builder<UrlPattern> builder = new UrlPatternTrie.Builder<UrlPattern>();
+		for (Map.Entry<String, UrlPattern> entry : servletUrlPatterns.entrySet()) {
+			builder.put(entry.getKey(), entry.getValue());
 		}
-		return null;
+		servletMatcher = builder.build();
 	}
 
-	private static UrlPattern matchPathToContext(final Map<String, UrlPattern> urlPatternsMap, final String path) {
-		UrlPattern matched = null;
-		String servletPath = path;
-
-		while ((matched == null) && (!"".equals(servletPath))) {
-			// Match the asterisks first that comes just after the current
-			// servlet path, so that it satisfies the longest path req
-			if (servletPath.endsWith("/")) {
-				matched = urlPatternsMap.get(servletPath + "*");
-			} else {
-				matched = urlPatternsMap.get(servletPath + "/*");
-			}
-
-			// try to match the exact resource if the above fails
-			if (matched == null) {
-				matched = urlPatternsMap.get(servletPath);
-			}
-
-			// now try to match the url backwards one directory at a time
-			if (matched == null) {
-				String lastPathSegment = servletPath.substring(servletPath.lastIndexOf("/") + 1);
-				servletPath = servletPath.substring(0, servletPath.lastIndexOf("/"));
-				// case 1: the servlet path is /
-				if (("".equals(servletPath)) && ("".equals(lastPathSegment))) {
-					break;
-				} else if ("".equals(lastPathSegment)) {
-					// case 2 the servlet path ends with /
-					matched = urlPatternsMap.get(servletPath + "/*");
-					continue;
-				} else if (lastPathSegment.contains(".")) {
-					// case 3 the last path segment has a extension that needs
-					// to be
-					// matched
-					String extension = lastPathSegment.substring(lastPathSegment.lastIndexOf("."));
-					if (extension.length() > 1) {
-						// case 3.5 refer to second bulleted point of heading
-						// Specification of Mappings
-						// in servlet specification
-						// PATCH - do not go global too early. Next 3 lines
-						// modified.
-						// matched = urlPatternsMap.get("*" + extension);
-						if (matched == null) {
-							matched = urlPatternsMap.get(("".equals(servletPath) ? "*" : servletPath + "/*")
-									+ extension);
-						}
-					}
-				} else {
-					// case 4 search for the wild cards at the end of servlet
-					// path
-					// of the next iteration
-					if (servletPath.endsWith("/")) {
-						matched = urlPatternsMap.get(servletPath + "*");
-					} else {
-						matched = urlPatternsMap.get(servletPath + "/*");
-					}
-				}
-
-				// case 5 if all the above fails look for the actual mapping
-				if (matched == null) {
-					matched = urlPatternsMap.get(servletPath);
-				}
-
-				// case 6 the servlet path has / followed by context name, this
-				// case is
-				// selected at the end of the directory, when none of the them
-				// matches.
-				// So we try to match to root.
-				if ((matched == null) && ("".equals(servletPath)) && (!"".equals(lastPathSegment))) {
-					matched = urlPatternsMap.get("/");
-				}
+	/**
+	 * Recompiles the filter matcher. Must be called with the filter write lock
+	 * held. If more filters share a pattern the first one is used, as all of
+	 * them are only used to find the context.
+	 */
+	private void rebuildFilterMatcher() {
+		final UrlPatternTrie.Builder<UrlPattern> builder = new UrlPatternTrie.Builder<UrlPattern>();
+		for (Map.Entry<String, Set<UrlPattern>> entry : filterUrlPatterns.entrySet()) {
+			final Iterator<UrlPattern> patterns = entry.getValue().iterator();
+			if (patterns.hasNext()) {
+				builder.put(entry.getKey(), patterns.next());
 			}
 		}
-		return matched;
+		filterMatcher = builder.build();
 	}
 
 	/**
@@ -67,6 +67,24 @@ public class ServiceModel {
 		return aliasMapping.get(alias);
 	}
 
+	/**
+	 * @return model of the registered servlet, null if it is not registered
+	 */
+	public synchronized ServletModel getServletModel(final Servlet servlet) {
+		return findServletModel(servlet);
+	}
+
+	/**
+	 * @return model of the registered filter, null if it is not registered
+	 */
+	public synchronized FilterModel getFilterModel(final Filter filter) {
+		final Set<FilterModel> models = findFilterModels(filter);
+		if (models == null) {
+			return null;
+		}
+		return models.iterator().next();
+	}
+
 	public synchronized void addServletModel(final ServletModel model) {
 		if (model.getAlias() != null) {
 			aliasMapping.put(model.getAlias(), model);
@@ -37,7 +37,10 @@ public class ServletModel extends Model {
 	private final Class<? extends Servlet> servletClass;
 	private Servlet servlet;
 	private final String alias;
-	private final String[] urlPatterns;
+	/**
+	 * Replaced as a whole on a remapping of the servlet.
+	 */
+	private volatile String[] urlPatterns;
 	private final Map<String, String> initParams;
 	private final String name;
 	private final Integer loadOnStartup;
@@ -121,6 +124,16 @@ public class ServletModel extends Model {
 		return urlPatterns;
 	}
 
+	/**
+	 * Changes the url patterns of the registered servlet, see
+	 * {@link ServerModel#remapServletModel(ServletModel, String[])}.
+	 */
+	void setUrlPatterns(final String[] urlPatterns) {
+		NullArgumentException.validateNotNull(urlPatterns, "Url patterns");
+		this.urlPatterns = Path.normalizePatterns(Arrays.copyOf(urlPatterns,
+				urlPatterns.length));
+	}
+
 	public String getAlias() {
 		return alias;
 	}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable path-segment trie over full url patterns (context name prepended).
+ * Each node holds the optional exact ({@code /a/b}), prefix ({@code /a/b/*})
+ * and extension ({@code /a/b/*.ext}) mapping registered for its path.
+ * <p>
+ * Matching walks the request path once, segment by segment, without
+ * allocating and without locking. The deepest node that yields a candidate
+ * wins, so a pattern registered inside a context always beats a pattern of a
+ * context mounted higher up. Within one node the servlet specification order
+ * applies: exact, prefix, extension, and finally an exact pattern of an
+ * ancestor directory (this covers the default servlet {@code /} of named
+ * contexts, registered as {@code /name}).
+ * <p>
+ * Instances are never modified; {@link ServerModel} builds a new one through
+ * a {@link Builder} on every registration change.
+ *
+ * @param <T>
+ *            type of the values mapped to patterns
+ */
+final class UrlPatternTrie<T> {
+
+	private static final UrlPatternTrie<Object> EMPTY = new Builder<Object>().build();
+
+	private final Node root;
+
+	private UrlPatternTrie(final Node root) {
+		this.root = root;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> UrlPatternTrie<T> empty() {
+		return (UrlPatternTrie<T>) EMPTY;
+	}
+
+	/**
+	 * Finds the value of the best matching pattern.
+	 *
+	 * @param path
+	 *            full request path
+	 *
+	 * @return matched value or null if no pattern matches
+	 */
+	@SuppressWarnings("unchecked")
+	T match(final String path) {
+		final int length = path.length();
+		// locate the last non empty segment and its extension (if any)
+		int lastEnd = length;
+		while (lastEnd > 0 && path.charAt(lastEnd - 1) == '/') {
+			lastEnd--;
+		}
+		int lastStart = lastEnd;
+		while (lastStart > 0 && path.charAt(lastStart - 1) != '/') {
+			lastStart--;
+		}
+		int extStart = -1;
+		if (lastEnd == length) {
+			for (int i = lastEnd - 1; i >= lastStart; i--) {
+				if (path.charAt(i) == '.') {
+					extStart = i + 1 < lastEnd ? i + 1 : -1;
+					break;
+				}
+			}
+		}
+		final boolean noSegments = lastStart == lastEnd;
+
+		Node node = root;
+		Object best = node.candidate(path, noSegments, false, extStart, length);
+		int index = 0;
+		while (index < length) {
+			while (index < length && path.charAt(index) == '/') {
+				index++;
+			}
+			if (index >= length) {
+				break;
+			}
+			int end = path.indexOf('/', index);
+			if (end < 0) {
+				end = length;
+			}
+			node = (Node) node.children.get(path, index, end);
+			if (node == null) {
+				break;
+			}
+			final boolean last = index == lastStart;
+			final Object candidate = node.candidate(path, last, last, extStart, length);
+			if (candidate != null) {
+				best = candidate;
+			}
+			index = end;
+		}
+		return (T) best;
+	}
+
+	/**
+	 * One trie node, frozen.
+	 */
+	private static final class Node {
+
+		private final Object exact;
+		private final Object prefix;
+		private final Table extensions;
+		private final Table children;
+
+		private Node(final Object exact, final Object prefix, final Table extensions, final Table children) {
+			this.exact = exact;
+			this.prefix = prefix;
+			this.extensions = extensions;
+			this.children = children;
+		}
+
+		/**
+		 * @param last
+		 *            true if this node corresponds to the whole path
+		 * @param exactAllowed
+		 *            true if an exact pattern may be preferred over a prefix
+		 *            (false for the root node which only holds the default
+		 *            servlet)
+		 */
+		private Object candidate(final String path, final boolean last, final boolean exactAllowed,
+				final int extStart, final int length) {
+			if (last && exactAllowed && exact != null) {
+				return exact;
+			}
+			if (prefix != null) {
+				return prefix;
+			}
+			if (!last && extStart >= 0) {
+				final Object extension = extensions.get(path, extStart, length);
+				if (extension != null) {
+					return extension;
+				}
+			}
+			return exact;
+		}
+	}
+
+	/**
+	 * Open addressing hash table keyed by strings which can be probed with a
+	 * region of another string so lookups do not need substrings.
+	 */
+	private static final class Table {
+
+		private static final Table EMPTY_TABLE = new Table(new HashMap<String, Object>());
+
+		private final String[] keys;
+		private final int[] hashes;
+		private final Object[] values;
+		private final int mask;
+
+		private Table(final Map<String, ?> entries) {
+			int capacity = 2;
+			while (capacity < entries.size() * 2) {
+				capacity <<= 1;
+			}
+			keys = new String[capacity];
+			hashes = new int[capacity];
+			values = new Object[capacity];
+			mask = capacity - 1;
+			for (Map.Entry<String, ?> entry : entries.entrySet()) {
+				final String key = entry.getKey();
+				final int hash = key.hashCode();
+				int slot = spread(hash) & mask;
+				while (keys[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+				hashes[slot] = hash;
+				values[slot] = entry.getValue();
+			}
+		}
+
+		static Table of(final Map<String, ?> entries) {
+			return entries.isEmpty() ? EMPTY_TABLE : new Table(entries);
+		}
+
+		Object get(final String source, final int from, final int to) {
+			int hash = 0;
+			for (int i = from; i < to; i++) {
+				hash = 31 * hash + source.charAt(i);
+			}
+			final int length = to - from;
+			int slot = spread(hash) & mask;
+			String key;
+			while ((key = keys[slot]) != null) {
+				if (hashes[slot] == hash && key.length() == length && source.regionMatches(from, key, 0, length)) {
+					return values[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+			return null;
+		}
+
+		private static int spread(final int hash) {
+			return hash ^ (hash >>> 16);
+		}
+	}
+
+	/**
+	 * Mutable counterpart used to assemble a trie.
+	 *
+	 * @param <T>
+	 *            type of the values mapped to patterns
+	 */
+	static final class Builder<T> {
+
+		private final MutableNode root = new MutableNode();
+
+		/**
+		 * Adds a full url pattern. Later additions of the same pattern replace
+		 * earlier ones.
+		 *
+		 * @param pattern
+		 *            full url pattern
+		 * @param value
+		 *            value mapped to the pattern
+		 *
+		 * @return this builder
+		 */
+		Builder<T> put(final String pattern, final T value) {
+			MutableNode node = root;
+			final String[] segments = pattern.split("/");
+			final int lastIndex = lastNonEmpty(segments);
+			for (int i = 0; i <= lastIndex; i++) {
+				final String segment = segments[i];
+				if (segment.length() == 0) {
+					continue;
+				}
+				if (i == lastIndex) {
+					if ("*".equals(segment)) {
+						node.prefix = value;
+						return this;
+					}
+					if (segment.startsWith("*.") && segment.length() > 2) {
+						node.extensions.put(segment.substring(2), value);
+						return this;
+					}
+				}
+				node = node.child(segment);
+			}
+			node.exact = value;
+			return this;
+		}
+
+		UrlPatternTrie<T> build() {
+			return new UrlPatternTrie<T>(root.freeze());
+		}
+
+		private static int lastNonEmpty(final String[] segments) {
+			for (int i = segments.length - 1; i >= 0; i--) {
+				if (segments[i].length() > 0) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+
+	private static final class MutableNode {
+
+		private Object exact;
+		private Object prefix;
+		private final Map<String, Object> extensions = new HashMap<String, Object>();
+		private final Map<String, MutableNode> children = new HashMap<String, MutableNode>();
+
+		MutableNode child(final String segment) {
+			MutableNode child = children.get(segment);
+			if (child == null) {
+				child = new MutableNode();
+				children.put(segment, child);
+			}
+			return child;
+		}
+
+		Node freeze() {
+			final Map<String, Node> frozen = new HashMap<String, Node>();
+			for (Map.Entry<String, MutableNode> entry : children.entrySet()) {
+				frozen.put(entry.getKey(), entry.getValue().freeze());
+			}
+			return new Node(exact, prefix, Table.of(extensions), Table.of(frozen));
+		}
+	}
+
+}
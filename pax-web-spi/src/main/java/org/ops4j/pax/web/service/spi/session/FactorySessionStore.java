@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.session;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Session store created by a {@link SessionStoreFactory} service. The service
+ * is held as long as the store is open and released when it is closed. Once
+ * the service is unregistered, for instance because its bundle is stopped or
+ * updated, the store is closed and replaced by a {@link FileSessionStore};
+ * the sessions swapped out to it are lost then.
+ */
+final class FactorySessionStore implements SessionStore {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(FactorySessionStore.class);
+
+	private final SessionStoreConfig config;
+	private final String contextName;
+	private final BundleContext bundleContext;
+	private final ServiceReference<SessionStoreFactory> reference;
+	/**
+	 * Store in use, guarded by this.
+	 */
+	private SessionStore store;
+	private boolean released;
+	private boolean closed;
+
+	FactorySessionStore(final SessionStoreConfig config,
+			final String contextName, final BundleContext bundleContext,
+			final ServiceReference<SessionStoreFactory> reference,
+			final SessionStore store) {
+		this.config = config;
+		this.contextName = contextName;
+		this.bundleContext = bundleContext;
+		this.reference = reference;
+		this.store = store;
+	}
+
+	@Override
+	public void save(final String id, final byte[] data, final long expiry)
+			throws IOException {
+		store().save(id, data, expiry);
+	}
+
+	@Override
+	public byte[] load(final String id) throws IOException {
+		return store().load(id);
+	}
+
+	@Override
+	public void remove(final String id) throws IOException {
+		store().remove(id);
+	}
+
+	@Override
+	public Set<String> keys() {
+		final SessionStore current = storeOrNull();
+		return current == null ? Collections.<String> emptySet() : current
+				.keys();
+	}
+
+	@Override
+	public int size() {
+		final SessionStore current = storeOrNull();
+		return current == null ? 0 : current.size();
+	}
+
+	@Override
+	public List<String> expired(final long now) {
+		final SessionStore current = storeOrNull();
+		return current == null ? Collections.<String> emptyList() : current
+				.expired(now);
+	}
+
+	@Override
+	public void clear() throws IOException {
+		store().clear();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (store != null) {
+				store.close();
+			}
+		} finally {
+			release();
+		}
+	}
+
+	/**
+	 * @return store in use, a file store once the factory service is gone
+	 *
+	 * @throws IOException
+	 *             if the file store cannot be created
+	 */
+	private synchronized SessionStore store() throws IOException {
+		if (!closed && !released && reference.getBundle() == null) {
+			LOG.warn(
+					"Session store factory of context [{}] is gone, its swapped sessions are lost",
+					contextName);
+			try {
+				store.close();
+				//CHECKSTYLE:OFF
+			} catch (Exception e) {
+				//CHECKSTYLE:ON
+				LOG.debug("Cannot close session store of context [{}]",
+						contextName, e);
+			}
+			release();
+			store = null;
+		}
+		if (store == null) {
+			if (closed) {
+				throw new IOException("Session store of context ["
+						+ contextName + "] is closed");
+			}
+			// retried on the next access if it fails
+			store = config.createFileSessionStore(contextName);
+		}
+		return store;
+	}
+
+	/**
+	 * @return store in use or null if the file store cannot be created
+	 */
+	private SessionStore storeOrNull() {
+		try {
+			return store();
+		} catch (IOException e) {
+			LOG.warn("Cannot create session store of context [{}]",
+					contextName, e);
+			return null;
+		}
+	}
+
+	private void release() {
+		if (!released) {
+			released = true;
+			try {
+				bundleContext.ungetService(reference);
+				//CHECKSTYLE:OFF
+			} catch (Exception e) {
+				//CHECKSTYLE:ON
+				LOG.debug("Cannot release session store factory", e);
+			}
+		}
+	}
+
+}
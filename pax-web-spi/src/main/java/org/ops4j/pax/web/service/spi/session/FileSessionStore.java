@@ -0,0 +1,378 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.session;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Session store appending the sessions to a local file. Only the position,
+ * length and expiry of each session are kept in memory; the serialized
+ * sessions are read back with positional reads when they are loaded.
+ * <p>
+ * Saving a session again or removing it leaves its previous bytes behind as
+ * garbage. The file is compacted, by copying the live sessions to a new file,
+ * once the garbage outweighs the live sessions, the store then alternates
+ * between the given file and a sibling with a <code>.compact</code> suffix.
+ * The file only holds swapped sessions of a running context: it is emptied
+ * when opened and deleted when closed. It is locked while open, so the files
+ * left behind by a crashed process are told apart from the ones in use and
+ * deleted by {@link #deleteStale(File)}.
+ */
+public class FileSessionStore implements SessionStore {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(FileSessionStore.class);
+
+	/**
+	 * Garbage in bytes below which the file is never compacted.
+	 */
+	static final long DEFAULT_MIN_GARBAGE = 1024 * 1024;
+
+	/**
+	 * Files open in this process. Their locks are held by the process, not by
+	 * a channel, and may be released by closing any channel on the file, so
+	 * these files are never opened by {@link #deleteStale(File)}.
+	 */
+	private static final Set<File> OPEN = new HashSet<File>();
+
+	private final File file;
+	private final long minGarbage;
+	/**
+	 * File currently written, either {@link #file} or its compacted sibling.
+	 */
+	private File current;
+	private final Map<String, Entry> index = new HashMap<String, Entry>();
+	private FileChannel channel;
+	/**
+	 * End of the file, where the next session is written.
+	 */
+	private long end;
+	/**
+	 * Bytes of the file not used by stored sessions.
+	 */
+	private long garbage;
+
+	/**
+	 * @param file
+	 *            file holding the sessions, created or emptied
+	 *
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public FileSessionStore(final File file) throws IOException {
+		this(file, DEFAULT_MIN_GARBAGE);
+	}
+
+	FileSessionStore(final File file, final long minGarbage)
+			throws IOException {
+		this.file = file;
+		this.minGarbage = minGarbage;
+		final File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create directory " + directory);
+		}
+		current = file;
+		channel = open(file);
+	}
+
+	@Override
+	public synchronized void save(final String id, final byte[] data,
+			final long expiry) throws IOException {
+		ensureOpen();
+		final long position = end;
+		write(channel, ByteBuffer.wrap(data), position);
+		end += data.length;
+		final Entry previous = index.put(id, new Entry(position, data.length,
+				expiry));
+		if (previous != null) {
+			garbage += previous.length;
+			compactIfNeeded();
+		}
+	}
+
+	@Override
+	public synchronized byte[] load(final String id) throws IOException {
+		ensureOpen();
+		final Entry entry = index.get(id);
+		if (entry == null) {
+			return null;
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+		long position = entry.position;
+		while (buffer.hasRemaining()) {
+			final int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException("Session " + id + " truncated in "
+						+ current);
+			}
+			position += read;
+		}
+		return buffer.array();
+	}
+
+	@Override
+	public synchronized void remove(final String id) throws IOException {
+		final Entry entry = index.remove(id);
+		if (entry != null) {
+			garbage += entry.length;
+			if (index.isEmpty()) {
+				truncate();
+			} else {
+				compactIfNeeded();
+			}
+		}
+	}
+
+	@Override
+	public synchronized Set<String> keys() {
+		return new HashSet<String>(index.keySet());
+	}
+
+	@Override
+	public synchronized int size() {
+		return index.size();
+	}
+
+	@Override
+	public synchronized List<String> expired(final long now) {
+		List<String> expired = null;
+		for (Map.Entry<String, Entry> entry : index.entrySet()) {
+			if (entry.getValue().expiry <= now) {
+				if (expired == null) {
+					expired = new ArrayList<String>();
+				}
+				expired.add(entry.getKey());
+			}
+		}
+		return expired == null ? Collections.<String> emptyList() : expired;
+	}
+
+	@Override
+	public synchronized void clear() throws IOException {
+		index.clear();
+		truncate();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel == null) {
+			return;
+		}
+		index.clear();
+		try {
+			channel.close();
+		} finally {
+			channel = null;
+			if (!current.delete()) {
+				LOG.debug("Cannot delete session store {}", current);
+			}
+			released(current);
+		}
+	}
+
+	/**
+	 * Deletes the session store files of a directory not in use, left behind
+	 * by a process that ended without closing its stores.
+	 *
+	 * @param directory
+	 *            directory of the session store files
+	 */
+	static void deleteStale(final File directory) {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		int deleted = 0;
+		synchronized (OPEN) {
+			for (File file : files) {
+				final String name = file.getName();
+				if ((name.endsWith(".sessions") || name
+						.endsWith(".sessions.compact"))
+						&& !OPEN.contains(file.getAbsoluteFile())
+						&& isStale(file)) {
+					if (file.delete()) {
+						deleted++;
+					} else {
+						LOG.debug("Cannot delete session store {}", file);
+					}
+				}
+			}
+		}
+		if (deleted > 0) {
+			LOG.info("Deleted {} stale session stores in {}", deleted,
+					directory);
+		}
+	}
+
+	/**
+	 * @return true if no process holds the lock of the file
+	 */
+	private static boolean isStale(final File file) {
+		try {
+			final FileChannel channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			try {
+				return channel.tryLock() != null;
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			LOG.debug("Cannot check session store {}", file, e);
+			return false;
+		}
+	}
+
+	/**
+	 * @return size in bytes of the file
+	 */
+	synchronized long length() {
+		return end;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (channel == null) {
+			throw new IOException("Session store " + file + " is closed");
+		}
+	}
+
+	private void truncate() throws IOException {
+		if (channel != null) {
+			channel.truncate(0);
+		}
+		end = 0;
+		garbage = 0;
+	}
+
+	/**
+	 * Copies the live sessions to a new file replacing the current one, if the
+	 * garbage outweighs them.
+	 */
+	private void compactIfNeeded() throws IOException {
+		if (garbage < minGarbage || garbage < end - garbage) {
+			return;
+		}
+		final File compacted = current.equals(file) ? new File(file.getPath()
+				+ ".compact") : file;
+		final FileChannel target = open(compacted);
+		final long[] positions = new long[index.size()];
+		long position = 0;
+		try {
+			int i = 0;
+			for (Entry entry : index.values()) {
+				long transferred = 0;
+				while (transferred < entry.length) {
+					transferred += channel.transferTo(entry.position
+							+ transferred, entry.length - transferred,
+							target);
+				}
+				positions[i++] = position;
+				position += entry.length;
+			}
+		} catch (IOException e) {
+			// the current file stays in use
+			LOG.warn("Cannot compact session store {}", file, e);
+			target.close();
+			Files.deleteIfExists(compacted.toPath());
+			released(compacted);
+			return;
+		}
+		int i = 0;
+		for (Entry entry : index.values()) {
+			entry.position = positions[i++];
+		}
+		channel.close();
+		Files.deleteIfExists(current.toPath());
+		released(current);
+		LOG.debug("Compacted session store {} from {} to {} bytes",
+				new Object[] { file, end, position });
+		channel = target;
+		current = compacted;
+		end = position;
+		garbage = 0;
+	}
+
+	private static FileChannel open(final File file) throws IOException {
+		synchronized (OPEN) {
+			final FileChannel channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				final FileLock lock = channel.tryLock();
+				if (lock == null) {
+					throw new IOException("Session store " + file
+							+ " is in use by another process");
+				}
+			} catch (IOException | OverlappingFileLockException e) {
+				channel.close();
+				throw e;
+			}
+			OPEN.add(file.getAbsoluteFile());
+			return channel;
+		}
+	}
+
+	private static void released(final File file) {
+		synchronized (OPEN) {
+			OPEN.remove(file.getAbsoluteFile());
+		}
+	}
+
+	private static void write(final FileChannel channel,
+			final ByteBuffer buffer, final long position) throws IOException {
+		long offset = position;
+		while (buffer.hasRemaining()) {
+			offset += channel.write(buffer, offset);
+		}
+	}
+
+	/**
+	 * Location of a stored session.
+	 */
+	private static final class Entry {
+
+		private long position;
+		private final int length;
+		private final long expiry;
+
+		private Entry(final long position, final int length, final long expiry) {
+			this.position = position;
+			this.length = length;
+			this.expiry = expiry;
+		}
+	}
+
+}
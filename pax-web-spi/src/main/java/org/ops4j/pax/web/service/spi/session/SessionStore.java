@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.session;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Storage of the sessions of a context evicted from memory while idle. The
+ * container serializes an evicted session, attributes included, and hands the
+ * bytes over to the store, loading them back when the session is accessed
+ * again. Each session is stored with its expiry time, so expired sessions
+ * are found without loading them.
+ * <p>
+ * Stores are created by a {@link SessionStoreFactory} and used by one context
+ * only. Implementations must be thread safe.
+ */
+public interface SessionStore extends Closeable {
+
+	/**
+	 * Stores a session, replacing its previous state if any.
+	 *
+	 * @param id
+	 *            session id
+	 * @param data
+	 *            serialized session
+	 * @param expiry
+	 *            time in milliseconds the session expires at,
+	 *            {@link Long#MAX_VALUE} if it never does
+	 *
+	 * @throws IOException
+	 *             if the session cannot be written
+	 */
+	void save(String id, byte[] data, long expiry) throws IOException;
+
+	/**
+	 * Loads a session.
+	 *
+	 * @param id
+	 *            session id
+	 *
+	 * @return serialized session or null if the session is not stored
+	 *
+	 * @throws IOException
+	 *             if the session cannot be read
+	 */
+	byte[] load(String id) throws IOException;
+
+	/**
+	 * Removes a session, if stored.
+	 *
+	 * @param id
+	 *            session id
+	 *
+	 * @throws IOException
+	 *             if the session cannot be removed
+	 */
+	void remove(String id) throws IOException;
+
+	/**
+	 * @return ids of the stored sessions
+	 */
+	Set<String> keys();
+
+	/**
+	 * @return number of stored sessions
+	 */
+	int size();
+
+	/**
+	 * Finds the stored sessions which expired. The sessions are not removed.
+	 *
+	 * @param now
+	 *            current time in milliseconds
+	 *
+	 * @return ids of the expired sessions
+	 */
+	List<String> expired(long now);
+
+	/**
+	 * Removes all sessions.
+	 *
+	 * @throws IOException
+	 *             if the sessions cannot be removed
+	 */
+	void clear() throws IOException;
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.session;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.ops4j.pax.web.service.WebContainerConstants;
+import org.ops4j.pax.web.service.spi.Configuration;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Session eviction settings of a context: the time after which an idle
+ * session is swapped out of memory and the directory the swapped sessions are
+ * written to.
+ * <p>
+ * The swapped sessions are kept below the temporary directory, not in the
+ * session store directory, which Jetty scans for sessions saved on shutdown.
+ */
+public final class SessionStoreConfig {
+
+	private final int idleTime;
+	private final File directory;
+
+	/**
+	 * @param idleTime
+	 *            time in seconds after which an idle session is evicted
+	 * @param directory
+	 *            directory the evicted sessions are written to
+	 */
+	public SessionStoreConfig(final int idleTime, final File directory) {
+		this.idleTime = Math.max(1, idleTime);
+		this.directory = directory;
+	}
+
+	/**
+	 * Creates the settings of a context. A context parameter named as the
+	 * configuration property takes precedence over the server wide
+	 * configuration.
+	 *
+	 * @param configuration
+	 *            server configuration, can be null
+	 * @param contextParams
+	 *            context parameters, can be null
+	 *
+	 * @return settings or null if idle sessions are not evicted
+	 */
+	public static SessionStoreConfig create(final Configuration configuration,
+			final Map<String, String> contextParams) {
+		Integer idleTime = null;
+		if (contextParams != null
+				&& contextParams
+						.get(WebContainerConstants.PROPERTY_SESSION_IDLE_TIME) != null) {
+			try {
+				idleTime = Integer.valueOf(contextParams.get(
+						WebContainerConstants.PROPERTY_SESSION_IDLE_TIME)
+						.trim());
+			} catch (NumberFormatException e) {
+				idleTime = null;
+			}
+		}
+		if (idleTime == null && configuration != null) {
+			idleTime = configuration.getSessionIdleTime();
+		}
+		if (idleTime == null || idleTime <= 0) {
+			return null;
+		}
+		File temporaryDirectory = configuration == null ? null
+				: configuration.getTemporaryDirectory();
+		if (temporaryDirectory == null) {
+			temporaryDirectory = new File(System.getProperty("java.io.tmpdir"));
+		}
+		return new SessionStoreConfig(idleTime, new File(temporaryDirectory,
+				"sessions"));
+	}
+
+	/**
+	 * @return time in seconds after which an idle session is evicted
+	 */
+	public int getIdleTime() {
+		return idleTime;
+	}
+
+	/**
+	 * @return directory the evicted sessions are written to
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Creates the session store of a context, through the
+	 * {@link SessionStoreFactory} service if one is registered or as a
+	 * {@link FileSessionStore} otherwise. The factory service is held until
+	 * the store is closed, a file store takes over if it goes away before.
+	 *
+	 * @param contextName
+	 *            name of the context, empty for the root context
+	 *
+	 * @return new, empty, session store
+	 *
+	 * @throws IOException
+	 *             if the store cannot be created
+	 */
+	public SessionStore createSessionStore(final String contextName)
+			throws IOException {
+		final String name = contextName == null ? "" : contextName;
+		final Bundle bundle = FrameworkUtil.getBundle(SessionStoreConfig.class);
+		final BundleContext bundleContext = bundle == null ? null : bundle
+				.getBundleContext();
+		if (bundleContext != null) {
+			final ServiceReference<SessionStoreFactory> reference = bundleContext
+					.getServiceReference(SessionStoreFactory.class);
+			final SessionStoreFactory factory = reference == null ? null
+					: bundleContext.getService(reference);
+			if (factory != null) {
+				SessionStore store = null;
+				try {
+					store = factory.createSessionStore(name, directory);
+				} finally {
+					if (store == null) {
+						bundleContext.ungetService(reference);
+					}
+				}
+				if (store != null) {
+					return new FactorySessionStore(this, name,
+							bundleContext, reference, store);
+				}
+			}
+		}
+		return createFileSessionStore(name);
+	}
+
+	/**
+	 * Creates the built-in session store of a context. The files of stores
+	 * left behind in the directory by a crashed process are deleted first.
+	 *
+	 * @param name
+	 *            name of the context, empty for the root context
+	 *
+	 * @return new, empty, session store
+	 *
+	 * @throws IOException
+	 *             if the store cannot be created
+	 */
+	SessionStore createFileSessionStore(final String name) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create directory " + directory);
+		}
+		FileSessionStore.deleteStale(directory);
+		// contexts sharing a name never share a file
+		final String prefix = name.isEmpty() ? "ROOT" : name.replaceAll(
+				"[^A-Za-z0-9._-]", "_");
+		return new FileSessionStore(File.createTempFile(prefix + "-",
+				".sessions", directory));
+	}
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.session;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Creates the session stores of the contexts. A factory registered as an OSGi
+ * service replaces the built-in {@link FileSessionStore}.
+ */
+public interface SessionStoreFactory {
+
+	/**
+	 * Creates the session store of a context.
+	 *
+	 * @param contextName
+	 *            name of the context, empty for the root context
+	 * @param directory
+	 *            directory configured for the swapped sessions
+	 *
+	 * @return new, empty, session store
+	 *
+	 * @throws IOException
+	 *             if the store cannot be created
+	 */
+	SessionStore createSessionStore(String contextName, File directory)
+			throws IOException;
+
+}
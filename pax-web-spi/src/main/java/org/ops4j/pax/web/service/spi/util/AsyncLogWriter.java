@@ -0,0 +1,412 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Log file writer decoupling request threads from file I/O. Records are put
+ * into a bounded lock free ring buffer and written in batches by a background
+ * thread, which flushes once per batch. If the buffer is full, records are
+ * dropped rather than blocking the request thread.
+ * <p>
+ * If the file name contains {@value #DATE_PATTERN}, it is replaced by the
+ * current date and the file is rolled over at midnight, deleting files older
+ * than the configured number of days.
+ * <p>
+ * While running, the writer is registered as MBean named
+ * org.ops4j.pax.web:type=AccessLog,name=... to expose the queue depth and the
+ * number of dropped records.
+ */
+public class AsyncLogWriter implements AsyncLogWriterMBean {
+
+	/**
+	 * Placeholder of the date in file names.
+	 */
+	public static final String DATE_PATTERN = "yyyy_mm_dd";
+
+	/**
+	 * Default number of buffered records.
+	 */
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(AsyncLogWriter.class);
+
+	private static final int BATCH_SIZE = 512;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	private static final String LINE_SEPARATOR = System
+			.getProperty("line.separator");
+
+	private final File directory;
+	private final String fileNamePattern;
+	private final int retainDays;
+	private final boolean append;
+	private final TimeZone timeZone;
+
+	private final AtomicReferenceArray<String> ring;
+	private final int capacity;
+	private final int mask;
+	/**
+	 * Sequence of the next record to be added.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+	/**
+	 * Sequence of the next record to be written.
+	 */
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	private volatile boolean running;
+	private volatile File file;
+	private Thread thread;
+	private ObjectName objectName;
+
+	// only accessed by the writer thread
+	private Writer out;
+	private long nextRollover;
+	private boolean opened;
+
+	/**
+	 * @param directory
+	 *            directory of the log files
+	 * @param fileNamePattern
+	 *            name of the log file, optionally containing
+	 *            {@value #DATE_PATTERN}
+	 * @param retainDays
+	 *            number of days dated log files are kept, 0 to keep them
+	 *            forever
+	 * @param append
+	 *            if an existing file is appended to instead of being
+	 *            overwritten
+	 * @param timeZone
+	 *            time zone deciding about the date of the file
+	 * @param capacity
+	 *            number of buffered records, rounded up to a power of two
+	 */
+	public AsyncLogWriter(final File directory, final String fileNamePattern,
+			final int retainDays, final boolean append,
+			final TimeZone timeZone, final int capacity) {
+		this.directory = directory;
+		this.fileNamePattern = fileNamePattern;
+		this.retainDays = retainDays;
+		this.append = append;
+		this.timeZone = timeZone != null ? timeZone : TimeZone.getDefault();
+		this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.mask = this.capacity - 1;
+		this.ring = new AtomicReferenceArray<String>(this.capacity);
+	}
+
+	/**
+	 * Adds a record to be written, without waiting for free space.
+	 *
+	 * @param record
+	 *            the line to write, without line separator
+	 * @return false if the record was dropped
+	 */
+	public boolean write(final String record) {
+		if (!running || record == null) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		long sequence;
+		do {
+			sequence = tail.get();
+			if (sequence - head.get() >= capacity) {
+				dropped.incrementAndGet();
+				return false;
+			}
+		} while (!tail.compareAndSet(sequence, sequence + 1));
+		ring.lazySet((int) sequence & mask, record);
+		return true;
+	}
+
+	/**
+	 * Starts the background writer.
+	 */
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		if (!directory.exists() && !directory.mkdirs()) {
+			LOG.warn("Unable to create log directory {}", directory);
+		}
+		running = true;
+		thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "pax-web-log-writer");
+		thread.setDaemon(true);
+		thread.start();
+		registerMBean();
+	}
+
+	/**
+	 * Writes the buffered records and stops the background writer.
+	 */
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(thread);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+		unregisterMBean();
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public String getFileName() {
+		final File current = file;
+		return current == null ? null : current.getAbsolutePath();
+	}
+
+	@Override
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	@Override
+	public long getWrittenRecords() {
+		return written.get();
+	}
+
+	@Override
+	public long getDroppedRecords() {
+		return dropped.get();
+	}
+
+	private void writeLoop() {
+		try {
+			while (true) {
+				// records added before the stop are still written
+				final boolean stopping = !running;
+				rolloverIfDue();
+				if (drain() == 0) {
+					if (stopping) {
+						break;
+					}
+					LockSupport.parkNanos(this, IDLE_NANOS);
+				}
+			}
+		} finally {
+			closeFile();
+		}
+	}
+
+	private int drain() {
+		long sequence = head.get();
+		int count = 0;
+		try {
+			while (count < BATCH_SIZE) {
+				final int index = (int) sequence & mask;
+				final String record = ring.get(index);
+				if (record == null) {
+					// empty or not yet published
+					break;
+				}
+				ring.lazySet(index, null);
+				head.lazySet(++sequence);
+				count++;
+				if (out == null) {
+					dropped.incrementAndGet();
+				} else {
+					out.write(record);
+					out.write(LINE_SEPARATOR);
+					written.incrementAndGet();
+				}
+			}
+			if (count > 0 && out != null) {
+				out.flush();
+			}
+		} catch (IOException e) {
+			LOG.error("Unable to write to log file " + file, e);
+			closeFile();
+			nextRollover = System.currentTimeMillis() + RETRY_MILLIS;
+		}
+		return count;
+	}
+
+	private void rolloverIfDue() {
+		final long now = System.currentTimeMillis();
+		if (now < nextRollover) {
+			return;
+		}
+		closeFile();
+		final Calendar calendar = Calendar.getInstance(timeZone);
+		calendar.setTimeInMillis(now);
+		final boolean dated = fileNamePattern.contains(DATE_PATTERN);
+		file = new File(directory, fileNamePattern.replace(DATE_PATTERN,
+				dateFormat().format(calendar.getTime())));
+		try {
+			// later files of the same run are always appended to
+			out = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(file, append || opened), "UTF-8"),
+					BUFFER_SIZE);
+			opened = true;
+		} catch (IOException e) {
+			LOG.error("Unable to open log file " + file, e);
+			nextRollover = now + RETRY_MILLIS;
+			return;
+		}
+		if (dated) {
+			calendar.set(Calendar.HOUR_OF_DAY, 0);
+			calendar.set(Calendar.MINUTE, 0);
+			calendar.set(Calendar.SECOND, 0);
+			calendar.set(Calendar.MILLISECOND, 0);
+			calendar.add(Calendar.DAY_OF_MONTH, 1);
+			nextRollover = calendar.getTimeInMillis();
+			removeOldFiles(now);
+		} else {
+			nextRollover = Long.MAX_VALUE;
+		}
+	}
+
+	private void removeOldFiles(final long now) {
+		if (retainDays <= 0) {
+			return;
+		}
+		final int datePosition = fileNamePattern.indexOf(DATE_PATTERN);
+		final String prefix = fileNamePattern.substring(0, datePosition);
+		final String suffix = fileNamePattern.substring(datePosition
+				+ DATE_PATTERN.length());
+		final long expiry = now - TimeUnit.DAYS.toMillis(retainDays);
+		final SimpleDateFormat format = dateFormat();
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File candidate : files) {
+			final String name = candidate.getName();
+			if (name.length() != fileNamePattern.length()
+					|| !name.startsWith(prefix) || !name.endsWith(suffix)) {
+				continue;
+			}
+			try {
+				final String date = name.substring(datePosition, datePosition
+						+ DATE_PATTERN.length());
+				if (format.parse(date).getTime() < expiry
+						&& !candidate.delete()) {
+					LOG.debug("Unable to delete old log file {}", candidate);
+				}
+			} catch (ParseException e) {
+				LOG.debug("Ignoring file {} not named by date", candidate);
+			}
+		}
+	}
+
+	private SimpleDateFormat dateFormat() {
+		final SimpleDateFormat format = new SimpleDateFormat("yyyy_MM_dd");
+		format.setTimeZone(timeZone);
+		format.setLenient(false);
+		return format;
+	}
+
+	private void closeFile() {
+		if (out == null) {
+			return;
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			LOG.warn("Unable to close log file " + file, e);
+		}
+		out = null;
+	}
+
+	private void registerMBean() {
+		//CHECKSTYLE:OFF
+		try {
+			final MBeanServer server = ManagementFactory
+					.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(
+					"org.ops4j.pax.web:type=AccessLog,name="
+							+ ObjectName.quote(new File(directory,
+									fileNamePattern).getPath()));
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+				objectName = name;
+			}
+		} catch (Throwable t) {
+			// no jmx available just ignore it!
+			LOG.debug("Log writer is not exported to JMX", t);
+		}
+		//CHECKSTYLE:ON
+	}
+
+	private void unregisterMBean() {
+		if (objectName == null) {
+			return;
+		}
+		//CHECKSTYLE:OFF
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+					objectName);
+		} catch (Exception e) {
+			LOG.debug("Unable to unregister MBean {}", objectName, e);
+		}
+		//CHECKSTYLE:ON
+		objectName = null;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder().append(this.getClass().getSimpleName())
+				.append("{").append("file=").append(file).append(",capacity=")
+				.append(capacity).append("}").toString();
+	}
+}
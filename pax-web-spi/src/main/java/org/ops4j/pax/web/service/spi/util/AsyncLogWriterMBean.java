@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+/**
+ * Management interface of {@link AsyncLogWriter}.
+ */
+public interface AsyncLogWriterMBean {
+
+	/**
+	 * @return path of the file currently written
+	 */
+	String getFileName();
+
+	/**
+	 * @return maximum number of buffered records
+	 */
+	int getCapacity();
+
+	/**
+	 * @return number of records waiting to be written
+	 */
+	int getQueueDepth();
+
+	/**
+	 * @return number of records written
+	 */
+	long getWrittenRecords();
+
+	/**
+	 * @return number of records dropped because the buffer was full
+	 */
+	long getDroppedRecords();
+}
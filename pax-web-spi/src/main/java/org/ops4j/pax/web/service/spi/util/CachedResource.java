@@ -0,0 +1,497 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content and metadata of a static resource held in memory by a
+ * {@link ResourceCache}. Instances are immutable; the content buffers are
+ * handed out as duplicates which must not be written to.
+ * <p>
+ * Resources backed by a file of the file system may be held as metadata only
+ * (see {@link #forFile(URL, File, String)}), leaving the content on disk so
+ * containers can send it with sendfile or file channels.
+ * <p>
+ * Besides the content, a gzip and a brotli compressed variant may be held.
+ * The gzip variant is either read from a precompressed sibling or compressed
+ * once when loading, the brotli variant only comes from a sibling.
+ */
+public final class CachedResource {
+
+	/**
+	 * Resources smaller than this are not worth compressing.
+	 */
+	private static final int MIN_COMPRESS_SIZE = 256;
+
+	/**
+	 * Weight accounted for an entry holding metadata only.
+	 */
+	private static final int METADATA_WEIGHT = 256;
+
+	private final URL url;
+	private final File file;
+	private final long length;
+	private final ByteBuffer content;
+	private final ByteBuffer gzipContent;
+	private final ByteBuffer brotliContent;
+	private final String eTag;
+	private final String gzipETag;
+	private final String brotliETag;
+	private final long lastModified;
+	private final String mimeType;
+
+	private CachedResource(final URL url, final File file, final long length,
+			final ByteBuffer content, final ByteBuffer gzipContent,
+			final ByteBuffer brotliContent, final String eTag,
+			final long lastModified, final String mimeType) {
+		this.url = url;
+		this.file = file;
+		this.length = length;
+		this.content = content;
+		this.gzipContent = gzipContent;
+		this.brotliContent = brotliContent;
+		this.eTag = eTag;
+		this.gzipETag = gzipContent == null ? null : variantETag(eTag,
+				ContentEncoding.GZIP);
+		this.brotliETag = brotliContent == null ? null : variantETag(eTag,
+				ContentEncoding.BROTLI);
+		this.lastModified = lastModified;
+		this.mimeType = mimeType;
+	}
+
+	/**
+	 * Reads a resource fully into memory.
+	 *
+	 * @param url
+	 *            url of the resource
+	 * @param connection
+	 *            an opened connection to the url, used for the content and the
+	 *            last modified date
+	 * @param mimeType
+	 *            mime type of the resource, can be null
+	 * @param direct
+	 *            if the content should be held in direct buffers
+	 *
+	 * @return cached resource
+	 *
+	 * @throws IOException
+	 *             if the content cannot be read
+	 */
+	public static CachedResource load(final URL url,
+			final URLConnection connection, final String mimeType,
+			final boolean direct) throws IOException {
+		return load(url, connection, mimeType, direct, null, null);
+	}
+
+	/**
+	 * Reads a resource and its precompressed siblings fully into memory.
+	 *
+	 * @param url
+	 *            url of the resource
+	 * @param connection
+	 *            an opened connection to the url, used for the content and the
+	 *            last modified date
+	 * @param mimeType
+	 *            mime type of the resource, can be null
+	 * @param direct
+	 *            if the content should be held in direct buffers
+	 * @param gzipUrl
+	 *            url of the gzip compressed sibling, null to compress the
+	 *            content if worthwhile
+	 * @param brotliUrl
+	 *            url of the brotli compressed sibling, can be null
+	 *
+	 * @return cached resource
+	 *
+	 * @throws IOException
+	 *             if the content cannot be read
+	 */
+	public static CachedResource load(final URL url,
+			final URLConnection connection, final String mimeType,
+			final boolean direct, final URL gzipUrl, final URL brotliUrl)
+			throws IOException {
+		return load(url, connection.getInputStream(),
+				connection.getContentLength(), connection.getLastModified(),
+				mimeType, direct, gzipUrl, brotliUrl);
+	}
+
+	/**
+	 * Reads a resource fully into memory from an already opened stream.
+	 *
+	 * @param url
+	 *            url of the resource
+	 * @param in
+	 *            content of the resource, closed when done
+	 * @param expectedLength
+	 *            expected content length, negative if unknown
+	 * @param lastModified
+	 *            last modification time, 0 if unknown
+	 * @param mimeType
+	 *            mime type of the resource, can be null
+	 * @param direct
+	 *            if the content should be held in direct buffers
+	 *
+	 * @return cached resource
+	 *
+	 * @throws IOException
+	 *             if the content cannot be read
+	 */
+	public static CachedResource load(final URL url, final InputStream in,
+			final int expectedLength, final long lastModified,
+			final String mimeType, final boolean direct) throws IOException {
+		return load(url, in, expectedLength, lastModified, mimeType, direct,
+				null, null);
+	}
+
+	/**
+	 * Reads a resource and its precompressed siblings fully into memory from
+	 * an already opened stream.
+	 *
+	 * @param url
+	 *            url of the resource
+	 * @param in
+	 *            content of the resource, closed when done
+	 * @param expectedLength
+	 *            expected content length, negative if unknown
+	 * @param lastModified
+	 *            last modification time, 0 if unknown
+	 * @param mimeType
+	 *            mime type of the resource, can be null
+	 * @param direct
+	 *            if the content should be held in direct buffers
+	 * @param gzipUrl
+	 *            url of the gzip compressed sibling, null to compress the
+	 *            content if worthwhile
+	 * @param brotliUrl
+	 *            url of the brotli compressed sibling, can be null
+	 *
+	 * @return cached resource
+	 *
+	 * @throws IOException
+	 *             if the content cannot be read
+	 */
+	public static CachedResource load(final URL url, final InputStream in,
+			final int expectedLength, final long lastModified,
+			final String mimeType, final boolean direct, final URL gzipUrl,
+			final URL brotliUrl) throws IOException {
+		final byte[] bytes;
+		try {
+			bytes = readFully(in, expectedLength);
+		} finally {
+			in.close();
+		}
+
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		final String eTag = "\"" + Long.toHexString(lastModified) + "-"
+				+ Integer.toHexString(bytes.length) + "-"
+				+ Long.toHexString(crc.getValue()) + "\"";
+
+		ByteBuffer gzipContent = null;
+		if (gzipUrl != null) {
+			gzipContent = wrap(read(gzipUrl), direct);
+		} else if (bytes.length >= MIN_COMPRESS_SIZE
+				&& isCompressible(mimeType)) {
+			final byte[] compressed = gzip(bytes);
+			// keep the compressed variant only if it saves at least 10%
+			if (compressed.length < bytes.length - bytes.length / 10) {
+				gzipContent = wrap(compressed, direct);
+			}
+		}
+		final ByteBuffer brotliContent = brotliUrl == null ? null : wrap(
+				read(brotliUrl), direct);
+		return new CachedResource(url, toFile(url), bytes.length, wrap(
+				bytes, direct), gzipContent, brotliContent, eTag,
+				lastModified, mimeType);
+	}
+
+	/**
+	 * Creates a metadata only entry for a file, the content is read from the
+	 * file each time it is served.
+	 *
+	 * @param url
+	 *            url of the resource
+	 * @param file
+	 *            file the url resolves to
+	 * @param mimeType
+	 *            mime type of the resource, can be null
+	 *
+	 * @return cached resource
+	 */
+	public static CachedResource forFile(final URL url, final File file,
+			final String mimeType) {
+		final long lastModified = file.lastModified();
+		final long length = file.length();
+		final String eTag = "\"" + Long.toHexString(lastModified) + "-"
+				+ Long.toHexString(length) + "\"";
+		return new CachedResource(url, file, length, null, null, null, eTag,
+				lastModified, mimeType);
+	}
+
+	/**
+	 * Resolves a {@code file:} url to a file.
+	 *
+	 * @param url
+	 *            url to resolve
+	 *
+	 * @return the file or null if the url does not denote a file
+	 */
+	public static File toFile(final URL url) {
+		if (url == null || !"file".equalsIgnoreCase(url.getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException e) {
+			return new File(url.getPath());
+		} catch (IllegalArgumentException e) {
+			return new File(url.getPath());
+		}
+	}
+
+	/**
+	 * Checks if the mime type denotes textual content that compresses well.
+	 *
+	 * @param mimeType
+	 *            mime type, can be null
+	 *
+	 * @return true if the content should be compressed
+	 */
+	public static boolean isCompressible(final String mimeType) {
+		if (mimeType == null) {
+			return false;
+		}
+		return mimeType.startsWith("text/") || mimeType.contains("javascript")
+				|| mimeType.contains("json") || mimeType.contains("xml")
+				|| mimeType.startsWith("image/svg");
+	}
+
+	public URL getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return file backing the resource or null if it does not come from the
+	 *         file system
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Checks if the backing file changed since the resource was cached.
+	 * Resources not backed by a file never become stale, they are dropped
+	 * with the registration serving them.
+	 *
+	 * @return true if the resource must be loaded again
+	 */
+	public boolean isStale() {
+		return file != null
+				&& (file.lastModified() != lastModified || file.length() != length);
+	}
+
+	/**
+	 * @return view of the content, must not be written to, or null if the
+	 *         content is not held in memory
+	 */
+	public ByteBuffer getContent() {
+		return content == null ? null : content.duplicate();
+	}
+
+	/**
+	 * @return view of the gzip compressed content or null if there is no
+	 *         compressed variant, must not be written to
+	 */
+	public ByteBuffer getGzipContent() {
+		return gzipContent == null ? null : gzipContent.duplicate();
+	}
+
+	/**
+	 * @return view of the brotli compressed content or null if there is no
+	 *         compressed variant, must not be written to
+	 */
+	public ByteBuffer getBrotliContent() {
+		return brotliContent == null ? null : brotliContent.duplicate();
+	}
+
+	/**
+	 * Writes a part of the content to a stream. Heap buffers are written
+	 * without copying.
+	 *
+	 * @param out
+	 *            stream to write to
+	 * @param buffer
+	 *            content as returned by {@link #getContent()} or
+	 *            {@link #getGzipContent()}
+	 * @param offset
+	 *            first byte to write
+	 * @param length
+	 *            number of bytes to write
+	 *
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public static void writeTo(final OutputStream out,
+			final ByteBuffer buffer, final int offset, final int length)
+			throws IOException {
+		if (buffer.hasArray()) {
+			out.write(buffer.array(), buffer.arrayOffset() + offset, length);
+			return;
+		}
+		final byte[] chunk = new byte[Math.min(length, 8192)];
+		final ByteBuffer source = buffer.duplicate();
+		source.position(offset);
+		int remaining = length;
+		while (remaining > 0) {
+			final int count = Math.min(remaining, chunk.length);
+			source.get(chunk, 0, count);
+			out.write(chunk, 0, count);
+			remaining -= count;
+		}
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return strong entity tag (quoted) of the uncompressed content
+	 */
+	public String getETag() {
+		return eTag;
+	}
+
+	/**
+	 * @return strong entity tag (quoted) of the compressed content or null if
+	 *         there is no compressed variant
+	 */
+	public String getGzipETag() {
+		return gzipETag;
+	}
+
+	/**
+	 * @return strong entity tag (quoted) of the brotli compressed content or
+	 *         null if there is no compressed variant
+	 */
+	public String getBrotliETag() {
+		return brotliETag;
+	}
+
+	/**
+	 * Derives the entity tag of a compressed variant.
+	 *
+	 * @param eTag
+	 *            strong entity tag (quoted) of the uncompressed content
+	 * @param encoding
+	 *            coding of the variant
+	 *
+	 * @return strong entity tag (quoted) of the variant
+	 */
+	public static String variantETag(final String eTag,
+			final ContentEncoding encoding) {
+		return eTag.substring(0, eTag.length() - 1) + "-"
+				+ encoding.getName() + "\"";
+	}
+
+	/**
+	 * @return last modification time in milliseconds, 0 if unknown
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	public String getMimeType() {
+		return mimeType;
+	}
+
+	/**
+	 * @return number of bytes held by this resource
+	 */
+	public long getWeight() {
+		if (content == null) {
+			return METADATA_WEIGHT;
+		}
+		return content.capacity()
+				+ (gzipContent == null ? 0 : gzipContent.capacity())
+				+ (brotliContent == null ? 0 : brotliContent.capacity());
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder().append(getClass().getSimpleName())
+				.append("{url=").append(url).append(",length=")
+				.append(getLength()).append(",eTag=").append(eTag)
+				.append("}").toString();
+	}
+
+	private static ByteBuffer wrap(final byte[] bytes, final boolean direct) {
+		if (!direct) {
+			return ByteBuffer.wrap(bytes);
+		}
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes);
+		buffer.flip();
+		return buffer;
+	}
+
+	private static byte[] readFully(final InputStream in,
+			final int expectedLength) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(
+				expectedLength > 0 ? expectedLength : 4096);
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] read(final URL url) throws IOException {
+		final URLConnection connection = url.openConnection();
+		final InputStream in = connection.getInputStream();
+		try {
+			return readFully(in, connection.getContentLength());
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] gzip(final byte[] bytes) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(
+				bytes.length / 2);
+		final GZIPOutputStream gzip = new GZIPOutputStream(out);
+		try {
+			gzip.write(bytes);
+		} finally {
+			gzip.close();
+		}
+		return out.toByteArray();
+	}
+
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Writes a {@link CachedResource} to a response, answering conditional
+ * requests (If-Match, If-None-Match, If-Modified-Since, If-Unmodified-Since),
+ * single byte ranges (Range, If-Range) and serving the compressed variants to
+ * clients accepting brotli or gzip, without touching the origin of the
+ * resource.
+ * Content of file backed resources not held in memory is read from the file.
+ */
+public class CachedResourceWriter {
+
+	/**
+	 * Default size of the buffer used to copy file content.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private static final int SECOND = 1000;
+
+	private static final String IF_MATCH = "If-Match";
+	private static final String IF_NONE_MATCH = "If-None-Match";
+	private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+	private static final String IF_UNMODIFIED_SINCE = "If-Unmodified-Since";
+	private static final String IF_RANGE = "If-Range";
+	private static final String RANGE = "Range";
+	private static final String ACCEPT_ENCODING = "Accept-Encoding";
+	private static final String ACCEPT_RANGES = "Accept-Ranges";
+	private static final String CONTENT_ENCODING = "Content-Encoding";
+	private static final String CONTENT_RANGE = "Content-Range";
+	private static final String ETAG = "ETag";
+	private static final String LAST_MODIFIED = "Last-Modified";
+	private static final String VARY = "Vary";
+
+	private final int bufferSize;
+
+	public CachedResourceWriter() {
+		this(DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param bufferSize
+	 *            size of the buffer used to copy file content
+	 */
+	public CachedResourceWriter(final int bufferSize) {
+		this.bufferSize = bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE;
+	}
+
+	/**
+	 * Serves the resource.
+	 *
+	 * @param request
+	 *            current request
+	 * @param response
+	 *            current response
+	 * @param resource
+	 *            resource to serve
+	 *
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void write(final HttpServletRequest request,
+			final HttpServletResponse response, final CachedResource resource)
+			throws IOException {
+		final String acceptEncoding = request.getHeader(ACCEPT_ENCODING);
+		ContentEncoding encoding = null;
+		ByteBuffer encoded = null;
+		if (resource.getBrotliContent() != null
+				&& ContentEncoding.BROTLI.isAcceptedBy(acceptEncoding)) {
+			encoding = ContentEncoding.BROTLI;
+			encoded = resource.getBrotliContent();
+		} else if (resource.getGzipContent() != null
+				&& ContentEncoding.GZIP.isAcceptedBy(acceptEncoding)) {
+			encoding = ContentEncoding.GZIP;
+			encoded = resource.getGzipContent();
+		}
+		final String eTag = encoding == null ? resource.getETag()
+				: CachedResource.variantETag(resource.getETag(), encoding);
+
+		if (resource.getGzipContent() != null
+				|| resource.getBrotliContent() != null) {
+			response.addHeader(VARY, ACCEPT_ENCODING);
+		}
+		if (!checkPreconditions(request, response, resource, eTag)) {
+			return;
+		}
+
+		if (resource.getLastModified() > 0) {
+			response.setDateHeader(LAST_MODIFIED, resource.getLastModified());
+		}
+		if (resource.getMimeType() != null) {
+			response.setContentType(resource.getMimeType());
+		}
+		response.setHeader(ACCEPT_RANGES, "bytes");
+
+		final long length = resource.getLength();
+		long[] range = null;
+		final String rangeHeader = request.getHeader(RANGE);
+		if (rangeHeader != null && ifRangeMatches(request, resource)) {
+			range = parseRange(rangeHeader, length);
+			if (range == null) {
+				response.setHeader(CONTENT_RANGE, "bytes */" + length);
+				response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+			if (range.length == 0) {
+				// syntactically invalid or multiple ranges, serve everything
+				range = null;
+			}
+		}
+
+		if (range != null) {
+			final long count = range[1] - range[0] + 1;
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader(ETAG, resource.getETag());
+			response.setHeader(CONTENT_RANGE, "bytes " + range[0] + "-"
+					+ range[1] + "/" + length);
+			setContentLength(response, count);
+			sendContent(request, response, resource, range[0], count);
+		} else if (encoded != null) {
+			response.setHeader(ETAG, eTag);
+			response.setHeader(CONTENT_ENCODING, encoding.getName());
+			response.setContentLength(encoded.remaining());
+			send(response, encoded, 0, encoded.remaining());
+		} else {
+			response.setHeader(ETAG, resource.getETag());
+			setContentLength(response, length);
+			sendContent(request, response, resource, 0, length);
+		}
+	}
+
+	private void sendContent(final HttpServletRequest request,
+			final HttpServletResponse response, final CachedResource resource,
+			final long offset, final long length) throws IOException {
+		final ByteBuffer content = resource.getContent();
+		if (content != null) {
+			send(response, content, (int) offset, (int) length);
+		} else {
+			sendFile(request, response, resource.getFile(), offset, length);
+		}
+	}
+
+	private static void setContentLength(final HttpServletResponse response,
+			final long length) {
+		if (length <= Integer.MAX_VALUE) {
+			response.setContentLength((int) length);
+		} else {
+			response.setHeader("Content-Length", String.valueOf(length));
+		}
+	}
+
+	/**
+	 * Sends a part of a content buffer. Containers able to write buffers
+	 * directly override this method.
+	 *
+	 * @param response
+	 *            current response
+	 * @param content
+	 *            content buffer, must not be modified
+	 * @param offset
+	 *            first byte to send
+	 * @param length
+	 *            number of bytes to send
+	 *
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	protected void send(final HttpServletResponse response,
+			final ByteBuffer content, final int offset, final int length)
+			throws IOException {
+		final ServletOutputStream out = response.getOutputStream();
+		if (out != null) { // null should be just in unit testing
+			CachedResource.writeTo(out, content, offset, length);
+		}
+	}
+
+	/**
+	 * Sends a part of a file. Containers able to hand files over to the
+	 * connector (e.g. sendfile) override this method.
+	 *
+	 * @param request
+	 *            current request
+	 * @param response
+	 *            current response
+	 * @param file
+	 *            file to send
+	 * @param offset
+	 *            first byte to send
+	 * @param length
+	 *            number of bytes to send
+	 *
+	 * @throws IOException
+	 *             if reading or writing fails
+	 */
+	protected void sendFile(final HttpServletRequest request,
+			final HttpServletResponse response, final File file,
+			final long offset, final long length) throws IOException {
+		final ServletOutputStream out = response.getOutputStream();
+		if (out == null) { // null should be just in unit testing
+			return;
+		}
+		final FileInputStream in = new FileInputStream(file);
+		try {
+			final FileChannel channel = in.getChannel();
+			final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(
+					bufferSize, Math.max(length, 1)));
+			long position = offset;
+			long remaining = length;
+			while (remaining > 0) {
+				buffer.clear();
+				if (remaining < buffer.capacity()) {
+					buffer.limit((int) remaining);
+				}
+				final int read = channel.read(buffer, position);
+				if (read < 0) {
+					throw new IOException("Unexpected end of " + file);
+				}
+				out.write(buffer.array(), 0, read);
+				position += read;
+				remaining -= read;
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	protected int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Evaluates the conditional request headers.
+	 *
+	 * @return true if the resource should be sent, false if the response was
+	 *         already completed (304 or 412)
+	 */
+	private boolean checkPreconditions(final HttpServletRequest request,
+			final HttpServletResponse response, final CachedResource resource,
+			final String eTag) throws IOException {
+		final String ifMatch = request.getHeader(IF_MATCH);
+		if (ifMatch != null && !matches(ifMatch, resource)) {
+			response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
+			return false;
+		}
+		final long lastModifiedSeconds = resource.getLastModified() / SECOND;
+		if (ifMatch == null && resource.getLastModified() > 0
+				&& request.getHeader(IF_UNMODIFIED_SINCE) != null) {
+			final long ifUnmodifiedSince = request
+					.getDateHeader(IF_UNMODIFIED_SINCE);
+			if (ifUnmodifiedSince != -1
+					&& lastModifiedSeconds > ifUnmodifiedSince / SECOND) {
+				response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
+				return false;
+			}
+		}
+		final String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+		if (ifNoneMatch != null) {
+			if (matches(ifNoneMatch, resource)) {
+				notModified(response, eTag);
+				return false;
+			}
+		} else if (resource.getLastModified() > 0
+				&& request.getHeader(IF_MODIFIED_SINCE) != null) {
+			final long ifModifiedSince = request
+					.getDateHeader(IF_MODIFIED_SINCE);
+			if (ifModifiedSince != -1
+					&& lastModifiedSeconds <= ifModifiedSince / SECOND) {
+				notModified(response, eTag);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void notModified(final HttpServletResponse response,
+			final String eTag) {
+		response.setHeader(ETAG, eTag);
+		response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+	}
+
+	private static boolean ifRangeMatches(final HttpServletRequest request,
+			final CachedResource resource) {
+		final String ifRange = request.getHeader(IF_RANGE);
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			return ifRange.equals(resource.getETag());
+		}
+		final long date;
+		try {
+			date = request.getDateHeader(IF_RANGE);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		return date != -1
+				&& resource.getLastModified() / SECOND <= date / SECOND;
+	}
+
+	/**
+	 * Checks an entity tag list as sent in If-Match / If-None-Match against
+	 * all variants of the resource.
+	 */
+	private static boolean matches(final String header,
+			final CachedResource resource) {
+		final String value = header.trim();
+		if ("*".equals(value)) {
+			return true;
+		}
+		return contains(value, resource.getETag())
+				|| (resource.getGzipETag() != null && contains(value,
+						resource.getGzipETag()))
+				|| (resource.getBrotliETag() != null && contains(value,
+						resource.getBrotliETag()));
+	}
+
+	private static boolean contains(final String list, final String eTag) {
+		int index = list.indexOf(eTag);
+		while (index >= 0) {
+			final int end = index + eTag.length();
+			final boolean startOk = index == 0
+					|| list.charAt(index - 1) == ','
+					|| list.charAt(index - 1) == ' '
+					|| list.charAt(index - 1) == '/';
+			final boolean endOk = end == list.length()
+					|| list.charAt(end) == ',' || list.charAt(end) == ' ';
+			if (startOk && endOk) {
+				return true;
+			}
+			index = list.indexOf(eTag, index + 1);
+		}
+		return false;
+	}
+
+	/**
+	 * Parses a Range header.
+	 *
+	 * @return {first, last} for a single satisfiable range, an empty array if
+	 *         the header should be ignored (invalid syntax or multiple ranges)
+	 *         or null if the range cannot be satisfied
+	 */
+	static long[] parseRange(final String header, final long length) {
+		final String value = header.trim();
+		if (!value.startsWith("bytes=") || value.indexOf(',') >= 0) {
+			return new long[0];
+		}
+		final String spec = value.substring("bytes=".length()).trim();
+		final int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return new long[0];
+		}
+		try {
+			final String firstValue = spec.substring(0, dash).trim();
+			final String lastValue = spec.substring(dash + 1).trim();
+			long first;
+			long last;
+			if (firstValue.length() == 0) {
+				// suffix range: last n bytes
+				final long suffix = Long.parseLong(lastValue);
+				if (suffix <= 0) {
+					return null;
+				}
+				first = Math.max(0, length - suffix);
+				last = length - 1;
+			} else {
+				first = Long.parseLong(firstValue);
+				last = lastValue.length() == 0 ? Long.MAX_VALUE : Long
+						.parseLong(lastValue);
+				if (last < first) {
+					return new long[0];
+				}
+				if (first >= length) {
+					return null;
+				}
+				last = Math.min(last, length - 1);
+			}
+			return new long[] { first, last };
+		} catch (NumberFormatException e) {
+			return new long[0];
+		}
+	}
+
+}
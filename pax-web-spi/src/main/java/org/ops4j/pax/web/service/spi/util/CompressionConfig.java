@@ -0,0 +1,266 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import org.ops4j.pax.web.service.WebContainerConstants;
+import org.ops4j.pax.web.service.spi.Configuration;
+
+/**
+ * Response compression settings of a context: on the fly compression done by
+ * the container and serving of precompressed siblings (.br, .gz) of static
+ * resources by the resource servlets.
+ */
+public final class CompressionConfig {
+
+	/**
+	 * Default minimum size of a compressed response.
+	 */
+	public static final int DEFAULT_MIN_SIZE = 1024;
+
+	/**
+	 * Default compressed mime types.
+	 */
+	public static final String DEFAULT_MIME_TYPES = "text/html,text/xml,text/plain,text/css,"
+			+ "text/javascript,application/javascript,application/json,"
+			+ "application/xml,image/svg+xml";
+
+	private final boolean enabled;
+	private final int minSize;
+	private final Set<String> mimeTypes;
+	private final List<String> excludedPaths;
+	private final int level;
+	private final boolean precompressed;
+
+	/**
+	 * @param enabled
+	 *            if responses are compressed on the fly
+	 * @param minSize
+	 *            minimum size in bytes of a compressed response
+	 * @param mimeTypes
+	 *            comma separated compressed mime types, null for the default
+	 * @param excludedPaths
+	 *            comma separated paths never compressed, can be null
+	 * @param level
+	 *            deflate level, -1 for the default
+	 * @param precompressed
+	 *            if precompressed siblings of static resources are served
+	 */
+	public CompressionConfig(final boolean enabled, final int minSize,
+			final String mimeTypes, final String excludedPaths,
+			final int level, final boolean precompressed) {
+		this.enabled = enabled;
+		this.minSize = Math.max(0, minSize);
+		final Set<String> types = new LinkedHashSet<String>();
+		for (String type : split(mimeTypes == null
+				|| mimeTypes.trim().isEmpty() ? DEFAULT_MIME_TYPES : mimeTypes)) {
+			types.add(type.toLowerCase());
+		}
+		this.mimeTypes = Collections.unmodifiableSet(types);
+		this.excludedPaths = Collections.unmodifiableList(split(excludedPaths));
+		this.level = level >= Deflater.BEST_SPEED
+				&& level <= Deflater.BEST_COMPRESSION ? level
+				: Deflater.DEFAULT_COMPRESSION;
+		this.precompressed = precompressed;
+	}
+
+	/**
+	 * Creates the settings of a context. Context parameters named as the
+	 * configuration properties take precedence over the server wide
+	 * configuration.
+	 *
+	 * @param configuration
+	 *            server configuration, can be null
+	 * @param contextParams
+	 *            context parameters, can be null
+	 *
+	 * @return settings or null if neither compression nor precompressed
+	 *         resources are enabled
+	 */
+	public static CompressionConfig create(final Configuration configuration,
+			final Map<String, String> contextParams) {
+		Boolean enabled = toBoolean(contextParams,
+				WebContainerConstants.PROPERTY_COMPRESSION_ENABLED);
+		if (enabled == null && configuration != null) {
+			enabled = configuration.isCompressionEnabled();
+		}
+		Boolean precompressed = toBoolean(contextParams,
+				WebContainerConstants.PROPERTY_COMPRESSION_PRECOMPRESSED);
+		if (precompressed == null && configuration != null) {
+			precompressed = configuration.isCompressionPrecompressed();
+		}
+		if (!Boolean.TRUE.equals(enabled)
+				&& !Boolean.TRUE.equals(precompressed)) {
+			return null;
+		}
+		Integer minSize = toInteger(contextParams,
+				WebContainerConstants.PROPERTY_COMPRESSION_MIN_SIZE);
+		if (minSize == null && configuration != null) {
+			minSize = configuration.getCompressionMinSize();
+		}
+		String mimeTypes = contextParams == null ? null : contextParams
+				.get(WebContainerConstants.PROPERTY_COMPRESSION_MIME_TYPES);
+		if (mimeTypes == null && configuration != null) {
+			mimeTypes = configuration.getCompressionMimeTypes();
+		}
+		String excludedPaths = contextParams == null ? null : contextParams
+				.get(WebContainerConstants.PROPERTY_COMPRESSION_EXCLUDED_PATHS);
+		if (excludedPaths == null && configuration != null) {
+			excludedPaths = configuration.getCompressionExcludedPaths();
+		}
+		Integer level = toInteger(contextParams,
+				WebContainerConstants.PROPERTY_COMPRESSION_LEVEL);
+		if (level == null && configuration != null) {
+			level = configuration.getCompressionLevel();
+		}
+		return new CompressionConfig(Boolean.TRUE.equals(enabled),
+				minSize == null ? DEFAULT_MIN_SIZE : minSize, mimeTypes,
+				excludedPaths, level == null ? Deflater.DEFAULT_COMPRESSION
+						: level, Boolean.TRUE.equals(precompressed));
+	}
+
+	/**
+	 * @return true if responses are compressed on the fly
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * @return compressed mime types, without parameters
+	 */
+	public Set<String> getMimeTypes() {
+		return mimeTypes;
+	}
+
+	/**
+	 * @return paths within the context never compressed
+	 */
+	public List<String> getExcludedPaths() {
+		return excludedPaths;
+	}
+
+	/**
+	 * @return deflate level, {@link Deflater#DEFAULT_COMPRESSION} for the
+	 *         default
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * @return true if precompressed siblings of static resources are served
+	 */
+	public boolean isPrecompressed() {
+		return precompressed;
+	}
+
+	/**
+	 * Checks if content of a mime type is compressed.
+	 *
+	 * @param mimeType
+	 *            mime type, optionally with parameters, can be null
+	 *
+	 * @return true if the mime type is compressed
+	 */
+	public boolean isCompressible(final String mimeType) {
+		if (mimeType == null) {
+			return false;
+		}
+		final int parameters = mimeType.indexOf(';');
+		return mimeTypes.contains((parameters < 0 ? mimeType : mimeType
+				.substring(0, parameters)).trim().toLowerCase());
+	}
+
+	/**
+	 * Checks if a path is excluded from compression.
+	 *
+	 * @param pathInContext
+	 *            path of the request within the context, can be null
+	 *
+	 * @return true if responses to the path must not be compressed
+	 */
+	public boolean isExcluded(final String pathInContext) {
+		if (pathInContext == null) {
+			return false;
+		}
+		for (String excluded : excludedPaths) {
+			if (excluded.endsWith("/") ? pathInContext.startsWith(excluded)
+					: pathInContext.equals(excluded)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder().append(getClass().getSimpleName())
+				.append("{enabled=").append(enabled).append(",minSize=")
+				.append(minSize).append(",mimeTypes=").append(mimeTypes)
+				.append(",excludedPaths=").append(excludedPaths)
+				.append(",level=").append(level).append(",precompressed=")
+				.append(precompressed).append("}").toString();
+	}
+
+	private static List<String> split(final String value) {
+		final List<String> result = new ArrayList<String>();
+		if (value == null) {
+			return result;
+		}
+		for (String token : value.split(",")) {
+			final String trimmed = token.trim();
+			if (!trimmed.isEmpty()) {
+				result.add(trimmed);
+			}
+		}
+		return result;
+	}
+
+	private static Boolean toBoolean(final Map<String, String> params,
+			final String name) {
+		if (params == null || params.get(name) == null) {
+			return null;
+		}
+		return Boolean.valueOf(params.get(name).trim());
+	}
+
+	private static Integer toInteger(final Map<String, String> params,
+			final String name) {
+		if (params == null || params.get(name) == null) {
+			return null;
+		}
+		try {
+			return Integer.valueOf(params.get(name).trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+}
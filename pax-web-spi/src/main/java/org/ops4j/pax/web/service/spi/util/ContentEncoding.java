@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+/**
+ * Content codings of precompressed static resources, in order of preference.
+ */
+public enum ContentEncoding {
+
+	BROTLI("br", ".br"), GZIP("gzip", ".gz");
+
+	private final String name;
+	private final String extension;
+
+	private ContentEncoding(final String name, final String extension) {
+		this.name = name;
+		this.extension = extension;
+	}
+
+	/**
+	 * @return name of the coding as used in Accept-Encoding and
+	 *         Content-Encoding headers
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return file extension of resources compressed with this coding
+	 */
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Checks if an Accept-Encoding header accepts this coding, i.e. lists it
+	 * without a quality of 0.
+	 *
+	 * @param acceptEncoding
+	 *            value of the Accept-Encoding header, can be null
+	 *
+	 * @return true if the coding is accepted
+	 */
+	public boolean isAcceptedBy(final String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		int start = 0;
+		while (start < acceptEncoding.length()) {
+			int end = acceptEncoding.indexOf(',', start);
+			if (end < 0) {
+				end = acceptEncoding.length();
+			}
+			final int parameters = acceptEncoding.indexOf(';', start);
+			final int nameEnd = parameters >= 0 && parameters < end ? parameters
+					: end;
+			if (name.equalsIgnoreCase(acceptEncoding.substring(start, nameEnd)
+					.trim())) {
+				return nameEnd == end
+						|| hasQuality(acceptEncoding.substring(nameEnd + 1, end));
+			}
+			start = end + 1;
+		}
+		return false;
+	}
+
+	private static boolean hasQuality(final String parameters) {
+		final int quality = parameters.indexOf("q=");
+		if (quality < 0) {
+			return true;
+		}
+		try {
+			return Double.parseDouble(parameters.substring(quality + 2).trim()) > 0;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+}
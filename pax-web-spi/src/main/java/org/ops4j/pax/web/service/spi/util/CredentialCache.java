@@ -0,0 +1,295 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.ops4j.pax.web.service.WebContainerConstants;
+import org.ops4j.pax.web.service.spi.Configuration;
+
+/**
+ * Bounded cache of the credentials verified by the login service of a context,
+ * with the identity, roles included, they were verified as. Entries expire
+ * after a fixed time and are keyed by a salted hash of the user name and
+ * password, so no password is kept in memory. The least recently used entry
+ * is dropped when the cache is full.
+ *
+ * @param <I>
+ *            type of the verified identity
+ */
+public final class CredentialCache<I> {
+
+	/**
+	 * Default time in seconds verified credentials are trusted.
+	 */
+	public static final int DEFAULT_TTL = 300;
+
+	/**
+	 * Default maximum number of cached credentials.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	private static final int SALT_LENGTH = 16;
+
+	/**
+	 * Caches of all contexts, flushed together.
+	 */
+	private static final Set<CredentialCache<?>> CACHES = Collections
+			.newSetFromMap(new WeakHashMap<CredentialCache<?>, Boolean>());
+
+	private final long ttl;
+	private final int maxSize;
+	private final byte[] salt;
+	private final Map<String, Entry<I>> entries;
+
+	/**
+	 * @param ttl
+	 *            time in seconds verified credentials are trusted
+	 * @param maxSize
+	 *            maximum number of cached credentials
+	 */
+	public CredentialCache(final int ttl, final int maxSize) {
+		this.ttl = TimeUnit.SECONDS.toNanos(Math.max(0, ttl));
+		this.maxSize = Math.max(1, maxSize);
+		this.salt = new byte[SALT_LENGTH];
+		new SecureRandom().nextBytes(salt);
+		this.entries = new LinkedHashMap<String, Entry<I>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<String, Entry<I>> eldest) {
+				return size() > CredentialCache.this.maxSize;
+			}
+		};
+		synchronized (CACHES) {
+			CACHES.add(this);
+		}
+	}
+
+	/**
+	 * Creates the cache of a context. Context parameters named as the
+	 * configuration properties take precedence over the server wide
+	 * configuration.
+	 *
+	 * @param configuration
+	 *            server configuration, can be null
+	 * @param contextParams
+	 *            context parameters, can be null
+	 *
+	 * @return cache or null if verified credentials are not cached
+	 */
+	public static <I> CredentialCache<I> create(
+			final Configuration configuration,
+			final Map<String, String> contextParams) {
+		String enabled = contextParams == null ? null : contextParams
+				.get(WebContainerConstants.PROPERTY_AUTHENTICATION_CACHE_ENABLED);
+		if (enabled == null && configuration != null) {
+			enabled = String.valueOf(configuration
+					.isAuthenticationCacheEnabled());
+		}
+		if (enabled == null || !Boolean.parseBoolean(enabled.trim())) {
+			return null;
+		}
+		Integer ttl = toInteger(contextParams,
+				WebContainerConstants.PROPERTY_AUTHENTICATION_CACHE_TTL);
+		if (ttl == null && configuration != null) {
+			ttl = configuration.getAuthenticationCacheTtl();
+		}
+		Integer maxSize = toInteger(contextParams,
+				WebContainerConstants.PROPERTY_AUTHENTICATION_CACHE_MAX_SIZE);
+		if (maxSize == null && configuration != null) {
+			maxSize = configuration.getAuthenticationCacheMaxSize();
+		}
+		return new CredentialCache<I>(ttl == null ? DEFAULT_TTL : ttl,
+				maxSize == null ? DEFAULT_MAX_SIZE : maxSize);
+	}
+
+	/**
+	 * Gets the identity credentials were verified as.
+	 *
+	 * @param username
+	 *            user name
+	 * @param password
+	 *            password, can be null
+	 *
+	 * @return identity or null if the credentials were not verified or their
+	 *         verification expired
+	 */
+	public I get(final String username, final String password) {
+		final String key = key(username, password);
+		synchronized (entries) {
+			final Entry<I> entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expires - System.nanoTime() <= 0) {
+				entries.remove(key);
+				return null;
+			}
+			return entry.identity;
+		}
+	}
+
+	/**
+	 * Keeps the identity credentials were verified as.
+	 *
+	 * @param username
+	 *            user name
+	 * @param password
+	 *            password, can be null
+	 * @param identity
+	 *            verified identity
+	 */
+	public void put(final String username, final String password,
+			final I identity) {
+		final Entry<I> entry = new Entry<I>(username, identity,
+				System.nanoTime() + ttl);
+		final String key = key(username, password);
+		synchronized (entries) {
+			entries.put(key, entry);
+		}
+	}
+
+	/**
+	 * Drops all cached credentials.
+	 */
+	public void flush() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Drops the cached credentials of a user.
+	 *
+	 * @param username
+	 *            user name
+	 */
+	public void flush(final String username) {
+		synchronized (entries) {
+			for (Iterator<Entry<I>> it = entries.values().iterator(); it
+					.hasNext();) {
+				if (it.next().username.equals(username)) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of cached credentials, expired ones included
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Drops all cached credentials of all contexts.
+	 */
+	public static void flushAll() {
+		for (CredentialCache<?> cache : caches()) {
+			cache.flush();
+		}
+	}
+
+	/**
+	 * Drops the cached credentials of a user in all contexts.
+	 *
+	 * @param username
+	 *            user name
+	 */
+	public static void flushAll(final String username) {
+		for (CredentialCache<?> cache : caches()) {
+			cache.flush(username);
+		}
+	}
+
+	private static List<CredentialCache<?>> caches() {
+		synchronized (CACHES) {
+			return new ArrayList<CredentialCache<?>>(CACHES);
+		}
+	}
+
+	private String key(final String username, final String password) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update(salt);
+		digest.update(username.getBytes(StandardCharsets.UTF_8));
+		// separator, so user and password boundaries cannot shift
+		digest.update((byte) 0);
+		if (password != null) {
+			digest.update(password.getBytes(StandardCharsets.UTF_8));
+		}
+		final StringBuilder key = new StringBuilder(64);
+		for (byte b : digest.digest()) {
+			key.append(Character.forDigit((b >> 4) & 0xf, 16));
+			key.append(Character.forDigit(b & 0xf, 16));
+		}
+		return key.toString();
+	}
+
+	private static Integer toInteger(final Map<String, String> params,
+			final String name) {
+		if (params == null || params.get(name) == null) {
+			return null;
+		}
+		try {
+			return Integer.valueOf(params.get(name).trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Verified credentials.
+	 */
+	private static final class Entry<I> {
+
+		private final String username;
+		private final I identity;
+		private final long expires;
+
+		private Entry(final String username, final I identity,
+				final long expires) {
+			this.username = username;
+			this.identity = identity;
+			this.expires = expires;
+		}
+	}
+
+}
@@ -34,23 +34,118 @@ public class Path {
 
 	/**
 	 * Normalize the path for accesing a resource, meaning that will replace
-	 * consecutive slashes and will remove a leading slash if present.
+	 * consecutive slashes, will resolve "." and ".." segments and will remove
+	 * a leading slash if present. The path is scanned once and no string is
+	 * created if it is already normalized.
 	 * 
 	 * @param path
 	 *            path to normalize
 	 * 
-	 * @return normalized path or the original path if there is nothing to be
-	 *         replaced.
+	 * @return normalized path, the original path if there is nothing to be
+	 *         replaced or null if a ".." segment goes above the root
 	 */
 	public static String normalizeResourcePath(final String path) {
 		if (path == null) {
 			return null;
 		}
-		String normalizedPath = replaceSlashes(path.trim());
-		if (normalizedPath.startsWith("/") && normalizedPath.length() > 1) {
-			normalizedPath = normalizedPath.substring(1);
+		int start = 0;
+		int end = path.length();
+		while (start < end && path.charAt(start) <= ' ') {
+			start++;
 		}
-		return normalizedPath;
+		while (end > start && path.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		int first = start;
+		while (first < end && path.charAt(first) == '/') {
+			first++;
+		}
+		if (first == end) {
+			return first == start ? "" : "/";
+		}
+		if (isNormalized(path, first, end)) {
+			return first == 0 && end == path.length() ? path : path
+					.substring(first, end);
+		}
+		return removeDotSegments(path, first, end);
+	}
+
+	/**
+	 * Tells if a path has neither consecutive slashes nor "." or ".."
+	 * segments.
+	 */
+	private static boolean isNormalized(final String path, final int start,
+			final int end) {
+		int segment = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || path.charAt(i) == '/') {
+				if (i == segment || isDotSegment(path, segment, i)) {
+					return false;
+				}
+				segment = i + 1;
+				if (segment == end) {
+					// trailing slash
+					return true;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static boolean isDotSegment(final String path, final int start,
+			final int end) {
+		final int length = end - start;
+		return (length == 1 || length == 2) && path.charAt(start) == '.'
+				&& path.charAt(end - 1) == '.';
+	}
+
+	/**
+	 * Drops empty and "." segments of a path and resolves its ".." segments,
+	 * keeping a trailing slash.
+	 * 
+	 * @return path without leading slash, "/" if no segment is left or null if
+	 *         a ".." segment goes above the root
+	 */
+	private static String removeDotSegments(final String path,
+			final int start, final int end) {
+		final char[] normalized = new char[end - start + 1];
+		int length = 0;
+		boolean directory = false;
+		int segment = start;
+		for (int i = start; i <= end; i++) {
+			if (i < end && path.charAt(i) != '/') {
+				continue;
+			}
+			final int segmentLength = i - segment;
+			if (segmentLength == 0
+					|| (segmentLength == 1 && path.charAt(segment) == '.')) {
+				directory = true;
+			} else if (segmentLength == 2 && path.charAt(segment) == '.'
+					&& path.charAt(segment + 1) == '.') {
+				if (length == 0) {
+					return null;
+				}
+				// drop the last segment, it ends with a slash
+				length--;
+				while (length > 0 && normalized[length - 1] != '/') {
+					length--;
+				}
+				directory = true;
+			} else {
+				path.getChars(segment, i, normalized, length);
+				length += segmentLength;
+				normalized[length++] = '/';
+				directory = false;
+			}
+			segment = i + 1;
+		}
+		if (length == 0) {
+			return "/";
+		}
+		if (!directory) {
+			length--;
+		}
+		return new String(normalized, 0, length);
 	}
 
 	/**
@@ -62,12 +157,46 @@ public class Path {
 	 * 
 	 * @return a string where the subsequent slashes are replaced with one slash
 	 */
-	static String replaceSlashes(final String target) {
-		String replaced = target;
-		if (replaced != null) {
-			replaced = replaced.replaceAll("/+", "/");
+	public static String replaceSlashes(final String target) {
+		if (target == null || target.indexOf("//") < 0) {
+			return target;
+		}
+		final StringBuilder replaced = new StringBuilder(target.length());
+		for (int i = 0; i < target.length(); i++) {
+			final char c = target.charAt(i);
+			if (c != '/' || i == 0 || target.charAt(i - 1) != '/') {
+				replaced.append(c);
+			}
+		}
+		return replaced.toString();
+	}
+
+	/**
+	 * Replaces the first occurrence of a string, taken literally, in a target.
+	 * Unlike {@link String#replaceFirst(String, String)} no regular expression
+	 * is compiled.
+	 * 
+	 * @param target
+	 *            string to search
+	 * @param search
+	 *            string to replace
+	 * @param replacement
+	 *            replacement of the first occurrence
+	 * 
+	 * @return the target with the first occurrence replaced, or the target
+	 *         itself if the string does not occur
+	 */
+	public static String replaceFirst(final String target,
+			final String search, final String replacement) {
+		final int index = target.indexOf(search);
+		if (index < 0) {
+			return target;
 		}
-		return replaced;
+		return new StringBuilder(target.length() - search.length()
+				+ replacement.length()).append(target, 0, index)
+				.append(replacement)
+				.append(target, index + search.length(), target.length())
+				.toString();
 	}
 
 	/**
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ops4j.pax.web.service.WebContainerConstants;
+import org.ops4j.pax.web.service.spi.Configuration;
+
+/**
+ * Least recently used cache of static resources bounded by the total number
+ * of bytes held. Used by the resource servlets of the containers, one cache
+ * per resource registration. Only resources backed by a file are revalidated
+ * on access, so all caches are cleared when a bundle is updated, refreshed or
+ * uninstalled.
+ */
+public final class ResourceCache {
+
+	/**
+	 * Default maximum number of bytes held by one cache.
+	 */
+	public static final long DEFAULT_MAX_SIZE = 10 * 1024 * 1024;
+
+	/**
+	 * Default maximum size of a single cached resource.
+	 */
+	public static final int DEFAULT_MAX_ENTRY_SIZE = 512 * 1024;
+
+	/**
+	 * Caches of all registrations, cleared together.
+	 */
+	private static final Set<ResourceCache> CACHES = Collections
+			.newSetFromMap(new WeakHashMap<ResourceCache, Boolean>());
+
+	private final long maxSize;
+	private final int maxEntrySize;
+	private final boolean direct;
+	private final LinkedHashMap<String, CachedResource> entries;
+	private long size;
+	private long generation;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maxSize
+	 *            maximum number of bytes held
+	 * @param maxEntrySize
+	 *            maximum size of a single resource, bigger resources are not
+	 *            cached
+	 * @param direct
+	 *            if content should be held in direct buffers
+	 */
+	public ResourceCache(final long maxSize, final int maxEntrySize,
+			final boolean direct) {
+		this.maxSize = maxSize;
+		this.maxEntrySize = (int) Math.min(maxEntrySize, maxSize);
+		this.direct = direct;
+		this.entries = new LinkedHashMap<String, CachedResource>(16, 0.75f,
+				true);
+		synchronized (CACHES) {
+			CACHES.add(this);
+		}
+	}
+
+	/**
+	 * Creates a cache as configured for a context. Context parameters named as
+	 * the configuration properties take precedence over the server wide
+	 * configuration.
+	 *
+	 * @param configuration
+	 *            server configuration, can be null
+	 * @param contextParams
+	 *            context parameters, can be null
+	 *
+	 * @return configured cache or null if caching is disabled
+	 */
+	public static ResourceCache create(final Configuration configuration,
+			final Map<String, String> contextParams) {
+		Long maxSize = toLong(contextParams,
+				WebContainerConstants.PROPERTY_RESOURCE_CACHE_MAX_SIZE);
+		if (maxSize == null && configuration != null
+				&& configuration.getResourceCacheMaxSize() != null) {
+			maxSize = configuration.getResourceCacheMaxSize().longValue();
+		}
+		if (maxSize == null) {
+			maxSize = DEFAULT_MAX_SIZE;
+		}
+		if (maxSize <= 0) {
+			return null;
+		}
+		Long maxEntrySize = toLong(contextParams,
+				WebContainerConstants.PROPERTY_RESOURCE_CACHE_MAX_ENTRY_SIZE);
+		if (maxEntrySize == null && configuration != null
+				&& configuration.getResourceCacheMaxEntrySize() != null) {
+			maxEntrySize = configuration.getResourceCacheMaxEntrySize()
+					.longValue();
+		}
+		if (maxEntrySize == null) {
+			maxEntrySize = (long) DEFAULT_MAX_ENTRY_SIZE;
+		}
+		Boolean direct = null;
+		if (contextParams != null
+				&& contextParams
+						.get(WebContainerConstants.PROPERTY_RESOURCE_CACHE_DIRECT) != null) {
+			direct = Boolean.valueOf(contextParams
+					.get(WebContainerConstants.PROPERTY_RESOURCE_CACHE_DIRECT));
+		}
+		if (direct == null && configuration != null) {
+			direct = configuration.getResourceCacheDirectBuffers();
+		}
+		return new ResourceCache(maxSize, (int) Math.min(Integer.MAX_VALUE,
+				maxEntrySize), Boolean.TRUE.equals(direct));
+	}
+
+	/**
+	 * Looks up a cached resource.
+	 *
+	 * @param path
+	 *            resource path as resolved by the resource servlet
+	 *
+	 * @return cached resource or null
+	 */
+	public CachedResource get(final String path) {
+		final CachedResource resource;
+		synchronized (entries) {
+			resource = entries.get(path);
+		}
+		if (resource == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return resource;
+	}
+
+	/**
+	 * Adds a resource, evicting the least recently used ones if needed.
+	 * Resources bigger than the maximum entry size are ignored.
+	 *
+	 * @param path
+	 *            resource path as resolved by the resource servlet
+	 * @param resource
+	 *            resource to cache
+	 */
+	public void put(final String path, final CachedResource resource) {
+		put(path, resource, getGeneration());
+	}
+
+	/**
+	 * Adds a resource unless the cache got cleared since the given generation
+	 * was read, so content loaded before a bundle changed is not kept.
+	 *
+	 * @param path
+	 *            resource path as resolved by the resource servlet
+	 * @param resource
+	 *            resource to cache
+	 * @param generation
+	 *            generation read before the resource was looked up
+	 */
+	public void put(final String path, final CachedResource resource,
+			final long generation) {
+		if (resource.getWeight() > maxEntrySize) {
+			return;
+		}
+		synchronized (entries) {
+			if (generation != this.generation) {
+				return;
+			}
+			final CachedResource previous = entries.put(path, resource);
+			if (previous != null) {
+				size -= previous.getWeight();
+			}
+			size += resource.getWeight();
+			final Iterator<CachedResource> eldest = entries.values()
+					.iterator();
+			while (size > maxSize && eldest.hasNext()) {
+				size -= eldest.next().getWeight();
+				eldest.remove();
+			}
+		}
+	}
+
+	/**
+	 * Checks if a resource of the given length may be cached.
+	 *
+	 * @param length
+	 *            content length, negative if unknown
+	 *
+	 * @return true if the resource should be loaded into the cache
+	 */
+	public boolean accepts(final long length) {
+		return length >= 0 && length <= maxEntrySize;
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			generation++;
+			entries.clear();
+			size = 0;
+		}
+	}
+
+	/**
+	 * @return current generation, read before a resource is looked up and
+	 *         passed to {@link #put(String, CachedResource, long)}
+	 */
+	public long getGeneration() {
+		synchronized (entries) {
+			return generation;
+		}
+	}
+
+	/**
+	 * Clears the caches of all registrations. Called when a bundle is updated,
+	 * refreshed or uninstalled, as cached bundle resources are not revalidated.
+	 */
+	public static void clearAll() {
+		for (ResourceCache cache : caches()) {
+			cache.clear();
+		}
+	}
+
+	private static List<ResourceCache> caches() {
+		synchronized (CACHES) {
+			return new ArrayList<ResourceCache>(CACHES);
+		}
+	}
+
+	/**
+	 * @return number of bytes currently held
+	 */
+	public long getSize() {
+		synchronized (entries) {
+			return size;
+		}
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder().append(getClass().getSimpleName())
+				.append("{maxSize=").append(maxSize).append(",size=")
+				.append(getSize()).append(",hits=").append(getHits())
+				.append(",misses=").append(getMisses()).append("}")
+				.toString();
+	}
+
+	private static Long toLong(final Map<String, String> params,
+			final String name) {
+		if (params == null || params.get(name) == null) {
+			return null;
+		}
+		try {
+			return Long.valueOf(params.get(name).trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+}
@@ -19,27 +19,65 @@ package org.ops4j.pax.web.service.spi.util;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.collections4.map.LRUMap;
 import org.ops4j.pax.swissbox.core.BundleClassLoader;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleWiring;
 
 /**
  * A bundle class loader which delegates resource loading to a list of delegate
  * bundles.
+ * <p>
+ * Resource lookups are cached per class loader and shared by all threads. The
+ * cache is dropped as soon as one of the delegate bundles gets updated,
+ * refreshed or uninstalled.
  * 
  * @author Harald Wellmann
  */
 public class ResourceDelegatingBundleClassLoader extends BundleClassLoader {
 
+	/**
+	 * Default maximum number of cached lookups, per kind of lookup.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1000;
+
+	private static final List<URL> NOT_FOUND = Collections.emptyList();
+
+	/**
+	 * Recorded in place of the wiring of an uninstalled delegate.
+	 */
+	private static final Object UNINSTALLED = new Object();
+
 	private List<Bundle> bundles;
 
-	private int cacheSize = 100; //equals the default size of the LRUMap, might be changed in a later version.
+	private volatile int cacheSize = DEFAULT_CACHE_SIZE;
 
-	private static ThreadLocal<LRUMap<String, Enumeration<URL>>> lruCache = new ThreadLocal<LRUMap<String, Enumeration<URL>>>();
+	/**
+	 * Results of {@link #findResource(String)}, {@link #NOT_FOUND} if there
+	 * is none.
+	 */
+	private final ConcurrentMap<String, List<URL>> resourceCache = new ConcurrentHashMap<String, List<URL>>();
+	/**
+	 * Results of {@link #findResources(String)}.
+	 */
+	private final ConcurrentMap<String, List<URL>> resourcesCache = new ConcurrentHashMap<String, List<URL>>();
+	/**
+	 * Wirings of the delegates the cached lookups were made with, replaced as
+	 * a whole when the cache is cleared.
+	 */
+	private volatile Wirings cachedWirings = new Wirings(
+			Collections.<Object> emptyList());
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
 
 	public ResourceDelegatingBundleClassLoader(List<Bundle> bundles) {
 		super(bundles.get(0));
@@ -53,6 +91,7 @@ public class ResourceDelegatingBundleClassLoader extends BundleClassLoader {
 
 	public void addBundle(Bundle bundle) {
 		bundles.add(bundle);
+		clearCache();
 	}
 
 	public List<Bundle> getBundles() {
@@ -60,27 +99,35 @@ public class ResourceDelegatingBundleClassLoader extends BundleClassLoader {
 	}
 
 	protected URL findResource(String name) {
+		final Wirings wirings = validateCache();
+		List<URL> cached = getFromCache(resourceCache, name);
+		if (cached != null) {
+			return cached.isEmpty() ? null : cached.get(0);
+		}
+		URL found = null;
 		for (Bundle delegate : bundles) {
 			try {
 				URL resource = delegate.getResource(name);
 				if (resource != null) {
-					return resource;
+					found = resource;
+					break;
 				}
 			} catch (IllegalStateException exc) {
 				// ignore
 			}
 		}
-		return null;
+		addToCache(resourceCache, name,
+				found == null ? NOT_FOUND : Collections.singletonList(found),
+				wirings);
+		return found;
 	}
 
 	@Override
 	protected Enumeration<URL> findResources(String name) throws IOException {
-		Enumeration<URL> url = getFromCache(name);
-		if (url != null) {
-			return url;
-		} else {
-
-			Vector<URL> resources = new Vector<URL>();
+		final Wirings wirings = validateCache();
+		List<URL> cached = getFromCache(resourcesCache, name);
+		if (cached == null) {
+			List<URL> resources = new ArrayList<URL>();
 
 			for (Bundle delegate : bundles) {
 				try {
@@ -95,26 +142,128 @@ public class ResourceDelegatingBundleClassLoader extends BundleClassLoader {
 				}
 			}
 
-			url = resources.elements();
-			addToCache(name, url);
-			return url;
+			cached = Collections.unmodifiableList(resources);
+			addToCache(resourcesCache, name, cached, wirings);
 		}
+		// enumerations are single use, hand out a new one on every call
+		return Collections.enumeration(cached);
 	}
 
-	protected void addToCache(String name, Enumeration<URL> urls) {
-		if (lruCache.get() == null) {
-			lruCache.set(new LRUMap<String, Enumeration<URL>>(cacheSize));
+	private List<URL> getFromCache(ConcurrentMap<String, List<URL>> cache,
+			String name) {
+		List<URL> urls = cache.get(name);
+		if (urls == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
 		}
+		return urls;
+	}
 
-		lruCache.get().put(name, urls);
+	/**
+	 * Adds a lookup unless the cache was cleared since it was started. A clear
+	 * racing with the addition is detected afterwards, the lookup is removed
+	 * again then.
+	 */
+	private void addToCache(ConcurrentMap<String, List<URL>> cache,
+			String name, List<URL> urls, Wirings wirings) {
+		if (cacheSize <= 0 || cachedWirings != wirings) {
+			return;
+		}
+		if (cache.size() >= cacheSize) {
+			// make room by evicting an arbitrary entry
+			Iterator<String> names = cache.keySet().iterator();
+			if (names.hasNext()) {
+				names.next();
+				names.remove();
+			}
+		}
+		cache.put(name, urls);
+		if (cachedWirings != wirings) {
+			cache.remove(name, urls);
+		}
 	}
 
-	protected Enumeration<URL> getFromCache(String name) {
-		Enumeration<URL> url = null;
-		if (lruCache.get() != null) {
-			url = lruCache.get().get(name);
+	/**
+	 * Drops the cached lookups if a delegate bundle got a new wiring (it was
+	 * updated or refreshed) or got uninstalled since they were made. An
+	 * uninstalled delegate is recorded as such, so the lookups made after it
+	 * was uninstalled stay valid.
+	 * 
+	 * @return wirings the lookups are made with
+	 */
+	private Wirings validateCache() {
+		Wirings wirings = cachedWirings;
+		List<Object> states = wirings.states;
+		boolean valid = states.size() == bundles.size();
+		for (int i = 0; valid && i < states.size(); i++) {
+			valid = stateOf(bundles.get(i)) == states.get(i);
 		}
+		if (!valid) {
+			List<Object> current = new ArrayList<Object>(bundles.size());
+			for (Bundle delegate : bundles) {
+				current.add(stateOf(delegate));
+			}
+			wirings = new Wirings(current);
+			// replaced first, lookups of the former wirings are not added
+			cachedWirings = wirings;
+			resourceCache.clear();
+			resourcesCache.clear();
+		}
+		return wirings;
+	}
 
-		return url;
+	/**
+	 * @return current wiring of a bundle or {@link #UNINSTALLED}
+	 */
+	private static Object stateOf(Bundle delegate) {
+		if (delegate.getState() == Bundle.UNINSTALLED) {
+			return UNINSTALLED;
+		}
+		return delegate.adapt(BundleWiring.class);
+	}
+
+	/**
+	 * Drops all cached resource lookups.
+	 */
+	public void clearCache() {
+		cachedWirings = new Wirings(Collections.<Object> emptyList());
+		resourceCache.clear();
+		resourcesCache.clear();
+	}
+
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * @param cacheSize
+	 *            maximum number of cached lookups per kind of lookup, 0
+	 *            disables caching
+	 */
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+		clearCache();
+	}
+
+	public long getCacheHits() {
+		return hits.get();
+	}
+
+	public long getCacheMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Wirings of the delegates, in their order, one instance per clear of the
+	 * cache.
+	 */
+	private static final class Wirings {
+
+		private final List<Object> states;
+
+		private Wirings(List<Object> states) {
+			this.states = states;
+		}
 	}
-}
\ No newline at end of file
+}
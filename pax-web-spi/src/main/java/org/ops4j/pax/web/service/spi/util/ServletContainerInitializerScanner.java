@@ -0,0 +1,365 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.ServletContainerInitializer;
+import javax.servlet.annotation.HandlesTypes;
+
+import org.apache.xbean.finder.BundleAnnotationFinder;
+import org.apache.xbean.finder.BundleAssignableClassFinder;
+import org.ops4j.pax.web.utils.ClassPathUtil;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.service.packageadmin.PackageAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Discovers the {@link ServletContainerInitializer}s in the class space of a
+ * bundle and the classes matching their {@link HandlesTypes}. Results are
+ * cached per bundle wiring, so further contexts of a bundle are set up
+ * without scanning its class space again until the bundle gets updated or
+ * refreshed. Shared by the server wrappers of the containers.
+ * <p>
+ * While open, the results of a bundle are dropped as soon as it gets
+ * updated, unresolved or uninstalled, so they do not keep its class loader
+ * alive.
+ */
+@SuppressWarnings("deprecation")
+public class ServletContainerInitializerScanner {
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOG = LoggerFactory
+			.getLogger(ServletContainerInitializerScanner.class);
+
+	private static final String SERVICE = ServletContainerInitializer.class
+			.getName();
+
+	/**
+	 * Bundle of the container, whose class space is scanned as well.
+	 */
+	private final Bundle serverBundle;
+
+	/**
+	 * Scan results by bundle id.
+	 */
+	private final ConcurrentMap<Long, ScanResult> results = new ConcurrentHashMap<Long, ScanResult>();
+
+	private final BundleListener bundleListener = new BundleListener() {
+
+		@Override
+		public void bundleChanged(final BundleEvent event) {
+			switch (event.getType()) {
+			case BundleEvent.UPDATED:
+			case BundleEvent.UNRESOLVED:
+			case BundleEvent.UNINSTALLED:
+				results.remove(event.getBundle().getBundleId());
+				break;
+			default:
+				break;
+			}
+		}
+	};
+
+	private BundleContext listenerContext;
+
+	/**
+	 * @param serverBundle
+	 *            bundle of the container, can be null
+	 */
+	public ServletContainerInitializerScanner(final Bundle serverBundle) {
+		this.serverBundle = serverBundle;
+	}
+
+	/**
+	 * Starts dropping the results of bundles which change.
+	 */
+	public synchronized void open() {
+		if (listenerContext != null || serverBundle == null) {
+			return;
+		}
+		final BundleContext bundleContext = serverBundle.getBundleContext();
+		if (bundleContext != null) {
+			bundleContext.addBundleListener(bundleListener);
+			listenerContext = bundleContext;
+		}
+	}
+
+	/**
+	 * Stops watching the bundles and drops all cached results.
+	 */
+	public synchronized void close() {
+		if (listenerContext != null) {
+			try {
+				listenerContext.removeBundleListener(bundleListener);
+			} catch (IllegalStateException e) {
+				// the server bundle is stopped already
+				LOG.debug("Bundle listener already gone", e);
+			}
+			listenerContext = null;
+		}
+		results.clear();
+	}
+
+	/**
+	 * Creates the initializers found in the class space of a bundle.
+	 *
+	 * @param bundle
+	 *            bundle owning the context
+	 * @return new initializer instances with the classes they handle, in
+	 *         discovery order
+	 */
+	public Map<ServletContainerInitializer, Set<Class<?>>> scan(
+			final Bundle bundle) {
+		final ScanResult result = getResult(bundle);
+		final Map<ServletContainerInitializer, Set<Class<?>>> initializers = new LinkedHashMap<ServletContainerInitializer, Set<Class<?>>>();
+		for (Class<?> initializerClass : result.initializerClasses) {
+			try {
+				final ServletContainerInitializer initializer = (ServletContainerInitializer) initializerClass
+						.getDeclaredConstructor().newInstance();
+				initializers.put(initializer,
+						result.getHandledTypes(initializerClass));
+				LOG.info("added ServletContainerInitializer: {}",
+						initializerClass.getName());
+			} catch (ReflectiveOperationException | ClassCastException e) {
+				LOG.warn(
+						"failed to instantiate ServletContainerInitializer {}",
+						initializerClass.getName(), e);
+			}
+		}
+		return initializers;
+	}
+
+	/**
+	 * Number of bundles whose scan results are cached.
+	 */
+	public int getCachedBundles() {
+		return results.size();
+	}
+
+	/**
+	 * Drops all cached results.
+	 */
+	public void clear() {
+		results.clear();
+	}
+
+	private ScanResult getResult(final Bundle bundle) {
+		final BundleWiring wiring = bundle.adapt(BundleWiring.class);
+		ScanResult result = results.get(bundle.getBundleId());
+		if (result != null && result.wiring == wiring && wiring != null) {
+			return result;
+		}
+		purge();
+		result = new ScanResult(bundle, wiring);
+		if (wiring != null) {
+			results.put(bundle.getBundleId(), result);
+		}
+		return result;
+	}
+
+	/**
+	 * Removes results of bundles which got refreshed or uninstalled.
+	 */
+	private void purge() {
+		final Iterator<ScanResult> iterator = results.values().iterator();
+		while (iterator.hasNext()) {
+			final BundleWiring wiring = iterator.next().wiring;
+			if (!wiring.isCurrent() || !wiring.isInUse()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private List<Class<?>> findInitializerClasses(final Bundle bundle) {
+		final Set<Bundle> bundlesInClassSpace = ClassPathUtil
+				.getBundlesInClassSpace(bundle, new HashSet<Bundle>());
+		if (serverBundle != null) {
+			ClassPathUtil.getBundlesInClassSpace(serverBundle,
+					bundlesInClassSpace);
+		}
+
+		final List<Class<?>> initializerClasses = new ArrayList<Class<?>>();
+		for (URL u : ClassPathUtil.findResources(bundlesInClassSpace,
+				"/META-INF/services", SERVICE, true)) {
+			try {
+				final String className = readFirstLine(u);
+				LOG.info("will add {} to ServletContainerInitializers",
+						className);
+
+				if (className.endsWith("JasperInitializer")) {
+					LOG.info(
+							"Skipt {}, because specialized handler will be present",
+							className);
+					continue;
+				}
+
+				Class<?> initializerClass;
+				try {
+					initializerClass = bundle.loadClass(className);
+				} catch (ClassNotFoundException ignore) {
+					if (serverBundle == null) {
+						throw ignore;
+					}
+					initializerClass = serverBundle.loadClass(className);
+				}
+				initializerClasses.add(initializerClass);
+			} catch (ClassNotFoundException | IOException e) {
+				LOG.warn("failed to parse and instantiate of javax.servlet.ServletContainerInitializer in classpath");
+			}
+		}
+		return initializerClasses;
+	}
+
+	private static String readFirstLine(final URL url) throws IOException {
+		final InputStream is = url.openStream();
+		try {
+			final BufferedReader reader = new BufferedReader(
+					new InputStreamReader(is));
+			// only the first line is read, it contains the name of the
+			// class.
+			final String line = reader.readLine();
+			if (line == null) {
+				throw new IOException("Empty service file " + url);
+			}
+			return line.trim();
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Scan results of one bundle wiring.
+	 */
+	private final class ScanResult {
+
+		private final Bundle bundle;
+		private final BundleWiring wiring;
+		private final List<Class<?>> initializerClasses;
+		/**
+		 * Classes found per handled type.
+		 */
+		private final ConcurrentMap<Class<?>, Set<Class<?>>> handledTypes = new ConcurrentHashMap<Class<?>, Set<Class<?>>>();
+		/**
+		 * Finder shared by all annotation types, created on first use since
+		 * it reads every class of the bundle.
+		 */
+		private BundleAnnotationFinder annotationFinder;
+
+		private ScanResult(final Bundle bundle, final BundleWiring wiring) {
+			this.bundle = bundle;
+			this.wiring = wiring;
+			this.initializerClasses = findInitializerClasses(bundle);
+		}
+
+		/**
+		 * @return a new set of the classes handled by an initializer
+		 */
+		private Set<Class<?>> getHandledTypes(final Class<?> initializerClass) {
+			final Set<Class<?>> setOfClasses = new HashSet<Class<?>>();
+			final HandlesTypes handlesTypes = initializerClass
+					.getAnnotation(HandlesTypes.class);
+			if (handlesTypes != null) {
+				for (Class<?> klass : handlesTypes.value()) {
+					Set<Class<?>> found = handledTypes.get(klass);
+					if (found == null) {
+						found = findHandledType(klass);
+						handledTypes.putIfAbsent(klass, found);
+					}
+					setOfClasses.addAll(found);
+				}
+			}
+			return setOfClasses;
+		}
+
+		@SuppressWarnings("unchecked")
+		private Set<Class<?>> findHandledType(final Class<?> klass) {
+			final BundleContext bundleContext = serverBundle != null ? serverBundle
+					.getBundleContext() : bundle.getBundleContext();
+			final ServiceReference<PackageAdmin> reference = bundleContext
+					.getServiceReference(PackageAdmin.class);
+			final PackageAdmin packageAdmin = reference == null ? null
+					: bundleContext.getService(reference);
+			final Set<Class<?>> found = new HashSet<Class<?>>();
+			try {
+				if (klass.isAnnotation()) {
+					try {
+						found.addAll(getAnnotationFinder(packageAdmin)
+								.findAnnotatedClasses(
+										(Class<? extends Annotation>) klass));
+						// CHECKSTYLE:OFF
+					} catch (Exception e) {
+						// CHECKSTYLE:ON
+						LOG.warn(
+								"Failed to find annotated classes for ServletContainerInitializer",
+								e);
+					}
+				} else {
+					// interface or class
+					final BundleAssignableClassFinder basf = new BundleAssignableClassFinder(
+							packageAdmin, new Class[] { klass }, bundle);
+					for (String className : basf.find()) {
+						try {
+							found.add(bundle.loadClass(className));
+						} catch (ClassNotFoundException e) {
+							LOG.warn("Unable to load {} handled by {}",
+									className, klass.getName());
+						}
+					}
+				}
+			} finally {
+				if (packageAdmin != null) {
+					bundleContext.ungetService(reference);
+				}
+			}
+			return Collections.unmodifiableSet(found);
+		}
+
+		private synchronized BundleAnnotationFinder getAnnotationFinder(
+				final PackageAdmin packageAdmin) throws Exception {
+			if (annotationFinder == null) {
+				annotationFinder = new BundleAnnotationFinder(packageAdmin,
+						bundle);
+			}
+			return annotationFinder;
+		}
+	}
+}
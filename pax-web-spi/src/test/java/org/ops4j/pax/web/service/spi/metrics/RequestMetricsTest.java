@@ -0,0 +1,100 @@
+package org.ops4j.pax.web.service.spi.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RequestMetricsTest {
+
+	@Test
+	public void bucketsCoverTheirLatencies() {
+		long lower = 0;
+		for (int bucket = 0; bucket < RequestMetrics.getLatencyBucketBounds().length - 1; bucket++) {
+			long upper = RequestMetrics.upperBoundOf(bucket);
+			assertTrue(upper > lower);
+			assertEquals(bucket, RequestMetrics.bucketOf(lower));
+			assertEquals(bucket, RequestMetrics.bucketOf(upper - 1));
+			assertEquals(bucket + 1, RequestMetrics.bucketOf(upper));
+			lower = upper;
+		}
+		assertEquals(RequestMetrics.getLatencyBucketBounds().length - 1,
+				RequestMetrics.bucketOf(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void countsRequestsAndErrors() {
+		RequestMetrics metrics = new RequestMetrics("ctx", null);
+		long first = metrics.requestStarted();
+		long second = metrics.requestStarted();
+		assertEquals(2, metrics.getInFlightRequests());
+
+		metrics.requestCompleted(first, false);
+		metrics.requestCompleted(second, true);
+
+		assertEquals(0, metrics.getInFlightRequests());
+		assertEquals(2, metrics.getRequestCount());
+		assertEquals(1, metrics.getErrorCount());
+		assertTrue(metrics.getLatency99thPercentile() <= metrics
+				.getMaxLatency());
+
+		metrics.reset();
+		assertEquals(0, metrics.getRequestCount());
+		assertEquals(0, metrics.getLatency50thPercentile(), 0);
+	}
+
+	@Test
+	public void percentilesSeparateSlowRequests() {
+		RequestMetrics metrics = new RequestMetrics("ctx", "servlet");
+		for (int i = 0; i < 100; i++) {
+			metrics.requestStarted();
+			long latency = i < 95 ? 1 : 1000;
+			metrics.requestCompleted(System.nanoTime()
+					- TimeUnit.MILLISECONDS.toNanos(latency), false);
+		}
+		assertTrue(metrics.getLatency50thPercentile() >= 1);
+		assertTrue(metrics.getLatency90thPercentile() < 1000);
+		assertTrue(metrics.getLatency99thPercentile() >= 1000);
+		assertTrue(metrics.getMaxLatency() >= 1000);
+	}
+
+	@Test
+	public void collectorKeepsMetricsByName() {
+		RequestMetricsCollector collector = new RequestMetricsCollector();
+		assertNull(collector.getContextMetrics("ctx"));
+
+		RequestMetrics context = collector.contextMetrics("ctx");
+		RequestMetrics servlet = collector.servletMetrics("ctx", "servlet");
+
+		assertSame(context, collector.getContextMetrics("ctx"));
+		assertSame(servlet, collector.getServletMetrics("ctx", "servlet"));
+		assertSame(servlet, collector.servletMetrics("ctx", "servlet"));
+		assertNull(collector.getServletMetrics("other", "servlet"));
+		assertEquals(2, collector.getRequestMetrics().size());
+
+		collector.close();
+		assertTrue(collector.getRequestMetrics().isEmpty());
+	}
+
+	@Test
+	public void collectorDropsMetricsOfRemovedServletsAndContexts() {
+		RequestMetricsCollector collector = new RequestMetricsCollector();
+		RequestMetrics servlet = collector.servletMetrics("ctx", "servlet");
+		collector.servletMetrics("ctx", "other");
+
+		collector.removeServletMetrics("ctx", "servlet");
+		assertNull(collector.getServletMetrics("ctx", "servlet"));
+		assertEquals(2, collector.getRequestMetrics().size());
+		assertNotSame(servlet, collector.servletMetrics("ctx", "servlet"));
+
+		collector.removeContextMetrics("ctx");
+		assertNull(collector.getContextMetrics("ctx"));
+		assertNull(collector.getServletMetrics("ctx", "other"));
+		assertTrue(collector.getRequestMetrics().isEmpty());
+	}
+}
@@ -0,0 +1,143 @@
+package org.ops4j.pax.web.service.spi.model;
+
+import static org.easymock.EasyMock.createMock;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Hashtable;
+
+import javax.servlet.Filter;
+import javax.servlet.Servlet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.web.service.WebContainerConstants;
+import org.osgi.service.http.HttpContext;
+
+public class ServerModelTest {
+
+	private ServerModel serverModel;
+
+	private ContextModel root;
+	private ContextModel foo;
+	private ContextModel bar;
+
+	@Before
+	public void setUp() {
+		serverModel = new ServerModel();
+		root = context(null);
+		foo = context("foo");
+		bar = context("foo/bar");
+	}
+
+	@Test
+	public void matchNothingRegistered() {
+		assertNull(serverModel.matchPathToContext("/foo"));
+	}
+
+	@Test
+	public void matchAlias() throws Exception {
+		serverModel.addServletModel(new ServletModel(foo, createMock(Servlet.class), "/alias", null, null, null));
+
+		assertSame(foo, serverModel.matchPathToContext("/foo/alias"));
+		assertSame(foo, serverModel.matchPathToContext("/foo/alias/"));
+		assertSame(foo, serverModel.matchPathToContext("/foo/alias/deep/er"));
+		assertNull(serverModel.matchPathToContext("/foo/aliasx"));
+		assertNull(serverModel.matchPathToContext("/foo"));
+		assertNull(serverModel.matchPathToContext("/"));
+	}
+
+	@Test
+	public void matchDeepestContext() throws Exception {
+		serverModel.addServletModel(servlet(root, "/"));
+		serverModel.addServletModel(servlet(foo, "/"));
+		serverModel.addServletModel(servlet(bar, "/"));
+
+		assertSame(root, serverModel.matchPathToContext("/"));
+		assertSame(root, serverModel.matchPathToContext("/other/index.html"));
+		assertSame(foo, serverModel.matchPathToContext("/foo"));
+		assertSame(foo, serverModel.matchPathToContext("/foo/index.html"));
+		assertSame(foo, serverModel.matchPathToContext("/foo/baz/index.html"));
+		assertSame(bar, serverModel.matchPathToContext("/foo/bar"));
+		assertSame(bar, serverModel.matchPathToContext("/foo/bar/index.html"));
+	}
+
+	@Test
+	public void matchPrefixBeforeDefault() throws Exception {
+		serverModel.addServletModel(servlet(foo, "/"));
+		serverModel.addServletModel(servlet(root, "/*"));
+
+		assertSame(root, serverModel.matchPathToContext("/"));
+		assertSame(root, serverModel.matchPathToContext("/index.html"));
+		assertSame(foo, serverModel.matchPathToContext("/foo/index.html"));
+	}
+
+	@Test
+	public void matchExtension() throws Exception {
+		serverModel.addServletModel(servlet(root, "*.jsp"));
+		serverModel.addServletModel(servlet(foo, "*.do"));
+
+		assertSame(root, serverModel.matchPathToContext("/index.jsp"));
+		assertSame(root, serverModel.matchPathToContext("/foo/index.jsp"));
+		assertSame(foo, serverModel.matchPathToContext("/foo/index.do"));
+		assertSame(foo, serverModel.matchPathToContext("/foo/a/b/index.do"));
+		assertNull(serverModel.matchPathToContext("/index.do"));
+		assertNull(serverModel.matchPathToContext("/foo/index."));
+		assertNull(serverModel.matchPathToContext("/foo/index.do/"));
+	}
+
+	@Test
+	public void matchExactBeforePrefix() throws Exception {
+		serverModel.addServletModel(servlet(foo, "/*"));
+		serverModel.addServletModel(servlet(root, "/foo/exact"));
+
+		assertSame(root, serverModel.matchPathToContext("/foo/exact"));
+		assertSame(foo, serverModel.matchPathToContext("/foo/other"));
+	}
+
+	@Test
+	public void matchFiltersOnlyWithoutServlet() throws Exception {
+		serverModel.addServletModel(servlet(root, "/servlet"));
+		serverModel.addFilterModel(filter(foo, "/*"));
+
+		assertSame(root, serverModel.matchPathToContext("/servlet"));
+		assertSame(foo, serverModel.matchPathToContext("/foo/something"));
+		assertNull(serverModel.matchPathToContext("/something"));
+	}
+
+	@Test
+	public void unregisterRemovesMatch() throws Exception {
+		final ServletModel servlet = servlet(foo, "/alias");
+		final FilterModel filter = filter(bar, "/*");
+		serverModel.addServletModel(servlet);
+		serverModel.addFilterModel(filter);
+
+		serverModel.removeServletModel(servlet);
+		serverModel.removeFilterModel(filter);
+
+		assertNull(serverModel.matchPathToContext("/foo/alias"));
+		assertNull(serverModel.matchPathToContext("/foo/bar/x"));
+	}
+
+	private static ContextModel context(final String name) {
+		final ContextModel model = new ContextModel(createMock(HttpContext.class), null,
+				ServerModelTest.class.getClassLoader());
+		if (name != null) {
+			final Hashtable<String, String> params = new Hashtable<String, String>();
+			params.put(WebContainerConstants.CONTEXT_NAME, name);
+			model.setContextParams(params);
+		}
+		return model;
+	}
+
+	private static ServletModel servlet(final ContextModel context, final String urlPattern) {
+		return new ServletModel(context, createMock(Servlet.class), null, new String[] { urlPattern }, null, null,
+				null, null, null);
+	}
+
+	private static FilterModel filter(final ContextModel context, final String urlPattern) {
+		return new FilterModel(context, createMock(Filter.class), new String[] { urlPattern }, null,
+				null);
+	}
+
+}
@@ -0,0 +1,236 @@
+package org.ops4j.pax.web.service.spi.session;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.web.service.WebContainerConstants;
+import org.ops4j.pax.web.service.spi.Configuration;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+public class FileSessionStoreTest {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = File.createTempFile("paxweb", "sessions");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void savedSessionsAreLoaded() throws IOException {
+		FileSessionStore store = new FileSessionStore(new File(directory,
+				"test.sessions"));
+		store.save("a", bytes("first"), Long.MAX_VALUE);
+		store.save("b", bytes("second"), Long.MAX_VALUE);
+		store.save("a", bytes("third"), Long.MAX_VALUE);
+
+		assertArrayEquals(bytes("third"), store.load("a"));
+		assertArrayEquals(bytes("second"), store.load("b"));
+		assertNull(store.load("c"));
+		assertEquals(2, store.size());
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b")),
+				store.keys());
+
+		store.remove("a");
+		assertNull(store.load("a"));
+		assertEquals(1, store.size());
+		store.close();
+	}
+
+	@Test
+	public void expiredSessionsAreFound() throws IOException {
+		FileSessionStore store = new FileSessionStore(new File(directory,
+				"test.sessions"));
+		store.save("old", bytes("old"), 1000);
+		store.save("new", bytes("new"), 3000);
+		store.save("eternal", bytes("eternal"), Long.MAX_VALUE);
+
+		assertTrue(store.expired(999).isEmpty());
+		assertEquals(Arrays.asList("old"), store.expired(2000));
+		assertEquals(2, store.expired(3000).size());
+		assertEquals(3, store.size());
+		store.close();
+	}
+
+	@Test
+	public void garbageIsCompacted() throws IOException {
+		FileSessionStore store = new FileSessionStore(new File(directory,
+				"test.sessions"), 100);
+		byte[] data = new byte[50];
+		for (int i = 0; i < 10; i++) {
+			Arrays.fill(data, (byte) i);
+			store.save("a", data.clone(), Long.MAX_VALUE);
+			store.save("b", bytes("b" + i), Long.MAX_VALUE);
+		}
+		assertTrue(store.length() < 200);
+		Arrays.fill(data, (byte) 9);
+		assertArrayEquals(data, store.load("a"));
+		assertArrayEquals(bytes("b9"), store.load("b"));
+
+		store.remove("a");
+		store.remove("b");
+		assertEquals(0, store.length());
+		store.close();
+		assertEquals(0, directory.listFiles().length);
+	}
+
+	@Test
+	public void closedStoreFails() throws IOException {
+		File file = new File(directory, "test.sessions");
+		FileSessionStore store = new FileSessionStore(file);
+		store.save("a", bytes("a"), Long.MAX_VALUE);
+		assertTrue(file.exists());
+		store.close();
+		assertFalse(file.exists());
+		assertEquals(0, store.size());
+		try {
+			store.save("a", bytes("a"), Long.MAX_VALUE);
+		} catch (IOException e) {
+			return;
+		}
+		throw new AssertionError("closed store accepted a session");
+	}
+
+	@Test
+	public void staleStoresAreDeleted() throws IOException {
+		File stale = new File(directory, "ROOT-1.sessions");
+		Files.write(stale.toPath(), bytes("crashed"));
+		File other = new File(directory, "notes.txt");
+		Files.write(other.toPath(), bytes("other"));
+		FileSessionStore store = new FileSessionStore(new File(directory,
+				"ROOT-2.sessions"));
+		store.save("a", bytes("live"), Long.MAX_VALUE);
+
+		FileSessionStore.deleteStale(directory);
+
+		assertFalse(stale.exists());
+		assertTrue(other.exists());
+		assertArrayEquals(bytes("live"), store.load("a"));
+		assertTrue(new File(directory, "ROOT-2.sessions").exists());
+		store.close();
+	}
+
+	@Test
+	public void contextParametersOverrideConfiguration() throws IOException {
+		assertNull(SessionStoreConfig.create(null, null));
+
+		Configuration configuration = createMock(Configuration.class);
+		expect(configuration.getSessionIdleTime()).andReturn(600).anyTimes();
+		expect(configuration.getTemporaryDirectory()).andReturn(directory)
+				.anyTimes();
+		replay(configuration);
+
+		SessionStoreConfig global = SessionStoreConfig.create(configuration,
+				null);
+		assertEquals(600, global.getIdleTime());
+		assertEquals(new File(directory, "sessions"), global.getDirectory());
+
+		Map<String, String> params = new HashMap<String, String>();
+		params.put(WebContainerConstants.PROPERTY_SESSION_IDLE_TIME, "60");
+		assertEquals(60, SessionStoreConfig.create(configuration, params)
+				.getIdleTime());
+		params.put(WebContainerConstants.PROPERTY_SESSION_IDLE_TIME, "-1");
+		assertNull(SessionStoreConfig.create(configuration, params));
+
+		SessionStore first = global.createSessionStore("/shop");
+		SessionStore second = global.createSessionStore("/shop");
+		assertNotNull(first);
+		first.save("a", bytes("first"), Long.MAX_VALUE);
+		second.save("a", bytes("second"), Long.MAX_VALUE);
+		assertArrayEquals(bytes("first"), first.load("a"));
+		first.close();
+		second.close();
+		assertEquals(0, global.getDirectory().listFiles().length);
+		global.getDirectory().delete();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void factoryServiceIsHeldUntilClose() throws IOException {
+		BundleContext bundleContext = createMock(BundleContext.class);
+		ServiceReference<SessionStoreFactory> reference = createMock(ServiceReference.class);
+		expect(reference.getBundle()).andReturn(createMock(Bundle.class))
+				.anyTimes();
+		expect(bundleContext.ungetService(reference)).andReturn(true);
+		replay(bundleContext, reference);
+		FileSessionStore delegate = new FileSessionStore(new File(directory,
+				"factory.sessions"));
+
+		SessionStore store = new FactorySessionStore(new SessionStoreConfig(
+				60, directory), "/shop", bundleContext, reference, delegate);
+		store.save("a", bytes("a"), Long.MAX_VALUE);
+		assertArrayEquals(bytes("a"), delegate.load("a"));
+		store.close();
+		store.close();
+
+		verify(bundleContext);
+		assertEquals(0, delegate.size());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void fileStoreTakesOverFromUnregisteredFactory() throws IOException {
+		BundleContext bundleContext = createMock(BundleContext.class);
+		ServiceReference<SessionStoreFactory> reference = createMock(ServiceReference.class);
+		expect(reference.getBundle()).andReturn(createMock(Bundle.class));
+		expect(reference.getBundle()).andReturn(null).anyTimes();
+		expect(bundleContext.ungetService(reference)).andReturn(true);
+		replay(bundleContext, reference);
+		FileSessionStore delegate = new FileSessionStore(new File(directory,
+				"factory.sessions"));
+
+		SessionStore store = new FactorySessionStore(new SessionStoreConfig(
+				60, directory), "/shop", bundleContext, reference, delegate);
+		store.save("a", bytes("a"), Long.MAX_VALUE);
+		// the factory is gone
+		store.save("b", bytes("b"), Long.MAX_VALUE);
+
+		verify(bundleContext);
+		assertFalse(new File(directory, "factory.sessions").exists());
+		assertNull(store.load("a"));
+		assertArrayEquals(bytes("b"), store.load("b"));
+		assertEquals(1, store.size());
+		store.close();
+		assertEquals(0, directory.listFiles().length);
+	}
+
+	private static byte[] bytes(final String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,95 @@
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncLogWriterTest {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = File.createTempFile("paxweb", "log");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void recordsAreWrittenInOrderUntilStopped() throws Exception {
+		AsyncLogWriter writer = new AsyncLogWriter(directory, "test.log", 0,
+				false, TimeZone.getTimeZone("GMT"), 100);
+		assertEquals(128, writer.getCapacity());
+		assertFalse(writer.write("before start"));
+
+		writer.start();
+		for (int i = 0; i < 100; i++) {
+			assertTrue(writer.write("record " + i));
+		}
+		writer.stop();
+
+		List<String> lines = readLines(new File(directory, "test.log"));
+		assertEquals(100, lines.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals("record " + i, lines.get(i));
+		}
+		assertEquals(100, writer.getWrittenRecords());
+		assertEquals(1, writer.getDroppedRecords());
+		assertEquals(0, writer.getQueueDepth());
+	}
+
+	@Test
+	public void datedFileNameIsResolved() throws Exception {
+		AsyncLogWriter writer = new AsyncLogWriter(directory,
+				"yyyy_mm_dd.request.log", 90, true,
+				TimeZone.getTimeZone("GMT"), 16);
+		writer.start();
+		writer.write("record");
+		writer.stop();
+
+		File[] files = directory.listFiles();
+		assertEquals(1, files.length);
+		assertTrue(files[0].getName().matches(
+				"\\d{4}_\\d{2}_\\d{2}\\.request\\.log"));
+		assertEquals(files[0].getAbsolutePath(), writer.getFileName());
+	}
+
+	private static List<String> readLines(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,35 @@
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class CachedResourceWriterTest {
+
+	@Test
+	public void parseSingleRange() {
+		assertArrayEquals(new long[] { 0, 9 }, CachedResourceWriter.parseRange("bytes=0-9", 100));
+		assertArrayEquals(new long[] { 90, 99 }, CachedResourceWriter.parseRange("bytes=90-", 100));
+		assertArrayEquals(new long[] { 90, 99 }, CachedResourceWriter.parseRange("bytes=-10", 100));
+		assertArrayEquals(new long[] { 50, 99 }, CachedResourceWriter.parseRange("bytes=50-500", 100));
+		assertArrayEquals(new long[] { 0, 99 }, CachedResourceWriter.parseRange("bytes=-500", 100));
+	}
+
+	@Test
+	public void parseUnsatisfiableRange() {
+		assertNull(CachedResourceWriter.parseRange("bytes=100-", 100));
+		assertNull(CachedResourceWriter.parseRange("bytes=200-300", 100));
+		assertNull(CachedResourceWriter.parseRange("bytes=-0", 100));
+	}
+
+	@Test
+	public void ignoreInvalidOrMultipleRanges() {
+		assertEquals(0, CachedResourceWriter.parseRange("items=0-9", 100).length);
+		assertEquals(0, CachedResourceWriter.parseRange("bytes=0-9,20-29", 100).length);
+		assertEquals(0, CachedResourceWriter.parseRange("bytes=a-b", 100).length);
+		assertEquals(0, CachedResourceWriter.parseRange("bytes=9-0", 100).length);
+	}
+
+}
@@ -0,0 +1,83 @@
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.WebContainerConstants;
+import org.ops4j.pax.web.service.spi.Configuration;
+
+public class CompressionConfigTest {
+
+	@Test
+	public void disabledByDefault() {
+		assertNull(CompressionConfig.create(null, null));
+	}
+
+	@Test
+	public void contextParametersOverrideConfiguration() {
+		Configuration configuration = createMock(Configuration.class);
+		expect(configuration.isCompressionEnabled()).andReturn(true).anyTimes();
+		expect(configuration.isCompressionPrecompressed()).andReturn(null).anyTimes();
+		expect(configuration.getCompressionMinSize()).andReturn(2048).anyTimes();
+		expect(configuration.getCompressionMimeTypes()).andReturn(null).anyTimes();
+		expect(configuration.getCompressionExcludedPaths()).andReturn("/api/").anyTimes();
+		expect(configuration.getCompressionLevel()).andReturn(null).anyTimes();
+		replay(configuration);
+
+		CompressionConfig global = CompressionConfig.create(configuration, null);
+		assertTrue(global.isEnabled());
+		assertFalse(global.isPrecompressed());
+		assertEquals(2048, global.getMinSize());
+		assertEquals(Deflater.DEFAULT_COMPRESSION, global.getLevel());
+		assertTrue(global.isCompressible("text/css"));
+
+		Map<String, String> params = new HashMap<String, String>();
+		params.put(WebContainerConstants.PROPERTY_COMPRESSION_ENABLED, "false");
+		params.put(WebContainerConstants.PROPERTY_COMPRESSION_PRECOMPRESSED, "true");
+		params.put(WebContainerConstants.PROPERTY_COMPRESSION_MIME_TYPES, "text/plain");
+		params.put(WebContainerConstants.PROPERTY_COMPRESSION_LEVEL, "9");
+		CompressionConfig context = CompressionConfig.create(configuration, params);
+		assertFalse(context.isEnabled());
+		assertTrue(context.isPrecompressed());
+		assertEquals(2048, context.getMinSize());
+		assertEquals(9, context.getLevel());
+		assertTrue(context.isCompressible("Text/Plain; charset=UTF-8"));
+		assertFalse(context.isCompressible("text/css"));
+
+		params.put(WebContainerConstants.PROPERTY_COMPRESSION_PRECOMPRESSED, "false");
+		assertNull(CompressionConfig.create(configuration, params));
+	}
+
+	@Test
+	public void excludedPaths() {
+		CompressionConfig config = new CompressionConfig(true, 0, null,
+				"/api/, /download.zip", -1, false);
+		assertTrue(config.isExcluded("/api/items"));
+		assertTrue(config.isExcluded("/download.zip"));
+		assertFalse(config.isExcluded("/download.zip.html"));
+		assertFalse(config.isExcluded("/apidoc"));
+		assertFalse(config.isExcluded(null));
+	}
+
+	@Test
+	public void acceptedEncodings() {
+		assertTrue(ContentEncoding.GZIP.isAcceptedBy("gzip, deflate, br"));
+		assertTrue(ContentEncoding.BROTLI.isAcceptedBy("gzip, deflate, br"));
+		assertTrue(ContentEncoding.GZIP.isAcceptedBy("GZIP;q=0.5"));
+		assertFalse(ContentEncoding.GZIP.isAcceptedBy("gzip;q=0, br"));
+		assertFalse(ContentEncoding.GZIP.isAcceptedBy("x-gzip"));
+		assertFalse(ContentEncoding.BROTLI.isAcceptedBy("brotli"));
+		assertFalse(ContentEncoding.BROTLI.isAcceptedBy(null));
+	}
+
+}
@@ -0,0 +1,77 @@
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.WebContainerConstants;
+import org.ops4j.pax.web.service.spi.Configuration;
+
+public class CredentialCacheTest {
+
+	@Test
+	public void disabledByDefault() {
+		assertNull(CredentialCache.create(null, null));
+	}
+
+	@Test
+	public void contextParametersOverrideConfiguration() {
+		Configuration configuration = createMock(Configuration.class);
+		expect(configuration.isAuthenticationCacheEnabled()).andReturn(null).anyTimes();
+		expect(configuration.getAuthenticationCacheTtl()).andReturn(null).anyTimes();
+		expect(configuration.getAuthenticationCacheMaxSize()).andReturn(null).anyTimes();
+		replay(configuration);
+
+		assertNull(CredentialCache.create(configuration, null));
+
+		Map<String, String> params = new HashMap<String, String>();
+		params.put(WebContainerConstants.PROPERTY_AUTHENTICATION_CACHE_ENABLED, "true");
+		params.put(WebContainerConstants.PROPERTY_AUTHENTICATION_CACHE_MAX_SIZE, "1");
+		CredentialCache<String> cache = CredentialCache.create(configuration, params);
+		assertNotNull(cache);
+		cache.put("alice", "secret", "alice");
+		cache.put("bob", "secret", "bob");
+		assertEquals(1, cache.size());
+		assertNull(cache.get("alice", "secret"));
+		assertEquals("bob", cache.get("bob", "secret"));
+	}
+
+	@Test
+	public void onlyMatchingCredentialsAreFound() {
+		CredentialCache<String> cache = new CredentialCache<String>(60, 10);
+		cache.put("alice", "secret", "alice");
+		assertEquals("alice", cache.get("alice", "secret"));
+		assertNull(cache.get("alice", "other"));
+		assertNull(cache.get("alices", "ecret"));
+		cache.put("bob", null, "bob");
+		assertEquals("bob", cache.get("bob", null));
+	}
+
+	@Test
+	public void expiredCredentialsAreDropped() {
+		CredentialCache<String> cache = new CredentialCache<String>(0, 10);
+		cache.put("alice", "secret", "alice");
+		assertNull(cache.get("alice", "secret"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void flushDropsCredentials() {
+		CredentialCache<String> cache = new CredentialCache<String>(60, 10);
+		cache.put("alice", "secret", "alice");
+		cache.put("bob", "secret", "bob");
+		CredentialCache.flushAll("alice");
+		assertNull(cache.get("alice", "secret"));
+		assertEquals("bob", cache.get("bob", "secret"));
+		CredentialCache.flushAll();
+		assertEquals(0, cache.size());
+	}
+
+}
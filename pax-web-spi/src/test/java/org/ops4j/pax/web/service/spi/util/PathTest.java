@@ -17,6 +17,8 @@
 package org.ops4j.pax.web.service.spi.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -126,4 +128,67 @@ public class PathTest {
 		assertEquals("Normalized", "/", Path.normalizeResourcePath("/   "));
 	}
 
+	/**
+	 * Tests that normalizing a path that needs no normalization returns the
+	 * same string.
+	 */
+	@Test
+	public void normalizeResourcePathUnchanged() {
+		final String path = "css/site.css";
+		assertSame("Normalized", path, Path.normalizeResourcePath(path));
+	}
+
+	/**
+	 * Tests that normalizing a path removes the leading slash and collapses
+	 * consecutive slashes, keeping a trailing slash.
+	 */
+	@Test
+	public void normalizeResourcePathSlashes() {
+		assertEquals("Normalized", "foo/bar",
+				Path.normalizeResourcePath("/foo/bar"));
+		assertEquals("Normalized", "foo/bar/car/",
+				Path.normalizeResourcePath("//foo////bar//car//"));
+	}
+
+	/**
+	 * Tests that normalizing a path resolves "." and ".." segments.
+	 */
+	@Test
+	public void normalizeResourcePathDotSegments() {
+		assertEquals("Normalized", "foo/bar",
+				Path.normalizeResourcePath("/foo/./bar"));
+		assertEquals("Normalized", "bar",
+				Path.normalizeResourcePath("/foo/../bar"));
+		assertEquals("Normalized", "foo/",
+				Path.normalizeResourcePath("foo/bar/.."));
+		assertEquals("Normalized", "foo/bar/",
+				Path.normalizeResourcePath("foo/bar/."));
+		assertEquals("Normalized", "/", Path.normalizeResourcePath("foo/.."));
+		assertEquals("Normalized", "foo/..bar/.baz",
+				Path.normalizeResourcePath("foo/..bar/.baz"));
+	}
+
+	/**
+	 * Tests that normalizing a path going above the root returns null.
+	 */
+	@Test
+	public void normalizeResourcePathAboveRoot() {
+		assertNull("Normalized", Path.normalizeResourcePath("/../etc/passwd"));
+		assertNull("Normalized",
+				Path.normalizeResourcePath("foo/../../etc/passwd"));
+	}
+
+	/**
+	 * Tests that the first occurrence is replaced literally.
+	 */
+	@Test
+	public void replaceFirst() {
+		assertEquals("Replaced", "//static/css/site.css",
+				Path.replaceFirst("/ctx/static/css/site.css", "/ctx", "/"));
+		assertEquals("Replaced", "/a.b/c",
+				Path.replaceFirst("/a.b/c", "/a*b", "/x"));
+		assertEquals("Replaced", "/res/$1/x",
+				Path.replaceFirst("/alias/x", "/alias", "/res/$1"));
+	}
+
 }
@@ -0,0 +1,50 @@
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+
+import org.junit.Test;
+
+public class ResourceCacheTest {
+
+	@Test
+	public void bundleChangesClearAllCaches() throws IOException {
+		ResourceCache first = new ResourceCache(1024, 512, false);
+		ResourceCache second = new ResourceCache(1024, 512, false);
+		first.put("/a.txt", resource("a"));
+		second.put("/b.txt", resource("b"));
+
+		ResourceCache.clearAll();
+
+		assertNull(first.get("/a.txt"));
+		assertNull(second.get("/b.txt"));
+		assertEquals(0, first.getSize());
+	}
+
+	@Test
+	public void resourcesLoadedBeforeClearAreNotCached() throws IOException {
+		ResourceCache cache = new ResourceCache(1024, 512, false);
+		long generation = cache.getGeneration();
+		CachedResource loaded = resource("old");
+
+		ResourceCache.clearAll();
+		cache.put("/a.txt", loaded, generation);
+		assertNull(cache.get("/a.txt"));
+
+		cache.put("/a.txt", resource("new"), cache.getGeneration());
+		assertNotNull(cache.get("/a.txt"));
+	}
+
+	private static CachedResource resource(final String content)
+			throws IOException {
+		byte[] bytes = content.getBytes("UTF-8");
+		return CachedResource.load(new URL("http://localhost/"
+				+ content), new ByteArrayInputStream(bytes), bytes.length, 0,
+				"text/plain", false);
+	}
+}
@@ -0,0 +1,106 @@
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.reset;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class ResourceDelegatingBundleClassLoaderTest {
+
+	@Test
+	public void resourcesAreCachedAndCanBeEnumeratedAgain() throws Exception {
+		URL a = new URL("http://localhost/a");
+		URL b = new URL("http://localhost/b");
+		BundleWiring wiring = createMock(BundleWiring.class);
+		Bundle bundle = createMock(Bundle.class);
+		expect(bundle.getState()).andReturn(Bundle.ACTIVE).anyTimes();
+		expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+		expect(bundle.getResources("x")).andReturn(
+				Collections.enumeration(Arrays.asList(a, b))).once();
+		expect(bundle.getResource("y")).andReturn(null).once();
+		replay(wiring, bundle);
+
+		ResourceDelegatingBundleClassLoader loader = new ResourceDelegatingBundleClassLoader(
+				new ArrayList<Bundle>(Arrays.asList(bundle)));
+
+		assertEquals(Arrays.asList(a, b),
+				Collections.list(loader.findResources("x")));
+		assertEquals(Arrays.asList(a, b),
+				Collections.list(loader.findResources("x")));
+		assertNull(loader.findResource("y"));
+		assertNull(loader.findResource("y"));
+
+		verify(bundle);
+		assertEquals(2, loader.getCacheMisses());
+		assertEquals(2, loader.getCacheHits());
+	}
+
+	@Test
+	public void cacheIsDroppedWhenDelegateIsRewired() throws Exception {
+		URL a = new URL("http://localhost/a");
+		BundleWiring wiring = createMock(BundleWiring.class);
+		BundleWiring newWiring = createMock(BundleWiring.class);
+		Bundle bundle = createMock(Bundle.class);
+		expect(bundle.getState()).andReturn(Bundle.ACTIVE).anyTimes();
+		expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+		expect(bundle.getResource("x")).andReturn(a).once();
+		replay(wiring, newWiring, bundle);
+
+		List<Bundle> bundles = new ArrayList<Bundle>(Arrays.asList(bundle));
+		ResourceDelegatingBundleClassLoader loader = new ResourceDelegatingBundleClassLoader(
+				bundles);
+		assertEquals(a, loader.findResource("x"));
+		assertEquals(a, loader.findResource("x"));
+		verify(bundle);
+
+		reset(bundle);
+		expect(bundle.getState()).andReturn(Bundle.ACTIVE).anyTimes();
+		expect(bundle.adapt(BundleWiring.class)).andReturn(newWiring)
+				.anyTimes();
+		expect(bundle.getResource("x")).andReturn(null).once();
+		replay(bundle);
+
+		assertNull(loader.findResource("x"));
+		verify(bundle);
+	}
+
+	@Test
+	public void cacheStaysValidOnceUninstalledDelegateIsRecorded()
+			throws Exception {
+		URL a = new URL("http://localhost/a");
+		BundleWiring wiring = createMock(BundleWiring.class);
+		Bundle bundle = createMock(Bundle.class);
+		Bundle uninstalled = createMock(Bundle.class);
+		expect(bundle.getState()).andReturn(Bundle.ACTIVE).anyTimes();
+		expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+		expect(bundle.getResource("x")).andReturn(a).once();
+		expect(uninstalled.getState()).andReturn(Bundle.UNINSTALLED)
+				.anyTimes();
+		expect(uninstalled.getResource("x")).andThrow(
+				new IllegalStateException("uninstalled")).anyTimes();
+		replay(wiring, bundle, uninstalled);
+
+		ResourceDelegatingBundleClassLoader loader = new ResourceDelegatingBundleClassLoader(
+				new ArrayList<Bundle>(Arrays.asList(bundle, uninstalled)));
+		for (int i = 0; i < 3; i++) {
+			assertEquals(a, loader.findResource("x"));
+		}
+
+		verify(bundle);
+		assertEquals(1, loader.getCacheMisses());
+		assertEquals(2, loader.getCacheHits());
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class ServletContainerInitializerScannerTest {
+
+	private BundleContext context;
+	private BundleListener listener;
+	private ServletContainerInitializerScanner scanner;
+
+	@Before
+	public void setUp() {
+		context = createMock(BundleContext.class);
+		context.addBundleListener((BundleListener) anyObject());
+		expectLastCall().andAnswer(new IAnswer<Object>() {
+			@Override
+			public Object answer() {
+				listener = (BundleListener) getCurrentArguments()[0];
+				return null;
+			}
+		});
+		context.removeBundleListener((BundleListener) anyObject());
+		Bundle serverBundle = createNiceMock(Bundle.class);
+		expect(serverBundle.getBundleContext()).andReturn(context).anyTimes();
+		replay(serverBundle);
+		scanner = new ServletContainerInitializerScanner(serverBundle);
+	}
+
+	private static Bundle bundle(long id) {
+		BundleWiring wiring = createNiceMock(BundleWiring.class);
+		expect(wiring.isCurrent()).andReturn(true).anyTimes();
+		expect(wiring.isInUse()).andReturn(true).anyTimes();
+		Bundle bundle = createNiceMock(Bundle.class);
+		expect(bundle.getBundleId()).andReturn(id).anyTimes();
+		expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+		replay(wiring, bundle);
+		return bundle;
+	}
+
+	@Test
+	public void resultsOfChangedBundlesAreDropped() {
+		replay(context);
+		scanner.open();
+		Bundle updated = bundle(7);
+		Bundle uninstalled = bundle(8);
+		Bundle started = bundle(9);
+		scanner.scan(updated);
+		scanner.scan(uninstalled);
+		scanner.scan(started);
+		assertEquals(3, scanner.getCachedBundles());
+
+		listener.bundleChanged(
+				new BundleEvent(BundleEvent.UPDATED, updated));
+		listener.bundleChanged(
+				new BundleEvent(BundleEvent.UNINSTALLED, uninstalled));
+		listener.bundleChanged(
+				new BundleEvent(BundleEvent.STARTED, started));
+		assertEquals(1, scanner.getCachedBundles());
+	}
+
+	@Test
+	public void closeStopsListeningAndDropsResults() {
+		replay(context);
+		scanner.open();
+		scanner.scan(bundle(7));
+		assertNotNull(listener);
+
+		scanner.close();
+		assertEquals(0, scanner.getCachedBundles());
+		verify(context);
+	}
+}
@@ -87,6 +87,11 @@ abstract class AbstractServerState implements ServerState {
 		throwIllegalState();
 	}
 
+	@Override
+	public void remapServlet(ServletModel model) {
+		throwIllegalState();
+	}
+
 	@Override
 	public void addEventListener(EventListenerModel eventListenerModel) {
 		throwIllegalState();
@@ -107,6 +112,11 @@ abstract class AbstractServerState implements ServerState {
 		throwIllegalState();
 	}
 
+	@Override
+	public void remapFilter(FilterModel filterModel) {
+		throwIllegalState();
+	}
+
 	@Override
 	public void addErrorPage(ErrorPageModel model) {
 		throwIllegalState();
@@ -119,6 +119,11 @@ class ActiveServerState extends AbstractServerState implements ServerState {
 		serverWrapper.removeServlet(model);
 	}
 
+	@Override
+	public void remapServlet(ServletModel model) {
+		serverWrapper.remapServlet(model);
+	}
+
 	@Override
 	public void removeContext(HttpContext httpContext) {
 		serverWrapper.removeContext(httpContext);
@@ -144,6 +149,11 @@ class ActiveServerState extends AbstractServerState implements ServerState {
 		serverWrapper.removeFilter(filterModel);
 	}
 
+	@Override
+	public void remapFilter(FilterModel filterModel) {
+		serverWrapper.remapFilter(filterModel);
+	}
+
 	@Override
 	public void addEventListener(EventListenerModel eventListenerModel) {
 		serverWrapper.addEventListener(eventListenerModel);
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.CharArrayWriter;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.valves.AbstractAccessLogValve;
+import org.ops4j.pax.web.service.spi.util.AsyncLogWriter;
+
+/**
+ * Access log valve formatting entries on the request thread and handing them
+ * to an {@link AsyncLogWriter}, so the request threads never wait for the log
+ * file.
+ */
+public class AsyncAccessLogValve extends AbstractAccessLogValve {
+
+	private final AsyncLogWriter writer;
+
+	public AsyncAccessLogValve(final AsyncLogWriter writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	protected void log(final CharArrayWriter message) {
+		writer.write(message.toString());
+	}
+
+	@Override
+	protected synchronized void startInternal() throws LifecycleException {
+		writer.start();
+		super.startInternal();
+	}
+
+	@Override
+	protected synchronized void stopInternal() throws LifecycleException {
+		super.stopInternal();
+		writer.stop();
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.IOException;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.ops4j.pax.web.service.spi.util.CompressionConfig;
+
+/**
+ * Narrows the compression done by the connectors for a context. Tomcat
+ * decides about compression when committing the response, based on the
+ * Accept-Encoding header of the request, so the header is removed for
+ * requests that must not be compressed: all requests of a context disabling
+ * compression and requests to excluded paths.
+ */
+public class CompressionValve extends ValveBase {
+
+	private static final String ACCEPT_ENCODING = "accept-encoding";
+
+	/**
+	 * Compression settings of the context, null if disabled.
+	 */
+	private final CompressionConfig compression;
+
+	public CompressionValve(final CompressionConfig compression) {
+		super(true);
+		this.compression = compression;
+	}
+
+	@Override
+	public void invoke(final Request request, final Response response)
+			throws IOException, ServletException {
+		if (request.getDispatcherType() == DispatcherType.REQUEST
+				&& !isCompressed(request)) {
+			request.getCoyoteRequest().getMimeHeaders()
+					.removeHeader(ACCEPT_ENCODING);
+		}
+		getNext().invoke(request, response);
+	}
+
+	private boolean isCompressed(final Request request) {
+		if (compression == null || !compression.isEnabled()) {
+			return false;
+		}
+		final String uri = request.getDecodedRequestURI();
+		final String contextPath = request.getContextPath();
+		return uri == null
+				|| !compression.isExcluded(contextPath != null
+						&& uri.startsWith(contextPath) ? uri
+						.substring(contextPath.length()) : uri);
+	}
+
+}
@@ -5,11 +5,13 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.AccessControlContext;
+import java.security.Principal;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TimeZone;
 
 import javax.servlet.ServletContainerInitializer;
 
@@ -25,14 +27,24 @@ import org.apache.catalina.Valve;
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.core.ContainerBase;
 import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.core.StandardThreadExecutor;
+import org.apache.catalina.session.PersistentManager;
 import org.apache.catalina.startup.Catalina;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.valves.AccessLogValve;
+import org.apache.coyote.AbstractProtocol;
 import org.apache.coyote.http11.Http11NioProtocol;
 import org.apache.coyote.http11.Http11Protocol;
 import org.apache.tomcat.util.digester.Digester;
 import org.ops4j.pax.web.service.spi.Configuration;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetricsCollector;
+import org.ops4j.pax.web.service.spi.session.SessionStoreConfig;
+import org.ops4j.pax.web.service.spi.util.AsyncLogWriter;
+import org.ops4j.pax.web.service.spi.util.CompressionConfig;
+import org.ops4j.pax.web.service.spi.util.CredentialCache;
 import org.ops4j.pax.web.service.spi.model.ContextModel;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -133,6 +145,11 @@ public class EmbeddedTomcat extends Tomcat {
 	private static final Logger LOG = LoggerFactory
 			.getLogger(EmbeddedTomcat.class);
 
+	/**
+	 * Name of the executor configured through the thread pool properties.
+	 */
+	private static final String EXECUTOR_NAME = "paxWebExecutor";
+
 	private File configurationDirectory;
 
 	private Integer configurationSessionTimeout;
@@ -145,6 +162,13 @@ public class EmbeddedTomcat extends Tomcat {
 
 	private String configurationWorkerName;
 
+	private Configuration configuration;
+
+	/**
+	 * Collects the request metrics, null if disabled.
+	 */
+	private RequestMetricsCollector requestMetrics;
+
 	private EmbeddedTomcat() {
 	}
 
@@ -201,6 +225,7 @@ public class EmbeddedTomcat extends Tomcat {
 
 	void configure(Configuration configuration) {
 		long start = System.nanoTime();
+		this.configuration = configuration;
 		initBaseDir(configuration);
 		Digester digester = new FakeCatalina().createStartDigester();
 		digester.push(this);
@@ -268,6 +293,9 @@ public class EmbeddedTomcat extends Tomcat {
 		configurationSessionCookieHttpOnly = configuration
 				.getSessionCookieHttpOnly();
 		configurationWorkerName = configuration.getWorkerName();
+		if (Boolean.TRUE.equals(configuration.isServerRequestMetricsEnabled())) {
+			requestMetrics = new RequestMetricsCollector();
+		}
 
 		for (int i = 0; i < addresses.length; i++) {
 			LOG.debug("Loop {} of {}", i, addresses.length);
@@ -298,7 +326,7 @@ public class EmbeddedTomcat extends Tomcat {
 
 		// NCSA Logger --> AccessLogValve
 		if (configuration.isLogNCSAFormatEnabled()) {
-			AccessLog ncsaLogger = new AccessLogValve();
+			AccessLog ncsaLogger = null;
 			boolean modifiedValve = false;
 			for (Valve valve : getHost().getPipeline().getValves()) {
 				if (valve instanceof AccessLogValve) {
@@ -307,15 +335,20 @@ public class EmbeddedTomcat extends Tomcat {
 				}
 			}
 
-			((AccessLogValve) ncsaLogger).setPattern("common");
-			((AccessLogValve) ncsaLogger).setDirectory(configuration
-					.getLogNCSADirectory());
-			((AccessLogValve) ncsaLogger).setSuffix(".log"); // ncsaLogge
-			if (!modifiedValve) {
-				getHost().getPipeline().addValve((Valve) ncsaLogger);
+			if (!modifiedValve
+					&& Boolean.TRUE.equals(configuration.isLogNCSAAsync())) {
+				getHost().getPipeline().addValve(
+						createAsyncAccessLogValve(configuration));
+			} else {
+				if (ncsaLogger == null) {
+					ncsaLogger = new AccessLogValve();
+				}
+				configureAccessLogValve(configuration,
+						(AccessLogValve) ncsaLogger, modifiedValve);
 			}
 		}
 
+
 		Integer httpPort = configuration.getHttpPort();
 		Boolean useNIO = configuration.useNIO();
 		Integer httpSecurePort = configuration.getHttpSecurePort();
@@ -442,6 +475,152 @@ public class EmbeddedTomcat extends Tomcat {
 				}
 			}
 		}
+
+		configureExecutor(configuration, httpConnector, httpSecureConnector);
+		configureCompression(configuration, httpConnector,
+				httpSecureConnector);
+	}
+
+	private void configureAccessLogValve(Configuration configuration,
+			AccessLogValve ncsaLogger, boolean modifiedValve) {
+		ncsaLogger.setPattern("common");
+		ncsaLogger.setDirectory(configuration.getLogNCSADirectory());
+		ncsaLogger.setSuffix(".log"); // ncsaLogge
+		if (!modifiedValve) {
+			getHost().getPipeline().addValve(ncsaLogger);
+		}
+	}
+
+	/**
+	 * Creates an access log valve handing the log entries to a background
+	 * writer, named by the NCSA log format like the log files of Jetty.
+	 */
+	private Valve createAsyncAccessLogValve(Configuration configuration) {
+		String directory = configuration.getLogNCSADirectory();
+		if (directory == null || directory.isEmpty()) {
+			directory = "./logs/";
+		}
+		String fileName = configuration.getLogNCSAFormat();
+		if (fileName == null || fileName.isEmpty()) {
+			fileName = "access_log." + AsyncLogWriter.DATE_PATTERN + ".log";
+		}
+		final String retainDays = configuration.getLogNCSARetainDays();
+		final String timeZone = configuration.getLogNCSATimeZone();
+		final Integer bufferSize = configuration.getLogNCSABufferSize();
+		LOG.info("NCSA access log is written asynchronously to {}", directory);
+		AsyncAccessLogValve valve = new AsyncAccessLogValve(
+				new AsyncLogWriter(new File(directory), fileName,
+						retainDays != null ? Integer.parseInt(retainDays) : 0,
+						!Boolean.FALSE.equals(configuration.isLogNCSAAppend()),
+						timeZone != null ? TimeZone.getTimeZone(timeZone)
+								: null,
+						bufferSize != null ? bufferSize
+								: AsyncLogWriter.DEFAULT_CAPACITY));
+		valve.setPattern("common");
+		return valve;
+	}
+
+	/**
+	 * Sets up the executor shared by the http and https connectors from the
+	 * thread pool properties of the configuration. Without any of them set,
+	 * the connectors keep their own thread pools.
+	 *
+	 * @param configuration
+	 * @param connectors
+	 *            connectors managed by the configuration, may contain null
+	 */
+	private void configureExecutor(Configuration configuration,
+			Connector... connectors) {
+		final Integer minThreads = configuration.getServerMinThreads();
+		final Integer maxThreads = configuration.getServerMaxThreads();
+		final Integer idleTimeout = configuration.getServerIdleTimeout();
+		final Integer queueSize = configuration.getServerQueueSize();
+		final String filter = configuration.getServerThreadPoolFilter();
+
+		Executor executor = null;
+		if (minThreads != null || maxThreads != null || idleTimeout != null
+				|| queueSize != null || filter != null) {
+			StandardThreadExecutor threadExecutor = new StandardThreadExecutor();
+			threadExecutor.setName(EXECUTOR_NAME);
+			threadExecutor.setNamePrefix("pax-web-");
+			if (maxThreads != null) {
+				threadExecutor.setMaxThreads(maxThreads);
+			}
+			if (minThreads != null) {
+				threadExecutor.setMinSpareThreads(minThreads);
+			}
+			if (idleTimeout != null) {
+				threadExecutor.setMaxIdleTime(idleTimeout);
+			}
+			if (queueSize != null && queueSize > 0) {
+				threadExecutor.setMaxQueueSize(queueSize);
+			}
+			executor = threadExecutor;
+			final Bundle bundle = FrameworkUtil.getBundle(getClass());
+			if (filter != null && bundle != null) {
+				threadExecutor.setName(EXECUTOR_NAME + "Fallback");
+				executor = new ServiceExecutor(EXECUTOR_NAME,
+						bundle.getBundleContext(), filter, threadExecutor);
+			}
+			LOG.debug("Adding executor {}", executor);
+			getService().addExecutor(executor);
+		}
+
+		final Integer acceptors = configuration.getServerAcceptors();
+		final Integer selectors = configuration.getServerSelectors();
+		for (Connector connector : connectors) {
+			if (connector == null) {
+				continue;
+			}
+			if (executor != null
+					&& connector.getProtocolHandler() instanceof AbstractProtocol) {
+				((AbstractProtocol<?>) connector.getProtocolHandler())
+						.setExecutor(executor);
+			}
+			if (acceptors != null) {
+				connector.setProperty("acceptorThreadCount",
+						acceptors.toString());
+			}
+			if (selectors != null) {
+				connector.setProperty("pollerThreadCount",
+						selectors.toString());
+			}
+		}
+	}
+
+	/**
+	 * Enables the compression of the connectors. Tomcat compresses per
+	 * connector, the settings of a context can only narrow it down (see
+	 * {@link CompressionValve}) and the deflate level is not configurable.
+	 *
+	 * @param configuration
+	 * @param connectors
+	 *            connectors managed by the configuration, may contain null
+	 */
+	private void configureCompression(Configuration configuration,
+			Connector... connectors) {
+		if (!Boolean.TRUE.equals(configuration.isCompressionEnabled())) {
+			return;
+		}
+		final CompressionConfig compression = CompressionConfig.create(
+				configuration, null);
+		final StringBuilder mimeTypes = new StringBuilder();
+		for (String mimeType : compression.getMimeTypes()) {
+			if (mimeTypes.length() > 0) {
+				mimeTypes.append(',');
+			}
+			mimeTypes.append(mimeType);
+		}
+		for (Connector connector : connectors) {
+			if (connector == null) {
+				continue;
+			}
+			connector.setProperty("compression", "on");
+			connector.setProperty("compressionMinSize",
+					String.valueOf(compression.getMinSize()));
+			connector.setProperty("compressableMimeType",
+					mimeTypes.toString());
+		}
 	}
 
 	/**
@@ -512,6 +691,14 @@ public class EmbeddedTomcat extends Tomcat {
 		return basedir;
 	}
 
+	Configuration getConfiguration() {
+		return configuration;
+	}
+
+	RequestMetricsCollector getRequestMetrics() {
+		return requestMetrics;
+	}
+
 	public Context findContext(ContextModel contextModel) {
 		String name = generateContextName(contextModel.getContextName(),
 				contextModel.getHttpContext());
@@ -553,6 +740,16 @@ public class EmbeddedTomcat extends Tomcat {
 		// configurationSessionTimeout
 		ctx.setSessionTimeout(configurationSessionTimeout);
 		// configurationWorkerName //TODO: missing
+		final SessionStoreConfig sessionStore = SessionStoreConfig.create(
+				configuration, contextParams);
+		if (sessionStore != null) {
+			// idle sessions are swapped out, sessions are not kept on restart
+			final PersistentManager manager = new PersistentManager();
+			manager.setStore(new TomcatSessionStore(sessionStore, contextName));
+			manager.setMaxIdleSwap(sessionStore.getIdleTime());
+			manager.setSaveOnRestart(false);
+			ctx.setManager(manager);
+		}
 
 		// new OSGi methods
 		((HttpServiceContext) ctx).setHttpContext(httpContext);
@@ -595,10 +792,24 @@ public class EmbeddedTomcat extends Tomcat {
 			host.addChild(ctx);
 		}
 
+		if (requestMetrics != null) {
+			ctx.getPipeline().addValve(
+					new RequestMetricsValve(requestMetrics, contextName));
+		}
+		if (configuration != null
+				&& Boolean.TRUE.equals(configuration.isCompressionEnabled())) {
+			final CompressionConfig compression = CompressionConfig.create(
+					configuration, contextParams);
+			if (compression == null || !compression.isEnabled()
+					|| !compression.getExcludedPaths().isEmpty()) {
+				ctx.getPipeline().addValve(new CompressionValve(compression));
+			}
+		}
 		// Custom Service Valve for checking authentication stuff ...
 		ctx.getPipeline().addValve(new ServiceValve(httpContext));
 		// Custom OSGi Security
-		ctx.getPipeline().addValve(new OSGiAuthenticatorValve(httpContext));
+		ctx.getPipeline().addValve(new OSGiAuthenticatorValve(httpContext,
+				CredentialCache.<Principal> create(configuration, contextParams)));
 
 		// add mimetypes here?
 		// MIME mappings
@@ -6,12 +6,17 @@ package org.ops4j.pax.web.service.tomcat.internal;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -20,7 +25,10 @@ import javax.servlet.ServletContext;
 import org.apache.catalina.Globals;
 import org.apache.catalina.Host;
 import org.apache.catalina.core.ApplicationContext;
+import org.apache.catalina.core.ApplicationFilterConfig;
 import org.apache.catalina.core.StandardContext;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
 import org.ops4j.pax.web.service.WebContainerContext;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
@@ -35,6 +43,41 @@ public class HttpServiceContext extends StandardContext {
 	private static final Logger LOG = LoggerFactory
 			.getLogger(HttpServiceContext.class);
 
+	/**
+	 * Members of {@link StandardContext} and {@link ApplicationFilterConfig}
+	 * needed to start a single filter in a running context, null if not
+	 * accessible.
+	 */
+	private static final Field FILTER_CONFIGS;
+	private static final Constructor<ApplicationFilterConfig> FILTER_CONFIG_CONSTRUCTOR;
+	private static final Method FILTER_CONFIG_RELEASE;
+
+	static {
+		Field filterConfigs = null;
+		Constructor<ApplicationFilterConfig> constructor = null;
+		Method release = null;
+		try {
+			filterConfigs = StandardContext.class
+					.getDeclaredField("filterConfigs");
+			filterConfigs.setAccessible(true);
+			constructor = ApplicationFilterConfig.class.getDeclaredConstructor(
+					org.apache.catalina.Context.class, FilterDef.class);
+			constructor.setAccessible(true);
+			release = ApplicationFilterConfig.class.getDeclaredMethod("release");
+			release.setAccessible(true);
+		} catch (NoSuchFieldException | NoSuchMethodException
+				| SecurityException e) {
+			LOG.info("Filters can't be added to running contexts, these get restarted instead: {}",
+					e.toString());
+			filterConfigs = null;
+			constructor = null;
+			release = null;
+		}
+		FILTER_CONFIGS = filterConfigs;
+		FILTER_CONFIG_CONSTRUCTOR = constructor;
+		FILTER_CONFIG_RELEASE = release;
+	}
+
 	public class ServletApplicationContext extends ApplicationContext {
 
 		public ServletApplicationContext(StandardContext context) {
@@ -221,4 +264,116 @@ public class HttpServiceContext extends StandardContext {
 		return super.getServletContext();
 	}
 
+	/**
+	 * Adds a filter to this context while it is running. The filter gets
+	 * initialized first and only receives requests once its mapping got added,
+	 * so requests either see the former filter chain or the complete new one.
+	 * A filter started before under the same name is released.
+	 * <p>
+	 * Request threads read the filter configs of the context without locking,
+	 * so these are never changed in place: a copy holding the new filter
+	 * replaces them while holding the lock {@link StandardContext} uses.
+	 *
+	 * @param filterDef
+	 *            definition of the filter, holding either the filter instance
+	 *            or the name of its class, which is then created through the
+	 *            instance manager of the context
+	 * @param filterMap
+	 *            mapping of the filter, added before the other mappings
+	 * @return false if the filter could not be added without a restart
+	 */
+	public boolean addFilterLive(final FilterDef filterDef,
+			final FilterMap filterMap) {
+		if (FILTER_CONFIGS == null || !getState().isAvailable()) {
+			return false;
+		}
+		addFilterDef(filterDef);
+		final ApplicationFilterConfig filterConfig;
+		try {
+			filterConfig = FILTER_CONFIG_CONSTRUCTOR.newInstance(this,
+					filterDef);
+		} catch (InstantiationException | IllegalAccessException
+				| IllegalArgumentException | InvocationTargetException e) {
+			LOG.warn("Unable to start filter {} in running context {}",
+					new Object[] { filterDef.getFilterName(), getName(), e });
+			removeFilterDef(filterDef);
+			return false;
+		}
+		final ApplicationFilterConfig replaced = swapFilterConfig(
+				filterDef.getFilterName(), filterConfig);
+		addFilterMapBefore(filterMap);
+		if (replaced != null) {
+			release(filterDef.getFilterName(), replaced);
+		}
+		return true;
+	}
+
+	/**
+	 * Destroys a filter started while the context was running or with the
+	 * context. Its definition and mappings are expected to be removed already.
+	 *
+	 * @param filterName
+	 *            name of the filter
+	 */
+	public void releaseFilter(final String filterName) {
+		if (FILTER_CONFIGS == null) {
+			return;
+		}
+		final ApplicationFilterConfig filterConfig = swapFilterConfig(
+				filterName, null);
+		if (filterConfig != null) {
+			release(filterName, filterConfig);
+		}
+	}
+
+	/**
+	 * Replaces the filter configs by a copy with the given filter config.
+	 *
+	 * @param filterConfig
+	 *            new filter config, null to remove the one of the filter
+	 * @return the filter config replaced or removed, null if none
+	 */
+	private ApplicationFilterConfig swapFilterConfig(final String filterName,
+			final ApplicationFilterConfig filterConfig) {
+		while (true) {
+			final HashMap<String, ApplicationFilterConfig> filterConfigs = getFilterConfigs();
+			synchronized (filterConfigs) {
+				if (getFilterConfigs() != filterConfigs) {
+					// replaced meanwhile, lock the current ones
+					continue;
+				}
+				final HashMap<String, ApplicationFilterConfig> copy = new HashMap<String, ApplicationFilterConfig>(
+						filterConfigs);
+				final ApplicationFilterConfig former = filterConfig == null ? copy
+						.remove(filterName) : copy.put(filterName, filterConfig);
+				try {
+					FILTER_CONFIGS.set(this, copy);
+				} catch (IllegalAccessException e) {
+					throw new IllegalStateException(e);
+				}
+				return former;
+			}
+		}
+	}
+
+	private static void release(final String filterName,
+			final ApplicationFilterConfig filterConfig) {
+		try {
+			FILTER_CONFIG_RELEASE.invoke(filterConfig);
+		} catch (IllegalAccessException | IllegalArgumentException
+				| InvocationTargetException e) {
+			LOG.warn("Unable to release filter {}", filterName, e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private HashMap<String, ApplicationFilterConfig> getFilterConfigs() {
+		try {
+			return (HashMap<String, ApplicationFilterConfig>) FILTER_CONFIGS
+					.get(this);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 }
@@ -42,6 +42,7 @@ import org.apache.tomcat.util.codec.binary.Base64;
 import org.apache.tomcat.util.descriptor.web.LoginConfig;
 import org.apache.tomcat.util.descriptor.web.SecurityConstraint;
 import org.apache.tomcat.util.http.FastHttpDateFormat;
+import org.ops4j.pax.web.service.spi.util.CredentialCache;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,8 +66,19 @@ public class OSGiAuthenticatorValve extends AuthenticatorBase {
 
 	private final HttpContext httpContext;
 
+	/**
+	 * Principals of the verified credentials, null if they are not cached.
+	 */
+	private final CredentialCache<Principal> credentialCache;
+
 	public OSGiAuthenticatorValve(HttpContext httpContext) {
+		this(httpContext, null);
+	}
+
+	public OSGiAuthenticatorValve(HttpContext httpContext,
+			CredentialCache<Principal> credentialCache) {
 		this.httpContext = httpContext;
+		this.credentialCache = credentialCache;
 	}
 
 	@Override
@@ -324,7 +336,15 @@ public class OSGiAuthenticatorValve extends AuthenticatorBase {
 				String username = credentials.getUsername();
 				String password = credentials.getPassword();
 
-				principal = context.getRealm().authenticate(username, password);
+				principal = credentialCache == null ? null : credentialCache
+						.get(username, password);
+				if (principal == null) {
+					principal = context.getRealm().authenticate(username,
+							password);
+					if (principal != null && credentialCache != null) {
+						credentialCache.put(username, password, principal);
+					}
+				}
 				if (principal != null) {
 					register(request, response, principal,
 							HttpServletRequest.BASIC_AUTH, username, password);
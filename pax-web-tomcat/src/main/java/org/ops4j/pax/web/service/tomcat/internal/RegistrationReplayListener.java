@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+
+/**
+ * Registers filters and servlets of the http service again when their context
+ * gets (re)started, as stopping a context drops its servlets and filter
+ * registrations made through the servlet context.
+ * <p>
+ * There is one listener per context holding the registrations by name, so
+ * registering a filter or servlet once more replaces the former registration
+ * instead of adding another listener, and removed filters and servlets are
+ * not brought back by a later restart.
+ */
+class RegistrationReplayListener implements LifecycleListener {
+
+	private final Map<String, Runnable> filters = new LinkedHashMap<String, Runnable>();
+	private final Map<String, Runnable> servletsBeforeStart = new LinkedHashMap<String, Runnable>();
+	private final Map<String, Runnable> servletsAfterStart = new LinkedHashMap<String, Runnable>();
+
+	private RegistrationReplayListener() {
+	}
+
+	/**
+	 * Looks up the listener of a context, adding one if missing.
+	 */
+	static RegistrationReplayListener get(final Context context) {
+		synchronized (context) {
+			for (LifecycleListener listener : context.findLifecycleListeners()) {
+				if (listener instanceof RegistrationReplayListener) {
+					return (RegistrationReplayListener) listener;
+				}
+			}
+			final RegistrationReplayListener listener = new RegistrationReplayListener();
+			context.addLifecycleListener(listener);
+			return listener;
+		}
+	}
+
+	/**
+	 * Sets the task registering a filter before the context starts.
+	 */
+	synchronized void putFilter(final String name, final Runnable registration) {
+		filters.put(name, registration);
+	}
+
+	synchronized void removeFilter(final String name) {
+		filters.remove(name);
+	}
+
+	/**
+	 * Sets the task registering a servlet, run before or after the context
+	 * starts depending on the event type.
+	 *
+	 * @param eventType
+	 *            {@link Lifecycle#BEFORE_START_EVENT} or
+	 *            {@link Lifecycle#AFTER_START_EVENT}
+	 */
+	synchronized void putServlet(final String name, final String eventType,
+			final Runnable registration) {
+		removeServlet(name);
+		if (Lifecycle.BEFORE_START_EVENT.equals(eventType)) {
+			servletsBeforeStart.put(name, registration);
+		} else {
+			servletsAfterStart.put(name, registration);
+		}
+	}
+
+	synchronized void removeServlet(final String name) {
+		servletsBeforeStart.remove(name);
+		servletsAfterStart.remove(name);
+	}
+
+	@Override
+	public void lifecycleEvent(final LifecycleEvent event) {
+		final List<Runnable> registrations;
+		synchronized (this) {
+			if (Lifecycle.BEFORE_START_EVENT.equals(event.getType())) {
+				registrations = new ArrayList<Runnable>(filters.values());
+				registrations.addAll(servletsBeforeStart.values());
+			} else if (Lifecycle.AFTER_START_EVENT.equals(event.getType())) {
+				registrations = new ArrayList<Runnable>(
+						servletsAfterStart.values());
+			} else {
+				return;
+			}
+		}
+		for (Runnable registration : registrations) {
+			registration.run();
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.IOException;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetrics;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetricsCollector;
+import org.ops4j.pax.web.service.spi.metrics.RequestMetricsListener;
+
+/**
+ * Records the request metrics of a context and the servlets it maps requests
+ * to.
+ */
+public class RequestMetricsValve extends ValveBase {
+
+	private final RequestMetricsCollector requestMetrics;
+	private final String contextName;
+
+	public RequestMetricsValve(final RequestMetricsCollector requestMetrics,
+			final String contextName) {
+		super(true);
+		this.requestMetrics = requestMetrics;
+		this.contextName = contextName;
+	}
+
+	/**
+	 * Drops the metrics of the context and its servlets once the context got
+	 * removed.
+	 */
+	void removeMetrics() {
+		requestMetrics.removeContextMetrics(contextName);
+	}
+
+	@Override
+	public void invoke(final Request request, final Response response)
+			throws IOException, ServletException {
+		// asynchronous dispatches belong to the initial request
+		if (request.getDispatcherType() != DispatcherType.REQUEST) {
+			getNext().invoke(request, response);
+			return;
+		}
+		final RequestMetrics contextMetrics = requestMetrics
+				.contextMetrics(contextName);
+		final Wrapper wrapper = request.getWrapper();
+		final RequestMetrics servletMetrics = wrapper != null ? requestMetrics
+				.servletMetrics(contextName, wrapper.getName()) : null;
+		final long contextStart = contextMetrics.requestStarted();
+		final long servletStart = servletMetrics != null ? servletMetrics
+				.requestStarted() : 0;
+		boolean failed = true;
+		try {
+			getNext().invoke(request, response);
+			failed = false;
+		} finally {
+			if (servletMetrics != null) {
+				RequestMetricsListener.requestHandled(servletMetrics,
+						servletStart, request, response, failed);
+			}
+			RequestMetricsListener.requestHandled(contextMetrics,
+					contextStart, request, response, failed);
+		}
+	}
+
+}
@@ -36,6 +36,8 @@ interface ServerState {
 
 	void removeServlet(ServletModel model);
 
+	void remapServlet(ServletModel model);
+
 	void addEventListener(EventListenerModel eventListenerModel);
 
 	void removeEventListener(EventListenerModel eventListenerModel);
@@ -44,6 +46,8 @@ interface ServerState {
 
 	void removeFilter(FilterModel filterModel);
 
+	void remapFilter(FilterModel filterModel);
+
 	void addErrorPage(ErrorPageModel model);
 
 	void removeErrorPage(ErrorPageModel model);
@@ -41,6 +41,8 @@ public interface ServerWrapper {
 
 	void removeServlet(ServletModel model);
 
+	void remapServlet(ServletModel model);
+
 	void removeContext(HttpContext httpContext);
 
 	void addErrorPage(ErrorPageModel model);
@@ -51,6 +53,8 @@ public interface ServerWrapper {
 
 	void removeFilter(FilterModel filterModel);
 
+	void remapFilter(FilterModel filterModel);
+
 	void addEventListener(EventListenerModel eventListenerModel);
 
 	void removeEventListener(EventListenerModel eventListenerModel);
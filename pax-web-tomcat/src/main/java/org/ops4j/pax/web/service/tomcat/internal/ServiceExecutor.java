@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.catalina.Executor;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.core.StandardThreadExecutor;
+import org.apache.catalina.util.LifecycleMBeanBase;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connector executor running the tasks of Tomcat on a
+ * {@link java.util.concurrent.Executor} published as OSGi service. The service
+ * is looked up when the executor starts and released when it stops, without
+ * being shut down. If no matching service is available, a
+ * {@link StandardThreadExecutor} is used instead.
+ */
+class ServiceExecutor extends LifecycleMBeanBase implements Executor {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(ServiceExecutor.class);
+
+	private final String name;
+	private final BundleContext bundleContext;
+	private final String filter;
+	private final StandardThreadExecutor fallback;
+	private final AtomicLong rejectedTasks = new AtomicLong();
+
+	private ServiceReference<?> reference;
+	private volatile java.util.concurrent.Executor executor;
+
+	/**
+	 * @param name
+	 *            name of the executor referred to by connectors
+	 * @param bundleContext
+	 *            context used to look up the executor
+	 * @param filter
+	 *            filter selecting the executor service
+	 * @param fallback
+	 *            executor used if no executor service is found
+	 */
+	ServiceExecutor(final String name, final BundleContext bundleContext,
+			final String filter, final StandardThreadExecutor fallback) {
+		this.name = name;
+		this.bundleContext = bundleContext;
+		this.filter = filter;
+		this.fallback = fallback;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	protected void startInternal() throws LifecycleException {
+		final ServiceReference<?>[] references;
+		try {
+			references = bundleContext.getServiceReferences((String) null,
+					filter);
+		} catch (InvalidSyntaxException e) {
+			throw new LifecycleException("Invalid executor service filter "
+					+ filter, e);
+		}
+		if (references != null) {
+			// highest ranking first
+			Arrays.sort(references);
+			for (int i = references.length - 1; i >= 0 && executor == null; i--) {
+				final Object service = bundleContext.getService(references[i]);
+				if (service instanceof java.util.concurrent.Executor) {
+					reference = references[i];
+					executor = (java.util.concurrent.Executor) service;
+				} else if (service != null) {
+					bundleContext.ungetService(references[i]);
+				}
+			}
+		}
+		if (executor == null) {
+			LOG.warn("No executor service found matching {}, using a thread pool of the server",
+					filter);
+			fallback.start();
+			executor = fallback;
+		} else {
+			LOG.info("Using executor service {} as connector executor",
+					executor);
+		}
+		setState(LifecycleState.STARTING);
+	}
+
+	@Override
+	protected void stopInternal() throws LifecycleException {
+		setState(LifecycleState.STOPPING);
+		final java.util.concurrent.Executor stopped = executor;
+		executor = null;
+		if (stopped == fallback) {
+			fallback.stop();
+		} else if (reference != null) {
+			bundleContext.ungetService(reference);
+			reference = null;
+		}
+	}
+
+	@Override
+	protected void destroyInternal() throws LifecycleException {
+		fallback.destroy();
+		super.destroyInternal();
+	}
+
+	@Override
+	public void execute(final Runnable command, final long timeout,
+			final TimeUnit unit) {
+		final java.util.concurrent.Executor current = executor;
+		if (current instanceof Executor) {
+			try {
+				((Executor) current).execute(command, timeout, unit);
+			} catch (RejectedExecutionException e) {
+				rejectedTasks.incrementAndGet();
+				throw e;
+			}
+		} else {
+			execute(command);
+		}
+	}
+
+	@Override
+	public void execute(final Runnable command) {
+		final java.util.concurrent.Executor current = executor;
+		if (current == null) {
+			rejectedTasks.incrementAndGet();
+			throw new RejectedExecutionException("Executor is not started");
+		}
+		try {
+			current.execute(command);
+		} catch (RejectedExecutionException e) {
+			rejectedTasks.incrementAndGet();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return number of threads running a task, -1 if unknown
+	 */
+	public int getActiveCount() {
+		final java.util.concurrent.Executor current = executor;
+		if (current instanceof StandardThreadExecutor) {
+			return ((StandardThreadExecutor) current).getActiveCount();
+		}
+		if (current instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) current).getActiveCount();
+		}
+		return -1;
+	}
+
+	/**
+	 * @return total number of threads, -1 if unknown
+	 */
+	public int getPoolSize() {
+		final java.util.concurrent.Executor current = executor;
+		if (current instanceof StandardThreadExecutor) {
+			return ((StandardThreadExecutor) current).getPoolSize();
+		}
+		if (current instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) current).getPoolSize();
+		}
+		return -1;
+	}
+
+	/**
+	 * @return number of tasks waiting for a thread, -1 if unknown
+	 */
+	public int getQueueSize() {
+		final java.util.concurrent.Executor current = executor;
+		if (current instanceof StandardThreadExecutor) {
+			return ((StandardThreadExecutor) current).getQueueSize();
+		}
+		if (current instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) current).getQueue().size();
+		}
+		return -1;
+	}
+
+	/**
+	 * @return number of tasks the executor did not accept
+	 */
+	public long getRejectedTasks() {
+		return rejectedTasks.get();
+	}
+
+	@Override
+	protected String getDomainInternal() {
+		return null;
+	}
+
+	@Override
+	protected String getObjectNameKeyProperties() {
+		return "type=Executor,name=" + name;
+	}
+
+	@Override
+	public String toString() {
+		return "ServiceExecutor[" + name + "," + filter + "]";
+	}
+}
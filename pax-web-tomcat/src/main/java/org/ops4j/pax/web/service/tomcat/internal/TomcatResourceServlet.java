@@ -1,62 +1,112 @@
 package org.ops4j.pax.web.service.tomcat.internal;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.regex.Matcher;
+import java.net.URLConnection;
+import java.util.Arrays;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
-import javax.servlet.ServletResponse;
-import javax.servlet.ServletResponseWrapper;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.catalina.Globals;
+import org.apache.catalina.connector.RequestFacade;
 import org.apache.catalina.connector.ResponseFacade;
+import org.ops4j.pax.web.service.spi.util.CachedResource;
+import org.ops4j.pax.web.service.spi.util.CachedResourceWriter;
+import org.ops4j.pax.web.service.spi.util.CompressionConfig;
+import org.ops4j.pax.web.service.spi.util.ContentEncoding;
+import org.ops4j.pax.web.service.spi.util.Path;
+import org.ops4j.pax.web.service.spi.util.ResourceCache;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * can be based on org.apache.catalina.servlets.DefaultServlet
- * 
+ *
  * @author Romain Gilles Date: 7/26/12 Time: 10:41 AM
  */
 public class TomcatResourceServlet extends HttpServlet {
 	/**
-     * 
+     *
      */
 	private static final long serialVersionUID = 1L;
 
 	private static final Logger LOG = LoggerFactory
 			.getLogger(TomcatResourceServlet.class);
 
+	private static final int SECOND = 1000;
+
 	// header constants
-	private static final String IF_NONE_MATCH = "If-None-Match";
-	private static final String IF_MATCH = "If-Match";
 	private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
-	private static final String IF_RANGE = "If-Range";
-	private static final String IF_UNMODIFIED_SINCE = "If-Unmodified-Since";
-	private static final String KEEP_ALIVE = "Keep-Alive";
-
-	private static final String ETAG = "ETag";
+	private static final String LAST_MODIFIED = "Last-Modified";
+	private static final String ACCEPT_ENCODING = "Accept-Encoding";
+	private static final String CONTENT_ENCODING = "Content-Encoding";
+	private static final String VARY = "Vary";
 
 	/**
 	 * The input buffer size to use when serving resources.
 	 */
-	protected int input = 2048;
+	protected int input = CachedResourceWriter.DEFAULT_BUFFER_SIZE;
 
 	private final HttpContext httpContext;
 	private final String contextName;
 	private final String alias;
 	private final String name;
+	/**
+	 * Alias and name rewriting of request uris, computed once.
+	 */
+	private final boolean aliasIsContext;
+	private final boolean defaultName;
+	/**
+	 * Content cache, null if caching is disabled.
+	 */
+	private final ResourceCache cache;
+	private final CachedResourceWriter cachedResourceWriter;
+	/**
+	 * Compression settings of the context, null if disabled.
+	 */
+	private final CompressionConfig compression;
+	/**
+	 * Codings of the precompressed siblings served, in order of preference.
+	 */
+	private final ContentEncoding[] encodings;
 
 	public TomcatResourceServlet(final HttpContext httpContext,
 			final String contextName, final String alias, final String name) {
+		this(httpContext, contextName, alias, name, null, null);
+	}
+
+	public TomcatResourceServlet(final HttpContext httpContext,
+			final String contextName, final String alias, final String name,
+			final ResourceCache cache, final Integer bufferSize) {
+		this(httpContext, contextName, alias, name, cache, bufferSize, null,
+				false);
+	}
+
+	/**
+	 * @param compression
+	 *            compression settings of the context, null if disabled
+	 * @param connectorCompression
+	 *            if the connectors compress responses, which only recognize
+	 *            gzip as existing coding so brotli siblings are not served
+	 */
+	public TomcatResourceServlet(final HttpContext httpContext,
+			final String contextName, final String alias, final String name,
+			final ResourceCache cache, final Integer bufferSize,
+			final CompressionConfig compression,
+			final boolean connectorCompression) {
 		this.httpContext = httpContext;
+		this.compression = compression;
+		this.encodings = connectorCompression ? new ContentEncoding[] { ContentEncoding.GZIP }
+				: ContentEncoding.values();
 		this.contextName = "/" + contextName;
 		this.alias = alias;
 		if ("/".equals(name)) {
@@ -64,6 +114,27 @@ public class TomcatResourceServlet extends HttpServlet {
 		} else {
 			this.name = name;
 		}
+		this.aliasIsContext = this.contextName.equals(alias);
+		this.defaultName = "default".equalsIgnoreCase(this.name);
+		this.cache = cache;
+		if (bufferSize != null && bufferSize > 0) {
+			this.input = bufferSize;
+		}
+		this.cachedResourceWriter = new TomcatCachedResourceWriter(input);
+	}
+
+	/**
+	 * Maps a request uri to the name of the resource in the http context,
+	 * replacing the context name and the alias literally.
+	 */
+	private String mapRequestUri(final String requestUri) {
+		if (aliasIsContext) {
+			// special handling since resouceServlet has default name
+			// attached to it
+			return defaultName ? requestUri : name + requestUri;
+		}
+		final String mapping = Path.replaceFirst(requestUri, contextName, "/");
+		return defaultName ? mapping : Path.replaceFirst(mapping, alias, name);
 	}
 
 	@Override
@@ -85,29 +156,25 @@ public class TomcatResourceServlet extends HttpServlet {
 				servletPath = request.getServletPath();
 				pathInfo = request.getPathInfo();
 			}
+			mapping = pathInfo == null ? servletPath : servletPath + pathInfo;
 		} else {
 			included = Boolean.FALSE;
-			if (contextName.equals(alias)) {
-				// special handling since resouceServlet has default name
-				// attached to it
-				if (!"default".equalsIgnoreCase(name)) {
-					mapping = name + request.getRequestURI();
-				} else {
-					mapping = request.getRequestURI();
-				}
-			} else {
-				mapping = request.getRequestURI()
-						.replaceFirst(contextName, "/");
-				if (!"default".equalsIgnoreCase(name)) {
-					mapping = mapping.replaceFirst(alias,
-							Matcher.quoteReplacement(name)); // TODO
-				}
+			mapping = mapRequestUri(request.getRequestURI());
+		}
+
+		// cached content is served without asking the http context again
+		if (cache != null && mapping != null) {
+			final CachedResource cached = cache.get(mapping);
+			if (cached != null && !cached.isStale()) {
+				cachedResourceWriter.write(request, response, cached);
+				return;
 			}
 		}
 
+		final long generation = cache == null ? 0 : cache.getGeneration();
 		final URL url = httpContext.getResource(mapping);
 
-		if (url == null 
+		if (url == null
 				|| (url != null && "//".equals(mapping) && "bundleentry".equalsIgnoreCase(url.getProtocol()) )
 				|| (url != null && "/".equals(mapping)) && "bundleentry".equalsIgnoreCase(url.getProtocol()) ) {
 			if (!response.isCommitted()) {
@@ -115,86 +182,225 @@ public class TomcatResourceServlet extends HttpServlet {
 			}
 			return;
 		}
-		if ("file".equalsIgnoreCase(url.getProtocol())) {
-			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+
+		final File file = CachedResource.toFile(url);
+		if (file != null) {
+			serveFile(request, response, mapping, url, file);
 			return;
 		}
 
-		// For Performanceimprovements turn caching on
-
+		final URLConnection connection;
+		final InputStream in;
 		try {
-			// new Resource(url.openStream());
-			url.openStream();
+			connection = url.openConnection();
+			in = connection.getInputStream();
 		} catch (IOException ioex) {
 			response.sendError(HttpServletResponse.SC_NOT_FOUND);
 			return;
 		}
-		// if the request contains an etag and its the same for the
-		// resource, we deliver a NOT MODIFIED response
+		final String mimeType = getMimeType(mapping, url, connection);
+		final long length = connection.getContentLengthLong();
 
-		// TODO: add lastModified, probably need to use the caching of the
-		// DefaultServlet ...
-		// set the etag
-		// response.setHeader(ETAG, eTag);
-		// String mimeType = m_httpContext.getMimeType(mapping);
-		String mimeType = getServletContext().getMimeType(url.getFile());
-		/*
-		 * No Fallback if (mimeType == null) { Buffer mimeTypeBuf =
-		 * mimeTypes.getMimeByExtension(mapping); mimeType = mimeTypeBuf != null
-		 * ? mimeTypeBuf.toString() : null; }
-		 */
+		if (cache != null && cache.accepts(length)) {
+			final CachedResource resource = CachedResource.load(url, in,
+					(int) length, connection.getLastModified(), mimeType,
+					cache.isDirect(),
+					getPrecompressed(mapping, ContentEncoding.GZIP),
+					getPrecompressed(mapping, ContentEncoding.BROTLI));
+			cache.put(mapping, resource, generation);
+			cachedResourceWriter.write(request, response, resource);
+			return;
+		}
 
-		if (mimeType == null) {
+		// too big to be cached, stream it or its precompressed sibling
+		final Variant variant = selectPrecompressed(request, mapping);
+		if (variant != null) {
 			try {
-				if (url != null && url.openConnection() != null) {
-					mimeType = url.openConnection().getContentType();
-				}
+				in.close();
 			} catch (IOException ignore) {
-				// we do not care about such an exception as the fact that
-				// we are using also the connection for
-				// finding the mime type is just a "nice to have" not an
-				// requirement
-			} catch (NullPointerException npe) {
-				// IGNORE
+				// the sibling is served instead
 			}
+			streamVariant(request, response, mimeType, variant);
+			return;
 		}
+		try {
+			final long lastModified = connection.getLastModified();
+			if (lastModified > 0) {
+				final long ifModifiedSince = request
+						.getDateHeader(IF_MODIFIED_SINCE);
+				if (ifModifiedSince != -1
+						&& lastModified / SECOND <= ifModifiedSince / SECOND) {
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					return;
+				}
+				response.setDateHeader(LAST_MODIFIED, lastModified);
+			}
+			if (mimeType != null) {
+				response.setContentType(mimeType);
+			}
+			if (length >= 0) {
+				response.setContentLengthLong(length);
+			}
 
-		if (mimeType == null) {
-			ServletContext servletContext = getServletConfig()
-					.getServletContext();
-			mimeType = servletContext.getMimeType(mapping);
-		}
+			ServletOutputStream out = response.getOutputStream();
+			if (out != null) { // null should be just in unit testing
+				IOException ioException = copyRange(in, out);
 
-		if (mimeType != null) {
-			response.setContentType(mimeType);
+				if (ioException != null) {
+					LOG.debug("Failed to serve {}", url, ioException);
+					if (!response.isCommitted()) {
+						response.sendError(HttpServletResponse.SC_NOT_FOUND);
+					}
+				}
+			}
+		} finally {
+			in.close();
 		}
+	}
 
-		ServletOutputStream out = response.getOutputStream();
-		if (out != null) { // null should be just in unit testing
-			ServletResponse r = response;
-			while (r instanceof ServletResponseWrapper) {
-				r = ((ServletResponseWrapper) r).getResponse();
-			}
-			if (r instanceof ResponseFacade) {
-				((ResponseFacade) r).getContentWritten();
+	/**
+	 * Serves a resource backed by the file system. Directories are never
+	 * served, small files are cached in memory and others are left on disk so
+	 * they can be handed over to the connector.
+	 */
+	private void serveFile(final HttpServletRequest request,
+			final HttpServletResponse response, final String mapping,
+			final URL url, final File file) throws IOException {
+		if (file.isDirectory()) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+		if (!file.canRead()) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		final String mimeType = getMimeType(mapping, url, null);
+		final CachedResource resource;
+		if (cache != null && cache.accepts(file.length())) {
+			resource = CachedResource.load(url, url.openConnection(),
+					mimeType, cache.isDirect(),
+					getPrecompressed(mapping, ContentEncoding.GZIP),
+					getPrecompressed(mapping, ContentEncoding.BROTLI));
+		} else {
+			final Variant variant = selectPrecompressed(request, mapping);
+			final File variantFile = variant == null ? null : CachedResource
+					.toFile(variant.url);
+			if (variantFile != null && variantFile.isFile()) {
+				// served as is, the cache keeps the uncompressed resource
+				response.addHeader(VARY, ACCEPT_ENCODING);
+				response.setHeader(CONTENT_ENCODING,
+						variant.encoding.getName());
+				cachedResourceWriter.write(request, response, CachedResource
+						.forFile(variant.url, variantFile, mimeType));
+				return;
 			}
+			resource = CachedResource.forFile(url, file, mimeType);
+		}
+		if (cache != null) {
+			cache.put(mapping, resource);
+		}
+		cachedResourceWriter.write(request, response, resource);
+	}
 
-			IOException ioException = copyRange(url.openStream(), out);
+	/**
+	 * Looks up a precompressed sibling of a resource.
+	 *
+	 * @return url of the sibling or null if there is none or precompressed
+	 *         resources are disabled
+	 */
+	private URL getPrecompressed(final String mapping,
+			final ContentEncoding encoding) {
+		if (compression == null || !compression.isPrecompressed()
+				|| !Arrays.asList(encodings).contains(encoding)) {
+			return null;
+		}
+		return httpContext.getResource(mapping + encoding.getExtension());
+	}
 
-			if (ioException != null) {
-				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+	/**
+	 * Selects the precompressed sibling preferred by the client.
+	 *
+	 * @return the sibling or null if the client accepts none of them
+	 */
+	private Variant selectPrecompressed(final HttpServletRequest request,
+			final String mapping) {
+		final String acceptEncoding = request.getHeader(ACCEPT_ENCODING);
+		for (ContentEncoding encoding : encodings) {
+			if (encoding.isAcceptedBy(acceptEncoding)) {
+				final URL url = getPrecompressed(mapping, encoding);
+				if (url != null) {
+					return new Variant(url, encoding);
+				}
+			}
+		}
+		return null;
+	}
+
+	private void streamVariant(final HttpServletRequest request,
+			final HttpServletResponse response, final String mimeType,
+			final Variant variant) throws IOException {
+		final URLConnection connection = variant.url.openConnection();
+		final InputStream in = connection.getInputStream();
+		try {
+			final String eTag = "\"" + Long.toHexString(connection.getLastModified())
+					+ "-" + variant.encoding.getName() + "\"";
+			response.addHeader(VARY, ACCEPT_ENCODING);
+			if (eTag.equals(request.getHeader("If-None-Match"))) {
+				response.setHeader("ETag", eTag);
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
 				return;
 			}
+			response.setHeader("ETag", eTag);
+			response.setHeader(CONTENT_ENCODING, variant.encoding.getName());
+			if (mimeType != null) {
+				response.setContentType(mimeType);
+			}
+			final long length = connection.getContentLengthLong();
+			if (length >= 0) {
+				response.setContentLengthLong(length);
+			}
+			final ServletOutputStream out = response.getOutputStream();
+			if (out != null) { // null should be just in unit testing
+				final IOException ioException = copyRange(in, out);
+				if (ioException != null) {
+					LOG.debug("Failed to serve {}", variant.url, ioException);
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @param connection
+	 *            opened connection to the resource, null for files
+	 */
+	private String getMimeType(final String mapping, final URL url,
+			final URLConnection connection) {
+		String mimeType = getServletContext().getMimeType(url.getFile());
 
+		if (mimeType == null) {
+			if (connection != null) {
+				mimeType = connection.getContentType();
+			} else {
+				mimeType = URLConnection.guessContentTypeFromName(url
+						.getFile());
+			}
 		}
 
+		if (mimeType == null) {
+			ServletContext servletContext = getServletConfig()
+					.getServletContext();
+			mimeType = servletContext.getMimeType(mapping);
+		}
+		return mimeType;
 	}
 
 	/**
 	 * Copy the contents of the specified input stream to the specified output
 	 * stream, and ensure that both streams are closed before returning (even in
 	 * the face of an exception).
-	 * 
+	 *
 	 * @param istream
 	 *            The input stream to read from
 	 * @param ostream
@@ -229,4 +435,56 @@ public class TomcatResourceServlet extends HttpServlet {
 		return exception;
 
 	}
+
+	/**
+	 * Precompressed sibling of a resource.
+	 */
+	private static final class Variant {
+
+		private final URL url;
+		private final ContentEncoding encoding;
+
+		private Variant(final URL url, final ContentEncoding encoding) {
+			this.url = url;
+			this.encoding = encoding;
+		}
+	}
+
+	/**
+	 * Hands big files over to the connector through sendfile when the
+	 * connector supports it, as org.apache.catalina.servlets.DefaultServlet
+	 * does.
+	 */
+	private static final class TomcatCachedResourceWriter extends
+			CachedResourceWriter {
+
+		/**
+		 * Minimum file size for sendfile, as in DefaultServlet.
+		 */
+		private static final long SENDFILE_SIZE = 48 * 1024;
+
+		private TomcatCachedResourceWriter(final int bufferSize) {
+			super(bufferSize);
+		}
+
+		@Override
+		protected void sendFile(final HttpServletRequest request,
+				final HttpServletResponse response, final File file,
+				final long offset, final long length) throws IOException {
+			if (length >= SENDFILE_SIZE
+					&& Boolean.TRUE.equals(request
+							.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR))
+					&& request instanceof RequestFacade
+					&& response instanceof ResponseFacade) {
+				request.setAttribute(Globals.SENDFILE_FILENAME_ATTR,
+						file.getAbsolutePath());
+				request.setAttribute(Globals.SENDFILE_FILE_START_ATTR,
+						Long.valueOf(offset));
+				request.setAttribute(Globals.SENDFILE_FILE_END_ATTR,
+						Long.valueOf(offset + length));
+				return;
+			}
+			super.sendFile(request, response, file, offset, length);
+		}
+	}
 }
@@ -104,6 +104,11 @@ class TomcatServerController implements ServerController {
 		serverState.removeServlet(model);
 	}
 
+	@Override
+	public void remapServlet(ServletModel model) {
+		serverState.remapServlet(model);
+	}
+
 	@Override
 	public void addEventListener(EventListenerModel eventListenerModel) {
 		serverState.addEventListener(eventListenerModel);
@@ -124,6 +129,11 @@ class TomcatServerController implements ServerController {
 		serverState.removeFilter(filterModel);
 	}
 
+	@Override
+	public void remapFilter(FilterModel filterModel) {
+		serverState.remapFilter(filterModel);
+	}
+
 	@Override
 	public void addErrorPage(ErrorPageModel model) {
 		serverState.addErrorPage(model);
@@ -22,9 +22,11 @@ import java.util.Dictionary;
 import java.util.EnumSet;
 import java.util.EventListener;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -32,6 +34,7 @@ import javax.servlet.DispatcherType;
 import javax.servlet.FilterRegistration;
 import javax.servlet.FilterRegistration.Dynamic;
 import javax.servlet.Servlet;
+import javax.servlet.ServletContainerInitializer;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextAttributeListener;
 import javax.servlet.ServletContextListener;
@@ -52,6 +55,7 @@ import org.apache.catalina.LifecycleEvent;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleListener;
 import org.apache.catalina.LifecycleState;
+import org.apache.catalina.Valve;
 import org.apache.catalina.Wrapper;
 import org.apache.catalina.core.ContainerBase;
 import org.apache.catalina.security.SecurityUtil;
@@ -67,6 +71,7 @@ import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.swissbox.core.BundleUtils;
 import org.ops4j.pax.swissbox.core.ContextClassLoaderUtils;
 import org.ops4j.pax.web.service.WebContainerConstants;
+import org.ops4j.pax.web.service.spi.Configuration;
 import org.ops4j.pax.web.service.spi.LifeCycle;
 import org.ops4j.pax.web.service.spi.model.ContextModel;
 import org.ops4j.pax.web.service.spi.model.ErrorPageModel;
@@ -76,9 +81,13 @@ import org.ops4j.pax.web.service.spi.model.Model;
 import org.ops4j.pax.web.service.spi.model.SecurityConstraintMappingModel;
 import org.ops4j.pax.web.service.spi.model.ServletModel;
 import org.ops4j.pax.web.service.spi.model.WelcomeFileModel;
+import org.ops4j.pax.web.service.spi.util.CompressionConfig;
+import org.ops4j.pax.web.service.spi.util.ResourceCache;
+import org.ops4j.pax.web.service.spi.util.ServletContainerInitializerScanner;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
@@ -192,9 +201,16 @@ class TomcatServerWrapper implements ServerWrapper {
 
 	private Map<String, Object> contextAttributes;
 
+	/**
+	 * Discovers the ServletContainerInitializers of the context bundles.
+	 */
+	private final ServletContainerInitializerScanner initializerScanner;
+
 	private TomcatServerWrapper(final EmbeddedTomcat server) {
 		NullArgumentException.validateNotNull(server, "server");
 		this.server = server;
+		this.initializerScanner = new ServletContainerInitializerScanner(
+				FrameworkUtil.getBundle(getClass()));
 		((ContainerBase) server.getHost()).setStartChildren(false);
 		TomcatURLStreamHandlerFactory.disable();
 	}
@@ -208,8 +224,13 @@ class TomcatServerWrapper implements ServerWrapper {
 		LOG.debug("start server");
 		try {
 			final long t1 = System.nanoTime();
+			initializerScanner.open();
 			server.getHost();
 			server.start();
+			final Bundle bundle = FrameworkUtil.getBundle(getClass());
+			if (server.getRequestMetrics() != null && bundle != null) {
+				server.getRequestMetrics().register(bundle.getBundleContext());
+			}
 			final long t2 = System.nanoTime();
 			if (LOG.isInfoEnabled()) {
 				LOG.info("TomCat server startup in " + ((t2 - t1) / 1000000)
@@ -231,9 +252,14 @@ class TomcatServerWrapper implements ServerWrapper {
 			//CHECKSTYLE:OFF
 			try {
 				server.stop();
+				if (server.getRequestMetrics() != null) {
+					server.getRequestMetrics().close();
+				}
 				server.destroy();
 			} catch (final Throwable e) {
 				LOG.error("LifecycleException caught {}", e);
+			} finally {
+				initializerScanner.close();
 			}
 			//CHECKSTYLE:ON
 		}
@@ -253,26 +279,26 @@ class TomcatServerWrapper implements ServerWrapper {
 					createServletWrapper(model, context, servletName, servlet);
 
 					if (!model.getContextModel().isWebBundle()) {
-						context.addLifecycleListener(new LifecycleListener() {
-
-							@Override
-							public void lifecycleEvent(LifecycleEvent event) {
-								if (Lifecycle.AFTER_START_EVENT
-										.equalsIgnoreCase(event.getType())) {
-									Map<String, ? extends ServletRegistration> servletRegistrations = context
-											.getServletContext()
-											.getServletRegistrations();
-									//CHECKSTYLE:OFF
-									if (!servletRegistrations
-											.containsKey(servletName)) { 
-										LOG.debug("need to re-register the servlet ...");
-										createServletWrapper(model, context,
-												servletName, servlet);
+						RegistrationReplayListener.get(context).putServlet(
+								servletName, Lifecycle.AFTER_START_EVENT,
+								new Runnable() {
+
+									@Override
+									public void run() {
+										Map<String, ? extends ServletRegistration> servletRegistrations = context
+												.getServletContext()
+												.getServletRegistrations();
+										//CHECKSTYLE:OFF
+										if (!servletRegistrations
+												.containsKey(servletName)) { 
+											LOG.debug("need to re-register the servlet ...");
+											createServletWrapper(model,
+													context, servletName,
+													servlet);
+										}
+										//CHECKSTYLE:ON
 									}
-									//CHECKSTYLE:ON
-								}
-							}
-						});
+								});
 					}
 
 				} else {
@@ -282,29 +308,30 @@ class TomcatServerWrapper implements ServerWrapper {
 					addServletWrapper(sw, servletName, context, model);
 
 					if (!model.getContextModel().isWebBundle()) {
-						context.addLifecycleListener(new LifecycleListener() {
-
-							@Override
-							public void lifecycleEvent(LifecycleEvent event) {
-								if (Lifecycle.AFTER_START_EVENT
-										.equalsIgnoreCase(event.getType())) {
-									Map<String, ? extends ServletRegistration> servletRegistrations = context
-											.getServletContext()
-											.getServletRegistrations();
-									//CHECKSTYLE:OFF
-									if (!servletRegistrations
-											.containsKey(servletName)) { 
-										LOG.debug("need to re-register the servlet ...");
-										sw.setServletClass(model
-												.getServletClass().getName());
-
-										addServletWrapper(sw, servletName,
-												context, model);
+						RegistrationReplayListener.get(context).putServlet(
+								servletName, Lifecycle.AFTER_START_EVENT,
+								new Runnable() {
+
+									@Override
+									public void run() {
+										Map<String, ? extends ServletRegistration> servletRegistrations = context
+												.getServletContext()
+												.getServletRegistrations();
+										//CHECKSTYLE:OFF
+										if (!servletRegistrations
+												.containsKey(servletName)) { 
+											LOG.debug("need to re-register the servlet ...");
+											sw.setServletClass(model
+													.getServletClass()
+													.getName());
+
+											addServletWrapper(sw,
+													servletName, context,
+													model);
+										}
+										//CHECKSTYLE:ON
 									}
-									//CHECKSTYLE:ON
-								}
-							}
-						});
+								});
 					}
 				}
 
@@ -322,23 +349,22 @@ class TomcatServerWrapper implements ServerWrapper {
 			createServletWrapper(model, context, servletName, null);
 
 			if (!model.getContextModel().isWebBundle()) {
-				context.addLifecycleListener(new LifecycleListener() {
+				RegistrationReplayListener.get(context).putServlet(servletName,
+						Lifecycle.BEFORE_START_EVENT, new Runnable() {
 
-					@Override
-					public void lifecycleEvent(LifecycleEvent event) {
-						if (Lifecycle.BEFORE_START_EVENT.equalsIgnoreCase(event
-								.getType())) {
-							Map<String, ? extends ServletRegistration> servletRegistrations = context
-									.getServletContext()
-									.getServletRegistrations();
-							if (!servletRegistrations.containsKey(servletName)) {
-								LOG.debug("need to re-register the servlet ...");
-								createServletWrapper(model, context,
-										servletName, null);
+							@Override
+							public void run() {
+								Map<String, ? extends ServletRegistration> servletRegistrations = context
+										.getServletContext()
+										.getServletRegistrations();
+								if (!servletRegistrations
+										.containsKey(servletName)) {
+									LOG.debug("need to re-register the servlet ...");
+									createServletWrapper(model, context,
+											servletName, null);
+								}
 							}
-						}
-					}
-				});
+						});
 			}
 		}
 	}
@@ -379,6 +405,32 @@ class TomcatServerWrapper implements ServerWrapper {
 
 	}
 
+	/**
+	 * Replaces the mappings of a servlet, whose wrapper stays in the context.
+	 * The new patterns are mapped before the former ones are dropped, the
+	 * mapper of a running context follows both changes.
+	 */
+	@Override
+	public void remapServlet(final ServletModel model) {
+		LOG.debug("remap servlet [{}]", model);
+		final Context context = findContext(model);
+		final Container servlet = context == null ? null : context
+				.findChild(model.getName());
+		if (servlet == null) {
+			// mapped with the current patterns once the context is created
+			return;
+		}
+		final String[] formerPatterns = ((Wrapper) servlet).findMappings();
+		addServletMappings(context, model.getName(), model.getUrlPatterns());
+		final Set<String> urlPatterns = new HashSet<String>(
+				Arrays.asList(model.getUrlPatterns()));
+		for (String urlPattern : formerPatterns) {
+			if (!urlPatterns.contains(urlPattern)) {
+				context.removeServletMapping(urlPattern);
+			}
+		}
+	}
+
 	@Override
 	public void removeServlet(final ServletModel model) {
 		LOG.debug("remove servlet [{}]", model);
@@ -388,12 +440,17 @@ class TomcatServerWrapper implements ServerWrapper {
 					"cannot remove servlet cannot find the associated container: "
 							+ model);
 		}
+		RegistrationReplayListener.get(context).removeServlet(model.getName());
 		final Container servlet = context.findChild(model.getName());
 		if (servlet == null) {
 			throw new TomcatRemoveServletException(
 					"cannot find the servlet to remove: " + model);
 		}
 		context.removeChild(servlet);
+		if (server.getRequestMetrics() != null) {
+			server.getRequestMetrics().removeServletMetrics(
+					model.getContextModel().getContextName(), model.getName());
+		}
 	}
 
 	@Override
@@ -415,6 +472,11 @@ class TomcatServerWrapper implements ServerWrapper {
 					"cannot remove the context because it does not exist: "
 							+ httpContext);
 		}
+		for (Valve valve : context.getPipeline().getValves()) {
+			if (valve instanceof RequestMetricsValve) {
+				((RequestMetricsValve) valve).removeMetrics();
+			}
+		}
 		try {
 			final LifecycleState state = context.getState();
 			if (LifecycleState.DESTROYED != state
@@ -556,84 +618,217 @@ class TomcatServerWrapper implements ServerWrapper {
 	public void addFilter(final FilterModel filterModel) {
 		LOG.debug("add filter [{}]", filterModel);
 
+		if ((filterModel.getServletNames() == null || filterModel
+				.getServletNames().length == 0)
+				&& (filterModel.getUrlPatterns() == null || filterModel
+						.getUrlPatterns().length == 0)) {
+			throw new AddFilterException(
+					"cannot add filter to the context; at least a not empty list of servlet names or URL patterns in exclusive mode must be provided: "
+							+ filterModel);
+		}
+
 		final Context context = findOrCreateContext(filterModel);
+		// registers the filter whenever the context starts, unless it is
+		// still defined from being added to the running context
+		RegistrationReplayListener.get(context).putFilter(
+				filterModel.getName(), new Runnable() {
+
+					@Override
+					public void run() {
+						if (context.findFilterDef(filterModel.getName()) == null) {
+							registerFilter(context, filterModel);
+						}
+					}
+				});
+
 		LifecycleState state = ((HttpServiceContext) context).getState();
-		boolean restartContext = false;
 		if ((LifecycleState.STARTING.equals(state) || LifecycleState.STARTED
 				.equals(state)) && !filterModel.getContextModel().isWebBundle()) {
-			try {
-				restartContext = true;
-				((HttpServiceContext) context).stop();
-			} catch (LifecycleException e) {
-				LOG.warn("Can't reset the Lifecycle ... ", e);
+			if (addFilterLive((HttpServiceContext) context, filterModel)) {
+				return;
 			}
+			// the filter could not be started in place, fall back to a
+			// restart which registers it before the context starts again
+			restartContext((HttpServiceContext) context,
+					filterModel.getContextModel());
 		}
-		context.addLifecycleListener(new LifecycleListener() {
+	}
 
-			@Override
-			public void lifecycleEvent(LifecycleEvent event) {
-				if (Lifecycle.BEFORE_START_EVENT.equalsIgnoreCase(event
-						.getType())) {
-					FilterRegistration.Dynamic filterRegistration = null;
-					if (filterModel.getFilter() != null) {
-						filterRegistration = context
-								.getServletContext().addFilter(
-										filterModel.getName(),
-										filterModel.getFilter());
-						
-					} else if (filterModel.getFilterClass() != null) {
-						filterRegistration = context
-								.getServletContext().addFilter(
-										filterModel.getName(),
-										filterModel.getFilterClass());
-					}
-					
-					if (filterRegistration == null) {
-						filterRegistration = (Dynamic) context
-								.getServletContext().getFilterRegistration(
-										filterModel.getName());
-						if (filterRegistration == null) {
-							LOG.error("Can't register Filter due to unknown reason!");
-						}
-					}
+	/**
+	 * Stops a context to have its registrations replayed when it starts
+	 * again. While a registration batch is applied to the context the start is
+	 * left to the batch, further filters of the batch then find the context
+	 * stopped, so the batch restarts the context once.
+	 */
+	private void restartContext(final HttpServiceContext context,
+			final ContextModel contextModel) {
+		try {
+			context.stop();
+			if (!contextModel.isBatchInProgress()) {
+				ContextClassLoaderUtils.doWithClassLoader(
+						context.getParentClassLoader(), new Callable<Void>() {
 
-					if (filterModel.getServletNames() != null
-							&& filterModel.getServletNames().length > 0) {
-						filterRegistration.addMappingForServletNames(
-								getDispatcherTypes(filterModel), /*
-																 * TODO get
-																 * asynch
-																 * supported?
-																 */false,
-								filterModel.getServletNames());
-					} else if (filterModel.getUrlPatterns() != null
-							&& filterModel.getUrlPatterns().length > 0) {
-						filterRegistration.addMappingForUrlPatterns(
-								getDispatcherTypes(filterModel), /*
-																 * TODO get
-																 * asynch
-																 * supported?
-																 */false,
-								filterModel.getUrlPatterns());
-					} else {
-						throw new AddFilterException(
-								"cannot add filter to the context; at least a not empty list of servlet names or URL patterns in exclusive mode must be provided: "
-										+ filterModel);
-					}
-					filterRegistration.setInitParameters(filterModel
-							.getInitParams());
-				}
+							@Override
+							public Void call() throws LifecycleException {
+								context.start();
+								return null;
+							}
+						});
 			}
-		});
+			// CHECKSTYLE:OFF
+		} catch (Exception e) {
+			// CHECKSTYLE:ON
+			LOG.warn("Can't reset the Lifecycle ... ", e);
+		}
+	}
 
-		if (restartContext) {
-			try {
-				((HttpServiceContext) context).start();
-			} catch (LifecycleException e) {
-				LOG.warn("Can't reset the Lifecycle ... ", e);
+	private void registerFilter(final Context context,
+			final FilterModel filterModel) {
+		FilterRegistration.Dynamic filterRegistration = null;
+		if (filterModel.getFilter() != null) {
+			filterRegistration = context
+					.getServletContext().addFilter(
+							filterModel.getName(),
+							filterModel.getFilter());
+			
+		} else if (filterModel.getFilterClass() != null) {
+			filterRegistration = context
+					.getServletContext().addFilter(
+							filterModel.getName(),
+							filterModel.getFilterClass());
+		}
+		
+		if (filterRegistration == null) {
+			filterRegistration = (Dynamic) context
+					.getServletContext().getFilterRegistration(
+							filterModel.getName());
+			if (filterRegistration == null) {
+				LOG.error("Can't register Filter due to unknown reason!");
 			}
 		}
 
+		if (filterModel.getServletNames() != null
+				&& filterModel.getServletNames().length > 0) {
+			filterRegistration.addMappingForServletNames(
+					getDispatcherTypes(filterModel), /*
+													 * TODO get
+													 * asynch
+													 * supported?
+													 */false,
+					filterModel.getServletNames());
+		} else if (filterModel.getUrlPatterns() != null
+				&& filterModel.getUrlPatterns().length > 0) {
+			filterRegistration.addMappingForUrlPatterns(
+					getDispatcherTypes(filterModel), /*
+													 * TODO get
+													 * asynch
+													 * supported?
+													 */false,
+					filterModel.getUrlPatterns());
+		} else {
+			throw new AddFilterException(
+					"cannot add filter to the context; at least a not empty list of servlet names or URL patterns in exclusive mode must be provided: "
+							+ filterModel);
+		}
+		filterRegistration.setInitParameters(filterModel
+				.getInitParams());
+	}
+
+	/**
+	 * Starts a filter and maps it in a running context, as
+	 * {@link #registerFilter(Context, FilterModel)} would when the context
+	 * starts.
+	 *
+	 * @return false if the context needs to be restarted instead
+	 */
+	private boolean addFilterLive(final HttpServiceContext context,
+			final FilterModel filterModel) {
+		final FilterDef filterDef = new FilterDef();
+		filterDef.setFilterName(filterModel.getName());
+		if (filterModel.getFilter() != null) {
+			filterDef.setFilter(filterModel.getFilter());
+			filterDef.setFilterClass(filterModel.getFilter().getClass()
+					.getName());
+		} else {
+			// created by the instance manager of the context, as on start
+			filterDef.setFilterClass(filterModel.getFilterClass().getName());
+		}
+		for (Map.Entry<String, String> initParam : filterModel
+				.getInitParams().entrySet()) {
+			filterDef.addInitParameter(initParam.getKey(),
+					initParam.getValue());
+		}
+
+		final FilterMap filterMap = createFilterMap(filterModel);
+
+		try {
+			return ContextClassLoaderUtils.doWithClassLoader(
+					context.getParentClassLoader(), new Callable<Boolean>() {
+
+						@Override
+						public Boolean call() {
+							return context.addFilterLive(filterDef, filterMap);
+						}
+					});
+			// CHECKSTYLE:OFF
+		} catch (Exception e) {
+			// CHECKSTYLE:ON
+			LOG.warn("Unable to add filter {} to running context",
+					filterModel.getName(), e);
+			return false;
+		}
+	}
+
+	private FilterMap createFilterMap(final FilterModel filterModel) {
+		final FilterMap filterMap = new FilterMap();
+		filterMap.setFilterName(filterModel.getName());
+		for (DispatcherType dispatcherType : getDispatcherTypes(filterModel)) {
+			filterMap.setDispatcher(dispatcherType.name());
+		}
+		if (filterModel.getServletNames() != null
+				&& filterModel.getServletNames().length > 0) {
+			for (String servletName : filterModel.getServletNames()) {
+				filterMap.addServletName(servletName);
+			}
+		} else {
+			for (String urlPattern : filterModel.getUrlPatterns()) {
+				filterMap.addURLPattern(urlPattern);
+			}
+		}
+		return filterMap;
+	}
+
+	/**
+	 * Replaces the mapping of a filter, whose definition stays in the context.
+	 * A context only appends filter maps, so the new map and the maps
+	 * following the former one are appended before the former ones are
+	 * removed. The filter chains keep their order and never miss a filter, a
+	 * chain adds a filter matched twice only once.
+	 */
+	@Override
+	public void remapFilter(final FilterModel filterModel) {
+		LOG.debug("remap filter [{}]", filterModel);
+		final Context context = findContext(filterModel);
+		if (context == null) {
+			// mapped with the current model once the context is created
+			return;
+		}
+		final List<FilterMap> replaced = new ArrayList<FilterMap>();
+		for (FilterMap filterMap : context.findFilterMaps()) {
+			if (filterMap.getFilterName().equals(filterModel.getName())) {
+				if (replaced.isEmpty()) {
+					context.addFilterMap(createFilterMap(filterModel));
+				}
+				replaced.add(filterMap);
+			} else if (!replaced.isEmpty()) {
+				context.addFilterMap(filterMap);
+				replaced.add(filterMap);
+			}
+		}
+		// removes the first occurrences
+		for (FilterMap filterMap : replaced) {
+			context.removeFilterMap(filterMap);
+		}
 	}
 
 	private EnumSet<DispatcherType> getDispatcherTypes(
@@ -654,8 +849,8 @@ class TomcatServerWrapper implements ServerWrapper {
 	@Override
 	public void removeFilter(final FilterModel filterModel) {
 		final Context context = findOrCreateContext(filterModel);
-		FilterDef findFilterDef = context.findFilterDef(filterModel.getName());
-		context.removeFilterDef(findFilterDef);
+		RegistrationReplayListener.get(context).removeFilter(
+				filterModel.getName());
 		FilterMap[] filterMaps = context.findFilterMaps();
 		for (FilterMap filterMap : filterMaps) {
 			if (filterMap.getFilterName().equalsIgnoreCase(
@@ -663,6 +858,13 @@ class TomcatServerWrapper implements ServerWrapper {
 				context.removeFilterMap(filterMap);
 			}
 		}
+		FilterDef findFilterDef = context.findFilterDef(filterModel.getName());
+		if (findFilterDef != null) {
+			context.removeFilterDef(findFilterDef);
+		}
+		if (context instanceof HttpServiceContext) {
+			((HttpServiceContext) context).releaseFilter(filterModel.getName());
+		}
 	}
 
 	@Override
@@ -717,8 +919,18 @@ class TomcatServerWrapper implements ServerWrapper {
 	public Servlet createResourceServlet(final ContextModel contextModel,
 			final String alias, final String name) {
 		LOG.debug("createResourceServlet( contextModel: {}, alias: {}, name: {})");
+		final Configuration configuration = server.getConfiguration();
 		return new TomcatResourceServlet(contextModel.getHttpContext(),
-				contextModel.getContextName(), alias, name);
+				contextModel.getContextName(), alias, name,
+				ResourceCache.create(configuration,
+						contextModel.getContextParams()),
+				configuration == null ? null : configuration
+						.getResourceBufferSize(),
+				CompressionConfig.create(configuration,
+						contextModel.getContextParams()),
+				configuration != null
+						&& Boolean.TRUE.equals(configuration
+								.isCompressionEnabled()));
 	}
 
 	@Override
@@ -795,6 +1007,12 @@ class TomcatServerWrapper implements ServerWrapper {
 						}
 
 					});
+					// Tomcat only logs failures, marking the context failed
+					if (!context.getState().isAvailable()) {
+						throw new LifecycleException("Context ["
+								+ context.getName() + "] failed to start, in state "
+								+ context.getState());
+					}
 				}
 			}
 
@@ -847,6 +1065,19 @@ class TomcatServerWrapper implements ServerWrapper {
 		final BundleContext bundleContext = BundleUtils
 				.getBundleContext(bundle);
 
+		// scan for ServletContainerInitializers
+		final Map<ServletContainerInitializer, Set<Class<?>>> discovered = initializerScanner
+				.scan(bundle);
+		if (!discovered.isEmpty()) {
+			Map<ServletContainerInitializer, Set<Class<?>>> containerInitializers = contextModel
+					.getContainerInitializers();
+			if (containerInitializers == null) {
+				containerInitializers = new HashMap<ServletContainerInitializer, Set<Class<?>>>();
+				contextModel.setContainerInitializers(containerInitializers);
+			}
+			containerInitializers.putAll(discovered);
+		}
+
 		final Context context = server.addContext(
 				contextModel.getContextParams(),
 				getContextAttributes(bundleContext),
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Loader;
+import org.apache.catalina.Session;
+import org.apache.catalina.session.PersistentManagerBase;
+import org.apache.catalina.session.StandardSession;
+import org.apache.catalina.session.StoreBase;
+import org.apache.catalina.util.CustomObjectInputStream;
+import org.ops4j.pax.web.service.spi.session.SessionStore;
+import org.ops4j.pax.web.service.spi.session.SessionStoreConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tomcat store of a persistent manager keeping the sessions it swaps out in a
+ * {@link SessionStore}. Expired sessions are found from the expiry kept by the
+ * store, so only those are loaded back to be expired.
+ */
+public class TomcatSessionStore extends StoreBase {
+
+	private static final Logger LOG = LoggerFactory
+			.getLogger(TomcatSessionStore.class);
+
+	private static final String STORE_NAME = "paxWebSessionStore";
+
+	private final SessionStoreConfig config;
+	private final String contextName;
+	private volatile SessionStore sessionStore;
+
+	/**
+	 * @param config
+	 *            eviction settings of the context
+	 * @param contextName
+	 *            name of the context
+	 */
+	public TomcatSessionStore(final SessionStoreConfig config,
+			final String contextName) {
+		this.config = config;
+		this.contextName = contextName;
+	}
+
+	@Override
+	public String getStoreName() {
+		return STORE_NAME;
+	}
+
+	@Override
+	protected synchronized void startInternal() throws LifecycleException {
+		try {
+			sessionStore = config.createSessionStore(contextName);
+		} catch (IOException e) {
+			throw new LifecycleException("Cannot create session store of "
+					+ contextName, e);
+		}
+		super.startInternal();
+	}
+
+	@Override
+	protected synchronized void stopInternal() throws LifecycleException {
+		super.stopInternal();
+		final SessionStore store = sessionStore;
+		sessionStore = null;
+		if (store != null) {
+			try {
+				store.close();
+			} catch (IOException e) {
+				LOG.warn("Cannot close session store of {}", contextName, e);
+			}
+		}
+	}
+
+	@Override
+	public int getSize() throws IOException {
+		return store().size();
+	}
+
+	@Override
+	public String[] keys() throws IOException {
+		return store().keys().toArray(new String[0]);
+	}
+
+	@Override
+	public Session load(final String id) throws ClassNotFoundException,
+			IOException {
+		final byte[] data = store().load(id);
+		if (data == null) {
+			return null;
+		}
+		final Context context = manager.getContext();
+		final Loader loader = context == null ? null : context.getLoader();
+		ClassLoader classLoader = loader == null ? null : loader
+				.getClassLoader();
+		if (classLoader == null) {
+			classLoader = Thread.currentThread().getContextClassLoader();
+		}
+		final ObjectInputStream in = new CustomObjectInputStream(
+				new ByteArrayInputStream(data), classLoader);
+		try {
+			final StandardSession session = (StandardSession) manager
+					.createEmptySession();
+			session.readObjectData(in);
+			session.setManager(manager);
+			return session;
+		} finally {
+			in.close();
+		}
+	}
+
+	@Override
+	public void remove(final String id) throws IOException {
+		store().remove(id);
+	}
+
+	@Override
+	public void clear() throws IOException {
+		store().clear();
+	}
+
+	@Override
+	public void save(final Session session) throws IOException {
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(data);
+		try {
+			((StandardSession) session).writeObjectData(out);
+		} finally {
+			out.close();
+		}
+		final long maxInactive = session.getMaxInactiveInterval() * 1000L;
+		store().save(
+				session.getIdInternal(),
+				data.toByteArray(),
+				maxInactive > 0 ? session.getThisAccessedTimeInternal()
+						+ maxInactive : Long.MAX_VALUE);
+	}
+
+	/**
+	 * Expires the stored sessions which are due, without loading the others.
+	 */
+	@Override
+	public void processExpires() {
+		final SessionStore store = sessionStore;
+		if (!getState().isAvailable() || store == null) {
+			return;
+		}
+		for (String id : store.expired(System.currentTimeMillis())) {
+			try {
+				final StandardSession session = (StandardSession) load(id);
+				if (session == null) {
+					continue;
+				}
+				if (session.getIdleTimeInternal() / 1000L < session
+						.getMaxInactiveInterval()) {
+					continue;
+				}
+				if (manager instanceof PersistentManagerBase
+						&& ((PersistentManagerBase) manager).isLoaded(id)) {
+					// swapped in meanwhile, left to the manager
+					session.recycle();
+				} else {
+					session.expire();
+				}
+				remove(id);
+				//CHECKSTYLE:OFF
+			} catch (Exception e) {
+				//CHECKSTYLE:ON
+				LOG.warn("Cannot expire stored session {}", id, e);
+				try {
+					remove(id);
+				} catch (IOException removeException) {
+					LOG.debug("Cannot remove session {}", id, removeException);
+				}
+			}
+		}
+	}
+
+	private SessionStore store() throws IOException {
+		final SessionStore store = sessionStore;
+		if (store == null) {
+			throw new IOException("Session store of " + contextName
+					+ " is not started");
+		}
+		return store;
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ops4j.pax.web.service.spi.util.CompressionConfig;
+
+public class CompressionValveTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Tomcat tomcat;
+
+	private void start(final CompressionConfig compression) throws Exception {
+		tomcat = new Tomcat();
+		tomcat.setBaseDir(folder.newFolder("base").getAbsolutePath());
+		tomcat.setPort(0);
+		final Context context = tomcat.addContext("/ctx", folder
+				.newFolder("docs").getAbsolutePath());
+		context.getPipeline().addValve(new CompressionValve(compression));
+		Tomcat.addServlet(context, "encoding", new AcceptEncodingServlet());
+		context.addServletMapping("/*", "encoding");
+		tomcat.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		tomcat.stop();
+		tomcat.destroy();
+	}
+
+	@Test
+	public void disabledContextIsNotCompressed() throws Exception {
+		start(null);
+
+		assertEquals("none", acceptedEncoding("/ctx/index.html"));
+	}
+
+	@Test
+	public void compressionIsDisabledForContext() throws Exception {
+		start(new CompressionConfig(false, 0, null, null, -1, true));
+
+		assertEquals("none", acceptedEncoding("/ctx/index.html"));
+	}
+
+	@Test
+	public void excludedPathsAreNotCompressed() throws Exception {
+		start(new CompressionConfig(true, 0, null, "/api/", -1, false));
+
+		assertEquals("gzip", acceptedEncoding("/ctx/index.html"));
+		assertEquals("none", acceptedEncoding("/ctx/api/items"));
+	}
+
+	private String acceptedEncoding(final String path) throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://localhost:" + tomcat.getConnector().getLocalPort()
+						+ path).openConnection();
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		final BufferedReader reader = new BufferedReader(
+				new InputStreamReader(connection.getInputStream(), "UTF-8"));
+		try {
+			return reader.readLine();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Answers the Accept-Encoding header left to the connector.
+	 */
+	private static class AcceptEncodingServlet extends HttpServlet {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void doGet(final HttpServletRequest req,
+				final HttpServletResponse resp) throws ServletException,
+				IOException {
+			final String encoding = req.getHeader("Accept-Encoding");
+			resp.setContentType("text/plain");
+			resp.getWriter().println(encoding == null ? "none" : encoding);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015 OPS4J.
+ *
+ * Licensed  under the  Apache License,  Version 2.0  (the "License");
+ * you may not use  this file  except in  compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed  under the  License is distributed on an "AS IS" BASIS,
+ * WITHOUT  WARRANTIES OR CONDITIONS  OF ANY KIND, either  express  or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.apache.catalina.core.ApplicationFilterConfig;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HttpServiceContextTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Tomcat tomcat;
+	private HttpServiceContext context;
+
+	@Before
+	public void setUp() throws Exception {
+		tomcat = new Tomcat();
+		tomcat.setBaseDir(folder.newFolder("base").getAbsolutePath());
+		tomcat.setPort(0);
+		context = new HttpServiceContext(tomcat.getHost(),
+				AccessController.getContext());
+		context.setName("");
+		context.setPath("");
+		context.setDocBase(folder.newFolder("docs").getAbsolutePath());
+		context.setParentClassLoader(getClass().getClassLoader());
+		context.addLifecycleListener(new Tomcat.FixContextListener());
+		tomcat.getHost().addChild(context);
+		tomcat.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		tomcat.stop();
+		tomcat.destroy();
+	}
+
+	@Test
+	public void filterIsStartedWithoutChangingTheFormerConfigs()
+			throws Exception {
+		final CountingFilter filter = new CountingFilter();
+		final Object formerConfigs = filterConfigs();
+
+		assertTrue(context.addFilterLive(filterDef("counting", filter),
+				filterMap("counting")));
+
+		assertEquals(1, filter.initialized.get());
+		assertEquals("counting", context.findFilterConfig("counting")
+				.getFilterName());
+		assertEquals("counting", context.findFilterMaps()[0].getFilterName());
+		// request threads read the configs without lock, these are replaced
+		assertTrue(formerConfigs != filterConfigs());
+		assertNull(((Map<?, ?>) formerConfigs).get("counting"));
+	}
+
+	@Test
+	public void replacedFilterIsReleased() throws Exception {
+		final CountingFilter first = new CountingFilter();
+		final CountingFilter second = new CountingFilter();
+		context.addFilterLive(filterDef("counting", first),
+				filterMap("counting"));
+
+		assertTrue(context.addFilterLive(filterDef("counting", second),
+				filterMap("counting")));
+
+		assertEquals(1, first.destroyed.get());
+		assertEquals(0, second.destroyed.get());
+		assertSame(second, filterOf("counting"));
+	}
+
+	@Test
+	public void filterClassIsCreatedByTheContext() throws Exception {
+		final FilterDef filterDef = new FilterDef();
+		filterDef.setFilterName("byClass");
+		filterDef.setFilterClass(CountingFilter.class.getName());
+
+		assertTrue(context.addFilterLive(filterDef, filterMap("byClass")));
+
+		final CountingFilter filter = (CountingFilter) filterOf("byClass");
+		assertEquals(1, filter.initialized.get());
+	}
+
+	@Test
+	public void releasedFilterIsDestroyed() throws Exception {
+		final CountingFilter filter = new CountingFilter();
+		context.addFilterLive(filterDef("counting", filter),
+				filterMap("counting"));
+
+		context.removeFilterMap(context.findFilterMaps()[0]);
+		context.removeFilterDef(context.findFilterDef("counting"));
+		context.releaseFilter("counting");
+
+		assertEquals(1, filter.destroyed.get());
+		assertNull(context.findFilterConfig("counting"));
+	}
+
+	@Test
+	public void stoppedContextIsNotChanged() throws Exception {
+		context.stop();
+
+		assertFalse(context.addFilterLive(
+				filterDef("counting", new CountingFilter()),
+				filterMap("counting")));
+		assertNull(context.findFilterDef("counting"));
+	}
+
+	private Object filterConfigs() throws Exception {
+		final Field field = StandardContext.class
+				.getDeclaredField("filterConfigs");
+		field.setAccessible(true);
+		return field.get(context);
+	}
+
+	private Filter filterOf(final String filterName) throws Exception {
+		final Method getFilter = ApplicationFilterConfig.class
+				.getDeclaredMethod("getFilter");
+		getFilter.setAccessible(true);
+		return (Filter) getFilter.invoke(context.findFilterConfig(filterName));
+	}
+
+	private static FilterDef filterDef(final String filterName,
+			final Filter filter) {
+		final FilterDef filterDef = new FilterDef();
+		filterDef.setFilterName(filterName);
+		filterDef.setFilter(filter);
+		filterDef.setFilterClass(filter.getClass().getName());
+		return filterDef;
+	}
+
+	private static FilterMap filterMap(final String filterName) {
+		final FilterMap filterMap = new FilterMap();
+		filterMap.setFilterName(filterName);
+		filterMap.addURLPattern("/*");
+		return filterMap;
+	}
+
+	public static class CountingFilter implements Filter {
+
+		private final AtomicInteger initialized = new AtomicInteger();
+		private final AtomicInteger destroyed = new AtomicInteger();
+
+		@Override
+		public void init(FilterConfig filterConfig) throws ServletException {
+			initialized.incrementAndGet();
+		}
+
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response,
+				FilterChain chain) throws IOException, ServletException {
+			chain.doFilter(request, response);
+		}
+
+		@Override
+		public void destroy() {
+			destroyed.incrementAndGet();
+		}
+	}
+}